@@ -0,0 +1,151 @@
+package com.dianerverotect.model;
+
+import android.content.Context;
+import android.os.Debug;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Accuracy-parity and latency harness for the quantized model variants.
+ *
+ * Every bundled variant scores the same golden feature set; the probabilities and the
+ * resulting RiskLevel are compared against the float32 model, and per-variant latency and
+ * native memory are reported to logcat (tag ModelVariantParity). The bundled files are
+ * always compared, even when a downloaded model is installed in the registry.
+ *
+ * Only MODEL.tflite is checked in. Until MODEL_fp16.tflite and MODEL_int8.tflite are
+ * generated (./gradlew :app:quantizeModels), their tests are skipped, not passed.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ModelVariantParityTest {
+
+    private static final String TAG = "ModelVariantParity";
+    private static final int TIMED_RUNS = 50;
+
+    // On-device feature vectors: age, duration, glucose, 5 EMG features, temperature, pressure
+    private static final float[][] GOLDEN_FEATURES = {
+            {30, 1, 85, 38, 30, 24, 7, 12, 1, 1},
+            {42, 3, 110, 35, 28, 23, 6, 14, 1, 1},
+            {50, 5, 120, 34, 27, 22, 6, 16, 1, 1},
+            {55, 8, 145, 31, 25, 22, 5, 18, 1, 0},
+            {61, 10, 160, 29, 22, 21, 5, 20, 0, 1},
+            {66, 12, 175, 27, 20, 21, 4, 22, 0, 0},
+            {70, 15, 210, 24, 18, 20, 4, 25, 0, 0},
+            {75, 20, 260, 22, 15, 20, 3, 28, 0, 0},
+            {48, 2, 300, 36, 29, 23, 7, 11, 1, 1},
+            {68, 25, 95, 26, 19, 21, 4, 24, 1, 0},
+            {35, 6, 190, 33, 26, 22, 6, 15, 0, 1},
+            {58, 18, 135, 28, 21, 21, 5, 21, 1, 1}
+    };
+
+    // Maximum tolerated probability deviation from float32, per variant
+    private static final float FLOAT16_MAX_DEVIATION = 0.01f;
+    private static final float INT8_MAX_DEVIATION = 0.05f;
+    private static final float MIN_RISK_AGREEMENT = 0.9f;
+
+    @Test
+    public void float16MatchesFloat32() {
+        assertParity(ModelVariant.FLOAT16, FLOAT16_MAX_DEVIATION);
+    }
+
+    @Test
+    public void int8MatchesFloat32() {
+        assertParity(ModelVariant.INT8, INT8_MAX_DEVIATION);
+    }
+
+    private void assertParity(ModelVariant variant, float maxAllowedDeviation) {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        assumeTrue(variant.getAssetName() + " is not bundled; run ./gradlew :app:quantizeModels",
+                variant.isBundled(context));
+
+        VariantRun reference = score(context, ModelVariant.FLOAT32);
+        VariantRun candidate = score(context, variant);
+        assertTrue("float32 model did not load", reference.usedRealModel);
+        assertTrue(variant + " model did not load", candidate.usedRealModel);
+        assertTrue("Both runs loaded the same model " + reference.modelVersion,
+                !reference.modelVersion.equals(candidate.modelVersion));
+
+        float maxDeviation = 0f;
+        float sumDeviation = 0f;
+        int agreements = 0;
+        for (int i = 0; i < GOLDEN_FEATURES.length; i++) {
+            float deviation = Math.abs(candidate.scores[i] - reference.scores[i]);
+            maxDeviation = Math.max(maxDeviation, deviation);
+            sumDeviation += deviation;
+            if (candidate.levels[i] == reference.levels[i]) {
+                agreements++;
+            }
+        }
+        float meanDeviation = sumDeviation / GOLDEN_FEATURES.length;
+        float agreement = agreements / (float) GOLDEN_FEATURES.length;
+
+        Log.i(TAG, String.format("%s vs FLOAT32: max deviation %.5f, mean deviation %.5f, "
+                        + "risk level agreement %d/%d", variant, maxDeviation, meanDeviation,
+                agreements, GOLDEN_FEATURES.length));
+        Log.i(TAG, reference.describe());
+        Log.i(TAG, candidate.describe());
+
+        assertTrue(variant + " max deviation " + maxDeviation, maxDeviation <= maxAllowedDeviation);
+        assertTrue(variant + " risk level agreement " + agreement, agreement >= MIN_RISK_AGREEMENT);
+    }
+
+    private VariantRun score(Context context, ModelVariant variant) {
+        VariantRun run = new VariantRun(variant);
+
+        long nativeBefore = Debug.getNativeHeapAllocatedSize();
+        long loadStart = System.nanoTime();
+        NeuropathyPredictor predictor = new NeuropathyPredictor(context, variant, false);
+        run.loadNanos = System.nanoTime() - loadStart;
+        run.modelVersion = predictor.getModelVersion();
+        run.nativeBytes = Debug.getNativeHeapAllocatedSize() - nativeBefore;
+
+        try {
+            run.usedRealModel = true;
+            for (int i = 0; i < GOLDEN_FEATURES.length; i++) {
+                float[] features = GOLDEN_FEATURES[i];
+                PredictionResult prediction = predictor.predict(features);
+                run.scores[i] = prediction.getScore();
+                run.usedRealModel &= prediction.usedRealModel();
+                run.levels[i] = predictor.evaluateRisk(prediction, features[2],
+                        features[8] > 0.5f, features[9] > 0.5f).getRiskLevel();
+            }
+
+            long start = System.nanoTime();
+            for (int r = 0; r < TIMED_RUNS; r++) {
+                predictor.predict(GOLDEN_FEATURES[r % GOLDEN_FEATURES.length]);
+            }
+            run.meanPredictNanos = (System.nanoTime() - start) / TIMED_RUNS;
+        } finally {
+            predictor.close();
+        }
+        return run;
+    }
+
+    private static class VariantRun {
+        final ModelVariant variant;
+        final float[] scores = new float[GOLDEN_FEATURES.length];
+        final NeuropathyPredictor.RiskLevel[] levels = new NeuropathyPredictor.RiskLevel[GOLDEN_FEATURES.length];
+        boolean usedRealModel;
+        String modelVersion;
+        long loadNanos;
+        long meanPredictNanos;
+        long nativeBytes;
+
+        VariantRun(ModelVariant variant) {
+            this.variant = variant;
+        }
+
+        String describe() {
+            return String.format("%s: load %.2f ms, predict %.3f ms, native heap +%d KB",
+                    variant, loadNanos / 1e6, meanPredictNanos / 1e6, nativeBytes / 1024);
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.dianerverotect.model;
+
+import android.content.Context;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that {@link NeuropathyPredictor#predictBatch} scores like one
+ * {@link NeuropathyPredictor#predict} call per row, on the bundled model.
+ */
+@RunWith(AndroidJUnit4.class)
+public class NeuropathyPredictorBatchTest {
+
+    // On-device feature vectors: age, duration, glucose, 5 EMG features, temperature, pressure
+    private static final float[][] FEATURES = {
+            {30, 1, 85, 38, 30, 24, 7, 12, 1, 1},
+            {55, 8, 145, 31, 25, 22, 5, 18, 1, 0},
+            {75, 20, 260, 22, 15, 20, 3, 28, 0, 0},
+            {48, 2, 300, 36, 29, 23, 7, 11, 1, 1}
+    };
+
+    private static NeuropathyPredictor createPredictor() {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        return new NeuropathyPredictor(context, ModelVariant.FLOAT32, false);
+    }
+
+    @Test
+    public void batchMatchesSinglePredictions() {
+        NeuropathyPredictor predictor = createPredictor();
+        try {
+            assertTrue("Bundled model did not load", predictor.isModelLoaded());
+            // Only the first count rows are scored; the rest of the buffer is ignored
+            int count = FEATURES.length - 1;
+            PredictionResult[] batch = predictor.predictBatch(FEATURES, count);
+
+            assertEquals(count, batch.length);
+            for (int i = 0; i < count; i++) {
+                PredictionResult single = predictor.predict(FEATURES[i]);
+                assertTrue(batch[i].usedRealModel());
+                assertEquals(predictor.getModelVersion(), batch[i].getModelVersion());
+                assertEquals("Row " + i, single.getScore(), batch[i].getScore(), 1e-5f);
+            }
+        } finally {
+            predictor.close();
+        }
+    }
+
+    @Test
+    public void emptyBatchScoresNothing() {
+        NeuropathyPredictor predictor = createPredictor();
+        try {
+            assertEquals(0, predictor.predictBatch(FEATURES, 0).length);
+        } finally {
+            predictor.close();
+        }
+    }
+
+    @Test
+    public void scoringVersionNamesTheLoadedModel() {
+        NeuropathyPredictor predictor = createPredictor();
+        try {
+            assertTrue(predictor.getScoringVersion().startsWith(predictor.getModelVersion() + "/"));
+            PredictionResult prediction = predictor.predict(FEATURES[0]);
+            assertEquals(predictor.getScoringVersion(), predictor.evaluateRisk(prediction,
+                    FEATURES[0][2], true, true).getScoringVersion());
+        } finally {
+            predictor.close();
+        }
+    }
+}
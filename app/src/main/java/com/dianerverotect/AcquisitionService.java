@@ -0,0 +1,487 @@
+package com.dianerverotect;
+
+import android.app.Notification;
+import android.app.NotificationChannel;
+import android.app.NotificationManager;
+import android.app.PendingIntent;
+import android.app.Service;
+import android.bluetooth.BluetoothAdapter;
+import android.content.Intent;
+import android.content.pm.ServiceInfo;
+import android.os.Binder;
+import android.os.Build;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.IBinder;
+import android.os.Looper;
+import android.os.PowerManager;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+import androidx.core.app.NotificationCompat;
+import androidx.core.content.ContextCompat;
+
+import com.dianerverotect.bluetooth.ChannelMerger;
+import com.dianerverotect.emg.EmgConvergenceMonitor;
+import com.dianerverotect.emg.EmgFeatureExtractor;
+import com.dianerverotect.emg.EmgSource;
+import com.dianerverotect.emg.PacedEmgSource;
+import com.dianerverotect.emg.SignalQualityIndex;
+import com.dianerverotect.emg.SyntheticEmgSource;
+import com.dianerverotect.metrics.Counter;
+import com.dianerverotect.metrics.Meter;
+import com.dianerverotect.metrics.MetricsRegistry;
+import com.dianerverotect.model.NeuropathyPredictor;
+import com.dianerverotect.policy.ExecutionPolicy;
+import com.dianerverotect.policy.ExecutionPolicyMonitor;
+
+import java.util.Arrays;
+
+/**
+ * Runs the EMG capture independently of the UI. The service owns the bracelet sessions,
+ * the captured samples and the streaming feature extraction, and samples on its own
+ * high-priority thread under a partial wake lock, so rotating the screen, dimming it or
+ * switching apps neither stalls nor loses a test.
+ *
+ * HomeFragment binds to it for live updates. While a capture runs the service is started
+ * and in the foreground, so it outlives the binding; afterwards it only lives while bound.
+ * When the fragment is gone at the end of a capture the result is kept, and the service
+ * stays started, until the next listener is set.
+ */
+public class AcquisitionService extends Service {
+    private static final String TAG = "AcquisitionService";
+
+    // The bracelet talks through an HC-05 serial module, which keeps its factory name.
+    // It must be paired in the system Bluetooth settings first; BluetoothManager finds it
+    // among the bonded devices by this name and caches its address. A bracelet built
+    // around another module needs its name here. For a bilateral test the second
+    // bracelet's module is renamed (AT+NAME) to the second name before pairing. The first
+    // name is the side that is scored; whichever bracelets are connected are captured.
+    private static final String[] BRACELET_NAMES = {"HC-05", "HC-05-R"};
+
+    // Capture bounds, in seconds of usable signal
+    private static final int COUNTDOWN_SECONDS = 20;
+    private static final int MIN_CAPTURE_SECONDS = 5;
+    private static final int SAMPLE_RATE_HZ = 50;
+
+    // Early termination: stop once 1 s block features are within 10% and the
+    // provisional score is within +/- 0.03 (95% confidence interval)
+    private static final float FEATURE_TOLERANCE = 0.10f;
+    private static final float SCORE_TOLERANCE = 0.03f;
+
+    // Signal quality: rails match the chart range, bad stretches extend the capture
+    // by up to MAX_EXTENSION_SECONDS and a continuous bad stretch aborts it
+    private static final float SIGNAL_RAIL_LOW = -40f;
+    private static final float SIGNAL_RAIL_HIGH = 100f;
+    private static final float MAINS_HZ = 50f;
+    private static final int MAX_EXTENSION_SECONDS = 10;
+    private static final int ABORT_AFTER_BAD_SECONDS = 3;
+    private static final int MAX_CAPTURE_SAMPLES = (COUNTDOWN_SECONDS + MAX_EXTENSION_SECONDS) * SAMPLE_RATE_HZ;
+
+    private static final Meter SAMPLES = MetricsRegistry.getShared().meter("emg.samples");
+    private static final Counter DROPPED_SAMPLES = MetricsRegistry.getShared().counter("emg.dropped_samples");
+
+    private static final String CHANNEL_ID = "acquisition";
+    private static final int NOTIFICATION_ID = 1;
+    // The wake lock is released with the capture; the timeout only guards against leaks
+    private static final long WAKE_LOCK_TIMEOUT_MS = (COUNTDOWN_SECONDS + MAX_EXTENSION_SECONDS + 10) * 1000L;
+
+    /**
+     * Capture updates, delivered on the main thread.
+     */
+    public interface Listener {
+        /**
+         * Once per second while capturing.
+         */
+        void onProgress(long remainingSeconds, SignalQualityIndex.Issue issue, float qualityIndex);
+
+        /**
+         * The capture converged or ran out of time. samples holds every captured sample of
+         * the scored side; otherSideFeatures holds the EMG features of the other bracelet
+         * over the same frames, or null if only one bracelet was connected.
+         */
+        void onCompleted(float[] samples, @Nullable float[] otherSideFeatures);
+
+        /**
+         * The signal stayed unusable; nothing was kept.
+         */
+        void onAborted(SignalQualityIndex.Issue issue, float qualityIndex);
+    }
+
+    public class LocalBinder extends Binder {
+        public AcquisitionService getService() {
+            return AcquisitionService.this;
+        }
+    }
+
+    private final IBinder binder = new LocalBinder();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private HandlerThread acquisitionThread;
+    private Handler acquisitionHandler;
+    private PowerManager.WakeLock wakeLock;
+    private BluetoothManager bluetoothManager;
+
+    // Main thread only
+    private Listener listener;
+    private final PendingCapture pendingCapture = new PendingCapture();
+    private volatile boolean capturing;
+    private boolean inForeground;
+
+    // Acquisition thread only
+    private final float[] capturedSamples = new float[MAX_CAPTURE_SAMPLES];
+    private final float[] sampleBuffer = new float[SAMPLE_RATE_HZ];
+    private int capturedCount;
+    private EmgSource emgSource;
+    private ChannelMerger merger;
+    private EmgConvergenceMonitor convergenceMonitor;
+    private SignalQualityIndex signalQuality;
+    private EmgFeatureExtractor featureExtractor;
+    // Features of the second bracelet, null unless two are connected
+    private EmgFeatureExtractor otherSideExtractor;
+    private NeuropathyPredictor provisionalPredictor;
+    private Runnable acquisitionTick;
+
+    // Sets the tick and scoring intervals, read on every tick
+    private ExecutionPolicyMonitor policyMonitor;
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        // Same priority as audio capture, so the sampling cadence holds up under load
+        acquisitionThread = new HandlerThread("emg-acquisition", Process.THREAD_PRIORITY_URGENT_AUDIO);
+        acquisitionThread.start();
+        acquisitionHandler = new Handler(acquisitionThread.getLooper());
+        PowerManager powerManager = (PowerManager) getSystemService(POWER_SERVICE);
+        wakeLock = powerManager.newWakeLock(PowerManager.PARTIAL_WAKE_LOCK, "DiaNerverotect:acquisition");
+        wakeLock.setReferenceCounted(false);
+        policyMonitor = ExecutionPolicyMonitor.getShared(this);
+    }
+
+    @Nullable
+    @Override
+    public IBinder onBind(Intent intent) {
+        return binder;
+    }
+
+    @Override
+    public int onStartCommand(Intent intent, int flags, int startId) {
+        // Only started for a capture; a restarted process has nothing to resume
+        return START_NOT_STICKY;
+    }
+
+    @Override
+    public void onDestroy() {
+        acquisitionHandler.post(this::stopAcquisition);
+        acquisitionThread.quitSafely();
+        if (wakeLock.isHeld()) {
+            wakeLock.release();
+        }
+        if (bluetoothManager != null) {
+            bluetoothManager.disconnect();
+            bluetoothManager = null;
+        }
+        super.onDestroy();
+    }
+
+    /**
+     * Sets the listener, or clears it with null. A capture that finished while nobody was
+     * listening is delivered to the new listener right away, after which the service no
+     * longer needs to stay started.
+     */
+    public void setListener(Listener listener) {
+        this.listener = listener;
+        if (listener != null && pendingCapture.deliverTo(listener::onCompleted) && !capturing) {
+            stopSelf();
+        }
+    }
+
+    public boolean isCapturing() {
+        return capturing;
+    }
+
+    /**
+     * Connects to the bracelets in the background, so the links are usually up by the time
+     * a capture starts.
+     */
+    public void preconnect() {
+        if (bluetoothManager == null) {
+            if (BluetoothAdapter.getDefaultAdapter() == null) {
+                return;
+            }
+            bluetoothManager = new BluetoothManager(this);
+        }
+        bluetoothManager.preconnect(BRACELET_NAMES);
+    }
+
+    /**
+     * Starts a capture, scoring the signal every second against the given fasting glucose.
+     * Must be called on the main thread; ignored while a capture is already running.
+     */
+    public void startCapture(float glucoseValue) {
+        if (capturing) {
+            return;
+        }
+        capturing = true;
+        pendingCapture.clear();
+
+        // Started as well as bound, so the capture survives the UI unbinding. Android 14
+        // only lets a connected-device service into the foreground with the Bluetooth
+        // connect permission; without it the capture runs on the simulator and is only
+        // started, since a foreground start not followed by startForeground kills the app
+        Intent intent = new Intent(this, AcquisitionService.class);
+        if (BluetoothManager.hasConnectPermission(this)) {
+            ContextCompat.startForegroundService(this, intent);
+            startInForeground();
+        } else {
+            startService(intent);
+        }
+        wakeLock.acquire(WAKE_LOCK_TIMEOUT_MS);
+
+        // Use the connected bracelets, otherwise the simulator
+        ChannelMerger braceletMerger = bluetoothManager != null
+                ? bluetoothManager.createMerger(SAMPLE_RATE_HZ, BRACELET_NAMES) : null;
+        acquisitionHandler.post(() -> startAcquisition(glucoseValue, braceletMerger));
+    }
+
+    private void startInForeground() {
+        NotificationManager notificationManager = getSystemService(NotificationManager.class);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            notificationManager.createNotificationChannel(new NotificationChannel(CHANNEL_ID,
+                    "EMG capture", NotificationManager.IMPORTANCE_LOW));
+        }
+        Notification notification = buildNotification(COUNTDOWN_SECONDS);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            startForeground(NOTIFICATION_ID, notification, ServiceInfo.FOREGROUND_SERVICE_TYPE_CONNECTED_DEVICE);
+        } else {
+            startForeground(NOTIFICATION_ID, notification);
+        }
+        inForeground = true;
+    }
+
+    private Notification buildNotification(long remainingSeconds) {
+        PendingIntent contentIntent = PendingIntent.getActivity(this, 0,
+                new Intent(this, MainActivity.class).setFlags(Intent.FLAG_ACTIVITY_SINGLE_TOP),
+                PendingIntent.FLAG_IMMUTABLE);
+        return new NotificationCompat.Builder(this, CHANNEL_ID)
+                .setSmallIcon(R.drawable.ic_start_test)
+                .setContentTitle("EMG test in progress")
+                .setContentText(remainingSeconds + " s remaining")
+                .setContentIntent(contentIntent)
+                .setOngoing(true)
+                .setOnlyAlertOnce(true)
+                .setPriority(NotificationCompat.PRIORITY_LOW)
+                .build();
+    }
+
+    /**
+     * Streams EMG samples into the convergence monitor and ends the capture as soon as the
+     * features and the provisional score have stabilised, bounded by
+     * MIN_CAPTURE_SECONDS and COUNTDOWN_SECONDS. Samples rejected by the signal-quality
+     * index are not counted, so a noisy stretch extends the capture instead of skewing it.
+     */
+    private void startAcquisition(float glucoseValue, ChannelMerger braceletMerger) {
+        stopAcquisition();
+        capturedCount = 0;
+        convergenceMonitor = new EmgConvergenceMonitor(new EmgConvergenceMonitor.Config(
+                MIN_CAPTURE_SECONDS * 1000L, COUNTDOWN_SECONDS * 1000L,
+                FEATURE_TOLERANCE, SCORE_TOLERANCE, SAMPLE_RATE_HZ, 4));
+        signalQuality = new SignalQualityIndex(new SignalQualityIndex.Config(SAMPLE_RATE_HZ,
+                SIGNAL_RAIL_LOW, SIGNAL_RAIL_HIGH, 0.5f, 0.05f, MAINS_HZ, 0.3f, 1.5f, 1f));
+        featureExtractor = new EmgFeatureExtractor(HomeFragment.EMG_BASELINE);
+        otherSideExtractor = braceletMerger != null && braceletMerger.getChannelCount() > 1
+                ? new EmgFeatureExtractor(HomeFragment.EMG_BASELINE) : null;
+        provisionalPredictor = new NeuropathyPredictor(this);
+
+        merger = braceletMerger;
+        if (merger != null) {
+            // Only samples from now on belong to this capture
+            merger.startAt(System.nanoTime());
+        } else {
+            // Seeded so a capture can be reproduced from the log
+            long seed = System.currentTimeMillis();
+            Log.d(TAG, "Synthetic EMG seed " + seed);
+            PacedEmgSource pacedSource = new PacedEmgSource(new SyntheticEmgSource(
+                    SyntheticEmgSource.Config.defaults(SAMPLE_RATE_HZ, seed)),
+                    1f, SystemClock::elapsedRealtimeNanos);
+            pacedSource.start();
+            emgSource = pacedSource;
+        }
+
+        final long captureStartMs = SystemClock.elapsedRealtime();
+        acquisitionTick = new Runnable() {
+            private long lastProgressSecond = 0;
+            private long lastScoredMs = 0;
+            private int rejectedSamples = 0;
+            private int consecutiveRejected = 0;
+
+            private void processSample(float value) {
+                SAMPLES.mark(1);
+                if (capturedCount < capturedSamples.length) {
+                    capturedSamples[capturedCount++] = value;
+                } else {
+                    DROPPED_SAMPLES.increment();
+                }
+                featureExtractor.addSample(value);
+                signalQuality.addSample(value);
+                if (signalQuality.isAcceptable()) {
+                    convergenceMonitor.addSample(value);
+                    consecutiveRejected = 0;
+                } else {
+                    rejectedSamples++;
+                    consecutiveRejected++;
+                }
+            }
+
+            @Override
+            public void run() {
+                long elapsedMs = SystemClock.elapsedRealtime() - captureStartMs;
+
+                // Pull every sample that is due up to now
+                if (merger != null) {
+                    merger.drain((timestampNanos, channels) -> {
+                        processSample(channels[0]);
+                        if (otherSideExtractor != null) {
+                            otherSideExtractor.addSample(channels[1]);
+                        }
+                    });
+                } else {
+                    int count;
+                    while ((count = emgSource.read(sampleBuffer, 0, sampleBuffer.length)) > 0) {
+                        for (int i = 0; i < count; i++) {
+                            processSample(sampleBuffer[i]);
+                        }
+                    }
+                }
+
+                SignalQualityIndex.Issue issue = signalQuality.getIssue();
+                if (consecutiveRejected >= ABORT_AFTER_BAD_SECONDS * SAMPLE_RATE_HZ) {
+                    abortAcquisition(issue);
+                    return;
+                }
+
+                // Only good samples count towards the capture duration
+                long goodElapsedMs = elapsedMs - rejectedSamples * 1000L / SAMPLE_RATE_HZ;
+
+                // Once per second: report progress
+                ExecutionPolicy policy = policyMonitor.getPolicy();
+                long second = elapsedMs / 1000;
+                if (second > lastProgressSecond && capturedCount > 0) {
+                    lastProgressSecond = second;
+                    publishProgress(Math.max(0, COUNTDOWN_SECONDS - goodElapsedMs / 1000),
+                            issue, signalQuality.getIndex());
+                }
+
+                // Score what we have so far, less often when the device is hot or low on battery
+                if (elapsedMs - lastScoredMs >= policy.scoreIntervalMs && capturedCount > 0) {
+                    lastScoredMs = elapsedMs;
+                    // Sensory answers are not known yet, so assume normal sensation
+                    float[] features = HomeFragment.createModelFeatures(glucoseValue,
+                            featureExtractor.getFeatures(), true, true);
+                    convergenceMonitor.addProvisionalScore(provisionalPredictor.predict(features).getScore());
+                }
+
+                EmgConvergenceMonitor.StopReason reason = convergenceMonitor.shouldStop(goodElapsedMs);
+                if (reason == EmgConvergenceMonitor.StopReason.NONE
+                        && elapsedMs >= (COUNTDOWN_SECONDS + MAX_EXTENSION_SECONDS) * 1000L) {
+                    // Extension exhausted: keep the capture only if enough of it was usable
+                    if (goodElapsedMs < MIN_CAPTURE_SECONDS * 1000L) {
+                        abortAcquisition(issue);
+                        return;
+                    }
+                    reason = EmgConvergenceMonitor.StopReason.MAX_DURATION;
+                }
+                if (reason != EmgConvergenceMonitor.StopReason.NONE) {
+                    Log.d(TAG, "Acquisition stopped after " + elapsedMs + " ms (" + reason
+                            + "), samples=" + capturedCount
+                            + ", rejected=" + rejectedSamples
+                            + ", provisional score=" + convergenceMonitor.getScoreMean()
+                            + " +/- " + convergenceMonitor.getScoreHalfWidth());
+                    completeAcquisition();
+                    return;
+                }
+
+                acquisitionHandler.postDelayed(this, policy.acquisitionTickMs);
+            }
+        };
+        acquisitionHandler.post(acquisitionTick);
+    }
+
+    private void publishProgress(long remainingSeconds, SignalQualityIndex.Issue issue, float qualityIndex) {
+        mainHandler.post(() -> {
+            if (!capturing) {
+                return; // A late update must not bring the notification back
+            }
+            if (inForeground) {
+                getSystemService(NotificationManager.class).notify(NOTIFICATION_ID, buildNotification(remainingSeconds));
+            }
+            if (listener != null) {
+                listener.onProgress(remainingSeconds, issue, qualityIndex);
+            }
+        });
+    }
+
+    private void completeAcquisition() {
+        float[] samples = Arrays.copyOf(capturedSamples, capturedCount);
+        float[] otherSideFeatures = otherSideExtractor != null ? otherSideExtractor.getFeatures() : null;
+        stopAcquisition();
+        mainHandler.post(() -> {
+            if (!capturing) {
+                return;
+            }
+            endCapture();
+            if (pendingCapture.complete(listener != null ? listener::onCompleted : null,
+                    samples, otherSideFeatures)) {
+                stopSelf();
+            } else {
+                Log.d(TAG, "No listener, keeping the service until the result is delivered");
+            }
+        });
+    }
+
+    private void abortAcquisition(SignalQualityIndex.Issue issue) {
+        Log.w(TAG, "Acquisition aborted due to poor signal: " + issue);
+        float qualityIndex = signalQuality.getIndex();
+        stopAcquisition();
+        mainHandler.post(() -> {
+            if (!capturing) {
+                return;
+            }
+            endCapture();
+            stopSelf();
+            if (listener != null) {
+                listener.onAborted(issue, qualityIndex);
+            }
+        });
+    }
+
+    private void stopAcquisition() {
+        if (acquisitionTick != null) {
+            acquisitionHandler.removeCallbacks(acquisitionTick);
+            acquisitionTick = null;
+        }
+        if (provisionalPredictor != null) {
+            provisionalPredictor.close();
+            provisionalPredictor = null;
+        }
+        emgSource = null;
+        merger = null;
+        otherSideExtractor = null;
+    }
+
+    /**
+     * Leaves the foreground and releases the wake lock. The caller stops the service once
+     * nothing is left to deliver. Main thread.
+     */
+    private void endCapture() {
+        capturing = false;
+        if (wakeLock.isHeld()) {
+            wakeLock.release();
+        }
+        if (inForeground) {
+            inForeground = false;
+            stopForeground(true);
+        }
+    }
+}
@@ -1,28 +1,95 @@
 package com.dianerverotect;
 
+import android.Manifest;
 import android.bluetooth.BluetoothAdapter;
 import android.bluetooth.BluetoothDevice;
-import android.bluetooth.BluetoothSocket;
 import android.content.Context;
+import android.content.SharedPreferences;
+import android.content.pm.PackageManager;
+import android.os.Build;
 import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
 import android.util.Log;
 import android.widget.Toast;
+
+import androidx.core.content.ContextCompat;
+
+import com.dianerverotect.bluetooth.BleGattTransport;
+import com.dianerverotect.bluetooth.BluetoothCommandQueue;
+import com.dianerverotect.bluetooth.ChannelMerger;
+import com.dianerverotect.bluetooth.DeviceSession;
+import com.dianerverotect.bluetooth.RfcommTransport;
+import com.dianerverotect.bluetooth.SampleRingBuffer;
+import com.dianerverotect.bluetooth.Transport;
+import com.dianerverotect.metrics.Tracing;
+
 import java.io.IOException;
-import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
-import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Connects to one or more EMG bracelets. Each bracelet gets a {@link DeviceSession} with
+ * its own transport, reader and ring buffer, so both limbs can be captured at once and
+ * merged with {@link #createMerger(float, String...)}. The single-device methods (sendMessage,
+ * sendCommand, isConnected) act on the primary device, the one passed to connectToDevice.
+ */
 public class BluetoothManager {
-    private static final UUID SERIAL_UUID = UUID.fromString("00001101-0000-1000-8000-00805F9B34FB");
+    private static final String TAG = "BluetoothManager";
+    private static final String PREFS_NAME = "bluetooth";
+    private static final String KEY_DEVICE_ADDRESS = "device_address_";
+    private static final long RECONNECT_BASE_DELAY_MS = 1000;
+    private static final long RECONNECT_MAX_DELAY_MS = 60000;
+    // About 30 s of retries, after which keep-alive waits for the next pre-connect
+    private static final int MAX_RECONNECT_ATTEMPTS = 5;
+    // Bracelet sample rate, and 30 s of samples per device
+    public static final float SAMPLE_RATE_HZ = 50f;
+    private static final int BUFFER_SECONDS = 30;
     private Context context;
     private BluetoothAdapter mBluetoothAdapter;
-    private BluetoothSocket mBluetoothSocket;
-    private InputStream mInputStream;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final SharedPreferences mPreferences;
+    // One connection attempt at a time; the thread exits when idle
+    private final ExecutorService mConnectionExecutor = new ThreadPoolExecutor(0, 1,
+            30, TimeUnit.SECONDS, new LinkedBlockingQueue<>());
+
+    // Sessions by device name, in channel order
+    private final Map<String, DeviceSession> mSessions = Collections.synchronizedMap(new LinkedHashMap<>());
+    private volatile String mDeviceName;
+    private final Set<String> mConnecting = Collections.synchronizedSet(new HashSet<>());
+
+    // Reconnection keeps the links alive between screenings
+    private volatile boolean mAutoReconnect;
+    private final Map<String, Integer> mReconnectAttempts = new ConcurrentHashMap<>();
+
+    // Text lines go to the DataListener on its handler, samples to the SampleListener
+    private volatile Handler mListenerHandler;
+    private volatile DataListener mDataListener;
+    private volatile SampleListener mSampleListener;
 
     public interface DataListener {
         void onDataReceived(String str);
     }
 
+    /**
+     * Receives parsed samples on the device's transport thread, without a thread hop per
+     * batch. channel identifies the device, numbered in the order devices were first
+     * connected.
+     */
+    public interface SampleListener {
+        void onSamples(int channel, float[] samples, int count);
+    }
+
     public BluetoothManager(Context context) {
         this.context = context;
         BluetoothAdapter defaultAdapter = BluetoothAdapter.getDefaultAdapter();
@@ -30,103 +97,300 @@ public class BluetoothManager {
         if (defaultAdapter == null) {
             Toast.makeText(context, "Bluetooth is not supported on this device", 0).show();
         }
+        this.mPreferences = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
     }
 
+    /**
+     * Connects the primary device.
+     */
     public void connectToDevice(final String deviceName, final Runnable onSuccess, final Runnable onFail) {
-        new Thread(new Runnable() { // from class: com.example.dodi2.-$$Lambda$BluetoothManager$SMg6BST17T-zRtgKEQooZ8JoxTU
-            @Override // java.lang.Runnable
-            public final void run() {
-                BluetoothManager.this.connectToDeviceBluetoothManager(deviceName, onSuccess, onFail);
+        this.mDeviceName = deviceName;
+        connect(deviceName, onSuccess, onFail);
+    }
+
+    /**
+     * Connects several devices for a multi-channel capture; channels follow the order of
+     * deviceNames and the first one becomes the primary device. onSuccess runs once all of
+     * them are connected, onFail as soon as one fails.
+     */
+    public void connectDevices(final String[] deviceNames, final Runnable onSuccess, final Runnable onFail) {
+        this.mDeviceName = deviceNames[0];
+        final int[] remaining = {deviceNames.length};
+        final boolean[] failed = {false};
+        for (String deviceName : deviceNames) {
+            // Callbacks all run on the main thread, so the counters need no locking
+            connect(deviceName, () -> {
+                if (--remaining[0] == 0 && !failed[0] && onSuccess != null) {
+                    onSuccess.run();
+                }
+            }, () -> {
+                if (!failed[0]) {
+                    failed[0] = true;
+                    if (onFail != null) {
+                        onFail.run();
+                    }
+                }
+            });
+        }
+    }
+
+    private void connect(final String deviceName, final Runnable onSuccess, final Runnable onFail) {
+        session(deviceName);
+        this.mConnecting.add(deviceName);
+        // Covers the wait for earlier attempts as well as the connection itself
+        final int traceCookie = Tracing.beginAsync("bt.connect");
+        // Attempts run one at a time, so a request made during a pre-connect reuses its link
+        this.mConnectionExecutor.execute(() -> {
+            BluetoothManager.this.connectToDeviceBluetoothManager(deviceName, onSuccess, onFail);
+            BluetoothManager.this.mConnecting.remove(deviceName);
+            Tracing.endAsync("bt.connect", traceCookie);
+        });
+    }
+
+    /**
+     * Opens the links in the background ahead of time, e.g. while the user is still typing
+     * their glucose value, and keeps them alive with automatic reconnection. The first
+     * device becomes the primary one. Devices already connected or connecting are left
+     * alone; nothing happens if the Bluetooth connect permission has not been granted.
+     */
+    public void preconnect(String... deviceNames) {
+        if (this.mBluetoothAdapter == null || !hasConnectPermission(this.context)) {
+            return;
+        }
+        this.mAutoReconnect = true;
+        this.mDeviceName = deviceNames[0];
+        for (String deviceName : deviceNames) {
+            if (this.mConnecting.contains(deviceName) || isConnected(deviceName)) {
+                continue;
             }
-        }).start();
+            // A new pre-connect starts a fresh series of reconnection attempts
+            this.mReconnectAttempts.remove(deviceName);
+            Log.d(TAG, "Pre-connecting to " + deviceName);
+            connect(deviceName, null, null);
+        }
+    }
+
+    public boolean isConnected() {
+        String deviceName = this.mDeviceName;
+        return deviceName != null && isConnected(deviceName);
+    }
+
+    public boolean isConnected(String deviceName) {
+        DeviceSession session = this.mSessions.get(deviceName);
+        return session != null && session.isOpen();
+    }
+
+    private DeviceSession session(String deviceName) {
+        synchronized (this.mSessions) {
+            DeviceSession session = this.mSessions.get(deviceName);
+            if (session == null) {
+                session = new DeviceSession(deviceName, this.mSessions.size(), SAMPLE_RATE_HZ,
+                        Math.round(SAMPLE_RATE_HZ * BUFFER_SECONDS), this.mSessionListener);
+                this.mSessions.put(deviceName, session);
+            }
+            return session;
+        }
     }
 
     public void connectToDeviceBluetoothManager(String deviceName, Runnable onSuccess, Runnable onFail) {
-        BluetoothDevice device = findDeviceByName(deviceName);
+        if (isConnected(deviceName)) {
+            postIfSet(onSuccess);
+            return;
+        }
+        BluetoothDevice device = this.mBluetoothAdapter != null ? resolveDevice(deviceName) : null;
         if (device != null) {
+            Transport transport = createTransport(device);
+            boolean traced = Tracing.begin("bt.open");
             try {
-                this.mBluetoothSocket = device.createRfcommSocketToServiceRecord(SERIAL_UUID);
-                if (this.mBluetoothAdapter.isDiscovering()) {
-                    this.mBluetoothAdapter.cancelDiscovery();
-                }
-                this.mBluetoothSocket.connect();
-                InputStream inputStream = this.mBluetoothSocket.getInputStream();
-                this.mInputStream = inputStream;
-                if (inputStream != null) {
-                    ((MainActivity) this.context).runOnUiThread(onSuccess);
-                    return;
-                } else {
-                    ((MainActivity) this.context).runOnUiThread(onFail);
-                    return;
-                }
-            } catch (IOException e) {
-                Log.e("BluetoothManager", "Connection failed", e);
-                closeSocket();
-                ((MainActivity) this.context).runOnUiThread(onFail);
+                session(deviceName).open(transport, this.mainHandler::post);
+                this.mReconnectAttempts.remove(deviceName);
+                postIfSet(onSuccess);
                 return;
+            } catch (IOException | SecurityException e) {
+                Log.e(TAG, "Connection to " + deviceName + " failed", e);
+                transport.close();
+                postIfSet(onFail);
+                scheduleReconnect(deviceName);
+                return;
+            } finally {
+                Tracing.end(traced);
             }
         }
-        ((MainActivity) this.context).runOnUiThread(onFail);
+        postIfSet(onFail);
     }
 
+    /**
+     * BLE-only bracelets get a GATT link; classic and dual-mode ones keep the serial port.
+     */
+    private Transport createTransport(BluetoothDevice device) {
+        if (device.getType() == BluetoothDevice.DEVICE_TYPE_LE) {
+            return new BleGattTransport(this.context, device);
+        }
+        return new RfcommTransport(this.mBluetoothAdapter, device);
+    }
+
+    private final DeviceSession.Listener mSessionListener = new DeviceSession.Listener() {
+        @Override
+        public void onSamples(DeviceSession session, float[] samples, int count) {
+            SampleListener sampleListener = BluetoothManager.this.mSampleListener;
+            if (sampleListener != null) {
+                sampleListener.onSamples(session.getChannel(), samples, count);
+            }
+        }
+
+        @Override
+        public void onLine(DeviceSession session, final String line) {
+            Handler handler = BluetoothManager.this.mListenerHandler;
+            final DataListener dataListener = BluetoothManager.this.mDataListener;
+            if (handler != null && dataListener != null) {
+                handler.post(() -> dataListener.onDataReceived(line));
+            }
+        }
+
+        @Override
+        public void onClosed(DeviceSession session, IOException cause) {
+            Log.e(TAG, "Link to " + session.getName() + " lost", cause);
+            // Reconnect in the background if keep-alive is on
+            BluetoothManager.this.mConnectionExecutor.execute(() -> scheduleReconnect(session.getName()));
+        }
+    };
+
+    /**
+     * Merges the given devices that are connected into one multi-channel stream at
+     * outputRateHz, with channels in the order given, or returns null if none of them is
+     * connected. Feed its frames to feature extraction from the acquisition thread.
+     */
+    public ChannelMerger createMerger(float outputRateHz, String... deviceNames) {
+        List<SampleRingBuffer> buffers = new ArrayList<>(deviceNames.length);
+        for (String deviceName : deviceNames) {
+            DeviceSession session = this.mSessions.get(deviceName);
+            // A device that is not streaming would hold back every frame
+            if (session != null && session.isOpen()) {
+                buffers.add(session.getBuffer());
+            }
+        }
+        return buffers.isEmpty() ? null
+                : new ChannelMerger(buffers.toArray(new SampleRingBuffer[0]), outputRateHz);
+    }
+
+    public int getDeviceCount() {
+        return this.mSessions.size();
+    }
+
+    /**
+     * Stops automatic reconnection and closes every link.
+     */
+    public void disconnect() {
+        this.mAutoReconnect = false;
+        this.mainHandler.removeCallbacksAndMessages(null);
+        this.mDataListener = null;
+        this.mSampleListener = null;
+        closeSocket();
+    }
+
+    private void scheduleReconnect(String deviceName) {
+        if (!this.mAutoReconnect || !this.mSessions.containsKey(deviceName)) {
+            return;
+        }
+        int attempt = this.mReconnectAttempts.merge(deviceName, 1, Integer::sum);
+        if (attempt > MAX_RECONNECT_ATTEMPTS) {
+            // The bracelet is off or out of range; stop draining the battery on retries
+            Log.d(TAG, "Giving up on " + deviceName + " after " + MAX_RECONNECT_ATTEMPTS + " attempts");
+            this.mReconnectAttempts.remove(deviceName);
+            return;
+        }
+        long delay = Math.min(RECONNECT_BASE_DELAY_MS << Math.min(attempt - 1, 16), RECONNECT_MAX_DELAY_MS);
+        Log.d(TAG, "Reconnecting to " + deviceName + " in " + delay + " ms (attempt " + attempt + ")");
+        // The device name is the token, so each device has at most one pending reconnect
+        this.mainHandler.removeCallbacksAndMessages(deviceName);
+        this.mainHandler.postAtTime(() -> connect(deviceName, null, null), deviceName,
+                SystemClock.uptimeMillis() + delay);
+    }
+
+    private void postIfSet(Runnable callback) {
+        if (callback != null) {
+            this.mainHandler.post(callback);
+        }
+    }
+
+    /**
+     * Returns whether the app may connect to bonded devices: always below Android 12,
+     * afterwards only once BLUETOOTH_CONNECT has been granted at runtime.
+     */
+    public static boolean hasConnectPermission(Context context) {
+        return Build.VERSION.SDK_INT < Build.VERSION_CODES.S
+                || ContextCompat.checkSelfPermission(context, Manifest.permission.BLUETOOTH_CONNECT)
+                == PackageManager.PERMISSION_GRANTED;
+    }
+
+    private BluetoothCommandQueue primaryCommandQueue() {
+        String deviceName = this.mDeviceName;
+        DeviceSession session = deviceName != null ? this.mSessions.get(deviceName) : null;
+        return session != null ? session.getCommandQueue() : null;
+    }
+
+    /**
+     * Sends raw text to the primary device through its single writer; no reply is expected.
+     */
     public void sendMessage(final String message) {
-        if (this.mBluetoothSocket != null) {
-            new Thread(new Runnable() { // from class: com.example.dodi2.-$$Lambda$BluetoothManager$E48jVOP131st-pQtlEWtp7EuDWk
-                @Override // java.lang.Runnable
-                public final void run() {
-                    BluetoothManager.this.lambda$sendMessage$1$BluetoothManager(message);
-                }
-            }).start();
+        BluetoothCommandQueue commandQueue = primaryCommandQueue();
+        if (commandQueue != null) {
+            commandQueue.send(message);
         }
     }
 
-    public /* synthetic */ void lambda$sendMessage$1$BluetoothManager(String message) {
-        try {
-            this.mBluetoothSocket.getOutputStream().write(message.getBytes());
-        } catch (IOException e) {
-            e.printStackTrace();
+    /**
+     * Sends a tagged command (e.g. start capture, set gain, query battery) to the primary
+     * device and delivers the matching reply, or a failure after timeoutMs, on the main
+     * thread. Several commands can be in flight at once.
+     */
+    public void sendCommand(String command, long timeoutMs, BluetoothCommandQueue.ResponseCallback callback) {
+        BluetoothCommandQueue commandQueue = primaryCommandQueue();
+        if (commandQueue == null) {
+            this.mainHandler.post(() -> callback.onFailure("Not connected"));
+            return;
         }
+        commandQueue.send(command, timeoutMs, callback);
     }
 
     public void closeSocket() {
-        try {
-            BluetoothSocket bluetoothSocket = this.mBluetoothSocket;
-            if (bluetoothSocket != null) {
-                bluetoothSocket.close();
+        synchronized (this.mSessions) {
+            for (DeviceSession session : this.mSessions.values()) {
+                session.close();
             }
-        } catch (IOException e) {
-            e.printStackTrace();
         }
     }
 
+    /**
+     * Delivers text lines from the devices (everything except samples and command replies)
+     * on the given handler. Stays in effect across reconnects.
+     */
     public void startListening(final Handler handler, final DataListener dataListener) {
-        new Thread(new Runnable() { // from class: com.example.dodi2.-$$Lambda$BluetoothManager$r1BOHaFawgs1vVWKRcOzRSKnilo
-            @Override // java.lang.Runnable
-            public final void run() {
-                BluetoothManager.this.lambda$startListening$3$BluetoothManager(handler, dataListener);
-            }
-        }).start();
+        this.mListenerHandler = handler;
+        this.mDataListener = dataListener;
     }
 
-    public /* synthetic */ void lambda$startListening$3$BluetoothManager(Handler handler, final DataListener dataListener) {
-        byte[] buffer = new byte[1024];
-        while (!Thread.currentThread().isInterrupted()) {
-            try {
-                if (this.mInputStream.available() > 0) {
-                    int bytes = this.mInputStream.read(buffer);
-                    final String data = new String(buffer, 0, bytes).trim();
-                    handler.post(new Runnable() {
-                        @Override
-                        public final void run() {
-                            dataListener.onDataReceived(data);
-                        }
-                    });
-                }
-            } catch (IOException e) {
-                Log.e("BluetoothManager", "Error reading data", e);
-                return;
+    public void setSampleListener(SampleListener sampleListener) {
+        this.mSampleListener = sampleListener;
+    }
+
+    /**
+     * Returns the bonded device, looked up by its cached MAC address when possible so the
+     * bonded device list is only scanned the first time.
+     */
+    private BluetoothDevice resolveDevice(String deviceName) {
+        String address = this.mPreferences.getString(KEY_DEVICE_ADDRESS + deviceName, null);
+        if (address != null && BluetoothAdapter.checkBluetoothAddress(address)) {
+            BluetoothDevice device = this.mBluetoothAdapter.getRemoteDevice(address);
+            if (device.getBondState() == BluetoothDevice.BOND_BONDED) {
+                return device;
             }
         }
+        BluetoothDevice device = findDeviceByName(deviceName);
+        if (device != null) {
+            this.mPreferences.edit().putString(KEY_DEVICE_ADDRESS + deviceName, device.getAddress()).apply();
+        }
+        return device;
     }
 
     private BluetoothDevice findDeviceByName(String deviceName) {
@@ -1,6 +1,8 @@
 package com.dianerverotect;
 
 import android.os.Bundle;
+import android.text.TextUtils;
+import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -10,20 +12,108 @@ import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.fragment.app.Fragment;
 
+import com.google.firebase.auth.FirebaseAuth;
+import com.google.firebase.auth.FirebaseUser;
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.FirebaseDatabase;
+import com.google.firebase.database.Query;
+import com.google.firebase.database.ValueEventListener;
+
+import java.text.DateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Lists the user's latest test results with their stored assessment. The list follows the
+ * database, so results re-scored by HistoryRescoreWorker show their new assessment.
+ */
 public class HistoryFragment extends Fragment {
 
+    private static final String TAG = "HistoryFragment";
+    // How many of the latest results are listed
+    private static final int MAX_RESULTS = 50;
+
+    private TextView historyText;
+    private Query resultsQuery;
+    private ValueEventListener resultsListener;
+
     @Nullable
     @Override
     public View onCreateView(@NonNull LayoutInflater inflater, @Nullable ViewGroup container, @Nullable Bundle savedInstanceState) {
         // Inflate the layout for this fragment
         View view = inflater.inflate(R.layout.fragment_history, container, false);
+        historyText = view.findViewById(R.id.text_history_placeholder);
 
-        // Example: Set text in the fragment
-        TextView textView = view.findViewById(R.id.text_history_placeholder); // Assuming you have a TextView with this ID in your layout
-        if (textView != null) {
-            textView.setText("History Fragment Content");
+        FirebaseUser user = FirebaseAuth.getInstance().getCurrentUser();
+        if (user == null) {
+            historyText.setText("Sign in to see your test history");
+            return view;
         }
 
+        historyText.setText("Loading test history...");
+        resultsQuery = FirebaseDatabase.getInstance().getReference("users")
+                .child(user.getUid()).child("testResults")
+                .orderByKey().limitToLast(MAX_RESULTS);
+        resultsListener = new ValueEventListener() {
+            @Override
+            public void onDataChange(@NonNull DataSnapshot snapshot) {
+                showResults(snapshot);
+            }
+
+            @Override
+            public void onCancelled(@NonNull DatabaseError error) {
+                Log.e(TAG, "Failed to load test history: " + error.getMessage());
+                historyText.setText("Failed to load test history");
+            }
+        };
+        resultsQuery.addValueEventListener(resultsListener);
+
         return view;
     }
+
+    @Override
+    public void onDestroyView() {
+        super.onDestroyView();
+        if (resultsQuery != null) {
+            resultsQuery.removeEventListener(resultsListener);
+            resultsQuery = null;
+        }
+    }
+
+    private void showResults(DataSnapshot snapshot) {
+        if (!snapshot.hasChildren()) {
+            historyText.setText("No tests yet");
+            return;
+        }
+
+        DateFormat dateFormat = DateFormat.getDateTimeInstance(DateFormat.MEDIUM, DateFormat.SHORT);
+        List<String> lines = new ArrayList<>();
+        for (DataSnapshot result : snapshot.getChildren()) {
+            Long timestamp = result.child("timestamp").getValue(Long.class);
+            String riskLevel = result.child("riskLevel").getValue(String.class);
+            Double riskScore = result.child("riskScore").getValue(Double.class);
+            Boolean usedRealModel = result.child("usedRealModel").getValue(Boolean.class);
+
+            StringBuilder line = new StringBuilder();
+            line.append(timestamp != null ? dateFormat.format(new Date(timestamp)) : result.getKey());
+            if (riskLevel == null || riskScore == null) {
+                // Saved before the assessment was stored; re-scored when the model is available
+                line.append("\nNot scored yet");
+            } else {
+                line.append("\n").append(riskLevel).append(" risk, score ")
+                        .append(String.format(Locale.US, "%.2f", riskScore));
+                if (Boolean.FALSE.equals(usedRealModel)) {
+                    line.append(" (estimate)");
+                }
+            }
+            lines.add(line.toString());
+        }
+        // Latest first
+        Collections.reverse(lines);
+        historyText.setText(TextUtils.join("\n\n", lines));
+    }
 }
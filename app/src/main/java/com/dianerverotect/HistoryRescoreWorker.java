@@ -0,0 +1,205 @@
+package com.dianerverotect;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.work.BackoffPolicy;
+import androidx.work.Constraints;
+import androidx.work.ExistingWorkPolicy;
+import androidx.work.OneTimeWorkRequest;
+import androidx.work.WorkManager;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+
+import com.dianerverotect.model.NeuropathyPredictor;
+import com.dianerverotect.model.PredictionResult;
+import com.dianerverotect.policy.ExecutionPolicyMonitor;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.auth.FirebaseAuth;
+import com.google.firebase.auth.FirebaseUser;
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.FirebaseDatabase;
+import com.google.firebase.database.Query;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Re-scores the signed-in user's stored test results after the model or the risk rules
+ * change (see {@link NeuropathyPredictor#getScoringVersion()}).
+ *
+ * Results are read in key order, CHUNK_SIZE at a time, scored in one batched interpreter
+ * call and written back in one multi-path update, so memory stays bounded however long
+ * the history is (see {@link HistoryRescorer}). The last written key is checkpointed after
+ * every chunk: when the job is stopped (the device is no longer idle or charging) it
+ * resumes from there. Results already at the current version are skipped. Nothing is
+ * re-scored unless the model loads, so fallback scores never replace model scores.
+ */
+public class HistoryRescoreWorker extends Worker {
+    private static final String TAG = "HistoryRescoreWorker";
+    private static final String WORK_NAME = "history-rescore";
+    private static final String PREFS_NAME = "history_rescore";
+    private static final String KEY_VERSION = "version_";
+    private static final String KEY_CHECKPOINT = "checkpoint_";
+    private static final String KEY_COMPLETED = "completed_";
+    // Largest chunk; the execution policy may ask for smaller ones or none at all
+    private static final int CHUNK_SIZE = 200;
+    private static final long READ_TIMEOUT_SECONDS = 60;
+
+    public HistoryRescoreWorker(@NonNull Context context, @NonNull WorkerParameters params) {
+        super(context, params);
+    }
+
+    /**
+     * Queues the job to run the next time the device is idle and charging. A job that is
+     * already queued or running is kept.
+     */
+    public static void schedule(Context context) {
+        Constraints constraints = new Constraints.Builder()
+                .setRequiresCharging(true)
+                .setRequiresDeviceIdle(true)
+                .build();
+        OneTimeWorkRequest request = new OneTimeWorkRequest.Builder(HistoryRescoreWorker.class)
+                .setConstraints(constraints)
+                .setBackoffCriteria(BackoffPolicy.EXPONENTIAL, 10, TimeUnit.MINUTES)
+                .build();
+        WorkManager.getInstance(context).enqueueUniqueWork(WORK_NAME, ExistingWorkPolicy.KEEP, request);
+    }
+
+    @NonNull
+    @Override
+    public Result doWork() {
+        FirebaseUser user = FirebaseAuth.getInstance().getCurrentUser();
+        if (user == null) {
+            return Result.success();
+        }
+        String uid = user.getUid();
+        SharedPreferences preferences = getApplicationContext()
+                .getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+
+        NeuropathyPredictor predictor = new NeuropathyPredictor(getApplicationContext());
+        try {
+            if (!predictor.isModelLoaded()) {
+                // Re-scoring with the fallback algorithm would overwrite model scores with
+                // worse ones; wait for a run where the model loads
+                Log.w(TAG, "Model not loaded, re-scoring later");
+                return Result.retry();
+            }
+            String version = predictor.getScoringVersion();
+            if (version.equals(preferences.getString(KEY_COMPLETED + uid, null))) {
+                return Result.success();
+            }
+            // A new version starts over; the same version resumes from the checkpoint
+            if (!version.equals(preferences.getString(KEY_VERSION + uid, null))) {
+                preferences.edit()
+                        .putString(KEY_VERSION + uid, version)
+                        .remove(KEY_CHECKPOINT + uid)
+                        .apply();
+            }
+            String checkpoint = preferences.getString(KEY_CHECKPOINT + uid, null);
+            Log.d(TAG, "Re-scoring history for " + version + " from " + checkpoint);
+
+            DatabaseReference results = FirebaseDatabase.getInstance().getReference("users")
+                    .child(uid).child("testResults");
+            HistoryRescorer rescorer = new HistoryRescorer(new FirebaseHistory(results, preferences, uid),
+                    (features, glucose, temperature, pressure, count) -> {
+                        PredictionResult[] predictions = predictor.predictBatch(features, count);
+                        NeuropathyPredictor.RiskAssessment[] assessments =
+                                new NeuropathyPredictor.RiskAssessment[count];
+                        for (int i = 0; i < count; i++) {
+                            assessments[i] = predictor.evaluateRisk(predictions[i], glucose[i],
+                                    temperature[i], pressure[i]);
+                        }
+                        return assessments;
+                    }, CHUNK_SIZE);
+            HistoryRescorer.Outcome outcome = rescorer.run(version, checkpoint,
+                    () -> ExecutionPolicyMonitor.getShared(getApplicationContext()).getPolicy().rescoreChunkSize,
+                    this::isStopped);
+
+            if (outcome != HistoryRescorer.Outcome.COMPLETED) {
+                // Too hot or low on battery, stopped, or the model failed: resume later
+                Log.d(TAG, outcome + " after " + rescorer.getRescoredCount() + " results, resuming from "
+                        + rescorer.getCheckpoint());
+                return Result.retry();
+            }
+            preferences.edit()
+                    .putString(KEY_COMPLETED + uid, version)
+                    .remove(KEY_CHECKPOINT + uid)
+                    .apply();
+            Log.d(TAG, "Re-scored " + rescorer.getRescoredCount() + " results for " + version);
+            return Result.success();
+        } catch (Exception e) {
+            Log.e(TAG, "Re-scoring failed, will retry: " + e.getMessage(), e);
+            return Result.retry();
+        } finally {
+            predictor.close();
+        }
+    }
+
+    /**
+     * The signed-in user's results in the Realtime Database, with the checkpoint kept in
+     * the worker's preferences.
+     */
+    private static class FirebaseHistory implements HistoryRescorer.History {
+        private final DatabaseReference results;
+        private final SharedPreferences preferences;
+        private final String uid;
+
+        FirebaseHistory(DatabaseReference results, SharedPreferences preferences, String uid) {
+            this.results = results;
+            this.preferences = preferences;
+            this.uid = uid;
+        }
+
+        @Override
+        public List<HistoryRescorer.StoredResult> readAfter(String key, int limit) throws Exception {
+            Query chunk = results.orderByKey();
+            if (key != null) {
+                chunk = chunk.startAfter(key);
+            }
+            DataSnapshot snapshot = Tasks.await(chunk.limitToFirst(limit).get(),
+                    READ_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            List<HistoryRescorer.StoredResult> stored = new ArrayList<>((int) snapshot.getChildrenCount());
+            for (DataSnapshot result : snapshot.getChildren()) {
+                stored.add(new HistoryRescorer.StoredResult(result.getKey(),
+                        result.child("scoringVersion").getValue(String.class),
+                        readFeatures(result.child("features")),
+                        result.child("glucose").getValue(Float.class),
+                        Boolean.TRUE.equals(result.child("temperatureSensation").getValue(Boolean.class)),
+                        Boolean.TRUE.equals(result.child("pressureSensation").getValue(Boolean.class))));
+            }
+            return stored;
+        }
+
+        @Override
+        public void update(Map<String, Object> updates) throws Exception {
+            Tasks.await(results.updateChildren(updates), READ_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        }
+
+        @Override
+        public void checkpoint(String key) {
+            preferences.edit().putString(KEY_CHECKPOINT + uid, key).apply();
+        }
+    }
+
+    private static float[] readFeatures(DataSnapshot stored) {
+        if (!stored.hasChildren()) {
+            return null;
+        }
+        float[] features = new float[(int) stored.getChildrenCount()];
+        int i = 0;
+        for (DataSnapshot feature : stored.getChildren()) {
+            Float value = feature.getValue(Float.class);
+            if (value == null) {
+                return null;
+            }
+            features[i++] = value;
+        }
+        return features;
+    }
+}
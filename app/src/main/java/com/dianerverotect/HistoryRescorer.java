@@ -0,0 +1,185 @@
+package com.dianerverotect;
+
+import com.dianerverotect.model.NeuropathyPredictor;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BooleanSupplier;
+import java.util.function.IntSupplier;
+
+/**
+ * The re-scoring loop of {@link HistoryRescoreWorker}, apart from Firebase and WorkManager.
+ *
+ * Results are read in key order after the checkpoint, one chunk at a time. Results already
+ * at the current scoring version, or saved before the model inputs were stored, are
+ * skipped; the rest are scored together and written back in one update, and then the
+ * chunk's last key becomes the checkpoint. Only scores at the current version are written:
+ * if the model fails and the fallback algorithm answers, the run ends before that chunk.
+ */
+final class HistoryRescorer {
+
+    /**
+     * One stored test result.
+     */
+    static final class StoredResult {
+        final String key;
+        final String scoringVersion;
+        // Null for results saved before the model inputs were stored
+        final float[] features;
+        final Float glucose;
+        final boolean temperatureSensation;
+        final boolean pressureSensation;
+
+        StoredResult(String key, String scoringVersion, float[] features, Float glucose,
+                     boolean temperatureSensation, boolean pressureSensation) {
+            this.key = key;
+            this.scoringVersion = scoringVersion;
+            this.features = features;
+            this.glucose = glucose;
+            this.temperatureSensation = temperatureSensation;
+            this.pressureSensation = pressureSensation;
+        }
+    }
+
+    /**
+     * Where the results are stored.
+     */
+    interface History {
+        /**
+         * Reads up to limit results in key order, after the given key or from the first
+         * one if it is null.
+         */
+        List<StoredResult> readAfter(String key, int limit) throws Exception;
+
+        /**
+         * Writes the given paths, relative to the results, in one update.
+         */
+        void update(Map<String, Object> updates) throws Exception;
+
+        /**
+         * Records that every result up to and including the key is done.
+         */
+        void checkpoint(String key);
+    }
+
+    /**
+     * Scores the first count results of a chunk, in one batch.
+     */
+    interface Scorer {
+        NeuropathyPredictor.RiskAssessment[] score(float[][] features, float[] glucose,
+                                                   boolean[] temperature, boolean[] pressure, int count);
+    }
+
+    /**
+     * How a run ended. Anything but COMPLETED resumes from the checkpoint later.
+     */
+    enum Outcome {
+        COMPLETED,
+        // Stopped by the system, e.g. the device is no longer idle or charging
+        STOPPED,
+        // The execution policy allows no chunks right now
+        DEFERRED,
+        // The model did not score a chunk, so nothing was written for it
+        MODEL_FAILED
+    }
+
+    private final History history;
+    private final Scorer scorer;
+    private final float[][] features;
+    private final float[] glucose;
+    private final boolean[] temperature;
+    private final boolean[] pressure;
+    private final String[] keys;
+    private String checkpoint;
+    private int rescored;
+
+    /**
+     * @param maxChunkSize the largest chunk ever read; the buffers are allocated once
+     */
+    HistoryRescorer(History history, Scorer scorer, int maxChunkSize) {
+        this.history = history;
+        this.scorer = scorer;
+        features = new float[maxChunkSize][];
+        glucose = new float[maxChunkSize];
+        temperature = new boolean[maxChunkSize];
+        pressure = new boolean[maxChunkSize];
+        keys = new String[maxChunkSize];
+    }
+
+    /**
+     * Re-scores every result after the checkpoint that is not at the given version.
+     *
+     * @param chunkSize read before every chunk; at most maxChunkSize, 0 defers the run
+     * @param stopped   checked before every chunk
+     */
+    Outcome run(String version, String checkpoint, IntSupplier chunkSize, BooleanSupplier stopped)
+            throws Exception {
+        this.checkpoint = checkpoint;
+        while (!stopped.getAsBoolean()) {
+            int limit = Math.min(chunkSize.getAsInt(), keys.length);
+            if (limit == 0) {
+                return Outcome.DEFERRED;
+            }
+            List<StoredResult> chunk = history.readAfter(this.checkpoint, limit);
+            if (chunk.isEmpty()) {
+                return Outcome.COMPLETED;
+            }
+
+            int count = 0;
+            for (StoredResult result : chunk) {
+                if (version.equals(result.scoringVersion) || result.features == null || result.glucose == null) {
+                    continue;
+                }
+                keys[count] = result.key;
+                features[count] = result.features;
+                glucose[count] = result.glucose;
+                temperature[count] = result.temperatureSensation;
+                pressure[count] = result.pressureSensation;
+                count++;
+            }
+
+            if (count > 0) {
+                NeuropathyPredictor.RiskAssessment[] assessments =
+                        scorer.score(features, glucose, temperature, pressure, count);
+                for (int i = 0; i < count; i++) {
+                    features[i] = null;
+                }
+                Map<String, Object> updates = new HashMap<>();
+                for (int i = 0; i < count; i++) {
+                    NeuropathyPredictor.RiskAssessment assessment = assessments[i];
+                    if (!version.equals(assessment.getScoringVersion())) {
+                        return Outcome.MODEL_FAILED;
+                    }
+                    updates.put(keys[i] + "/riskScore", assessment.getPredictionScore());
+                    updates.put(keys[i] + "/riskLevel", assessment.getRiskLevel().name());
+                    updates.put(keys[i] + "/usedRealModel", assessment.usedRealModel());
+                    updates.put(keys[i] + "/scoringVersion", version);
+                }
+                history.update(updates);
+                rescored += count;
+            }
+
+            this.checkpoint = chunk.get(chunk.size() - 1).key;
+            history.checkpoint(this.checkpoint);
+            if (chunk.size() < limit) {
+                return Outcome.COMPLETED;
+            }
+        }
+        return Outcome.STOPPED;
+    }
+
+    /**
+     * The last key done, where the next run resumes.
+     */
+    String getCheckpoint() {
+        return checkpoint;
+    }
+
+    /**
+     * How many results this rescorer has written so far.
+     */
+    int getRescoredCount() {
+        return rescored;
+    }
+}
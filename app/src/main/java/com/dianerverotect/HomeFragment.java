@@ -1,11 +1,19 @@
 package com.dianerverotect;
 
+import android.Manifest;
 import android.app.AlertDialog;
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.Intent;
+import android.content.ServiceConnection;
 import android.graphics.Color;
 import android.os.Bundle;
-import android.os.CountDownTimer;
 import android.os.Handler;
+import android.os.IBinder;
+import android.os.Looper;
+import android.text.Editable;
 import android.text.TextUtils;
+import android.text.TextWatcher;
 import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.View;
@@ -16,8 +24,11 @@ import android.widget.ImageView;
 import android.widget.TextView;
 import android.widget.Toast;
 
+import androidx.activity.result.ActivityResultLauncher;
+import androidx.activity.result.contract.ActivityResultContracts;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
+import androidx.asynclayoutinflater.view.AsyncLayoutInflater;
 import androidx.cardview.widget.CardView;
 import androidx.core.widget.NestedScrollView;
 import androidx.fragment.app.Fragment;
@@ -25,8 +36,22 @@ import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.bumptech.glide.Glide;
+import com.bumptech.glide.RequestBuilder;
+import com.bumptech.glide.RequestManager;
+import com.bumptech.glide.request.FutureTarget;
+import com.bumptech.glide.load.resource.gif.GifDrawable;
+import com.dianerverotect.emg.EmgFeatureExtractor;
+import com.dianerverotect.emg.SignalQualityIndex;
+import com.dianerverotect.metrics.Counter;
+import com.dianerverotect.metrics.LatencyHistogram;
+import com.dianerverotect.metrics.MetricsRegistry;
+import com.dianerverotect.metrics.Tracing;
+import com.dianerverotect.model.FeatureAttribution;
+import com.dianerverotect.model.InstalledModel;
 import com.dianerverotect.model.NeuropathyPredictor;
 import com.dianerverotect.model.RecommendationAdapter;
+import com.dianerverotect.model.RecommendationViewPool;
+import com.dianerverotect.policy.ExecutionPolicyMonitor;
 import com.github.mikephil.charting.charts.LineChart;
 import com.github.mikephil.charting.components.Legend;
 import com.github.mikephil.charting.components.XAxis;
@@ -45,6 +70,10 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 public class HomeFragment extends Fragment {
 
@@ -54,7 +83,7 @@ public class HomeFragment extends Fragment {
     private NestedScrollView nestedScrollView;
     
     // Test section views
-    private TextView testSectionTitle;
+    private TextView testSectionTitle, signalQualityText;
     private CardView emgChartCard, question1Card, question2Card;
     private LineChart emgChart;
     private Button yesButton1, noButton1, yesButton2, noButton2, analyzeResultsButton;
@@ -62,14 +91,58 @@ public class HomeFragment extends Fragment {
     private DatabaseReference usersRef;
     private FirebaseAuth mAuth;
     
-    // Constants for the test
-    private static final int COUNTDOWN_SECONDS = 20;
-    private static final int COUNTDOWN_INTERVAL = 1000; // 1 second
+    // Resting level of the EMG signal; baseline crossings are counted around it
+    static final float EMG_BASELINE = 20f;
+    
+    private static final LatencyHistogram FEATURE_LATENCY = MetricsRegistry.getShared().histogram("emg.features");
+    private static final LatencyHistogram SAVE_GLUCOSE_LATENCY =
+            MetricsRegistry.getShared().histogram("firebase.save_glucose");
+    private static final LatencyHistogram SAVE_RESULTS_LATENCY =
+            MetricsRegistry.getShared().histogram("firebase.save_test_results");
+    private static final Counter SAVE_FAILURES = MetricsRegistry.getShared().counter("firebase.save_failures");
+    private static final LatencyHistogram REFINEMENT_LATENCY = MetricsRegistry.getShared().histogram("model.refine");
+    private static final Counter REFINEMENT_DEADLINE_MISSES =
+            MetricsRegistry.getShared().counter("model.refine_deadline_misses");
+    
+    // Creates the predictor and runs the model off the main thread while the provisional
+    // result is shown
+    private static final ExecutorService REFINEMENT_EXECUTOR = new ThreadPoolExecutor(0, 1,
+            30, TimeUnit.SECONDS, new LinkedBlockingQueue<>());
+    // Reused by every results dialog, so a refinement only runs the model; created on
+    // REFINEMENT_EXECUTOR when the fragment starts and only used there
+    private static volatile NeuropathyPredictor refinementPredictor;
+    private final Handler refinementHandler = new Handler(Looper.getMainLooper());
+    
+    // Width of gif_animation in dialog_countdown; the GIF is decoded once at this size
+    private static final int COUNTDOWN_GIF_SIZE_DP = 362;
     
     // Test results
     private boolean temperatureResponse = false;
     private boolean pressureResponse = false;
     private AlertDialog dialog;
+    
+    // Acquisition runs in AcquisitionService; this is the last capture, for the chart
+    private final List<Entry> capturedEntries = new ArrayList<>();
+    // EMG features of the second bracelet in a bilateral capture, otherwise null
+    private float[] capturedOtherSideFeatures;
+    private AcquisitionService acquisitionService;
+    private boolean captureRequested;
+    private TextView countdownText;
+    
+    // Dialog layouts inflated in the background while the home screen is idle
+    private View preinflatedCountdownView;
+    private ResultsDialogViews preinflatedResultsViews;
+    private boolean countdownInflating, resultsInflating;
+    
+    // Android 12+ asks once per screen for the Bluetooth connect permission; without it
+    // captures run on the simulator
+    private boolean bluetoothPermissionRequested;
+    private final ActivityResultLauncher<String> bluetoothPermissionLauncher = registerForActivityResult(
+            new ActivityResultContracts.RequestPermission(), granted -> {
+                if (granted) {
+                    preconnectBracelet();
+                }
+            });
 
     @Nullable
     @Override
@@ -85,6 +158,7 @@ public class HomeFragment extends Fragment {
         // Initialize test section views
         testSectionTitle = view.findViewById(R.id.text_emg_section_title);
         emgChartCard = view.findViewById(R.id.card_emg_chart);
+        signalQualityText = view.findViewById(R.id.text_signal_quality);
         question1Card = view.findViewById(R.id.card_question1);
         question2Card = view.findViewById(R.id.card_question2);
         emgChart = view.findViewById(R.id.emg_chart);
@@ -97,15 +171,37 @@ public class HomeFragment extends Fragment {
 
         mAuth = FirebaseAuth.getInstance();
         usersRef = FirebaseDatabase.getInstance().getReference("users");
-
-        // Load user data
-        loadUsername();
+        
+        // Connect to the bracelet while the glucose value is being typed, so the link is
+        // usually up by the time Get Started is tapped
+        glucoseValueInput.addTextChangedListener(new TextWatcher() {
+            @Override
+            public void beforeTextChanged(CharSequence s, int start, int count, int after) {
+            }
+            
+            @Override
+            public void onTextChanged(CharSequence s, int start, int before, int count) {
+            }
+            
+            @Override
+            public void afterTextChanged(Editable s) {
+                preconnectBracelet();
+            }
+        });
         
         // Set up button click listeners
         setupButtonListeners();
         
         // Set up EMG chart
         setupEmgChart();
+        
+        // Not needed for the first frame: load user data, and inflate both dialogs and
+        // the recommendation items in the background so tapping Get Started or Analyze
+        // only has to bind and show. MainActivity preloads the countdown GIF.
+        view.post(() -> {
+            loadUsername();
+            preinflateDialogs();
+        });
 
         return view;
     }
@@ -114,9 +210,11 @@ public class HomeFragment extends Fragment {
         if (mAuth.getCurrentUser() == null) return;
 
         String userId = mAuth.getCurrentUser().getUid();
+        int traceCookie = Tracing.beginAsync("firebase.load_username");
         usersRef.child(userId).addListenerForSingleValueEvent(new ValueEventListener() {
             @Override
             public void onDataChange(@NonNull DataSnapshot snapshot) {
+                Tracing.endAsync("firebase.load_username", traceCookie);
                 if (snapshot.child("fullName").exists()) {
                     String username = snapshot.child("fullName").getValue(String.class);
                     greetingNameText.setText(username);
@@ -125,11 +223,24 @@ public class HomeFragment extends Fragment {
 
             @Override
             public void onCancelled(@NonNull DatabaseError error) {
-                // Ignore
+                Tracing.endAsync("firebase.load_username", traceCookie);
             }
         });
     }
     
+    private void preconnectBracelet() {
+        if (!BluetoothManager.hasConnectPermission(requireContext())) {
+            if (!bluetoothPermissionRequested) {
+                bluetoothPermissionRequested = true;
+                bluetoothPermissionLauncher.launch(Manifest.permission.BLUETOOTH_CONNECT);
+            }
+            return;
+        }
+        if (acquisitionService != null) {
+            acquisitionService.preconnect();
+        }
+    }
+    
     private boolean validateGlucoseInput() {
         String glucoseValue = glucoseValueInput.getText().toString().trim();
         if (TextUtils.isEmpty(glucoseValue)) {
@@ -161,44 +272,249 @@ public class HomeFragment extends Fragment {
         long timestamp = System.currentTimeMillis();
         GlucoseReading reading = new GlucoseReading(Float.parseFloat(glucoseValue), timestamp);
         
+        long start = System.nanoTime();
+        int traceCookie = Tracing.beginAsync("firebase.save_glucose");
         usersRef.child(userId).child("glucoseReadings").child(String.valueOf(timestamp))
                 .setValue(reading)
                 .addOnSuccessListener(aVoid -> {
-                    // Successfully saved
+                    Tracing.endAsync("firebase.save_glucose", traceCookie);
+                    SAVE_GLUCOSE_LATENCY.recordSince(start);
                 })
                 .addOnFailureListener(e -> {
+                    Tracing.endAsync("firebase.save_glucose", traceCookie);
+                    SAVE_GLUCOSE_LATENCY.recordSince(start);
+                    SAVE_FAILURES.increment();
                     Toast.makeText(getContext(), "Failed to save glucose reading", Toast.LENGTH_SHORT).show();
                 });
     }
     
+    /**
+     * Inflates whichever dialog layouts are not already waiting, off the main thread.
+     * Called when the home screen is created and again after each dialog is dismissed.
+     */
+    private void preinflateDialogs() {
+        if (!isAdded()) {
+            return;
+        }
+        AsyncLayoutInflater inflater = new AsyncLayoutInflater(requireContext());
+        if (preinflatedCountdownView == null && !countdownInflating) {
+            countdownInflating = true;
+            int traceCookie = Tracing.beginAsync("ui.preinflate_countdown");
+            inflater.inflate(R.layout.dialog_countdown, null, (view, resid, parent) -> {
+                Tracing.endAsync("ui.preinflate_countdown", traceCookie);
+                countdownInflating = false;
+                preinflatedCountdownView = view;
+            });
+        }
+        if (preinflatedResultsViews == null && !resultsInflating) {
+            resultsInflating = true;
+            int traceCookie = Tracing.beginAsync("ui.preinflate_results");
+            inflater.inflate(R.layout.dialog_analysis_results, null, (view, resid, parent) -> {
+                Tracing.endAsync("ui.preinflate_results", traceCookie);
+                resultsInflating = false;
+                preinflatedResultsViews = new ResultsDialogViews(view);
+            });
+        }
+        RecommendationViewPool.preinflate(requireContext());
+    }
+    
+    /**
+     * The countdown GIF at a fixed size, so the request preloaded at startup and the one
+     * shown in the dialog share the same memory cache entry.
+     */
+    private static RequestBuilder<GifDrawable> countdownGifRequest(RequestManager requestManager,
+                                                                   Context context) {
+        int size = Math.round(COUNTDOWN_GIF_SIZE_DP * context.getResources().getDisplayMetrics().density);
+        return requestManager
+                .asGif()
+                .load(R.drawable.handcrush)
+                .override(size)
+                .fitCenter();
+    }
+    
+    /**
+     * Decodes the countdown GIF into Glide's memory cache. Blocks, so call it from a
+     * background thread.
+     */
+    static void preloadCountdownGif(Context context) throws Exception {
+        RequestManager requestManager = Glide.with(context.getApplicationContext());
+        FutureTarget<GifDrawable> target = countdownGifRequest(requestManager, context).submit();
+        try {
+            target.get();
+        } finally {
+            // Releasing the request moves the decoded GIF into the memory cache
+            requestManager.clear(target);
+        }
+    }
+    
     private void showCountdownDialog() {
         AlertDialog.Builder builder = new AlertDialog.Builder(getContext());
-        View dialogView = getLayoutInflater().inflate(R.layout.dialog_countdown, null);
-        TextView countdownText = dialogView.findViewById(R.id.text_countdown);
+        View dialogView = preinflatedCountdownView;
+        preinflatedCountdownView = null;
+        if (dialogView == null) {
+            Log.d("HomeFragment", "Countdown dialog not pre-inflated yet, inflating now");
+            boolean traced = Tracing.begin("ui.inflate_countdown");
+            dialogView = getLayoutInflater().inflate(R.layout.dialog_countdown, null);
+            Tracing.end(traced);
+        }
+        countdownText = dialogView.findViewById(R.id.text_countdown);
         ImageView gifImageView = dialogView.findViewById(R.id.gif_animation);
-        Glide.with(this)
-                .load(R.drawable.handcrush) // if GIF is in res/raw
-                .into(gifImageView);
+        countdownGifRequest(Glide.with(this), requireContext()).into(gifImageView);
         
         builder.setView(dialogView);
         builder.setCancelable(false);
         
         dialog = builder.create();
+        dialog.setOnDismissListener(d -> preinflateDialogs());
         dialog.show();
         
-        new CountDownTimer(COUNTDOWN_SECONDS * 1000, COUNTDOWN_INTERVAL) {
-            @Override
-            public void onTick(long millisUntilFinished) {
-                int secondsRemaining = (int) (millisUntilFinished / 1000);
-                countdownText.setText(String.valueOf(secondsRemaining));
+        // Show the quality indicator while capturing
+        emgChartCard.setVisibility(View.VISIBLE);
+        signalQualityText.setText("Signal quality: --");
+    }
+    
+    /**
+     * Starts a capture in AcquisitionService, or once the service is bound.
+     */
+    private void startCapture() {
+        if (acquisitionService == null) {
+            captureRequested = true;
+            return;
+        }
+        captureRequested = false;
+        float glucoseValue = Float.parseFloat(glucoseValueInput.getText().toString().trim());
+        acquisitionService.startCapture(glucoseValue);
+    }
+    
+    private final ServiceConnection acquisitionConnection = new ServiceConnection() {
+        @Override
+        public void onServiceConnected(ComponentName name, IBinder service) {
+            acquisitionService = ((AcquisitionService.LocalBinder) service).getService();
+            acquisitionService.setListener(acquisitionListener);
+            if (captureRequested) {
+                startCapture();
+            } else if (acquisitionService.isCapturing() && (dialog == null || !dialog.isShowing())) {
+                // The view was recreated during a capture; the capture itself kept running
+                showCountdownDialog();
             }
-            
-            @Override
-            public void onFinish() {
+        }
+        
+        @Override
+        public void onServiceDisconnected(ComponentName name) {
+            acquisitionService = null;
+        }
+    };
+    
+    private final AcquisitionService.Listener acquisitionListener = new AcquisitionService.Listener() {
+        @Override
+        public void onProgress(long remainingSeconds, SignalQualityIndex.Issue issue, float qualityIndex) {
+            if (countdownText != null) {
+                countdownText.setText(String.valueOf(remainingSeconds));
+            }
+            updateSignalQuality(issue, qualityIndex);
+        }
+        
+        @Override
+        public void onCompleted(float[] samples, float[] otherSideFeatures) {
+            capturedOtherSideFeatures = otherSideFeatures;
+            capturedEntries.clear();
+            for (int i = 0; i < samples.length; i++) {
+                capturedEntries.add(new Entry(i, samples[i]));
+            }
+            if (dialog != null && dialog.isShowing()) {
                 dialog.dismiss();
-                showTestSection();
             }
-        }.start();
+            showTestSection();
+        }
+        
+        @Override
+        public void onAborted(SignalQualityIndex.Issue issue, float qualityIndex) {
+            if (dialog != null && dialog.isShowing()) {
+                dialog.dismiss();
+            }
+            capturedEntries.clear();
+            capturedOtherSideFeatures = null;
+            updateSignalQuality(issue, qualityIndex);
+            Toast.makeText(getContext(), describeSignalIssue(issue)
+                    + ". Please check the bracelet and try again.", Toast.LENGTH_LONG).show();
+        }
+    };
+    
+    private void updateSignalQuality(SignalQualityIndex.Issue issue, float index) {
+        int percent = Math.round(index * 100);
+        if (issue == SignalQualityIndex.Issue.NONE) {
+            signalQualityText.setText("Signal quality: " + percent + "%");
+            signalQualityText.setTextColor(Color.rgb(0, 128, 0)); // Dark Green
+        } else {
+            signalQualityText.setText(describeSignalIssue(issue) + " (" + percent + "%)");
+            signalQualityText.setTextColor(Color.rgb(255, 140, 0)); // Dark Orange
+        }
+    }
+    
+    private String describeSignalIssue(SignalQualityIndex.Issue issue) {
+        switch (issue) {
+            case LEAD_OFF:
+                return "No signal - electrode contact lost";
+            case CLIPPING:
+                return "Signal saturated";
+            case MAINS_NOISE:
+                return "Electrical interference detected";
+            case MOTION:
+                return "Movement artifacts detected";
+            default:
+                return "Poor signal";
+        }
+    }
+    
+    @Override
+    public void onStart() {
+        super.onStart();
+        requireContext().bindService(new Intent(requireContext(), AcquisitionService.class),
+                acquisitionConnection, Context.BIND_AUTO_CREATE);
+        // Map and check the model now, not while the first results dialog waits for it
+        Context appContext = requireContext().getApplicationContext();
+        REFINEMENT_EXECUTOR.execute(() -> refinementPredictor(appContext));
+    }
+    
+    /**
+     * Returns the shared predictor, creating it on first use or again when another model
+     * was installed in the registry since. Only called on REFINEMENT_EXECUTOR.
+     */
+    private static NeuropathyPredictor refinementPredictor(Context appContext) {
+        NeuropathyPredictor predictor = refinementPredictor;
+        String installed = InstalledModel.getRegistry(appContext).getActiveVersion();
+        if (predictor != null && installed != null && !installed.equals(predictor.getModelVersion())) {
+            predictor.close();
+            predictor = null;
+        }
+        if (predictor == null) {
+            predictor = new NeuropathyPredictor(appContext);
+            refinementPredictor = predictor;
+        }
+        return predictor;
+    }
+    
+    @Override
+    public void onStop() {
+        // A running capture keeps the service started; its result waits for the next bind
+        if (acquisitionService != null) {
+            acquisitionService.setListener(null);
+            acquisitionService = null;
+        }
+        requireContext().unbindService(acquisitionConnection);
+        super.onStop();
+    }
+    
+    @Override
+    public void onDestroyView() {
+        preinflatedCountdownView = null;
+        preinflatedResultsViews = null;
+        countdownText = null;
+        refinementHandler.removeCallbacksAndMessages(null);
+        if (dialog != null && dialog.isShowing()) {
+            dialog.dismiss();
+        }
+        super.onDestroyView();
     }
     
     private void showTestSection() {
@@ -209,8 +525,8 @@ public class HomeFragment extends Fragment {
         question2Card.setVisibility(View.VISIBLE);
         analyzeResultsButton.setVisibility(View.VISIBLE);
         
-        // Generate sample EMG data
-        generateSampleEmgData();
+        // Plot the captured EMG data
+        displayEmgData(capturedEntries);
         
         // Scroll to the test section
         new Handler().postDelayed(() -> {
@@ -224,6 +540,7 @@ public class HomeFragment extends Fragment {
             if (validateGlucoseInput()) {
                 saveGlucoseValue();
                 showCountdownDialog();
+                startCapture();
             }
         });
         
@@ -253,11 +570,8 @@ public class HomeFragment extends Fragment {
             checkEnableAnalyzeButton();
         });
         
-        // Analyze Results button
-        analyzeResultsButton.setOnClickListener(v -> {
-            saveTestResults();
-            showResultsSummary();
-        });
+        // Analyze Results button; the results are saved once the dialog's assessment is final
+        analyzeResultsButton.setOnClickListener(v -> showResultsSummary());
         
         // Initially disable the analyze button until all questions are answered
         analyzeResultsButton.setEnabled(false);
@@ -308,35 +622,14 @@ public class HomeFragment extends Fragment {
         legend.setEnabled(false);
     }
     
-    private void generateSampleEmgData() {
-        List<Entry> entries = new ArrayList<>();
-        
-        // Generate simulated EMG data with varying patterns
-        float baseValue = 20f;
-        float amplitude = 15f;
-        float noiseLevel = 5f;
-        
-        // Create a realistic EMG pattern with bursts of activity
-        for (int i = 0; i < 100; i++) {
-            float value;
-            
-            // Create baseline with noise
-            value = baseValue + (float) (Math.random() * noiseLevel - noiseLevel/2);
-            
-            // Add periodic muscle contractions
-            if (i % 20 < 5) {
-                // Burst of activity (simulating muscle contraction)
-                value += amplitude * Math.sin(i * Math.PI / 5) + (Math.random() * amplitude/2);
-            } else if (i > 50 && i < 60) {
-                // Sustained contraction in the middle
-                value += amplitude + (Math.random() * noiseLevel);
-            } else if (i > 80) {
-                // Increasing fatigue pattern toward the end
-                value += (amplitude/2) * Math.sin(i * Math.PI / 4) * (100-i)/20;
-            }
-            
-            entries.add(new Entry(i, value));
+    
+    private void displayEmgData(List<Entry> captured) {
+        List<Entry> entries = new ArrayList<>(captured);
+        if (entries.isEmpty()) {
+            return;
         }
+        boolean traced = Tracing.begin("ui.chart_update");
+        emgChart.getXAxis().setAxisMaximum(entries.size());
         
         LineDataSet dataSet = new LineDataSet(entries, "EMG Signal");
         dataSet.setColor(Color.BLUE);
@@ -352,11 +645,22 @@ public class HomeFragment extends Fragment {
         emgChart.setData(lineData);
         emgChart.invalidate(); // Refresh the chart
         
-        // Animate the chart for better visual effect
-        emgChart.animateX(1000);
+        // Animate the chart for better visual effect, unless the device is hot or low on battery
+        int animationMs = ExecutionPolicyMonitor.getShared(requireContext()).getPolicy().chartAnimationMs;
+        if (animationMs > 0) {
+            emgChart.animateX(animationMs);
+        }
+        Tracing.end(traced);
     }
     
-    private void saveTestResults() {
+    /**
+     * Saves a test with the assessment the user was shown. The scoring version tells
+     * HistoryRescoreWorker whether a later model or rules change needs to re-score it; a
+     * fallback result is re-scored as soon as the model is available.
+     */
+    private void saveTestResults(float glucoseValue, float[] modelFeatures,
+                                 boolean hasTemperatureSensation, boolean hasPressureSensation,
+                                 NeuropathyPredictor.RiskAssessment assessment) {
         if (mAuth.getCurrentUser() == null) return;
         
         String userId = mAuth.getCurrentUser().getUid();
@@ -365,17 +669,40 @@ public class HomeFragment extends Fragment {
         // Create test result object
         Map<String, Object> testResult = new HashMap<>();
         testResult.put("timestamp", timestamp);
-        testResult.put("temperatureSensation", temperatureResponse);
-        testResult.put("pressureSensation", pressureResponse);
+        testResult.put("temperatureSensation", hasTemperatureSensation);
+        testResult.put("pressureSensation", hasPressureSensation);
+        testResult.put("riskScore", assessment.getPredictionScore());
+        testResult.put("riskLevel", assessment.getRiskLevel().name());
+        testResult.put("usedRealModel", assessment.usedRealModel());
+        testResult.put("scoringVersion", assessment.getScoringVersion());
+        
+        // Keep the model inputs so the result can be re-scored when the model changes
+        List<Float> storedFeatures = new ArrayList<>(modelFeatures.length);
+        for (float feature : modelFeatures) {
+            storedFeatures.add(feature);
+        }
+        testResult.put("glucose", glucoseValue);
+        testResult.put("features", storedFeatures);
         
         // Save to Firebase
+        long start = System.nanoTime();
+        int traceCookie = Tracing.beginAsync("firebase.save_test_results");
         usersRef.child(userId).child("testResults").child(String.valueOf(timestamp))
                 .setValue(testResult)
                 .addOnSuccessListener(aVoid -> {
-                    Toast.makeText(getContext(), "Test results saved", Toast.LENGTH_SHORT).show();
+                    Tracing.endAsync("firebase.save_test_results", traceCookie);
+                    SAVE_RESULTS_LATENCY.recordSince(start);
+                    if (getContext() != null) {
+                        Toast.makeText(getContext(), "Test results saved", Toast.LENGTH_SHORT).show();
+                    }
                 })
                 .addOnFailureListener(e -> {
-                    Toast.makeText(getContext(), "Failed to save test results", Toast.LENGTH_SHORT).show();
+                    Tracing.endAsync("firebase.save_test_results", traceCookie);
+                    SAVE_RESULTS_LATENCY.recordSince(start);
+                    SAVE_FAILURES.increment();
+                    if (getContext() != null) {
+                        Toast.makeText(getContext(), "Failed to save test results", Toast.LENGTH_SHORT).show();
+                    }
                 });
     }
     
@@ -424,54 +751,23 @@ public class HomeFragment extends Fragment {
         }
         
         LineDataSet dataSet = (LineDataSet) lineData.getDataSetByIndex(0);
-        List<Entry> entries = dataSet.getValues();
-        
-        // Calculate basic features from the EMG data
-        float maxAmplitude = 0;
-        float minAmplitude = Float.MAX_VALUE;
-        float sumAmplitude = 0;
-        float sumSquaredDiff = 0;
-        int crossings = 0;
-        float prevValue = entries.get(0).getY();
-        float baseline = 20f; // The baseline value used in generateSampleEmgData
-        
+        return extractEmgFeatures(dataSet.getValues());
+    }
+    
+    /**
+     * Extracts the same features from an arbitrary list of EMG samples.
+     */
+    private float[] extractEmgFeatures(List<Entry> entries) {
+        long start = System.nanoTime();
+        boolean traced = Tracing.begin("emg.extract_features");
+        EmgFeatureExtractor extractor = new EmgFeatureExtractor(EMG_BASELINE);
         for (Entry entry : entries) {
-            float value = entry.getY();
-            
-            // Update max and min
-            maxAmplitude = Math.max(maxAmplitude, value);
-            minAmplitude = Math.min(minAmplitude, value);
-            
-            // Sum for mean calculation
-            sumAmplitude += value;
-            
-            // Count baseline crossings
-            if ((prevValue < baseline && value >= baseline) || 
-                (prevValue >= baseline && value < baseline)) {
-                crossings++;
-            }
-            
-            prevValue = value;
+            extractor.addSample(entry.getY());
         }
-        
-        // Calculate mean
-        float meanAmplitude = sumAmplitude / entries.size();
-        
-        // Calculate standard deviation
-        for (Entry entry : entries) {
-            float diff = entry.getY() - meanAmplitude;
-            sumSquaredDiff += diff * diff;
-        }
-        float stdDeviation = (float) Math.sqrt(sumSquaredDiff / entries.size());
-        
-        // Return extracted features
-        return new float[]{
-            maxAmplitude,
-            maxAmplitude - minAmplitude, // Range
-            meanAmplitude,
-            stdDeviation,
-            crossings
-        };
+        float[] features = extractor.getFeatures();
+        Tracing.end(traced);
+        FEATURE_LATENCY.recordSince(start);
+        return features;
     }
 
     /**
@@ -482,11 +778,6 @@ public class HomeFragment extends Fragment {
         try {
             Log.d("HomeFragment", "Starting analysis dialog creation...");
             
-            // Create the predictor
-            Log.d("HomeFragment", "Creating NeuropathyPredictor...");
-            NeuropathyPredictor predictor = new NeuropathyPredictor(requireContext());
-            Log.d("HomeFragment", "NeuropathyPredictor created successfully");
-            
             // Create input features for the model
             Log.d("HomeFragment", "Creating model features...");
             float[] modelFeatures = createModelFeatures(glucoseValue, emgFeatures, 
@@ -494,7 +785,7 @@ public class HomeFragment extends Fragment {
             Log.d("HomeFragment", "Model features created successfully");
             
             // Get prediction
-            Log.d("HomeFragment", "Running prediction...");
+            Log.d("HomeFragment", "Running provisional prediction...");
             // Log the features we're sending to the model
             StringBuilder featureLog = new StringBuilder("Model features: ");
             for (int i = 0; i < modelFeatures.length; i++) {
@@ -503,76 +794,32 @@ public class HomeFragment extends Fragment {
             }
             Log.d("HomeFragment", featureLog.toString());
             
-            float prediction = predictor.predict(modelFeatures);
-            Log.d("HomeFragment", "Prediction result: " + prediction + 
-                  ", Used real model: " + predictor.usedRealModel());
-            
-            // Evaluate risk
-            Log.d("HomeFragment", "Evaluating risk...");
-            NeuropathyPredictor.RiskAssessment assessment = 
-                    predictor.evaluateRisk(prediction, glucoseValue, 
-                                         hasTemperatureSensation, hasPressureSensation);
-            Log.d("HomeFragment", "Risk level: " + assessment.getRiskLevel());
-            Log.d("HomeFragment", "Risk score: " + assessment.getPredictionScore());
+            // Show the fallback result now; the model runs in the background on the shared
+            // predictor and replaces this result (or finds it in the cache if scored before)
+            NeuropathyPredictor.RiskAssessment assessment = NeuropathyPredictor.assessProvisional(
+                    modelFeatures, glucoseValue, hasTemperatureSensation, hasPressureSensation);
+            Log.d("HomeFragment", "Provisional result: " + assessment.getPredictionScore());
             
             // Create dialog
             AlertDialog.Builder builder = new AlertDialog.Builder(requireContext());
-            View dialogView = getLayoutInflater().inflate(R.layout.dialog_analysis_results, null);
-            
-            // Set up dialog views
-            TextView riskLevelText = dialogView.findViewById(R.id.text_risk_level);
-            TextView riskScoreText = dialogView.findViewById(R.id.text_risk_score);
-            TextView riskDescriptionText = dialogView.findViewById(R.id.text_risk_description);
-            TextView glucoseValueText = dialogView.findViewById(R.id.text_glucose_value_summary);
-            TextView temperatureSensationText = dialogView.findViewById(R.id.text_temperature_sensation);
-            TextView pressureSensationText = dialogView.findViewById(R.id.text_pressure_sensation);
-            TextView emgSummaryText = dialogView.findViewById(R.id.text_emg_summary);
-            RecyclerView recommendationsRecycler = dialogView.findViewById(R.id.recycler_recommendations);
-            Button closeButton = dialogView.findViewById(R.id.button_close_analysis);
-            
-            // Set up risk level information
-            NeuropathyPredictor.RiskLevel riskLevel = assessment.getRiskLevel();
-            String riskLevelStr = riskLevel.toString();
-            int riskColor = Color.GREEN;
-            
-            switch (riskLevel) {
-                case HIGH:
-                    riskColor = Color.RED;
-                    riskDescriptionText.setText("Based on your test results, your risk of diabetic neuropathy is high. " +
-                            "Please consult with your healthcare provider as soon as possible.");
-                    break;
-                case MODERATE:
-                    riskColor = Color.parseColor("#FFA500"); // Orange
-                    riskDescriptionText.setText("Based on your test results, your risk of diabetic neuropathy is moderate. " +
-                            "Discuss these results with your healthcare provider.");
-                    break;
-                case LOW:
-                    riskDescriptionText.setText("Based on your test results, your risk of diabetic neuropathy is low. " +
-                            "Continue with your regular diabetes management plan.");
-                    break;
+            ResultsDialogViews views = preinflatedResultsViews;
+            preinflatedResultsViews = null;
+            if (views == null) {
+                Log.d("HomeFragment", "Results dialog not pre-inflated yet, inflating now");
+                boolean traced = Tracing.begin("ui.inflate_results");
+                views = new ResultsDialogViews(
+                        getLayoutInflater().inflate(R.layout.dialog_analysis_results, null));
+                Tracing.end(traced);
             }
+            View dialogView = views.root;
             
-            // Add indicator showing whether real model or fallback algorithm was used
-            TextView modelSourceText = dialogView.findViewById(R.id.text_model_source);
-            if (modelSourceText != null) {
-                boolean usedRealModel = assessment.usedRealModel();
-                modelSourceText.setVisibility(View.VISIBLE);
-                if (usedRealModel) {
-                    modelSourceText.setText("✓ Analysis by ML Model");
-                    modelSourceText.setTextColor(Color.rgb(0, 128, 0)); // Dark Green
-                    Log.d("HomeFragment", "UI showing: Analysis by ML Model");
-                } else {
-                    modelSourceText.setText("⚠ Using Fallback Algorithm");
-                    modelSourceText.setTextColor(Color.rgb(255, 140, 0)); // Dark Orange
-                    Log.d("HomeFragment", "UI showing: Using Fallback Algorithm");
-                }
-                Log.d("HomeFragment", "Using real ML model: " + usedRealModel + ", Risk score: " + assessment.getPredictionScore());
-                Log.d("HomeFragment", "Using real ML model: " + usedRealModel);
-            }
-            
-            riskLevelText.setText("Risk Level: " + riskLevelStr);
-            riskLevelText.setTextColor(riskColor);
-            riskScoreText.setText("Risk Score: " + String.format("%.2f", assessment.getPredictionScore()));
+            // Set up dialog views
+            TextView glucoseValueText = views.glucoseValueText;
+            TextView temperatureSensationText = views.temperatureSensationText;
+            TextView pressureSensationText = views.pressureSensationText;
+            TextView emgSummaryText = views.emgSummaryText;
+            RecyclerView recommendationsRecycler = views.recommendationsRecycler;
+            Button closeButton = views.closeButton;
             
             // Set up test data summary
             glucoseValueText.setText("Glucose Value: " + glucoseValue + " mg/dL");
@@ -583,18 +830,28 @@ public class HomeFragment extends Fragment {
             String emgSummary = "EMG Analysis: ";
             if (emgFeatures[1] > 30) { // Range
                 emgSummary += "High variability pattern";
-            } else if (emgFeatures[4] > 10) { // Crossings
+            } else if (emgFeatures[4] > 10) { // Crossings per 100 samples
                 emgSummary += "Frequent oscillation pattern";
             } else {
                 emgSummary += "Normal pattern";
             }
+            if (capturedOtherSideFeatures != null) {
+                // Muscle activity (standard deviation) of one side against the other
+                float asymmetry = EmgFeatureExtractor.asymmetry(emgFeatures, capturedOtherSideFeatures, 3);
+                emgSummary += "\nLeft/right activity difference: " + Math.round(asymmetry * 100) + "%";
+            }
             emgSummaryText.setText(emgSummary);
             
             // Set up recommendations recycler
-            recommendationsRecycler.setLayoutManager(new LinearLayoutManager(requireContext()));
-            RecommendationAdapter adapter = new RecommendationAdapter(assessment.getRecommendations());
+            LinearLayoutManager layoutManager = new LinearLayoutManager(requireContext());
+            layoutManager.setRecycleChildrenOnDetach(true);
+            recommendationsRecycler.setLayoutManager(layoutManager);
+            recommendationsRecycler.setRecycledViewPool(RecommendationViewPool.getPool());
+            RecommendationAdapter adapter = new RecommendationAdapter();
             recommendationsRecycler.setAdapter(adapter);
             
+            bindAssessment(views, adapter, assessment, ModelSource.PROVISIONAL);
+            
             // Set up close button
             closeButton.setOnClickListener(v -> {
                 if (dialog != null && dialog.isShowing()) {
@@ -604,11 +861,17 @@ public class HomeFragment extends Fragment {
             
             // Show dialog
             builder.setView(dialogView);
-            dialog = builder.create();
+            AlertDialog resultsDialog = builder.create();
+            dialog = resultsDialog;
+            dialog.setOnDismissListener(d -> {
+                // Hand the item views back to the shared pool and refill everything for next time
+                recommendationsRecycler.setAdapter(null);
+                preinflateDialogs();
+            });
             dialog.show();
             
-            // Close the predictor when done
-            predictor.close();
+            refineAssessment(resultsDialog, views, adapter, assessment, modelFeatures, glucoseValue,
+                    hasTemperatureSensation, hasPressureSensation);
             
         } catch (Exception e) {
             Log.e("HomeFragment", "Error analyzing results: " + e.getMessage(), e);
@@ -616,7 +879,159 @@ public class HomeFragment extends Fragment {
         }
     }
     
-    private float[] createModelFeatures(float glucoseValue, float[] emgFeatures, 
+    /**
+     * Runs the model in the background and replaces the provisional result in the dialog
+     * when it arrives. If it takes longer than the execution policy's refinement deadline
+     * the provisional result becomes final, so the result does not change under the user
+     * much later. The final result is the one saved.
+     */
+    private void refineAssessment(AlertDialog resultsDialog,
+                                  ResultsDialogViews views, RecommendationAdapter adapter,
+                                  NeuropathyPredictor.RiskAssessment provisional,
+                                  float[] modelFeatures, float glucoseValue,
+                                  boolean hasTemperatureSensation, boolean hasPressureSensation) {
+        long start = System.nanoTime();
+        long deadlineMs = ExecutionPolicyMonitor.getShared(requireContext()).getPolicy().refinementDeadlineMs;
+        int traceCookie = Tracing.beginAsync("model.refine");
+        // Only read and written on the main thread
+        boolean[] settled = {false};
+        Runnable deadline = () -> {
+            if (settled[0]) {
+                return;
+            }
+            settled[0] = true;
+            REFINEMENT_DEADLINE_MISSES.increment();
+            Log.d("HomeFragment", "Model refinement missed the " + deadlineMs + " ms deadline");
+            saveTestResults(glucoseValue, modelFeatures, hasTemperatureSensation, hasPressureSensation,
+                    provisional);
+            if (resultsDialog.isShowing()) {
+                bindModelSource(views.modelSourceText, ModelSource.TIMED_OUT);
+            }
+        };
+        refinementHandler.postDelayed(deadline, deadlineMs);
+        
+        Context appContext = requireContext().getApplicationContext();
+        REFINEMENT_EXECUTOR.execute(() -> {
+            NeuropathyPredictor.RiskAssessment refined;
+            try {
+                refined = refinementPredictor(appContext).assess(modelFeatures, glucoseValue,
+                        hasTemperatureSensation, hasPressureSensation);
+            } catch (Exception e) {
+                Log.e("HomeFragment", "Model refinement failed: " + e.getMessage(), e);
+                refined = null;
+            }
+            NeuropathyPredictor.RiskAssessment result = refined;
+            refinementHandler.post(() -> {
+                Tracing.endAsync("model.refine", traceCookie);
+                REFINEMENT_LATENCY.recordSince(start);
+                if (settled[0]) {
+                    Log.d("HomeFragment", "Discarding model result that arrived after the deadline");
+                    return;
+                }
+                settled[0] = true;
+                refinementHandler.removeCallbacks(deadline);
+                saveTestResults(glucoseValue, modelFeatures, hasTemperatureSensation, hasPressureSensation,
+                        result != null ? result : provisional);
+                if (!resultsDialog.isShowing()) {
+                    return;
+                }
+                if (result != null) {
+                    bindAssessment(views, adapter, result, ModelSource.of(result));
+                } else {
+                    bindModelSource(views.modelSourceText, ModelSource.FALLBACK);
+                }
+            });
+        });
+    }
+    
+    /**
+     * Shows an assessment's risk level, score and recommendations in the results dialog.
+     */
+    private void bindAssessment(ResultsDialogViews views, RecommendationAdapter adapter,
+                                NeuropathyPredictor.RiskAssessment assessment, ModelSource source) {
+        NeuropathyPredictor.RiskLevel riskLevel = assessment.getRiskLevel();
+        int riskColor = Color.GREEN;
+        
+        switch (riskLevel) {
+            case HIGH:
+                riskColor = Color.RED;
+                views.riskDescriptionText.setText("Based on your test results, your risk of diabetic neuropathy is high. " +
+                        "Please consult with your healthcare provider as soon as possible.");
+                break;
+            case MODERATE:
+                riskColor = Color.parseColor("#FFA500"); // Orange
+                views.riskDescriptionText.setText("Based on your test results, your risk of diabetic neuropathy is moderate. " +
+                        "Discuss these results with your healthcare provider.");
+                break;
+            case LOW:
+                views.riskDescriptionText.setText("Based on your test results, your risk of diabetic neuropathy is low. " +
+                        "Continue with your regular diabetes management plan.");
+                break;
+        }
+        
+        bindModelSource(views.modelSourceText, source);
+        Log.d("HomeFragment", "Risk level: " + riskLevel + ", risk score: " + assessment.getPredictionScore()
+                + ", source: " + source);
+        
+        views.riskLevelText.setText("Risk Level: " + riskLevel);
+        views.riskLevelText.setTextColor(riskColor);
+        views.riskScoreText.setText("Risk Score: " + String.format("%.2f", assessment.getPredictionScore()));
+        bindAttributions(views, assessment.getAttributions());
+        adapter.submitList(assessment.getRecommendations());
+    }
+    
+    // Ranked list of the features that drove the score, hidden if there is none
+    private static void bindAttributions(ResultsDialogViews views, List<FeatureAttribution> attributions) {
+        if (views.attributionsText == null) {
+            return;
+        }
+        int visibility = attributions.isEmpty() ? View.GONE : View.VISIBLE;
+        views.attributionsTitle.setVisibility(visibility);
+        views.attributionsText.setVisibility(visibility);
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < attributions.size(); i++) {
+            FeatureAttribution attribution = attributions.get(i);
+            float contribution = attribution.getContribution();
+            if (i > 0) {
+                text.append('\n');
+            }
+            text.append(i + 1).append(". ").append(attribution.getName())
+                    .append(contribution >= 0 ? ": raises risk (+" : ": lowers risk (")
+                    .append(String.format("%.2f", contribution)).append(')');
+        }
+        views.attributionsText.setText(text);
+    }
+    
+    // Indicator showing whether the real model or the fallback algorithm was used
+    private static void bindModelSource(TextView modelSourceText, ModelSource source) {
+        if (modelSourceText == null) {
+            return;
+        }
+        modelSourceText.setVisibility(View.VISIBLE);
+        modelSourceText.setText(source.label);
+        modelSourceText.setTextColor(source.color);
+    }
+    
+    private enum ModelSource {
+        MODEL("✓ Analysis by ML Model", Color.rgb(0, 128, 0)), // Dark Green
+        FALLBACK("⚠ Using Fallback Algorithm", Color.rgb(255, 140, 0)), // Dark Orange
+        PROVISIONAL("⏳ Provisional result, refining with ML Model…", Color.GRAY),
+        TIMED_OUT("⚠ Using Fallback Algorithm (ML Model timed out)", Color.rgb(255, 140, 0));
+        
+        final String label;
+        final int color;
+        
+        ModelSource(String label, int color) {
+            this.label = label;
+            this.color = color;
+        }
+        
+        static ModelSource of(NeuropathyPredictor.RiskAssessment assessment) {
+            return assessment.usedRealModel() ? MODEL : FALLBACK;
+        }
+    }
+    
+    static float[] createModelFeatures(float glucoseValue, float[] emgFeatures, 
                                        boolean hasTemperatureSensation, boolean hasPressureSensation) {
         // In a real implementation, we would need to match the exact feature set expected by the model
         // This is a simplified version that uses the available data
@@ -629,7 +1044,8 @@ public class HomeFragment extends Fragment {
         
         // Create features array
         // Order: age, diabetes_duration, fasting_sugar, emg_features (5), sensory_features (2)
-        return new float[]{
+        boolean traced = Tracing.begin("model.create_features");
+        float[] features = new float[]{
             age,
             diabetesDuration,
             glucoseValue,
@@ -637,10 +1053,38 @@ public class HomeFragment extends Fragment {
             emgFeatures[1], // Range
             emgFeatures[2], // Mean
             emgFeatures[3], // Standard deviation
-            emgFeatures[4], // Crossings
+            emgFeatures[4], // Crossings per 100 samples
             hasTemperatureSensation ? 1f : 0f,
             hasPressureSensation ? 1f : 0f
         };
+        Tracing.end(traced);
+        return features;
+    }
+    
+    // View lookups for dialog_analysis_results, done once when the layout is inflated
+    private static class ResultsDialogViews {
+        final View root;
+        final TextView riskLevelText, riskScoreText, riskDescriptionText, modelSourceText;
+        final TextView glucoseValueText, temperatureSensationText, pressureSensationText, emgSummaryText;
+        final TextView attributionsTitle, attributionsText;
+        final RecyclerView recommendationsRecycler;
+        final Button closeButton;
+        
+        ResultsDialogViews(View root) {
+            this.root = root;
+            riskLevelText = root.findViewById(R.id.text_risk_level);
+            riskScoreText = root.findViewById(R.id.text_risk_score);
+            riskDescriptionText = root.findViewById(R.id.text_risk_description);
+            modelSourceText = root.findViewById(R.id.text_model_source);
+            glucoseValueText = root.findViewById(R.id.text_glucose_value_summary);
+            temperatureSensationText = root.findViewById(R.id.text_temperature_sensation);
+            pressureSensationText = root.findViewById(R.id.text_pressure_sensation);
+            emgSummaryText = root.findViewById(R.id.text_emg_summary);
+            attributionsTitle = root.findViewById(R.id.text_attributions_title);
+            attributionsText = root.findViewById(R.id.text_attributions);
+            recommendationsRecycler = root.findViewById(R.id.recycler_recommendations);
+            closeButton = root.findViewById(R.id.button_close_analysis);
+        }
     }
     
     // Model class for glucose readings
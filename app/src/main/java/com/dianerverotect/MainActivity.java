@@ -1,5 +1,6 @@
 package com.dianerverotect;
 
+import android.content.Context;
 import android.os.Bundle;
 import android.view.Menu;
 import android.view.MenuInflater;
@@ -35,6 +36,11 @@ import com.google.firebase.database.DatabaseError;
 import com.google.firebase.database.DatabaseReference;
 import com.google.firebase.database.FirebaseDatabase;
 import com.google.firebase.database.ValueEventListener;
+import com.dianerverotect.metrics.MetricsExporter;
+import com.dianerverotect.model.InstalledModel;
+import com.dianerverotect.model.NeuropathyPredictor;
+import com.dianerverotect.model.RecommendationViewPool;
+import com.dianerverotect.policy.ExecutionPolicyMonitor;
 
 import java.util.Base64;
 import de.hdodenhof.circleimageview.CircleImageView;
@@ -55,20 +61,22 @@ public class MainActivity extends AppCompatActivity implements NavigationBarView
 
     private DatabaseReference usersRef;
     private FirebaseAuth mAuth;
+    
+    private StartupTimeline startupTimeline;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
+        startupTimeline = new StartupTimeline();
         super.onCreate(savedInstanceState);
         // EdgeToEdge.enable(this); // Can be kept or removed depending on desired edge-to-edge behavior with AppBar
         setContentView(R.layout.activity_main);
+        startupTimeline.mark("content_view");
 
         drawerLayout = findViewById(R.id.drawer_layout);
         navigationView = findViewById(R.id.navigation_view);
 
-        mAuth = FirebaseAuth.getInstance();
-        usersRef = FirebaseDatabase.getInstance().getReference("users");
-
-        loadDrawerHeaderData();
+        // Firebase, Glide and the model are initialized after the first frame is drawn
+        startupTimeline.onFirstFrame(this, this::runDeferredStartup);
 
         // --- Setup Toolbar ---
         topAppBar = findViewById(R.id.top_app_bar);
@@ -82,21 +90,25 @@ public class MainActivity extends AppCompatActivity implements NavigationBarView
         }
         // ---------------------
 
-        // Initialize fragments
-        homeFragment = new HomeFragment();
-        historyFragment = new HistoryFragment(); // Initialize HistoryFragment
-        settingsFragment = new SettingsFragment();
-        
-        // Set the initial fragment
+        // Only the home fragment is created up front; history and settings are
+        // created the first time they are selected (see switchFragment)
         fragmentManager = getSupportFragmentManager();
+        homeFragment = (HomeFragment) fragmentManager.findFragmentByTag("home");
+        historyFragment = (HistoryFragment) fragmentManager.findFragmentByTag("history");
+        settingsFragment = (SettingsFragment) fragmentManager.findFragmentByTag("settings");
+        if (homeFragment == null) {
+            homeFragment = new HomeFragment();
+            fragmentManager.beginTransaction()
+                    .add(R.id.fragment_container, homeFragment, "home")
+                    .commit();
+        }
         activeFragment = homeFragment;
-        
-        // Add all fragments and hide all except the active one
-        FragmentTransaction transaction = fragmentManager.beginTransaction();
-        transaction.add(R.id.fragment_container, homeFragment, "home");
-        transaction.add(R.id.fragment_container, historyFragment, "history").hide(historyFragment); // Add HistoryFragment, hidden
-        transaction.add(R.id.fragment_container, settingsFragment, "settings").hide(settingsFragment);
-        transaction.commit();
+        for (Fragment fragment : new Fragment[]{historyFragment, settingsFragment}) {
+            if (fragment != null && !fragment.isHidden()) {
+                activeFragment = fragment;
+            }
+        }
+        startupTimeline.mark("home_fragment");
 
         // Initialize the bottom navigation view
         bottomNavigationView = findViewById(R.id.bottom_navigation);
@@ -121,6 +133,45 @@ public class MainActivity extends AppCompatActivity implements NavigationBarView
 
     // Removed onCreateOptionsMenu as we are not using the right-side options menu anymore
 
+    /**
+     * Startup work that is not needed for the first frame. Firebase and the drawer header
+     * run on the main thread right after the first frame; Glide, the countdown GIF and the
+     * TFLite model are warmed up on a background thread, after which the timeline is written.
+     */
+    private void runDeferredStartup() {
+        mAuth = FirebaseAuth.getInstance();
+        usersRef = FirebaseDatabase.getInstance().getReference("users");
+        loadDrawerHeaderData();
+        startupTimeline.mark("firebase");
+        // Starts watching thermal status and battery, which throttle inference and acquisition
+        ExecutionPolicyMonitor.getShared(getApplicationContext());
+        // Re-scores stored results once the device is idle and charging, if the model changed
+        HistoryRescoreWorker.schedule(getApplicationContext());
+
+        Context appContext = getApplicationContext();
+        new Thread(() -> {
+            try {
+                Glide.get(appContext);
+                startupTimeline.mark("glide");
+                HomeFragment.preloadCountdownGif(appContext);
+                startupTimeline.mark("countdown_gif");
+                // Swaps in any downloaded model before the predictor is warmed up
+                InstalledModel.installPendingUpdates(appContext);
+                // Loads the TFLite runtime and pages the model in, so the first test does not
+                new NeuropathyPredictor(appContext).close();
+                startupTimeline.mark("predictor");
+            } catch (Exception e) {
+                Log.e("MainActivity", "Error during deferred startup: " + e.getMessage());
+            }
+            runOnUiThread(() -> {
+                if (!isFinishing()) {
+                    reportFullyDrawn();
+                }
+                startupTimeline.finish(appContext);
+            });
+        }, "startup-warmup").start();
+    }
+
     private void loadDrawerHeaderData() {
         if (mAuth.getCurrentUser() == null) return;
 
@@ -218,9 +269,15 @@ public class MainActivity extends AppCompatActivity implements NavigationBarView
             switchFragment(homeFragment);
             return true;
         } else if (itemId == R.id.navigation_history) { // Added case for History
+            if (historyFragment == null) {
+                historyFragment = new HistoryFragment();
+            }
             switchFragment(historyFragment);
             return true;
         } else if (itemId == R.id.navigation_settings) {
+            if (settingsFragment == null) {
+                settingsFragment = new SettingsFragment();
+            }
             switchFragment(settingsFragment);
             return true;
         }
@@ -228,12 +285,31 @@ public class MainActivity extends AppCompatActivity implements NavigationBarView
         return false;
     }
     
+    @Override
+    protected void onStop() {
+        super.onStop();
+        // Keep a rolling record of the stage timings each time the app leaves the screen
+        MetricsExporter.export(this);
+    }
+    
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        // Pooled recommendation views hold this activity's context
+        RecommendationViewPool.clear();
+    }
+    
     private void switchFragment(Fragment fragment) {
         if (fragment != activeFragment) {
-            fragmentManager.beginTransaction()
-                    .hide(activeFragment)
-                    .show(fragment)
-                    .commit();
+            FragmentTransaction transaction = fragmentManager.beginTransaction().hide(activeFragment);
+            if (fragment.isAdded()) {
+                transaction.show(fragment);
+            } else {
+                // First selection: add it now instead of at startup
+                String tag = fragment == historyFragment ? "history" : "settings";
+                transaction.add(R.id.fragment_container, fragment, tag);
+            }
+            transaction.commit();
             activeFragment = fragment;
         }
     }
@@ -0,0 +1,56 @@
+package com.dianerverotect;
+
+import java.util.function.BiConsumer;
+
+/**
+ * The result of a finished capture on its way to the UI, for AcquisitionService. It goes
+ * straight to the listener when one is set; otherwise it is kept until the next listener
+ * is set, and the service must stay alive until then or the capture is lost.
+ *
+ * A result is the captured samples and the other side's features (see
+ * AcquisitionService.Listener#onCompleted). Main thread only.
+ */
+final class PendingCapture {
+
+    private float[] samples;
+    private float[] otherSideFeatures;
+
+    /**
+     * Hands a finished capture to the receiver, or keeps it if there is none. Returns
+     * true if the service may stop, i.e. nothing is left to deliver.
+     */
+    boolean complete(BiConsumer<float[], float[]> receiver, float[] samples, float[] otherSideFeatures) {
+        if (receiver != null) {
+            clear();
+            receiver.accept(samples, otherSideFeatures);
+            return true;
+        }
+        this.samples = samples;
+        this.otherSideFeatures = otherSideFeatures;
+        return false;
+    }
+
+    /**
+     * Hands a kept result to a new receiver. Returns true if there was one, after which
+     * the service may stop.
+     */
+    boolean deliverTo(BiConsumer<float[], float[]> receiver) {
+        if (samples == null) {
+            return false;
+        }
+        float[] result = samples;
+        float[] otherSide = otherSideFeatures;
+        clear();
+        receiver.accept(result, otherSide);
+        return true;
+    }
+
+    boolean isHeld() {
+        return samples != null;
+    }
+
+    void clear() {
+        samples = null;
+        otherSideFeatures = null;
+    }
+}
@@ -1,19 +1,69 @@
 package com.dianerverotect;
 
+import android.app.AlertDialog;
+import android.graphics.Typeface;
 import android.os.Bundle;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
+import android.widget.ScrollView;
+import android.widget.TextView;
+import android.widget.Toast;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.fragment.app.Fragment;
 
+import com.dianerverotect.metrics.MetricsExporter;
+import com.dianerverotect.metrics.MetricsRegistry;
+
 public class SettingsFragment extends Fragment {
 
     @Nullable
     @Override
     public View onCreateView(@NonNull LayoutInflater inflater, @Nullable ViewGroup container, @Nullable Bundle savedInstanceState) {
-        return inflater.inflate(R.layout.fragment_settings, container, false);
+        View view = inflater.inflate(R.layout.fragment_settings, container, false);
+
+        // Hidden debug screen: long-press the title to see the performance metrics
+        view.findViewById(R.id.settings_title).setOnLongClickListener(v -> {
+            showMetricsDialog();
+            return true;
+        });
+
+        return view;
+    }
+
+    private void showMetricsDialog() {
+        TextView metricsText = new TextView(requireContext());
+        metricsText.setTypeface(Typeface.MONOSPACE);
+        metricsText.setTextSize(11);
+        metricsText.setTextIsSelectable(true);
+        int padding = Math.round(16 * getResources().getDisplayMetrics().density);
+        metricsText.setPadding(padding, padding, padding, padding);
+        ScrollView scrollView = new ScrollView(requireContext());
+        scrollView.addView(metricsText);
+
+        AlertDialog dialog = new AlertDialog.Builder(requireContext())
+                .setTitle("Performance metrics (ms)")
+                .setView(scrollView)
+                .setPositiveButton("Refresh", null)
+                .setNeutralButton("Export", null)
+                .setNegativeButton("Reset", null)
+                .create();
+        // Replace the default listeners so the buttons do not close the dialog
+        dialog.setOnShowListener(d -> {
+            dialog.getButton(AlertDialog.BUTTON_POSITIVE).setOnClickListener(v ->
+                    metricsText.setText(MetricsRegistry.getShared().report()));
+            dialog.getButton(AlertDialog.BUTTON_NEUTRAL).setOnClickListener(v -> {
+                MetricsExporter.export(requireContext());
+                Toast.makeText(getContext(), "Exported to files/metrics/metrics.log", Toast.LENGTH_SHORT).show();
+            });
+            dialog.getButton(AlertDialog.BUTTON_NEGATIVE).setOnClickListener(v -> {
+                MetricsRegistry.getShared().reset();
+                metricsText.setText(MetricsRegistry.getShared().report());
+            });
+        });
+        metricsText.setText(MetricsRegistry.getShared().report());
+        dialog.show();
     }
 }
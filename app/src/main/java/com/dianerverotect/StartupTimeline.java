@@ -0,0 +1,112 @@
+package com.dianerverotect;
+
+import android.app.Activity;
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+import android.view.View;
+import android.view.ViewTreeObserver;
+
+import com.dianerverotect.metrics.MetricsExporter;
+import com.dianerverotect.metrics.RollingLog;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Records how long each phase of MainActivity startup takes, measured from onCreate,
+ * and appends one line per launch to files/metrics/startup.log.
+ *
+ * Each line looks like:
+ * {@code 1718000000000 process_to_create=812 content_view=95 first_frame=240 ... interactive=610}
+ */
+public class StartupTimeline {
+    private static final String TAG = "StartupTimeline";
+    private static final String LOG_NAME = "startup";
+    private static final long MAX_LOG_BYTES = 64 * 1024;
+
+    private final long createdAt;
+    private final long processToCreateMs;
+    private final Map<String, Long> phases = new LinkedHashMap<>();
+    private boolean finished;
+
+    /**
+     * Starts the timeline. Call at the top of Activity.onCreate.
+     */
+    public StartupTimeline() {
+        createdAt = SystemClock.elapsedRealtime();
+        processToCreateMs = createdAt - Process.getStartElapsedRealtime();
+    }
+
+    /**
+     * Records the end of a phase, in milliseconds since onCreate.
+     */
+    public synchronized void mark(String phase) {
+        long elapsed = SystemClock.elapsedRealtime() - createdAt;
+        phases.put(phase, elapsed);
+        Log.d(TAG, phase + " at " + elapsed + " ms");
+    }
+
+    /**
+     * Marks "first_frame" once the activity's window has drawn, then runs the callback on
+     * the main thread right after that frame.
+     */
+    public void onFirstFrame(Activity activity, Runnable afterFirstFrame) {
+        View decorView = activity.getWindow().getDecorView();
+        Handler mainHandler = new Handler(Looper.getMainLooper());
+        decorView.getViewTreeObserver().addOnDrawListener(new ViewTreeObserver.OnDrawListener() {
+            private boolean drawn;
+
+            @Override
+            public void onDraw() {
+                if (drawn) {
+                    return;
+                }
+                drawn = true;
+                // Listeners cannot be removed while the tree is drawing
+                mainHandler.postAtFrontOfQueue(() -> {
+                    mark("first_frame");
+                    if (decorView.getViewTreeObserver().isAlive()) {
+                        decorView.getViewTreeObserver().removeOnDrawListener(this);
+                    }
+                    afterFirstFrame.run();
+                });
+            }
+        });
+    }
+
+    /**
+     * Marks "interactive" and appends the timeline to the metrics file on a background
+     * thread. Only the first call has any effect.
+     */
+    public void finish(Context context) {
+        String line;
+        synchronized (this) {
+            if (finished) {
+                return;
+            }
+            finished = true;
+            mark("interactive");
+            StringBuilder builder = new StringBuilder();
+            builder.append(System.currentTimeMillis())
+                    .append(" process_to_create=").append(processToCreateMs);
+            for (Map.Entry<String, Long> phase : phases.entrySet()) {
+                builder.append(' ').append(phase.getKey()).append('=').append(phase.getValue());
+            }
+            line = builder.append('\n').toString();
+        }
+
+        RollingLog log = new RollingLog(MetricsExporter.getMetricsDir(context), LOG_NAME, MAX_LOG_BYTES);
+        new Thread(() -> {
+            try {
+                log.append(line);
+            } catch (IOException e) {
+                Log.e(TAG, "Error writing startup metrics: " + e.getMessage());
+            }
+        }, "startup-metrics").start();
+    }
+}
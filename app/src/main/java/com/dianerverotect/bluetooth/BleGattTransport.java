@@ -0,0 +1,251 @@
+package com.dianerverotect.bluetooth;
+
+import android.annotation.SuppressLint;
+import android.bluetooth.BluetoothDevice;
+import android.bluetooth.BluetoothGatt;
+import android.bluetooth.BluetoothGattCallback;
+import android.bluetooth.BluetoothGattCharacteristic;
+import android.bluetooth.BluetoothGattDescriptor;
+import android.bluetooth.BluetoothGattService;
+import android.bluetooth.BluetoothProfile;
+import android.content.Context;
+import android.os.Build;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * BLE link using the Nordic UART service layout: the bracelet notifies batches of samples
+ * on the TX characteristic and accepts commands on the RX characteristic.
+ *
+ * Opening negotiates a large MTU (so one notification carries many samples), requests a
+ * high connection priority (short connection interval) while capturing, and enables
+ * notifications. Outgoing bytes are split into MTU-sized characteristic writes.
+ */
+@SuppressLint("MissingPermission") // BluetoothManager checks BLUETOOTH_CONNECT before connecting
+public class BleGattTransport implements Transport {
+    private static final String TAG = "BleGattTransport";
+
+    static final UUID UART_SERVICE = UUID.fromString("6e400001-b5a3-f393-e0a9-e50e24dcca9e");
+    static final UUID UART_RX = UUID.fromString("6e400002-b5a3-f393-e0a9-e50e24dcca9e");
+    static final UUID UART_TX = UUID.fromString("6e400003-b5a3-f393-e0a9-e50e24dcca9e");
+    private static final UUID CLIENT_CONFIG = UUID.fromString("00002902-0000-1000-8000-00805f9b34fb");
+
+    private static final int REQUESTED_MTU = 247;
+    // ATT header bytes taken from every packet
+    private static final int ATT_OVERHEAD = 3;
+    private static final long OPEN_TIMEOUT_MS = 10000;
+    private static final long WRITE_TIMEOUT_MS = 2000;
+
+    private final Context context;
+    private final BluetoothDevice device;
+
+    private volatile BluetoothGatt gatt;
+    private volatile BluetoothGattCharacteristic rxCharacteristic;
+    private volatile int mtu = 23;
+    private volatile boolean open;
+    private volatile IOException openFailure;
+    private Receiver receiver;
+    private CountDownLatch ready;
+    private final Semaphore writeDone = new Semaphore(0);
+    private volatile boolean lastWriteSucceeded;
+
+    public BleGattTransport(Context context, BluetoothDevice device) {
+        this.context = context.getApplicationContext();
+        this.device = device;
+    }
+
+    @Override
+    public void open(Receiver receiver) throws IOException {
+        this.receiver = receiver;
+        this.ready = new CountDownLatch(1);
+        this.openFailure = null;
+        gatt = device.connectGatt(context, false, callback, BluetoothDevice.TRANSPORT_LE);
+        if (gatt == null) {
+            throw new IOException("connectGatt failed");
+        }
+
+        boolean completed;
+        try {
+            completed = ready.await(OPEN_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            completed = false;
+        }
+        if (!completed || openFailure != null) {
+            close();
+            throw openFailure != null ? openFailure : new IOException("Timed out opening GATT link");
+        }
+        open = true;
+        Log.d(TAG, "GATT link open, MTU " + mtu);
+    }
+
+    private void failOpen(String reason) {
+        openFailure = new IOException(reason);
+        ready.countDown();
+    }
+
+    private final BluetoothGattCallback callback = new BluetoothGattCallback() {
+        @Override
+        public void onConnectionStateChange(BluetoothGatt gatt, int status, int newState) {
+            if (newState == BluetoothProfile.STATE_CONNECTED && status == BluetoothGatt.GATT_SUCCESS) {
+                gatt.requestConnectionPriority(BluetoothGatt.CONNECTION_PRIORITY_HIGH);
+                if (!gatt.requestMtu(REQUESTED_MTU)) {
+                    gatt.discoverServices();
+                }
+            } else if (newState == BluetoothProfile.STATE_DISCONNECTED) {
+                if (open) {
+                    close();
+                    receiver.onClosed(new IOException("GATT disconnected, status " + status));
+                } else {
+                    failOpen("GATT connection failed, status " + status);
+                }
+            }
+        }
+
+        @Override
+        public void onMtuChanged(BluetoothGatt gatt, int mtu, int status) {
+            if (status == BluetoothGatt.GATT_SUCCESS) {
+                BleGattTransport.this.mtu = mtu;
+            }
+            gatt.discoverServices();
+        }
+
+        @Override
+        public void onServicesDiscovered(BluetoothGatt gatt, int status) {
+            BluetoothGattService service = gatt.getService(UART_SERVICE);
+            if (status != BluetoothGatt.GATT_SUCCESS || service == null) {
+                failOpen("UART service not found");
+                return;
+            }
+            BluetoothGattCharacteristic tx = service.getCharacteristic(UART_TX);
+            rxCharacteristic = service.getCharacteristic(UART_RX);
+            BluetoothGattDescriptor config = tx != null ? tx.getDescriptor(CLIENT_CONFIG) : null;
+            if (rxCharacteristic == null || config == null || !gatt.setCharacteristicNotification(tx, true)) {
+                failOpen("UART characteristics not usable");
+                return;
+            }
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU) {
+                gatt.writeDescriptor(config, BluetoothGattDescriptor.ENABLE_NOTIFICATION_VALUE);
+            } else {
+                config.setValue(BluetoothGattDescriptor.ENABLE_NOTIFICATION_VALUE);
+                gatt.writeDescriptor(config);
+            }
+        }
+
+        @Override
+        public void onDescriptorWrite(BluetoothGatt gatt, BluetoothGattDescriptor descriptor, int status) {
+            if (status == BluetoothGatt.GATT_SUCCESS) {
+                ready.countDown();
+            } else {
+                failOpen("Enabling notifications failed, status " + status);
+            }
+        }
+
+        @Override
+        public void onCharacteristicChanged(@NonNull BluetoothGatt gatt,
+                                            @NonNull BluetoothGattCharacteristic characteristic,
+                                            @NonNull byte[] value) {
+            receiver.onReceived(value, 0, value.length);
+        }
+
+        @Override
+        @SuppressWarnings("deprecation")
+        public void onCharacteristicChanged(BluetoothGatt gatt, BluetoothGattCharacteristic characteristic) {
+            // Only called before Android 13, which has no value parameter
+            if (Build.VERSION.SDK_INT < Build.VERSION_CODES.TIRAMISU) {
+                byte[] value = characteristic.getValue();
+                receiver.onReceived(value, 0, value.length);
+            }
+        }
+
+        @Override
+        public void onCharacteristicWrite(BluetoothGatt gatt, BluetoothGattCharacteristic characteristic, int status) {
+            lastWriteSucceeded = status == BluetoothGatt.GATT_SUCCESS;
+            writeDone.release();
+        }
+    };
+
+    private final OutputStream outputStream = new OutputStream() {
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            int chunkSize = mtu - ATT_OVERHEAD;
+            for (int start = off; start < off + len; start += chunkSize) {
+                int end = Math.min(start + chunkSize, off + len);
+                byte[] chunk = new byte[end - start];
+                System.arraycopy(b, start, chunk, 0, chunk.length);
+                writeChunk(chunk);
+            }
+        }
+    };
+
+    /**
+     * Writes one characteristic value and waits for the stack to acknowledge it; GATT
+     * allows only one outstanding operation.
+     */
+    @SuppressWarnings("deprecation")
+    private void writeChunk(byte[] chunk) throws IOException {
+        BluetoothGatt gatt = this.gatt;
+        BluetoothGattCharacteristic rx = this.rxCharacteristic;
+        if (!open || gatt == null || rx == null) {
+            throw new IOException("Transport is not open");
+        }
+        writeDone.drainPermits();
+        boolean started;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU) {
+            started = gatt.writeCharacteristic(rx, chunk, BluetoothGattCharacteristic.WRITE_TYPE_DEFAULT)
+                    == BluetoothGatt.GATT_SUCCESS;
+        } else {
+            rx.setValue(chunk);
+            rx.setWriteType(BluetoothGattCharacteristic.WRITE_TYPE_DEFAULT);
+            started = gatt.writeCharacteristic(rx);
+        }
+        if (!started) {
+            throw new IOException("Characteristic write rejected");
+        }
+        try {
+            if (!writeDone.tryAcquire(WRITE_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                throw new IOException("Characteristic write timed out");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted during write");
+        }
+        if (!lastWriteSucceeded) {
+            throw new IOException("Characteristic write failed");
+        }
+    }
+
+    @Override
+    public OutputStream getOutputStream() {
+        return outputStream;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return open;
+    }
+
+    @Override
+    public void close() {
+        open = false;
+        BluetoothGatt gatt = this.gatt;
+        this.gatt = null;
+        if (gatt != null) {
+            gatt.disconnect();
+            gatt.close();
+        }
+    }
+}
@@ -0,0 +1,261 @@
+package com.dianerverotect.bluetooth;
+
+import android.util.Log;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Single writer for the bracelet link. Every outgoing command goes through one bounded
+ * queue and one thread, so commands are written in the order they were sent, and commands
+ * that are queued together are coalesced into a single write.
+ *
+ * Commands sent with {@link #send(String, long, ResponseCallback)} are tagged
+ * {@code @<id> <command>} and the bracelet echoes the tag on its reply line,
+ * {@code @<id> <payload>}, so several requests (start capture, set gain, query battery)
+ * can be in flight at once. Each one fails on its own if no reply arrives within its
+ * timeout.
+ */
+public class BluetoothCommandQueue {
+    private static final String TAG = "BluetoothCommandQueue";
+
+    private static final int QUEUE_CAPACITY = 64;
+    // Upper bound for one coalesced write; the SPP/RFCOMM frame size on most stacks
+    private static final int MAX_WRITE_BYTES = 512;
+    private static final int MAX_COMMAND_ID = 9999;
+    private static final long IDLE_POLL_MS = 1000;
+
+    /**
+     * Receives the reply to one tagged command, on the callback executor.
+     */
+    public interface ResponseCallback {
+        void onResponse(String payload);
+
+        void onFailure(String reason);
+    }
+
+    private final OutputStream outputStream;
+    private final Executor callbackExecutor;
+    private final BlockingQueue<Command> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final Map<Integer, Command> pending = new ConcurrentHashMap<>();
+    private final AtomicInteger nextId = new AtomicInteger();
+    private final Thread writerThread;
+    private volatile boolean closed;
+
+    public BluetoothCommandQueue(OutputStream outputStream, Executor callbackExecutor) {
+        this.outputStream = outputStream;
+        this.callbackExecutor = callbackExecutor;
+        this.writerThread = new Thread(this::writeLoop, "bt-writer");
+        this.writerThread.start();
+    }
+
+    /**
+     * Queues raw text that expects no reply, written exactly as given. Returns false if the
+     * queue is full or closed.
+     */
+    public boolean send(String message) {
+        return enqueue(new Command(0, message, 0, null));
+    }
+
+    /**
+     * Queues a tagged command and calls back with the matching reply, or with a failure if
+     * the queue is full, the write fails or no reply arrives within timeoutMs.
+     */
+    public void send(String command, long timeoutMs, ResponseCallback callback) {
+        int id = nextId.updateAndGet(current -> current >= MAX_COMMAND_ID ? 1 : current + 1);
+        Command tagged = new Command(id, "@" + id + " " + command + "\n", timeoutMs, callback);
+        if (!enqueue(tagged)) {
+            fail(tagged, closed ? "Connection closed" : "Command queue full");
+        }
+    }
+
+    private boolean enqueue(Command command) {
+        if (closed || !queue.offer(command)) {
+            Log.e(TAG, "Dropping command, queue " + (closed ? "closed" : "full"));
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Offers one received line to the queue. Returns true if it was the reply to a pending
+     * command, false if it is ordinary device data.
+     */
+    public boolean onLineReceived(String line) {
+        if (!line.startsWith("@")) {
+            return false;
+        }
+        int space = line.indexOf(' ');
+        int id;
+        try {
+            id = Integer.parseInt(space < 0 ? line.substring(1) : line.substring(1, space));
+        } catch (NumberFormatException e) {
+            return false;
+        }
+        Command command = pending.remove(id);
+        if (command == null) {
+            Log.d(TAG, "Reply for unknown or expired command @" + id);
+            return true;
+        }
+        String payload = space < 0 ? "" : line.substring(space + 1);
+        callbackExecutor.execute(() -> command.callback.onResponse(payload));
+        return true;
+    }
+
+    /**
+     * Stops the writer and fails every queued or pending command.
+     */
+    public void close() {
+        closed = true;
+        writerThread.interrupt();
+        List<Command> unsent = new ArrayList<>();
+        queue.drainTo(unsent);
+        for (Command command : unsent) {
+            fail(command, "Connection closed");
+        }
+        failPending();
+    }
+
+    /**
+     * Fails every pending command. Called by close() and again by the writer when it stops,
+     * for commands it had already taken from the queue and made pending after close().
+     */
+    private void failPending() {
+        for (Integer id : pending.keySet()) {
+            Command command = pending.remove(id);
+            if (command != null) {
+                fail(command, "Connection closed");
+            }
+        }
+    }
+
+    private void writeLoop() {
+        List<Command> batch = new ArrayList<>();
+        byte[] buffer = new byte[MAX_WRITE_BYTES];
+        while (!closed) {
+            try {
+                Command first = queue.poll(nextTimeoutMs(), TimeUnit.MILLISECONDS);
+                expireTimedOut();
+                if (first == null) {
+                    continue;
+                }
+
+                // Coalesce whatever else is already queued, up to one write's worth
+                batch.clear();
+                batch.add(first);
+                int length = first.bytes.length;
+                Command next;
+                while ((next = queue.peek()) != null && length + next.bytes.length <= MAX_WRITE_BYTES) {
+                    batch.add(queue.poll());
+                    length += next.bytes.length;
+                }
+
+                write(batch, buffer);
+            } catch (InterruptedException e) {
+                break;
+            }
+        }
+        failPending();
+        Log.d(TAG, "Writer stopped");
+    }
+
+    private void write(List<Command> batch, byte[] buffer) {
+        long now = System.nanoTime();
+        int offset = 0;
+        // Commands copied into the buffer since its last flush, the only ones a failed
+        // write of the buffer may fail
+        List<Command> buffered = new ArrayList<>(batch.size());
+        for (Command command : batch) {
+            if (command.callback != null) {
+                command.deadline = now + TimeUnit.MILLISECONDS.toNanos(command.timeoutMs);
+                pending.put(command.id, command);
+            }
+            if (command.bytes.length > buffer.length) {
+                // A single oversized command is written on its own
+                offset = flush(buffer, offset, buffered);
+                // Already written, a later failed write must not fail them
+                buffered.clear();
+                flush(command.bytes, command.bytes.length, Collections.singletonList(command));
+                continue;
+            }
+            System.arraycopy(command.bytes, 0, buffer, offset, command.bytes.length);
+            offset += command.bytes.length;
+            buffered.add(command);
+        }
+        flush(buffer, offset, buffered);
+    }
+
+    /**
+     * Writes the bytes of the given commands, failing those still pending if the write fails.
+     */
+    private int flush(byte[] bytes, int length, List<Command> commands) {
+        if (length == 0) {
+            return 0;
+        }
+        try {
+            outputStream.write(bytes, 0, length);
+            outputStream.flush();
+        } catch (IOException e) {
+            Log.e(TAG, "Write failed", e);
+            for (Command command : commands) {
+                if (command.callback != null && pending.remove(command.id) != null) {
+                    fail(command, "Write failed: " + e.getMessage());
+                }
+            }
+        }
+        return 0;
+    }
+
+    private long nextTimeoutMs() {
+        long now = System.nanoTime();
+        long wait = TimeUnit.MILLISECONDS.toNanos(IDLE_POLL_MS);
+        for (Command command : pending.values()) {
+            wait = Math.min(wait, command.deadline - now);
+        }
+        // Rounded up, so the poll does not wake just before the deadline
+        return Math.max(TimeUnit.NANOSECONDS.toMillis(wait + 999_999), 0);
+    }
+
+    private void expireTimedOut() {
+        long now = System.nanoTime();
+        for (Command command : pending.values()) {
+            if (command.deadline - now <= 0 && pending.remove(command.id, command)) {
+                Log.d(TAG, "Command @" + command.id + " timed out after " + command.timeoutMs + " ms");
+                fail(command, "Timed out");
+            }
+        }
+    }
+
+    private void fail(Command command, String reason) {
+        if (command.callback != null) {
+            callbackExecutor.execute(() -> command.callback.onFailure(reason));
+        }
+    }
+
+    private static class Command {
+        final int id;
+        final byte[] bytes;
+        final long timeoutMs;
+        final ResponseCallback callback;
+        // System.nanoTime() by which the reply must arrive
+        volatile long deadline;
+
+        Command(int id, String text, long timeoutMs, ResponseCallback callback) {
+            this.id = id;
+            this.bytes = text.getBytes(StandardCharsets.UTF_8);
+            this.timeoutMs = timeoutMs;
+            this.callback = callback;
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.dianerverotect.bluetooth;
+
+import com.dianerverotect.metrics.Counter;
+import com.dianerverotect.metrics.MetricsRegistry;
+
+/**
+ * Merges the aligned sample streams of several devices into one multi-channel stream at
+ * a common rate, e.g. left and right forearm for a bilateral test. A frame is emitted
+ * only once every channel has data at its timestamp; each channel is linearly
+ * interpolated at that instant.
+ */
+public class ChannelMerger {
+
+    private static final Counter SKIPPED_FRAMES = MetricsRegistry.getShared().counter("bt.skipped_frames");
+
+    public interface Listener {
+        /**
+         * One frame, one value per channel in the merger's channel order. The array is
+         * reused after the call returns.
+         */
+        void onFrame(long timestampNanos, float[] channels);
+    }
+
+    private final SampleRingBuffer[] channels;
+    private final long periodNanos;
+    private final float[] frame;
+    private long nextFrameNanos = Long.MIN_VALUE;
+    private long skippedFrames;
+
+    public ChannelMerger(SampleRingBuffer[] channels, float outputRateHz) {
+        if (channels.length == 0) {
+            throw new IllegalArgumentException("At least one channel is required");
+        }
+        this.channels = channels.clone();
+        this.periodNanos = Math.round(1e9 / outputRateHz);
+        this.frame = new float[channels.length];
+    }
+
+    /**
+     * Starts output at the given time instead of the oldest buffered sample, e.g. the
+     * start of a capture.
+     */
+    public void startAt(long timestampNanos) {
+        nextFrameNanos = timestampNanos;
+    }
+
+    public int getChannelCount() {
+        return channels.length;
+    }
+
+    /**
+     * Emits every frame that all channels now cover and returns how many were emitted.
+     * Call periodically from the consuming thread.
+     */
+    public int drain(Listener listener) {
+        long start = Long.MIN_VALUE;
+        long end = Long.MAX_VALUE;
+        for (SampleRingBuffer channel : channels) {
+            if (channel.size() == 0) {
+                return 0;
+            }
+            start = Math.max(start, channel.getOldestTimestamp());
+            end = Math.min(end, channel.getLatestTimestamp());
+        }
+
+        if (nextFrameNanos == Long.MIN_VALUE) {
+            nextFrameNanos = start;
+        } else if (nextFrameNanos < start) {
+            // The consumer fell behind a full buffer; those frames are gone
+            long skipped = (start - nextFrameNanos + periodNanos - 1) / periodNanos;
+            skippedFrames += skipped;
+            SKIPPED_FRAMES.add(skipped);
+            nextFrameNanos += skipped * periodNanos;
+        }
+
+        int frames = 0;
+        while (nextFrameNanos <= end) {
+            for (int c = 0; c < channels.length; c++) {
+                frame[c] = channels[c].valueAt(nextFrameNanos);
+            }
+            listener.onFrame(nextFrameNanos, frame);
+            nextFrameNanos += periodNanos;
+            frames++;
+        }
+        return frames;
+    }
+
+    public long getSkippedFrameCount() {
+        return skippedFrames;
+    }
+}
@@ -0,0 +1,83 @@
+package com.dianerverotect.bluetooth;
+
+/**
+ * Puts one device's samples on the phone's monotonic clock (System.nanoTime) so that
+ * streams from several bracelets can be merged.
+ *
+ * The bracelet samples at a fixed rate, so sample n was taken at start + n * period; only
+ * start is unknown. Every batch gives one observation arrival - n * period, which is the
+ * true start plus that batch's transmission delay. Delays are only ever positive, so the
+ * minimum over a sliding window of a few seconds is the best estimate of start. The window
+ * keeps the estimate following slow crystal drift between the bracelet and the phone.
+ */
+public class ClockAligner {
+
+    // History kept for the minimum-delay estimate, in one second buckets
+    private static final int WINDOW_SECONDS = 8;
+
+    private final double periodNanos;
+    private final long samplesPerBucket;
+    private final long[] bucketId = new long[WINDOW_SECONDS];
+    private final long[] bucketMinOffset = new long[WINDOW_SECONDS];
+    private long nextIndex;
+    private long lastTimestamp = Long.MIN_VALUE;
+
+    public ClockAligner(float sampleRateHz) {
+        if (sampleRateHz <= 0) {
+            throw new IllegalArgumentException("Sample rate must be positive: " + sampleRateHz);
+        }
+        periodNanos = 1e9 / sampleRateHz;
+        samplesPerBucket = Math.max(1, Math.round(sampleRateHz));
+        reset();
+    }
+
+    /**
+     * Records a batch of count samples whose last sample arrived at arrivalNanos, and
+     * returns the aligned timestamp of the batch's first sample. Later samples follow at
+     * {@link #getPeriodNanos()} intervals.
+     */
+    public synchronized long onBatch(int count, long arrivalNanos) {
+        long lastIndex = nextIndex + count - 1;
+        long offset = arrivalNanos - Math.round(lastIndex * periodNanos);
+
+        long id = lastIndex / samplesPerBucket;
+        int slot = (int) (id % WINDOW_SECONDS);
+        if (bucketId[slot] != id) {
+            bucketId[slot] = id;
+            bucketMinOffset[slot] = offset;
+        } else if (offset < bucketMinOffset[slot]) {
+            bucketMinOffset[slot] = offset;
+        }
+
+        long start = Long.MAX_VALUE;
+        for (int i = 0; i < WINDOW_SECONDS; i++) {
+            if (bucketId[i] > id - WINDOW_SECONDS) {
+                start = Math.min(start, bucketMinOffset[i]);
+            }
+        }
+
+        long first = start + Math.round(nextIndex * periodNanos);
+        // A rising estimate must not move time backwards
+        if (first <= lastTimestamp) {
+            first = lastTimestamp + 1;
+        }
+        lastTimestamp = first + Math.round((count - 1) * periodNanos);
+        nextIndex += count;
+        return first;
+    }
+
+    public double getPeriodNanos() {
+        return periodNanos;
+    }
+
+    /**
+     * Forgets the estimate, e.g. after a reconnect restarted the bracelet's sample counter.
+     * Timestamps stay increasing across the reset.
+     */
+    public synchronized void reset() {
+        nextIndex = 0;
+        for (int i = 0; i < WINDOW_SECONDS; i++) {
+            bucketId[i] = Long.MIN_VALUE;
+        }
+    }
+}
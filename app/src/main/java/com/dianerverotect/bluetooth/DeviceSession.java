@@ -0,0 +1,141 @@
+package com.dianerverotect.bluetooth;
+
+import com.dianerverotect.metrics.Meter;
+import com.dianerverotect.metrics.MetricsRegistry;
+import com.dianerverotect.metrics.Tracing;
+
+import java.io.IOException;
+import java.util.concurrent.Executor;
+
+/**
+ * One bracelet in a (possibly multi-device) acquisition: its transport, framer and
+ * command queue for the current connection, plus a ring buffer of aligned samples and a
+ * clock aligner that outlive reconnects.
+ */
+public class DeviceSession {
+
+    private static final Meter BYTES_RECEIVED = MetricsRegistry.getShared().meter("bt.bytes_received");
+
+    /**
+     * Session events, called on the transport's thread.
+     */
+    public interface Listener {
+        void onSamples(DeviceSession session, float[] samples, int count);
+
+        void onLine(DeviceSession session, String line);
+
+        void onClosed(DeviceSession session, IOException cause);
+    }
+
+    private final String name;
+    private final int channel;
+    private final SampleRingBuffer buffer;
+    private final ClockAligner clock;
+    private final Listener listener;
+    private volatile Transport transport;
+    private volatile BluetoothCommandQueue commandQueue;
+
+    public DeviceSession(String name, int channel, float sampleRateHz, int bufferCapacity, Listener listener) {
+        this.name = name;
+        this.channel = channel;
+        this.buffer = new SampleRingBuffer(bufferCapacity);
+        this.clock = new ClockAligner(sampleRateHz);
+        this.listener = listener;
+    }
+
+    /**
+     * Opens the transport, blocking until it is ready. Command replies are delivered on
+     * callbackExecutor.
+     */
+    public void open(Transport transport, Executor callbackExecutor) throws IOException {
+        close();
+        // A new connection restarts the bracelet's sample counter
+        clock.reset();
+        SampleFramer framer = new SampleFramer(new SampleFramer.Listener() {
+            @Override
+            public void onSamples(float[] samples, int count) {
+                long first = clock.onBatch(count, System.nanoTime());
+                double period = clock.getPeriodNanos();
+                for (int i = 0; i < count; i++) {
+                    buffer.add(first + Math.round(i * period), samples[i]);
+                }
+                listener.onSamples(DeviceSession.this, samples, count);
+            }
+
+            @Override
+            public void onLine(String line) {
+                BluetoothCommandQueue queue = commandQueue;
+                if (queue != null && queue.onLineReceived(line)) {
+                    return;
+                }
+                listener.onLine(DeviceSession.this, line);
+            }
+        });
+
+        transport.open(new Transport.Receiver() {
+            @Override
+            public void onReceived(byte[] data, int offset, int length) {
+                BYTES_RECEIVED.mark(length);
+                boolean traced = Tracing.begin("bt.read");
+                try {
+                    framer.accept(data, offset, length);
+                } finally {
+                    Tracing.end(traced);
+                }
+            }
+
+            @Override
+            public void onClosed(IOException cause) {
+                if (DeviceSession.this.transport == transport) {
+                    close();
+                    listener.onClosed(DeviceSession.this, cause);
+                }
+            }
+        });
+        this.transport = transport;
+        this.commandQueue = new BluetoothCommandQueue(transport.getOutputStream(), callbackExecutor);
+    }
+
+    public boolean isOpen() {
+        Transport transport = this.transport;
+        return transport != null && transport.isOpen();
+    }
+
+    /**
+     * Closes the current connection; buffered samples are kept.
+     */
+    public void close() {
+        BluetoothCommandQueue queue = this.commandQueue;
+        this.commandQueue = null;
+        if (queue != null) {
+            queue.close();
+        }
+        Transport transport = this.transport;
+        this.transport = null;
+        if (transport != null) {
+            transport.close();
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Position of this device in merged multi-channel frames.
+     */
+    public int getChannel() {
+        return channel;
+    }
+
+    public SampleRingBuffer getBuffer() {
+        return buffer;
+    }
+
+    /**
+     * Queue for the current connection, or null while disconnected.
+     */
+    public BluetoothCommandQueue getCommandQueue() {
+        return commandQueue;
+    }
+}
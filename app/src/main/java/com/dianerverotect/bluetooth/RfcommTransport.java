@@ -0,0 +1,102 @@
+package com.dianerverotect.bluetooth;
+
+import android.annotation.SuppressLint;
+import android.bluetooth.BluetoothAdapter;
+import android.bluetooth.BluetoothDevice;
+import android.bluetooth.BluetoothSocket;
+import android.util.Log;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.UUID;
+
+/**
+ * Classic Bluetooth serial port (SPP) link over an RFCOMM socket.
+ */
+@SuppressLint("MissingPermission") // BluetoothManager checks BLUETOOTH_CONNECT before connecting
+public class RfcommTransport implements Transport {
+    private static final String TAG = "RfcommTransport";
+    private static final UUID SERIAL_UUID = UUID.fromString("00001101-0000-1000-8000-00805F9B34FB");
+
+    private final BluetoothAdapter adapter;
+    private final BluetoothDevice device;
+    private volatile BluetoothSocket socket;
+    private Thread readerThread;
+
+    public RfcommTransport(BluetoothAdapter adapter, BluetoothDevice device) {
+        this.adapter = adapter;
+        this.device = device;
+    }
+
+    @Override
+    public void open(Receiver receiver) throws IOException {
+        BluetoothSocket socket = device.createRfcommSocketToServiceRecord(SERIAL_UUID);
+        if (adapter.isDiscovering()) {
+            adapter.cancelDiscovery();
+        }
+        try {
+            socket.connect();
+        } catch (IOException e) {
+            closeQuietly(socket);
+            throw e;
+        }
+        this.socket = socket;
+
+        InputStream inputStream = socket.getInputStream();
+        readerThread = new Thread(() -> readLoop(socket, inputStream, receiver), "rfcomm-reader");
+        readerThread.start();
+    }
+
+    private void readLoop(BluetoothSocket socket, InputStream inputStream, Receiver receiver) {
+        byte[] buffer = new byte[1024];
+        try {
+            while (true) {
+                // Blocks until data arrives or the socket is closed
+                int bytes = inputStream.read(buffer);
+                if (bytes < 0) {
+                    throw new IOException("Stream closed by device");
+                }
+                receiver.onReceived(buffer, 0, bytes);
+            }
+        } catch (IOException e) {
+            if (this.socket == socket) {
+                Log.e(TAG, "Error reading data", e);
+                close();
+                receiver.onClosed(e);
+            }
+        }
+    }
+
+    @Override
+    public OutputStream getOutputStream() throws IOException {
+        BluetoothSocket socket = this.socket;
+        if (socket == null) {
+            throw new IOException("Transport is not open");
+        }
+        return socket.getOutputStream();
+    }
+
+    @Override
+    public boolean isOpen() {
+        BluetoothSocket socket = this.socket;
+        return socket != null && socket.isConnected();
+    }
+
+    @Override
+    public void close() {
+        BluetoothSocket socket = this.socket;
+        this.socket = null;
+        if (socket != null) {
+            closeQuietly(socket);
+        }
+    }
+
+    private static void closeQuietly(BluetoothSocket socket) {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            Log.e(TAG, "Error closing socket", e);
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package com.dianerverotect.bluetooth;
+
+import com.dianerverotect.metrics.Counter;
+import com.dianerverotect.metrics.MetricsRegistry;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Turns the bracelet's byte stream into samples and text lines, whatever transport it
+ * arrived on and however it was split into packets or notifications.
+ *
+ * The stream is newline-delimited. A line of comma-separated numbers is one batch of
+ * samples (BLE bracelets pack several samples into one notification this way); any other
+ * line, such as a tagged command reply or a status message, is passed on as text. Sample
+ * lines are parsed straight from the bytes without allocating.
+ */
+public class SampleFramer {
+
+    public interface Listener {
+        /**
+         * One line's worth of samples. The array is reused after the call returns.
+         */
+        void onSamples(float[] samples, int count);
+
+        void onLine(String line);
+    }
+
+    private static final Counter DROPPED_LINES = MetricsRegistry.getShared().counter("bt.dropped_lines");
+
+    // Longer lines are corrupt (e.g. a lost newline); they are dropped to resynchronise
+    static final int MAX_LINE_BYTES = 512;
+    static final int MAX_SAMPLES_PER_LINE = 128;
+
+    private final Listener listener;
+    private final byte[] line = new byte[MAX_LINE_BYTES];
+    private final float[] samples = new float[MAX_SAMPLES_PER_LINE];
+    private int lineLength;
+    private boolean discarding;
+    private long droppedLines;
+
+    public SampleFramer(Listener listener) {
+        this.listener = listener;
+    }
+
+    public void accept(byte[] data, int offset, int length) {
+        int end = offset + length;
+        for (int i = offset; i < end; i++) {
+            byte b = data[i];
+            if (b == '\n') {
+                if (!discarding) {
+                    dispatchLine();
+                }
+                lineLength = 0;
+                discarding = false;
+            } else if (b == '\r' || discarding) {
+                // Skip carriage returns and the rest of an overlong line
+            } else if (lineLength == line.length) {
+                discarding = true;
+                droppedLines++;
+                DROPPED_LINES.increment();
+            } else {
+                line[lineLength++] = b;
+            }
+        }
+    }
+
+    /**
+     * Drops any partial line, e.g. after the link was re-established.
+     */
+    public void reset() {
+        lineLength = 0;
+        discarding = false;
+    }
+
+    public long getDroppedLineCount() {
+        return droppedLines;
+    }
+
+    private void dispatchLine() {
+        int start = 0;
+        int end = lineLength;
+        while (start < end && line[start] == ' ') start++;
+        while (end > start && line[end - 1] == ' ') end--;
+        if (start == end) {
+            return;
+        }
+        int count = parseSamples(start, end);
+        if (count > 0) {
+            listener.onSamples(samples, count);
+        } else {
+            listener.onLine(new String(line, start, end - start, StandardCharsets.UTF_8));
+        }
+    }
+
+    /**
+     * Parses "v1,v2,..." with optional sign, fraction and spaces. Returns the number of
+     * samples, or 0 if the line is not a sample line.
+     */
+    private int parseSamples(int start, int end) {
+        int count = 0;
+        int i = start;
+        while (i < end) {
+            while (i < end && line[i] == ' ') i++;
+            boolean negative = false;
+            if (i < end && (line[i] == '-' || line[i] == '+')) {
+                negative = line[i] == '-';
+                i++;
+            }
+            long mantissa = 0;
+            int digits = 0;
+            int fractionDigits = 0;
+            boolean fraction = false;
+            for (; i < end; i++) {
+                byte b = line[i];
+                if (b >= '0' && b <= '9') {
+                    // Beyond 18 digits the extra precision is meaningless for EMG values
+                    if (digits < 18) {
+                        mantissa = mantissa * 10 + (b - '0');
+                        digits++;
+                        if (fraction) fractionDigits++;
+                    }
+                } else if (b == '.' && !fraction) {
+                    fraction = true;
+                } else {
+                    break;
+                }
+            }
+            if (digits == 0 || count == samples.length) {
+                return 0;
+            }
+            double value = mantissa;
+            for (int f = 0; f < fractionDigits; f++) {
+                value /= 10;
+            }
+            samples[count++] = (float) (negative ? -value : value);
+
+            while (i < end && line[i] == ' ') i++;
+            if (i < end) {
+                if (line[i] != ',') {
+                    return 0;
+                }
+                i++;
+                if (i == end) {
+                    return 0;
+                }
+            }
+        }
+        return count;
+    }
+}
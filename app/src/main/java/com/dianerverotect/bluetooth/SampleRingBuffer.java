@@ -0,0 +1,101 @@
+package com.dianerverotect.bluetooth;
+
+import java.util.Arrays;
+
+/**
+ * Fixed-capacity ring of timestamped samples for one device. The transport thread appends,
+ * while the acquisition side reads and interpolates; once full the oldest samples are
+ * overwritten. Timestamps must be added in increasing order.
+ */
+public class SampleRingBuffer {
+
+    private final long[] timestamps;
+    private final float[] values;
+    private int head; // next write position
+    private int size;
+
+    public SampleRingBuffer(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        timestamps = new long[capacity];
+        values = new float[capacity];
+    }
+
+    public synchronized void add(long timestampNanos, float value) {
+        timestamps[head] = timestampNanos;
+        values[head] = value;
+        head = (head + 1) % timestamps.length;
+        if (size < timestamps.length) {
+            size++;
+        }
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    public int capacity() {
+        return timestamps.length;
+    }
+
+    public synchronized long getOldestTimestamp() {
+        return size == 0 ? Long.MIN_VALUE : timestamps[physical(0)];
+    }
+
+    public synchronized long getLatestTimestamp() {
+        return size == 0 ? Long.MIN_VALUE : timestamps[physical(size - 1)];
+    }
+
+    /**
+     * Value at the given time, linearly interpolated between the neighbouring samples, or
+     * NaN if the time is outside the buffered range.
+     */
+    public synchronized float valueAt(long timestampNanos) {
+        if (size == 0 || timestampNanos < timestamps[physical(0)]
+                || timestampNanos > timestamps[physical(size - 1)]) {
+            return Float.NaN;
+        }
+        // Last sample at or before the requested time
+        int low = 0;
+        int high = size - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (timestamps[physical(mid)] <= timestampNanos) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        int before = physical(low);
+        if (timestamps[before] == timestampNanos || low == size - 1) {
+            return values[before];
+        }
+        int after = physical(low + 1);
+        float fraction = (timestampNanos - timestamps[before])
+                / (float) (timestamps[after] - timestamps[before]);
+        return values[before] + fraction * (values[after] - values[before]);
+    }
+
+    /**
+     * Copies up to out.length of the most recent values, oldest first. Returns the count.
+     */
+    public synchronized int copyLatest(float[] out) {
+        int count = Math.min(out.length, size);
+        for (int i = 0; i < count; i++) {
+            out[i] = values[physical(size - count + i)];
+        }
+        return count;
+    }
+
+    public synchronized void clear() {
+        head = 0;
+        size = 0;
+        Arrays.fill(values, 0f);
+    }
+
+    private int physical(int logical) {
+        int index = head - size + logical;
+        return index < 0 ? index + timestamps.length : index;
+    }
+}
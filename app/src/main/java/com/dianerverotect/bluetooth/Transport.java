@@ -0,0 +1,38 @@
+package com.dianerverotect.bluetooth;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * A byte link to the EMG bracelet. Classic bracelets use {@link RfcommTransport}, BLE-only
+ * bracelets use {@link BleGattTransport}; both deliver raw bytes that BluetoothManager
+ * runs through the same {@link SampleFramer}. Local unit tests use an in-memory
+ * FakeTransport instead.
+ */
+public interface Transport {
+
+    /**
+     * Receives incoming bytes and link loss, on the transport's own thread.
+     */
+    interface Receiver {
+        void onReceived(byte[] data, int offset, int length);
+
+        void onClosed(IOException cause);
+    }
+
+    /**
+     * Opens the link and blocks until it is ready to carry data. Call from a background
+     * thread.
+     */
+    void open(Receiver receiver) throws IOException;
+
+    /**
+     * Stream for outgoing bytes. Writes may block, so only BluetoothCommandQueue's writer
+     * thread should use it.
+     */
+    OutputStream getOutputStream() throws IOException;
+
+    boolean isOpen();
+
+    void close();
+}
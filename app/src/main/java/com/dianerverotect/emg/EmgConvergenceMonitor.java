@@ -0,0 +1,221 @@
+package com.dianerverotect.emg;
+
+/**
+ * Tracks the stability of streaming EMG features and of the provisional model score
+ * so an acquisition can stop as soon as its estimates have converged.
+ *
+ * Samples are grouped into fixed-size blocks. For every completed block the mean,
+ * standard deviation and crossing rate are computed, and the running mean/variance of
+ * those block features is maintained with Welford's algorithm. The capture is
+ * considered converged when the 95% confidence interval of every feature (and of the
+ * provisional score) is narrower than the configured tolerance. The block mean is judged
+ * relative to at least the signal's standard deviation, so a signal centred on zero
+ * still converges.
+ */
+public class EmgConvergenceMonitor {
+
+    private static final float Z_95 = 1.96f;
+    private static final int FEATURE_COUNT = 3;
+    private static final int FEATURE_MEAN = 0;
+    private static final int FEATURE_STD_DEV = 1;
+    private static final int FEATURE_CROSSING_RATE = 2;
+
+    /**
+     * Tuning for the early-termination rule.
+     */
+    public static class Config {
+        public final long minDurationMs;
+        public final long maxDurationMs;
+        /**
+         * Maximum CI half-width of a block feature, relative to its mean; for the block mean,
+         * relative to at least the mean block standard deviation.
+         */
+        public final float featureTolerance;
+        /** Maximum CI half-width of the provisional score (absolute, score is 0..1). */
+        public final float scoreTolerance;
+        /** Number of samples per feature block. */
+        public final int blockSize;
+        /** Minimum number of blocks / scores before convergence is evaluated. */
+        public final int minObservations;
+
+        public Config(long minDurationMs, long maxDurationMs, float featureTolerance,
+                      float scoreTolerance, int blockSize, int minObservations) {
+            if (minDurationMs < 0 || maxDurationMs < minDurationMs) {
+                throw new IllegalArgumentException("Invalid duration bounds: min=" + minDurationMs
+                        + ", max=" + maxDurationMs);
+            }
+            if (blockSize < 2 || minObservations < 2) {
+                throw new IllegalArgumentException("blockSize and minObservations must be >= 2");
+            }
+            this.minDurationMs = minDurationMs;
+            this.maxDurationMs = maxDurationMs;
+            this.featureTolerance = featureTolerance;
+            this.scoreTolerance = scoreTolerance;
+            this.blockSize = blockSize;
+            this.minObservations = minObservations;
+        }
+
+        /**
+         * Defaults tuned for a 20 second screening: one second blocks, never stop before
+         * 5 s, 10% relative feature tolerance and a score interval of +/- 0.03.
+         */
+        public static Config defaults(int sampleRateHz) {
+            return new Config(5000, 20000, 0.10f, 0.03f, Math.max(2, sampleRateHz), 4);
+        }
+    }
+
+    /**
+     * Why the monitor asked the capture to stop.
+     */
+    public enum StopReason {
+        NONE, CONVERGED, MAX_DURATION
+    }
+
+    private final Config config;
+
+    // Current block accumulators
+    private int blockCount;
+    private double blockSum;
+    private double blockSumSquares;
+    private int blockCrossings;
+    private float previousSample;
+    private final float[] blockFeatures = new float[FEATURE_COUNT];
+
+    // Welford accumulators across blocks, one per feature
+    private int blocks;
+    private final double[] featureMean = new double[FEATURE_COUNT];
+    private final double[] featureM2 = new double[FEATURE_COUNT];
+
+    // Welford accumulator for the provisional score
+    private int scores;
+    private double scoreMean;
+    private double scoreM2;
+
+    public EmgConvergenceMonitor(Config config) {
+        this.config = config;
+    }
+
+    public Config getConfig() {
+        return config;
+    }
+
+    /**
+     * Adds one raw EMG sample. O(1); block features are folded in when a block completes.
+     */
+    public void addSample(float value) {
+        if (blockCount > 0) {
+            // Crossings are counted around the running block mean
+            float runningMean = (float) (blockSum / blockCount);
+            if ((previousSample < runningMean && value >= runningMean)
+                    || (previousSample >= runningMean && value < runningMean)) {
+                blockCrossings++;
+            }
+        }
+        previousSample = value;
+        blockSum += value;
+        blockSumSquares += (double) value * value;
+        blockCount++;
+
+        if (blockCount == config.blockSize) {
+            double mean = blockSum / blockCount;
+            double variance = Math.max(0.0, blockSumSquares / blockCount - mean * mean);
+            blockFeatures[FEATURE_MEAN] = (float) mean;
+            blockFeatures[FEATURE_STD_DEV] = (float) Math.sqrt(variance);
+            blockFeatures[FEATURE_CROSSING_RATE] = blockCrossings / (float) blockCount;
+            addBlock(blockFeatures);
+
+            blockCount = 0;
+            blockSum = 0;
+            blockSumSquares = 0;
+            blockCrossings = 0;
+        }
+    }
+
+    private void addBlock(float[] features) {
+        blocks++;
+        for (int i = 0; i < FEATURE_COUNT; i++) {
+            double delta = features[i] - featureMean[i];
+            featureMean[i] += delta / blocks;
+            featureM2[i] += delta * (features[i] - featureMean[i]);
+        }
+    }
+
+    /**
+     * Adds a provisional model score computed on the samples captured so far.
+     */
+    public void addProvisionalScore(float score) {
+        scores++;
+        double delta = score - scoreMean;
+        scoreMean += delta / scores;
+        scoreM2 += delta * (score - scoreMean);
+    }
+
+    /**
+     * Returns true once every tracked feature and the provisional score are within tolerance.
+     */
+    public boolean isConverged() {
+        if (blocks < config.minObservations || scores < config.minObservations) {
+            return false;
+        }
+        for (int i = 0; i < FEATURE_COUNT; i++) {
+            double floor = i == FEATURE_MEAN ? featureMean[FEATURE_STD_DEV] : 1e-3;
+            double reference = Math.max(Math.abs(featureMean[i]), floor);
+            if (halfWidth(featureM2[i], blocks) > config.featureTolerance * reference) {
+                return false;
+            }
+        }
+        return halfWidth(scoreM2, scores) <= config.scoreTolerance;
+    }
+
+    /**
+     * Decides whether the capture should end at the given elapsed time.
+     */
+    public StopReason shouldStop(long elapsedMs) {
+        if (elapsedMs >= config.maxDurationMs) {
+            return StopReason.MAX_DURATION;
+        }
+        if (elapsedMs >= config.minDurationMs && isConverged()) {
+            return StopReason.CONVERGED;
+        }
+        return StopReason.NONE;
+    }
+
+    /**
+     * 95% confidence interval half-width of the provisional score, or NaN if unknown.
+     */
+    public float getScoreHalfWidth() {
+        return scores < 2 ? Float.NaN : (float) halfWidth(scoreM2, scores);
+    }
+
+    public float getScoreMean() {
+        return (float) scoreMean;
+    }
+
+    public int getBlockCount() {
+        return blocks;
+    }
+
+    public void reset() {
+        blockCount = 0;
+        blockSum = 0;
+        blockSumSquares = 0;
+        blockCrossings = 0;
+        previousSample = 0;
+        blocks = 0;
+        scores = 0;
+        scoreMean = 0;
+        scoreM2 = 0;
+        for (int i = 0; i < FEATURE_COUNT; i++) {
+            featureMean[i] = 0;
+            featureM2[i] = 0;
+        }
+    }
+
+    private static double halfWidth(double m2, int n) {
+        if (n < 2) {
+            return Double.POSITIVE_INFINITY;
+        }
+        double variance = m2 / (n - 1);
+        return Z_95 * Math.sqrt(variance / n);
+    }
+}
@@ -0,0 +1,89 @@
+package com.dianerverotect.emg;
+
+/**
+ * Computes the model's five EMG features in O(1) per sample, so the capture can score the
+ * signal every second without rescanning it:
+ * max amplitude, range, mean, standard deviation and baseline crossings.
+ *
+ * Crossings are reported as a rate per {@link #CROSSING_WINDOW} samples, the length of the
+ * fixed capture the model inputs were defined on, so the feature does not depend on when
+ * an early-terminated capture stopped.
+ */
+public class EmgFeatureExtractor {
+
+    public static final int FEATURE_COUNT = 5;
+    public static final int CROSSING_WINDOW = 100;
+
+    private final float baseline;
+
+    private int count;
+    private float max;
+    private float min;
+    private float previous;
+    private int crossings;
+    // Welford accumulators
+    private double mean;
+    private double sumSquaredDiff;
+
+    /**
+     * @param baseline level whose crossings are counted, the resting level of the signal
+     */
+    public EmgFeatureExtractor(float baseline) {
+        this.baseline = baseline;
+        reset();
+    }
+
+    public void addSample(float value) {
+        if (count > 0 && (previous < baseline) != (value < baseline)) {
+            crossings++;
+        }
+        previous = value;
+        max = Math.max(max, value);
+        min = Math.min(min, value);
+
+        count++;
+        double delta = value - mean;
+        mean += delta / count;
+        sumSquaredDiff += delta * (value - mean);
+    }
+
+    public int getSampleCount() {
+        return count;
+    }
+
+    /**
+     * The current features; all zero before the first sample.
+     */
+    public float[] getFeatures() {
+        if (count == 0) {
+            return new float[FEATURE_COUNT];
+        }
+        return new float[]{
+                max,
+                max - min, // Range
+                (float) mean,
+                (float) Math.sqrt(sumSquaredDiff / count),
+                crossings * (float) CROSSING_WINDOW / count
+        };
+    }
+
+    /**
+     * Relative difference of one feature between the two sides of a bilateral capture,
+     * |a - b| / max(|a|, |b|): 0 when the sides match, 1 when one side has none of it.
+     */
+    public static float asymmetry(float[] side, float[] otherSide, int feature) {
+        float largest = Math.max(Math.abs(side[feature]), Math.abs(otherSide[feature]));
+        return largest == 0f ? 0f : Math.abs(side[feature] - otherSide[feature]) / largest;
+    }
+
+    public void reset() {
+        count = 0;
+        // Amplitude is measured from zero, so the maximum never drops below it
+        max = 0;
+        min = Float.MAX_VALUE;
+        previous = 0;
+        crossings = 0;
+        mean = 0;
+        sumSquaredDiff = 0;
+    }
+}
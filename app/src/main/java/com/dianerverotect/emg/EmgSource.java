@@ -0,0 +1,17 @@
+package com.dianerverotect.emg;
+
+/**
+ * A stream of raw EMG samples: the bracelet, a synthetic generator or a recorded session.
+ * Sources never block; pacing against a clock is done by {@link PacedEmgSource}, so the
+ * same source can run in real time in the app or as fast as possible in a JVM test.
+ */
+public interface EmgSource {
+
+    float getSampleRateHz();
+
+    /**
+     * Reads up to length samples into buffer. Returns the number read, which may be 0, or
+     * -1 once the source is exhausted.
+     */
+    int read(float[] buffer, int offset, int length);
+}
@@ -0,0 +1,71 @@
+package com.dianerverotect.emg;
+
+/**
+ * Releases another source's samples no faster than they would arrive from a bracelet,
+ * scaled by a speed factor: 1x for the live capture, up to 100x to replay a session or
+ * load-test the pipeline quickly. The clock is passed in, so tests can drive it by hand.
+ */
+public class PacedEmgSource implements EmgSource {
+
+    public static final float MIN_SPEED = 1f;
+    public static final float MAX_SPEED = 100f;
+
+    /**
+     * Monotonic time in nanoseconds, e.g. SystemClock::elapsedRealtimeNanos.
+     */
+    public interface Clock {
+        long nanoTime();
+    }
+
+    private final EmgSource source;
+    private final double samplesPerNano;
+    private final Clock clock;
+    private long startNanos = Long.MIN_VALUE;
+    private long delivered;
+
+    public PacedEmgSource(EmgSource source, float speed, Clock clock) {
+        if (speed < MIN_SPEED || speed > MAX_SPEED) {
+            throw new IllegalArgumentException("Speed must be between " + MIN_SPEED + "x and "
+                    + MAX_SPEED + "x: " + speed);
+        }
+        this.source = source;
+        this.samplesPerNano = source.getSampleRateHz() * speed / 1e9;
+        this.clock = clock;
+    }
+
+    /**
+     * Starts the clock. Called implicitly by the first read.
+     */
+    public void start() {
+        startNanos = clock.nanoTime();
+    }
+
+    @Override
+    public float getSampleRateHz() {
+        return source.getSampleRateHz();
+    }
+
+    @Override
+    public int read(float[] buffer, int offset, int length) {
+        if (startNanos == Long.MIN_VALUE) {
+            start();
+        }
+        long due = (long) ((clock.nanoTime() - startNanos) * samplesPerNano);
+        int wanted = (int) Math.min(length, due - delivered);
+        if (wanted <= 0) {
+            return 0;
+        }
+        int read = source.read(buffer, offset, wanted);
+        if (read > 0) {
+            delivered += read;
+        }
+        return read;
+    }
+
+    /**
+     * Samples released so far.
+     */
+    public long getDeliveredCount() {
+        return delivered;
+    }
+}
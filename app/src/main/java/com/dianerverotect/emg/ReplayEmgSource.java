@@ -0,0 +1,89 @@
+package com.dianerverotect.emg;
+
+import com.dianerverotect.bluetooth.SampleFramer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * Plays back a recorded session. Recordings use the bracelet's own wire format, one or
+ * more comma-separated samples per line, so a raw capture of the link can be replayed
+ * as-is; other lines (command replies, status) are skipped.
+ *
+ * Wrap it in a {@link PacedEmgSource} to stream it at 1x to 100x real time.
+ */
+public class ReplayEmgSource implements EmgSource {
+
+    private final float sampleRateHz;
+    private final float[] samples;
+    private int position;
+
+    public ReplayEmgSource(float[] samples, float sampleRateHz) {
+        if (sampleRateHz <= 0) {
+            throw new IllegalArgumentException("Sample rate must be positive: " + sampleRateHz);
+        }
+        this.samples = samples;
+        this.sampleRateHz = sampleRateHz;
+    }
+
+    /**
+     * Reads a recording in the bracelet's line format, parsed by the same
+     * {@link SampleFramer} that handles the live link.
+     */
+    public static ReplayEmgSource read(InputStream in, float sampleRateHz) throws IOException {
+        final float[][] samples = {new float[1024]};
+        final int[] count = {0};
+        SampleFramer framer = new SampleFramer(new SampleFramer.Listener() {
+            @Override
+            public void onSamples(float[] batch, int batchCount) {
+                if (count[0] + batchCount > samples[0].length) {
+                    samples[0] = Arrays.copyOf(samples[0], Math.max(samples[0].length * 2, count[0] + batchCount));
+                }
+                System.arraycopy(batch, 0, samples[0], count[0], batchCount);
+                count[0] += batchCount;
+            }
+
+            @Override
+            public void onLine(String line) {
+                // Not a sample line
+            }
+        });
+
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            framer.accept(buffer, 0, read);
+        }
+        // A recording may not end with a newline
+        framer.accept(new byte[]{'\n'}, 0, 1);
+        return new ReplayEmgSource(Arrays.copyOf(samples[0], count[0]), sampleRateHz);
+    }
+
+    @Override
+    public float getSampleRateHz() {
+        return sampleRateHz;
+    }
+
+    @Override
+    public int read(float[] buffer, int offset, int length) {
+        if (position >= samples.length) {
+            return -1;
+        }
+        int count = Math.min(length, samples.length - position);
+        System.arraycopy(samples, position, buffer, offset, count);
+        position += count;
+        return count;
+    }
+
+    public int getSampleCount() {
+        return samples.length;
+    }
+
+    /**
+     * Restarts playback from the beginning.
+     */
+    public void rewind() {
+        position = 0;
+    }
+}
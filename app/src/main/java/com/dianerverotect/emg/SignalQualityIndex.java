@@ -0,0 +1,219 @@
+package com.dianerverotect.emg;
+
+/**
+ * Streaming signal-quality estimator for raw EMG samples.
+ *
+ * Every check is an exponentially weighted statistic updated in O(1) per sample, so it
+ * can run alongside acquisition without buffering:
+ * <ul>
+ *     <li>clipping: fraction of samples at or beyond the ADC rails</li>
+ *     <li>flat-line / lead-off: running variance below a noise floor</li>
+ *     <li>mains interference: power of a resonator tuned to the mains frequency relative
+ *     to the total signal power (skipped when the sample rate cannot resolve it)</li>
+ *     <li>motion bursts: a short-term baseline drifting further than the spread of the
+ *     muscle activity around it</li>
+ * </ul>
+ */
+public class SignalQualityIndex {
+
+    /**
+     * The dominant problem with the signal, in order of severity.
+     */
+    public enum Issue {
+        NONE, LEAD_OFF, CLIPPING, MAINS_NOISE, MOTION
+    }
+
+    /**
+     * Thresholds for the individual checks.
+     */
+    public static class Config {
+        public final int sampleRateHz;
+        public final float railLow;
+        public final float railHigh;
+        /** Standard deviation below which the lead is considered off. */
+        public final float flatLineStdDev;
+        /** Maximum tolerated fraction of clipped samples. */
+        public final float maxClippedFraction;
+        public final float mainsHz;
+        /** Maximum tolerated share of signal power at the mains frequency. */
+        public final float maxMainsRatio;
+        /** Baseline drift, in multiples of the muscle-activity spread, that counts as motion. */
+        public final float motionStdDevs;
+        /** Time constant of the running statistics. */
+        public final float windowSeconds;
+
+        public Config(int sampleRateHz, float railLow, float railHigh, float flatLineStdDev,
+                      float maxClippedFraction, float mainsHz, float maxMainsRatio,
+                      float motionStdDevs, float windowSeconds) {
+            if (sampleRateHz <= 0 || railHigh <= railLow || windowSeconds <= 0) {
+                throw new IllegalArgumentException("Invalid signal quality configuration");
+            }
+            this.sampleRateHz = sampleRateHz;
+            this.railLow = railLow;
+            this.railHigh = railHigh;
+            this.flatLineStdDev = flatLineStdDev;
+            this.maxClippedFraction = maxClippedFraction;
+            this.mainsHz = mainsHz;
+            this.maxMainsRatio = maxMainsRatio;
+            this.motionStdDevs = motionStdDevs;
+            this.windowSeconds = windowSeconds;
+        }
+    }
+
+    private final Config config;
+    private final float alpha;         // Running statistics, ~windowSeconds
+    private final float baselineAlpha; // Short-term baseline used for motion detection
+    private final boolean mainsCheckEnabled;
+    private final float resonatorCoefficient;
+    private final float resonatorRadius;
+    private final float resonatorGain;
+
+    private long sampleCount;
+    private float mean;
+    private float variance;
+    private float clippedFraction;
+    private float shortBaseline;
+    private float highFrequencySpread;
+
+    // Mains resonator state
+    private float resonatorPrevious;
+    private float resonatorPrevious2;
+    private float inputPrevious;
+    private float inputPrevious2;
+    private float mainsPower;
+
+    public SignalQualityIndex(Config config) {
+        this.config = config;
+        this.alpha = 1f / Math.max(1f, config.windowSeconds * config.sampleRateHz);
+        this.baselineAlpha = alpha * 4f;
+        // The resonator needs at least a few samples per mains cycle
+        this.mainsCheckEnabled = config.mainsHz > 0 && config.sampleRateHz > 2.5f * config.mainsHz;
+        double omega = 2.0 * Math.PI * config.mainsHz / config.sampleRateHz;
+        this.resonatorRadius = 0.98f;
+        this.resonatorCoefficient = (float) (2.0 * resonatorRadius * Math.cos(omega));
+        this.resonatorGain = resonatorPeakGain(omega, resonatorRadius);
+    }
+
+    public Config getConfig() {
+        return config;
+    }
+
+    /**
+     * Folds one raw sample into the running quality statistics.
+     */
+    public void addSample(float value) {
+        if (sampleCount == 0) {
+            mean = value;
+            shortBaseline = value;
+            inputPrevious = value;
+            inputPrevious2 = value;
+        }
+        sampleCount++;
+
+        // Running mean / variance
+        float delta = value - mean;
+        mean += alpha * delta;
+        variance = (1f - alpha) * (variance + alpha * delta * delta);
+
+        // Clipping
+        boolean clipped = value <= config.railLow || value >= config.railHigh;
+        clippedFraction += alpha * ((clipped ? 1f : 0f) - clippedFraction);
+
+        // Motion: a short-term baseline that wanders away from the long-term mean by more
+        // than the spread of the fast (muscle) activity around it
+        shortBaseline += baselineAlpha * (value - shortBaseline);
+        highFrequencySpread += alpha * (Math.abs(value - shortBaseline) - highFrequencySpread);
+
+        // Mains: two-pole resonator on the differenced input (removes DC)
+        if (mainsCheckEnabled) {
+            float input = value - inputPrevious2;
+            float output = input + resonatorCoefficient * resonatorPrevious
+                    - resonatorRadius * resonatorRadius * resonatorPrevious2;
+            resonatorPrevious2 = resonatorPrevious;
+            resonatorPrevious = output;
+            inputPrevious2 = inputPrevious;
+            inputPrevious = value;
+            // Normalise to unit gain at the mains frequency so power is comparable to variance
+            float normalized = output / resonatorGain;
+            mainsPower += alpha * (normalized * normalized - mainsPower);
+        }
+    }
+
+    /**
+     * Returns the dominant issue, or {@link Issue#NONE} if the signal looks usable.
+     * Until one full window has been observed the estimator reports NONE.
+     */
+    public Issue getIssue() {
+        if (sampleCount < config.windowSeconds * config.sampleRateHz) {
+            return Issue.NONE;
+        }
+        float stdDev = (float) Math.sqrt(variance);
+        if (stdDev < config.flatLineStdDev) {
+            return Issue.LEAD_OFF;
+        }
+        if (clippedFraction > config.maxClippedFraction) {
+            return Issue.CLIPPING;
+        }
+        if (mainsCheckEnabled && variance > 0 && mainsPower / variance > config.maxMainsRatio) {
+            return Issue.MAINS_NOISE;
+        }
+        if (Math.abs(shortBaseline - mean) > config.motionStdDevs * highFrequencySpread) {
+            return Issue.MOTION;
+        }
+        return Issue.NONE;
+    }
+
+    /**
+     * Quality index between 0 (unusable) and 1 (clean), for display.
+     */
+    public float getIndex() {
+        float stdDev = (float) Math.sqrt(variance);
+        float flatPenalty = config.flatLineStdDev > 0
+                ? Math.min(1f, stdDev / (2f * config.flatLineStdDev)) : 1f;
+        float clipPenalty = 1f - Math.min(1f, clippedFraction / Math.max(1e-6f, 2f * config.maxClippedFraction));
+        float mainsPenalty = 1f;
+        if (mainsCheckEnabled && variance > 0) {
+            mainsPenalty = 1f - Math.min(1f, (mainsPower / variance) / (2f * config.maxMainsRatio));
+        }
+        // Without any fast activity only an actual drift counts as motion, as in getIssue()
+        float drift = Math.abs(shortBaseline - mean);
+        float motionPenalty;
+        if (highFrequencySpread > 0) {
+            motionPenalty = 1f - Math.min(1f, drift / (2f * config.motionStdDevs * highFrequencySpread));
+        } else {
+            motionPenalty = drift > 0 ? 0f : 1f;
+        }
+        return Math.max(0f, Math.min(1f, flatPenalty * clipPenalty * mainsPenalty * motionPenalty));
+    }
+
+    public boolean isAcceptable() {
+        return getIssue() == Issue.NONE;
+    }
+
+    public void reset() {
+        sampleCount = 0;
+        mean = 0;
+        variance = 0;
+        clippedFraction = 0;
+        shortBaseline = 0;
+        highFrequencySpread = 0;
+        resonatorPrevious = 0;
+        resonatorPrevious2 = 0;
+        inputPrevious = 0;
+        inputPrevious2 = 0;
+        mainsPower = 0;
+    }
+
+    /**
+     * Magnitude of H(z) = (1 - z^-2) / (1 - 2r cos(w) z^-1 + r^2 z^-2) at z = e^(jw).
+     */
+    private static float resonatorPeakGain(double omega, double radius) {
+        double numRe = 1.0 - Math.cos(2 * omega);
+        double numIm = Math.sin(2 * omega);
+        double c = 2.0 * radius * Math.cos(omega);
+        double denRe = 1.0 - c * Math.cos(omega) + radius * radius * Math.cos(2 * omega);
+        double denIm = c * Math.sin(omega) - radius * radius * Math.sin(2 * omega);
+        double gain = Math.hypot(numRe, numIm) / Math.hypot(denRe, denIm);
+        return gain > 0 ? (float) gain : 1f;
+    }
+}
@@ -0,0 +1,177 @@
+package com.dianerverotect.emg;
+
+import java.util.Random;
+
+/**
+ * Deterministic EMG simulator. For a given seed it always produces the same signal, so a
+ * capture, a load test or a bug report can be reproduced exactly.
+ *
+ * The signal is a noisy baseline plus periodic muscle contractions, modelled as Gaussian
+ * noise under a smooth burst envelope whose amplitude decays as the muscle fatigues.
+ * Mains interference and random faults (lead-off, clipping, mains bursts, motion
+ * artefacts) can be mixed in to exercise {@link SignalQualityIndex}.
+ */
+public class SyntheticEmgSource implements EmgSource {
+
+    /**
+     * Shape of the simulated signal.
+     */
+    public static class Config {
+        public final float sampleRateHz;
+        public final long seed;
+        public final float baseline;
+        public final float noiseStdDev;
+        /** Peak standard deviation of a contraction, before fatigue. */
+        public final float burstAmplitude;
+        /** Contractions per second. */
+        public final float burstHz;
+        /** Fraction of each contraction cycle the muscle is active. */
+        public final float burstDutyCycle;
+        /** Exponential decay of the contraction amplitude, per second. */
+        public final float fatiguePerSecond;
+        public final float mainsHz;
+        public final float mainsAmplitude;
+        /** Average number of injected faults per minute; 0 disables them. */
+        public final float faultsPerMinute;
+        /** ADC range; samples are clamped to it like the real front end. */
+        public final float railLow;
+        public final float railHigh;
+
+        public Config(float sampleRateHz, long seed, float baseline, float noiseStdDev,
+                      float burstAmplitude, float burstHz, float burstDutyCycle,
+                      float fatiguePerSecond, float mainsHz, float mainsAmplitude,
+                      float faultsPerMinute, float railLow, float railHigh) {
+            if (sampleRateHz <= 0 || burstDutyCycle <= 0 || burstDutyCycle > 1 || railHigh <= railLow) {
+                throw new IllegalArgumentException("Invalid synthetic EMG configuration");
+            }
+            this.sampleRateHz = sampleRateHz;
+            this.seed = seed;
+            this.baseline = baseline;
+            this.noiseStdDev = noiseStdDev;
+            this.burstAmplitude = burstAmplitude;
+            this.burstHz = burstHz;
+            this.burstDutyCycle = burstDutyCycle;
+            this.fatiguePerSecond = fatiguePerSecond;
+            this.mainsHz = mainsHz;
+            this.mainsAmplitude = mainsAmplitude;
+            this.faultsPerMinute = faultsPerMinute;
+            this.railLow = railLow;
+            this.railHigh = railHigh;
+        }
+
+        /**
+         * A clean signal within the chart's range: baseline 20, contractions of amplitude 15
+         * every two seconds and mild fatigue.
+         */
+        public static Config defaults(float sampleRateHz, long seed) {
+            return new Config(sampleRateHz, seed, 20f, 1.5f, 15f, 0.5f, 0.3f, 0.02f,
+                    50f, 0f, 0f, -40f, 100f);
+        }
+    }
+
+    // Injected faults last between these durations
+    private static final float MIN_FAULT_SECONDS = 0.5f;
+    private static final float MAX_FAULT_SECONDS = 2f;
+    private static final float CLIPPING_GAIN = 8f;
+    private static final float MOTION_AMPLITUDE = 30f;
+    private static final float MAINS_FAULT_AMPLITUDE = 20f;
+
+    private final Config config;
+    private final Random random;
+    private long index;
+
+    private SignalQualityIndex.Issue fault = SignalQualityIndex.Issue.NONE;
+    private long faultStart;
+    private long faultLength;
+
+    public SyntheticEmgSource(Config config) {
+        this.config = config;
+        this.random = new Random(config.seed);
+    }
+
+    @Override
+    public float getSampleRateHz() {
+        return config.sampleRateHz;
+    }
+
+    @Override
+    public int read(float[] buffer, int offset, int length) {
+        for (int i = 0; i < length; i++) {
+            buffer[offset + i] = next();
+        }
+        return length;
+    }
+
+    /**
+     * Starts a fault of the given kind at the next sample, e.g. to test that
+     * {@link SignalQualityIndex} detects it. It ends like a random fault.
+     */
+    public void injectFault(SignalQualityIndex.Issue issue, float seconds) {
+        fault = issue;
+        faultStart = index;
+        faultLength = Math.max(1, Math.round(seconds * config.sampleRateHz));
+    }
+
+    /**
+     * The fault affecting the most recent sample, or NONE.
+     */
+    public SignalQualityIndex.Issue getActiveFault() {
+        return fault;
+    }
+
+    private float next() {
+        double t = index / (double) config.sampleRateHz;
+        updateFault();
+
+        double value = config.baseline + random.nextGaussian() * config.noiseStdDev;
+
+        // Contraction: Gaussian noise under a half-sine envelope, weakening with fatigue
+        double phase = (t * config.burstHz) % 1.0;
+        if (phase < config.burstDutyCycle) {
+            double envelope = Math.sin(Math.PI * phase / config.burstDutyCycle);
+            double fatigue = Math.exp(-config.fatiguePerSecond * t);
+            value += envelope * fatigue * config.burstAmplitude * random.nextGaussian();
+        }
+
+        if (config.mainsAmplitude > 0) {
+            value += config.mainsAmplitude * Math.sin(2 * Math.PI * config.mainsHz * t);
+        }
+
+        switch (fault) {
+            case LEAD_OFF:
+                // A floating input reads as a flat line
+                value = config.baseline;
+                break;
+            case CLIPPING:
+                value = config.baseline + (value - config.baseline) * CLIPPING_GAIN;
+                break;
+            case MAINS_NOISE:
+                value += MAINS_FAULT_AMPLITUDE * Math.sin(2 * Math.PI * config.mainsHz * t);
+                break;
+            case MOTION:
+                double progress = (index - faultStart) / (double) faultLength;
+                value += MOTION_AMPLITUDE * Math.sin(Math.PI * progress);
+                break;
+            default:
+                break;
+        }
+
+        index++;
+        return (float) Math.max(config.railLow, Math.min(config.railHigh, value));
+    }
+
+    private void updateFault() {
+        if (fault != SignalQualityIndex.Issue.NONE && index - faultStart >= faultLength) {
+            fault = SignalQualityIndex.Issue.NONE;
+        }
+        if (fault == SignalQualityIndex.Issue.NONE && config.faultsPerMinute > 0
+                && random.nextDouble() < config.faultsPerMinute / (60.0 * config.sampleRateHz)) {
+            SignalQualityIndex.Issue[] issues = SignalQualityIndex.Issue.values();
+            // Skip NONE
+            fault = issues[1 + random.nextInt(issues.length - 1)];
+            faultStart = index;
+            float seconds = MIN_FAULT_SECONDS + random.nextFloat() * (MAX_FAULT_SECONDS - MIN_FAULT_SECONDS);
+            faultLength = Math.max(1, Math.round(seconds * config.sampleRateHz));
+        }
+    }
+}
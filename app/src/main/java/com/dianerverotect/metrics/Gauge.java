@@ -0,0 +1,8 @@
+package com.dianerverotect.metrics;
+
+/**
+ * A value sampled whenever the metrics are read, e.g. a queue depth or a cache size.
+ */
+public interface Gauge {
+    double getValue();
+}
@@ -0,0 +1,114 @@
+package com.dianerverotect.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free latency histogram in the style of HdrHistogram: log-linear buckets with 32
+ * linear sub-buckets per power of two, so any recorded value is reported within about 3%,
+ * from 1 microsecond up to about 19 hours, in a fixed 8 KB.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 6;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int HALF_SUB_BUCKETS = SUB_BUCKETS / 2;
+    // Larger values are clamped to this many microseconds
+    private static final long MAX_TRACKABLE_MICROS = (1L << 36) - 1;
+    private static final int BUCKET_COUNT = index(MAX_TRACKABLE_MICROS) + 1;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalMicros = new LongAdder();
+    private final AtomicLong maxMicros = new AtomicLong();
+
+    /**
+     * Records the time since startNanos, taken from System.nanoTime().
+     */
+    public void recordSince(long startNanos) {
+        recordNanos(System.nanoTime() - startNanos);
+    }
+
+    public void recordNanos(long nanos) {
+        recordMicros(nanos / 1000);
+    }
+
+    public void recordMicros(long micros) {
+        long value = Math.max(0, Math.min(micros, MAX_TRACKABLE_MICROS));
+        buckets.incrementAndGet(index(value));
+        count.increment();
+        totalMicros.add(value);
+        maxMicros.accumulateAndGet(value, Math::max);
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public double getMeanMicros() {
+        long n = count.sum();
+        return n == 0 ? 0 : totalMicros.sum() / (double) n;
+    }
+
+    public long getMaxMicros() {
+        return maxMicros.get();
+    }
+
+    /**
+     * The value below which the given percentage (0-100) of recordings fall, or 0 when
+     * nothing has been recorded.
+     */
+    public long getPercentileMicros(double percentile) {
+        long[] snapshot = new long[BUCKET_COUNT];
+        long total = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            snapshot[i] = buckets.get(i);
+            total += snapshot[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(total * Math.min(100, percentile) / 100));
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                // Middle of the bucket, but never above what was actually recorded
+                return Math.min(lowestValue(i) + (bucketWidth(i) - 1) / 2, maxMicros.get());
+            }
+        }
+        return maxMicros.get();
+    }
+
+    void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            buckets.set(i, 0);
+        }
+        count.reset();
+        totalMicros.reset();
+        maxMicros.set(0);
+    }
+
+    // Values below SUB_BUCKETS get a bucket each; above that, each power of two is split
+    // into HALF_SUB_BUCKETS buckets of equal width
+    static int index(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int shift = 64 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return shift * HALF_SUB_BUCKETS + (int) (value >> shift);
+    }
+
+    static long lowestValue(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int shift = index / HALF_SUB_BUCKETS - 1;
+        return (long) (index - shift * HALF_SUB_BUCKETS) << shift;
+    }
+
+    private static long bucketWidth(int index) {
+        return index < SUB_BUCKETS ? 1 : 1L << (index / HALF_SUB_BUCKETS - 1);
+    }
+}
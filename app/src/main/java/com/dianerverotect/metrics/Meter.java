@@ -0,0 +1,47 @@
+package com.dianerverotect.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counter that also reports its throughput: the rate per second between two reads at
+ * least a second apart, e.g. Bluetooth bytes per second.
+ */
+public class Meter {
+
+    private static final long MIN_WINDOW_NANOS = 1_000_000_000L;
+
+    private final LongAdder count = new LongAdder();
+    private long windowStartNanos = System.nanoTime();
+    private long windowStartCount;
+    private double rate;
+
+    public void mark(long events) {
+        count.add(events);
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * Events per second over the window since the previous rate update.
+     */
+    public synchronized double getRatePerSecond() {
+        long now = System.nanoTime();
+        long elapsed = now - windowStartNanos;
+        if (elapsed >= MIN_WINDOW_NANOS) {
+            long current = count.sum();
+            rate = (current - windowStartCount) * 1e9 / elapsed;
+            windowStartCount = current;
+            windowStartNanos = now;
+        }
+        return rate;
+    }
+
+    synchronized void reset() {
+        count.reset();
+        windowStartNanos = System.nanoTime();
+        windowStartCount = 0;
+        rate = 0;
+    }
+}
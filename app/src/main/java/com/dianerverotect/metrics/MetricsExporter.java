@@ -0,0 +1,51 @@
+package com.dianerverotect.metrics;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Appends snapshots of the shared {@link MetricsRegistry} to files/metrics/metrics.log,
+ * next to the startup timeline. Each snapshot starts with a "# timestamp" line.
+ */
+public final class MetricsExporter {
+    private static final String TAG = "MetricsExporter";
+    private static final String METRICS_DIR = "metrics";
+    private static final String LOG_NAME = "metrics";
+    private static final long MAX_LOG_BYTES = 256 * 1024;
+
+    // Exports are written in order on one thread, which exits when idle
+    private static final ExecutorService executor = new ThreadPoolExecutor(0, 1,
+            30, TimeUnit.SECONDS, new LinkedBlockingQueue<>());
+
+    private MetricsExporter() {
+    }
+
+    /**
+     * Directory shared by all metric logs.
+     */
+    public static File getMetricsDir(Context context) {
+        return new File(context.getFilesDir(), METRICS_DIR);
+    }
+
+    /**
+     * Writes the current snapshot in the background.
+     */
+    public static void export(Context context) {
+        String snapshot = "# " + System.currentTimeMillis() + "\n" + MetricsRegistry.getShared().report();
+        RollingLog log = new RollingLog(getMetricsDir(context), LOG_NAME, MAX_LOG_BYTES);
+        executor.execute(() -> {
+            try {
+                log.append(snapshot);
+            } catch (IOException e) {
+                Log.e(TAG, "Error exporting metrics: " + e.getMessage());
+            }
+        });
+    }
+}
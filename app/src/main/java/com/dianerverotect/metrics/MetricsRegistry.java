@@ -0,0 +1,102 @@
+package com.dianerverotect.metrics;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Named counters, meters, latency histograms and gauges for the whole app. Metrics are
+ * created on first use and live for the process; recording never blocks, so they can be
+ * updated from the sample path, the interpreter and Firebase callbacks alike.
+ *
+ * Names are dotted by stage, e.g. "model.predict" or "bt.bytes_received".
+ */
+public class MetricsRegistry {
+
+    private static final MetricsRegistry shared = new MetricsRegistry();
+
+    private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+    private final Map<String, Meter> meters = new ConcurrentHashMap<>();
+    private final Map<String, LatencyHistogram> histograms = new ConcurrentHashMap<>();
+    private final Map<String, Gauge> gauges = new ConcurrentHashMap<>();
+
+    /**
+     * Process-wide registry.
+     */
+    public static MetricsRegistry getShared() {
+        return shared;
+    }
+
+    public Counter counter(String name) {
+        return counters.computeIfAbsent(name, key -> new Counter());
+    }
+
+    public Meter meter(String name) {
+        return meters.computeIfAbsent(name, key -> new Meter());
+    }
+
+    public LatencyHistogram histogram(String name) {
+        return histograms.computeIfAbsent(name, key -> new LatencyHistogram());
+    }
+
+    /**
+     * Registers a gauge, replacing any previous one with the same name.
+     */
+    public void gauge(String name, Gauge gauge) {
+        gauges.put(name, gauge);
+    }
+
+    public void removeGauge(String name) {
+        gauges.remove(name);
+    }
+
+    /**
+     * Clears every recorded value. Registered metrics and gauges stay in place.
+     */
+    public void reset() {
+        for (Counter counter : counters.values()) {
+            counter.reset();
+        }
+        for (Meter meter : meters.values()) {
+            meter.reset();
+        }
+        for (LatencyHistogram histogram : histograms.values()) {
+            histogram.reset();
+        }
+    }
+
+    /**
+     * One line per metric, sorted by name. Latencies are in milliseconds.
+     */
+    public String report() {
+        Map<String, String> lines = new TreeMap<>();
+        for (Map.Entry<String, LatencyHistogram> entry : histograms.entrySet()) {
+            LatencyHistogram histogram = entry.getValue();
+            lines.put(entry.getKey(), String.format(Locale.US,
+                    "count=%d mean=%.2f p50=%.2f p90=%.2f p99=%.2f max=%.2f",
+                    histogram.getCount(), histogram.getMeanMicros() / 1000.0,
+                    histogram.getPercentileMicros(50) / 1000.0,
+                    histogram.getPercentileMicros(90) / 1000.0,
+                    histogram.getPercentileMicros(99) / 1000.0,
+                    histogram.getMaxMicros() / 1000.0));
+        }
+        for (Map.Entry<String, Meter> entry : meters.entrySet()) {
+            Meter meter = entry.getValue();
+            lines.put(entry.getKey(), String.format(Locale.US, "count=%d rate=%.1f/s",
+                    meter.getCount(), meter.getRatePerSecond()));
+        }
+        for (Map.Entry<String, Counter> entry : counters.entrySet()) {
+            lines.put(entry.getKey(), "count=" + entry.getValue().getCount());
+        }
+        for (Map.Entry<String, Gauge> entry : gauges.entrySet()) {
+            lines.put(entry.getKey(), String.format(Locale.US, "value=%.2f", entry.getValue().getValue()));
+        }
+
+        StringBuilder report = new StringBuilder();
+        for (Map.Entry<String, String> line : lines.entrySet()) {
+            report.append(line.getKey()).append(' ').append(line.getValue()).append('\n');
+        }
+        return report.toString();
+    }
+}
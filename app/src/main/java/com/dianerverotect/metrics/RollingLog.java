@@ -0,0 +1,43 @@
+package com.dianerverotect.metrics;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+
+/**
+ * Append-only text file that keeps one previous generation: once it grows past maxBytes
+ * it is renamed to name.1.log and a new file is started, so the logs never grow without
+ * bound.
+ */
+public class RollingLog {
+
+    private final File directory;
+    private final String baseName;
+    private final long maxBytes;
+
+    /**
+     * @param baseName file name without the ".log" extension
+     */
+    public RollingLog(File directory, String baseName, long maxBytes) {
+        this.directory = directory;
+        this.baseName = baseName;
+        this.maxBytes = maxBytes;
+    }
+
+    public File getFile() {
+        return new File(directory, baseName + ".log");
+    }
+
+    public synchronized void append(String text) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Could not create " + directory);
+        }
+        File log = getFile();
+        if (log.length() > maxBytes && !log.renameTo(new File(directory, baseName + ".1.log"))) {
+            throw new IOException("Could not rotate " + log);
+        }
+        try (FileWriter writer = new FileWriter(log, true)) {
+            writer.write(text);
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.dianerverotect.metrics;
+
+import android.annotation.SuppressLint;
+import android.os.Build;
+import android.os.Trace;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Named sections for Perfetto / systrace, emitted only while the app is being traced so
+ * they cost a single check otherwise. Record with app/perfetto/screening.pbtx.
+ *
+ * Synchronous sections must begin and end on the same thread:
+ * <pre>
+ * boolean traced = Tracing.begin("model.predict");
+ * try {
+ *     ...
+ * } finally {
+ *     Tracing.end(traced);
+ * }
+ * </pre>
+ * Work that completes in a callback, such as a Firebase write, uses
+ * {@link #beginAsync(String)} and {@link #endAsync(String, int)} instead.
+ */
+public final class Tracing {
+
+    private static final AtomicInteger nextCookie = new AtomicInteger(1);
+
+    private Tracing() {
+    }
+
+    /**
+     * Async sections and Trace.isEnabled need Android 10; older devices are never traced.
+     */
+    public static boolean isEnabled() {
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q && Trace.isEnabled();
+    }
+
+    /**
+     * Begins a section on the current thread. Pass the result to {@link #end(boolean)}.
+     */
+    public static boolean begin(String name) {
+        if (!isEnabled()) {
+            return false;
+        }
+        Trace.beginSection(name);
+        return true;
+    }
+
+    public static void end(boolean traced) {
+        if (traced) {
+            Trace.endSection();
+        }
+    }
+
+    /**
+     * Begins a section that may end on another thread. Returns the cookie to pass to
+     * {@link #endAsync(String, int)}, or 0 when not tracing.
+     */
+    @SuppressLint("NewApi") // Only reached when isEnabled(), which requires Android 10
+    public static int beginAsync(String name) {
+        if (!isEnabled()) {
+            return 0;
+        }
+        int cookie = nextCookie.getAndIncrement();
+        if (cookie == 0) {
+            cookie = nextCookie.getAndIncrement();
+        }
+        Trace.beginAsyncSection(name, cookie);
+        return cookie;
+    }
+
+    @SuppressLint("NewApi") // A non-zero cookie comes from beginAsync
+    public static void endAsync(String name, int cookie) {
+        if (cookie != 0) {
+            Trace.endAsyncSection(name, cookie);
+        }
+    }
+}
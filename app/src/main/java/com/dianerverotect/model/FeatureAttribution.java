@@ -0,0 +1,124 @@
+package com.dianerverotect.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * How much one on-device feature moved a risk score. For the model it is the score minus
+ * the score with that feature set to its training mean; for the fallback algorithm it is
+ * the feature's term in the weighted sum. Positive values raise the risk. Placeholder
+ * features (see {@link FeatureRegistry#isPlaceholder}) are never attributed.
+ */
+public final class FeatureAttribution {
+
+    /**
+     * Scores a batch of feature vectors with the model.
+     */
+    public interface Scorer {
+        /**
+         * @return one score per vector, or null if they could not be scored
+         */
+        float[] score(float[][] features, int count);
+    }
+
+    private final int feature;
+    private final float contribution;
+
+    public FeatureAttribution(int feature, float contribution) {
+        this.feature = feature;
+        this.contribution = contribution;
+    }
+
+    /**
+     * Returns the on-device feature index, see {@link FeatureRegistry}.
+     */
+    public int getFeature() {
+        return feature;
+    }
+
+    public String getName() {
+        return feature >= 0 && feature < FeatureRegistry.DEVICE_FEATURE_NAMES.length
+                ? FeatureRegistry.DEVICE_FEATURE_NAMES[feature] : "Feature " + feature;
+    }
+
+    public float getContribution() {
+        return contribution;
+    }
+
+    /**
+     * Attributes a model score by ablation: each feature with a baseline is set to it in
+     * turn, all those variants are scored in a single batch, and a feature's contribution
+     * is the score minus the score of its variant.
+     *
+     * @param features  the scored on-device features
+     * @param score     their score
+     * @param baselines baseline of each feature, NaN for features the model does not read
+     * @return the attributions, largest effect first, or an empty list if the variants
+     *         could not be scored
+     */
+    public static List<FeatureAttribution> ablate(float[] features, float score, float[] baselines,
+                                                  Scorer scorer) {
+        int[] attributed = new int[features.length];
+        float[][] ablated = new float[features.length][];
+        int count = 0;
+        for (int i = 0; i < features.length && i < baselines.length; i++) {
+            if (Float.isNaN(baselines[i]) || FeatureRegistry.isPlaceholder(i)) {
+                continue;
+            }
+            ablated[count] = features.clone();
+            ablated[count][i] = baselines[i];
+            attributed[count++] = i;
+        }
+        if (count == 0) {
+            return Collections.emptyList();
+        }
+        float[] scores = scorer.score(ablated, count);
+        if (scores == null) {
+            return Collections.emptyList();
+        }
+        float[] contributions = new float[count];
+        for (int i = 0; i < count; i++) {
+            contributions[i] = score - scores[i];
+        }
+        return rank(attributed, contributions, count);
+    }
+
+    /**
+     * Attributes an additive score from its per-feature terms, which are the exact
+     * contributions. Features whose term is zero are left out.
+     */
+    public static List<FeatureAttribution> fromTerms(float[] terms) {
+        int[] attributed = new int[terms.length];
+        float[] contributions = new float[terms.length];
+        int count = 0;
+        for (int i = 0; i < terms.length; i++) {
+            if (terms[i] != 0f && !FeatureRegistry.isPlaceholder(i)) {
+                attributed[count] = i;
+                contributions[count++] = terms[i];
+            }
+        }
+        return rank(attributed, contributions, count);
+    }
+
+    /**
+     * Builds the attributions of the given features, largest effect first.
+     *
+     * @param features      on-device feature of each contribution
+     * @param contributions contribution of each feature, same order
+     * @param count         number of entries to use
+     */
+    public static List<FeatureAttribution> rank(int[] features, float[] contributions, int count) {
+        List<FeatureAttribution> ranked = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            ranked.add(new FeatureAttribution(features[i], contributions[i]));
+        }
+        Collections.sort(ranked, (a, b) -> Float.compare(Math.abs(b.contribution), Math.abs(a.contribution)));
+        return Collections.unmodifiableList(ranked);
+    }
+
+    @Override
+    public String toString() {
+        return getName() + " " + (contribution >= 0 ? "+" : "") + String.format("%.3f", contribution);
+    }
+}
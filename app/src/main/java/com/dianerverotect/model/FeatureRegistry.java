@@ -0,0 +1,208 @@
+package com.dianerverotect.model;
+
+/**
+ * Maps the on-device feature vector built by HomeFragment onto the columns the model was
+ * trained on.
+ *
+ * The training schema is the 15-column layout stored in scaler.pkl (feature_names_in_).
+ * A model consumes a subset of those columns in a fixed order; each of its input slots
+ * either reads one on-device feature or, when we have no calibrated measurement for
+ * that column, is imputed with the training mean (0 after scaling).
+ *
+ * The bundled model's mapping ({@link #forBundledModel()}) is unverified. new.h5 records
+ * only its input shape, [null, 11, 1], not which columns it was trained on or in what
+ * order. scaler.pkl was fitted for the 15-column input of appf.py's final.sav, not for
+ * new.h5. Models installed with a {@link ModelManifest} name their columns and ship
+ * their own scaler statistics, so only their mapping is known to be right.
+ */
+public class FeatureRegistry {
+
+    // Training columns, in the order of scaler.pkl's feature_names_in_
+    public static final int COL_AGE = 0;
+    public static final int COL_GENDER = 1;
+    public static final int COL_DIABETES_DURATION = 2;
+    public static final int COL_NEUROPATHY_SEVERITY = 3;
+    public static final int COL_EMG_FREQUENCY = 4;
+    public static final int COL_EMG_AMPLITUDE = 5;
+    public static final int COL_MOTOR_NCV = 6;
+    public static final int COL_SENSORY_NCV = 7;
+    public static final int COL_F_WAVE_LATENCY = 8;
+    public static final int COL_MUSCLE_AFFECTED = 9;
+    public static final int COL_EMG_DURATION = 10;
+    public static final int COL_POLYPHASIC_POTENTIAL = 11;
+    public static final int COL_RESTING_EMG = 12;
+    public static final int COL_FASTING_BLOOD_SUGAR = 13;
+    public static final int COL_INSULIN_LEVEL = 14;
+
+    public static final String[] TRAINING_COLUMNS = {
+            "Age",
+            "Gender",
+            "Diabetes_Duration",
+            "Neuropathy_Severity",
+            "EMG_Signal_Frequency (Hz)",
+            "EMG_Amplitude (mV)",
+            "Motor Nerve Conduction Velocity (m/s)",
+            "Sensory Nerve Conduction Velocity (m/s)",
+            "F-Wave Latency (ms)",
+            "Muscle Affected",
+            "EMG_Signal_Duration (ms)",
+            "Polyphasic Potential",
+            "Resting EMG Activity (µV)",
+            "Fasting_Blood_Sugar",
+            "Insulin_Level"
+    };
+
+    // On-device feature vector, see HomeFragment.createModelFeatures
+    public static final int DEVICE_AGE = 0;
+    public static final int DEVICE_DIABETES_DURATION = 1;
+    public static final int DEVICE_GLUCOSE = 2;
+    public static final int DEVICE_EMG_MAX = 3;
+    public static final int DEVICE_EMG_RANGE = 4;
+    public static final int DEVICE_EMG_MEAN = 5;
+    public static final int DEVICE_EMG_STD_DEV = 6;
+    public static final int DEVICE_EMG_CROSSINGS = 7;
+    public static final int DEVICE_TEMPERATURE_SENSATION = 8;
+    public static final int DEVICE_PRESSURE_SENSATION = 9;
+    public static final int DEVICE_FEATURE_COUNT = 10;
+
+    // Display names of the on-device features, e.g. for attributions
+    public static final String[] DEVICE_FEATURE_NAMES = {
+            "Age",
+            "Diabetes duration",
+            "Fasting glucose",
+            "EMG peak amplitude",
+            "EMG range",
+            "EMG mean",
+            "EMG standard deviation",
+            "EMG baseline crossing rate",
+            "Temperature sensation",
+            "Pressure sensation"
+    };
+
+    /**
+     * Returns whether an on-device feature is a fixed placeholder rather than a value
+     * measured or entered for this user. Age and diabetes duration are not collected yet,
+     * and createModelFeatures gives everyone the same values, so they explain nothing
+     * about an individual result.
+     */
+    public static boolean isPlaceholder(int deviceFeature) {
+        return deviceFeature == DEVICE_AGE || deviceFeature == DEVICE_DIABETES_DURATION;
+    }
+
+    /** Marks a model input slot that is imputed with the training mean. */
+    public static final int IMPUTED = -1;
+
+    private final int[] modelColumns;
+    private final int[] deviceSources;
+
+    /**
+     * @param modelColumns  training column for each model input slot
+     * @param deviceSources on-device feature for each slot, or {@link #IMPUTED}
+     */
+    public FeatureRegistry(int[] modelColumns, int[] deviceSources) {
+        if (modelColumns.length != deviceSources.length) {
+            throw new IllegalArgumentException("Expected one device source per model column");
+        }
+        for (int column : modelColumns) {
+            if (column < 0 || column >= TRAINING_COLUMNS.length) {
+                throw new IllegalArgumentException("Unknown training column: " + column);
+            }
+        }
+        this.modelColumns = modelColumns.clone();
+        this.deviceSources = deviceSources.clone();
+    }
+
+    /**
+     * Schema of the bundled MODEL.tflite (input [1, 11, 1]), assumed to be the numeric
+     * clinical and EMG columns without the categorical columns and the severity label.
+     * The column list and order are a best guess that matches the input width; they are
+     * not recorded with the model, so scores from the bundled model are only as good as
+     * that guess (see the class comment).
+     *
+     * Only age, diabetes duration and fasting glucose are mapped today. The bracelet's
+     * EMG features are not calibrated to the training units (mV, Hz, ms), so feeding them
+     * would put the model far outside its training distribution; those columns are
+     * imputed until calibrated features are available.
+     */
+    public static FeatureRegistry forBundledModel() {
+        return new FeatureRegistry(
+                new int[]{
+                        COL_AGE,
+                        COL_DIABETES_DURATION,
+                        COL_EMG_FREQUENCY,
+                        COL_EMG_AMPLITUDE,
+                        COL_MOTOR_NCV,
+                        COL_SENSORY_NCV,
+                        COL_F_WAVE_LATENCY,
+                        COL_EMG_DURATION,
+                        COL_RESTING_EMG,
+                        COL_FASTING_BLOOD_SUGAR,
+                        COL_INSULIN_LEVEL
+                },
+                new int[]{
+                        DEVICE_AGE,
+                        DEVICE_DIABETES_DURATION,
+                        IMPUTED,
+                        IMPUTED,
+                        IMPUTED,
+                        IMPUTED,
+                        IMPUTED,
+                        IMPUTED,
+                        IMPUTED,
+                        DEVICE_GLUCOSE,
+                        IMPUTED
+                });
+    }
+
+    /**
+     * Schema of a downloaded model, given as the training column name of each input slot
+     * (see {@link ModelManifest}). Columns are mapped to on-device features as in
+     * {@link #forBundledModel()}; every other column is imputed.
+     */
+    public static FeatureRegistry forSchema(String[] columnNames) {
+        int[] modelColumns = new int[columnNames.length];
+        int[] deviceSources = new int[columnNames.length];
+        for (int slot = 0; slot < columnNames.length; slot++) {
+            int column = indexOfColumn(columnNames[slot].trim());
+            if (column < 0) {
+                throw new IllegalArgumentException("Unknown training column: " + columnNames[slot]);
+            }
+            modelColumns[slot] = column;
+            switch (column) {
+                case COL_AGE:
+                    deviceSources[slot] = DEVICE_AGE;
+                    break;
+                case COL_DIABETES_DURATION:
+                    deviceSources[slot] = DEVICE_DIABETES_DURATION;
+                    break;
+                case COL_FASTING_BLOOD_SUGAR:
+                    deviceSources[slot] = DEVICE_GLUCOSE;
+                    break;
+                default:
+                    deviceSources[slot] = IMPUTED;
+            }
+        }
+        return new FeatureRegistry(modelColumns, deviceSources);
+    }
+
+    private static int indexOfColumn(String name) {
+        for (int i = 0; i < TRAINING_COLUMNS.length; i++) {
+            if (TRAINING_COLUMNS[i].equals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public int getInputCount() {
+        return modelColumns.length;
+    }
+
+    public int getModelColumn(int slot) {
+        return modelColumns[slot];
+    }
+
+    public int getDeviceSource(int slot) {
+        return deviceSources[slot];
+    }
+}
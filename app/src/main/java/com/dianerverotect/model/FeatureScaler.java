@@ -0,0 +1,115 @@
+package com.dianerverotect.model;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * StandardScaler parameters applied as a fused affine transform while the model input
+ * buffer is being filled: each slot is written as (x - mean) / scale in one pass, with no
+ * intermediate arrays.
+ *
+ * Parameters are read from the scaler_params.bin asset produced by export_scaler.py.
+ */
+public class FeatureScaler {
+
+    private static final int MAGIC = 0x43534E44; // "DNSC" read little-endian
+    private static final int VERSION = 1;
+
+    private final FeatureRegistry registry;
+    private final float[] offsets;
+    private final float[] multipliers;
+
+    /**
+     * @param mean  training means, indexed by training column
+     * @param scale training standard deviations, indexed by training column
+     */
+    public FeatureScaler(float[] mean, float[] scale, FeatureRegistry registry) {
+        if (mean.length != FeatureRegistry.TRAINING_COLUMNS.length || scale.length != mean.length) {
+            throw new IllegalArgumentException("Scaler has " + mean.length + " columns, expected "
+                    + FeatureRegistry.TRAINING_COLUMNS.length);
+        }
+        this.registry = registry;
+        int count = registry.getInputCount();
+        this.offsets = new float[count];
+        this.multipliers = new float[count];
+        for (int slot = 0; slot < count; slot++) {
+            int column = registry.getModelColumn(slot);
+            offsets[slot] = mean[column];
+            // sklearn leaves zero-variance columns unscaled
+            multipliers[slot] = scale[column] != 0f ? 1f / scale[column] : 1f;
+        }
+    }
+
+    /**
+     * Reads scaler parameters in the export_scaler.py binary layout.
+     */
+    public static FeatureScaler read(InputStream in, FeatureRegistry registry) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        byte[] chunk = new byte[512];
+        int read;
+        while ((read = in.read(chunk)) != -1) {
+            bytes.write(chunk, 0, read);
+        }
+
+        ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray()).order(ByteOrder.LITTLE_ENDIAN);
+        if (buffer.remaining() < 12 || buffer.getInt() != MAGIC) {
+            throw new IOException("Not a scaler parameter file");
+        }
+        int version = buffer.getInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported scaler parameter version: " + version);
+        }
+        int count = buffer.getInt();
+        if (count <= 0 || buffer.remaining() != count * 2 * 4) {
+            throw new IOException("Corrupt scaler parameter file, column count " + count);
+        }
+        float[] mean = new float[count];
+        float[] scale = new float[count];
+        for (int i = 0; i < count; i++) {
+            mean[i] = buffer.getFloat();
+        }
+        for (int i = 0; i < count; i++) {
+            scale[i] = buffer.getFloat();
+        }
+        return new FeatureScaler(mean, scale, registry);
+    }
+
+    public FeatureRegistry getRegistry() {
+        return registry;
+    }
+
+    public int getInputCount() {
+        return offsets.length;
+    }
+
+    /**
+     * Returns the raw value of an on-device feature that scales to 0, i.e. the training
+     * mean of the column it feeds, or NaN if the model does not read that feature.
+     */
+    public float getBaseline(int deviceFeature) {
+        for (int slot = 0; slot < offsets.length; slot++) {
+            if (registry.getDeviceSource(slot) == deviceFeature) {
+                return offsets[slot];
+            }
+        }
+        return Float.NaN;
+    }
+
+    /**
+     * Writes the scaled model input for one on-device feature vector at the buffer's
+     * current position. Imputed or missing features are written as 0 (the training mean).
+     */
+    public void fill(ByteBuffer input, float[] deviceFeatures) {
+        for (int slot = 0; slot < offsets.length; slot++) {
+            int source = registry.getDeviceSource(slot);
+            if (source >= 0 && source < deviceFeatures.length) {
+                input.putFloat((deviceFeatures[source] - offsets[slot]) * multipliers[slot]);
+            } else {
+                input.putFloat(0f);
+            }
+        }
+    }
+}
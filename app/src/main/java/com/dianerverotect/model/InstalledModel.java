@@ -0,0 +1,142 @@
+package com.dianerverotect.model;
+
+import android.content.Context;
+import android.util.Log;
+
+import org.tensorflow.lite.Interpreter;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * A model from the {@link ModelRegistry}, loaded and warmed once and shared by every
+ * {@link NeuropathyPredictor} that leases it. Predictors borrow interpreters from its
+ * {@link InterpreterPool}, so they can score in parallel.
+ *
+ * Updates are dropped into files/model_updates/, one directory per model with its
+ * manifest, and installed by {@link #installPendingUpdates(Context)}.
+ */
+public class InstalledModel implements Closeable {
+    private static final String TAG = "InstalledModel";
+    private static final String MODELS_DIR = "models";
+    private static final String UPDATES_DIR = "model_updates";
+
+    private static ModelRegistry<InstalledModel> registry;
+
+    private final String version;
+    private final InterpreterPool<PooledInterpreter> interpreters;
+    private final FeatureScaler scaler;
+
+    private InstalledModel(String version, InterpreterPool<PooledInterpreter> interpreters, FeatureScaler scaler) {
+        this.version = version;
+        this.interpreters = interpreters;
+        this.scaler = scaler;
+    }
+
+    /**
+     * Returns the app's model registry, restoring the active model on first use.
+     */
+    public static synchronized ModelRegistry<InstalledModel> getRegistry(Context context) {
+        if (registry == null) {
+            Context appContext = context.getApplicationContext();
+            File root = new File(appContext.getFilesDir(), MODELS_DIR);
+            registry = new ModelRegistry<>(root, (modelFile, manifest) ->
+                    load(modelFile, manifest, NeuropathyPredictor.interpreterOptions(appContext)));
+            registry.restore();
+            Log.d(TAG, "Active registry model: " + registry.getActiveVersion());
+        }
+        return registry;
+    }
+
+    /**
+     * Installs every model waiting in files/model_updates/, in name order, and deletes
+     * them. A model that fails verification is discarded and the active one stays.
+     */
+    public static void installPendingUpdates(Context context) {
+        File[] updates = new File(context.getFilesDir(), UPDATES_DIR).listFiles(File::isDirectory);
+        if (updates == null || updates.length == 0) {
+            return;
+        }
+        Arrays.sort(updates);
+        ModelRegistry<InstalledModel> models = getRegistry(context);
+        for (File update : updates) {
+            try {
+                Log.d(TAG, "Installed model " + models.install(update));
+            } catch (IOException e) {
+                Log.e(TAG, "Rejected model update " + update.getName() + ": " + e.getMessage(), e);
+            }
+            deleteRecursively(update);
+        }
+    }
+
+    private static void deleteRecursively(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteRecursively(child);
+            }
+        }
+        file.delete();
+    }
+
+    /**
+     * Maps the model, checks its input size against the manifest schema and runs it once,
+     * so the first real prediction does not pay for tensor allocation.
+     */
+    static InstalledModel load(File modelFile, ModelManifest manifest, Interpreter.Options options)
+            throws IOException {
+        FeatureScaler scaler = manifest.createScaler();
+        MappedByteBuffer modelBuffer;
+        try (FileInputStream in = new FileInputStream(modelFile); FileChannel channel = in.getChannel()) {
+            // Read-only, so every interpreter of the pool shares the one mapping
+            modelBuffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        InterpreterPool<PooledInterpreter> interpreters;
+        try {
+            interpreters = new InterpreterPool<>(() -> new PooledInterpreter(modelBuffer, options),
+                    NeuropathyPredictor.MAX_INTERPRETERS);
+        } catch (Exception e) {
+            throw new IOException("Cannot load model: " + e.getMessage(), e);
+        }
+        try {
+            PooledInterpreter first = interpreters.acquire();
+            try {
+                int modelInputs = first.getInputCount();
+                if (modelInputs != scaler.getInputCount()) {
+                    throw new IOException("Manifest has " + scaler.getInputCount()
+                            + " inputs but the model expects " + modelInputs);
+                }
+                first.warmUp();
+            } finally {
+                interpreters.release(first);
+            }
+            return new InstalledModel("registry-" + manifest.getVersion(), interpreters, scaler);
+        } catch (Exception e) {
+            interpreters.close();
+            throw e instanceof IOException ? (IOException) e : new IOException("Cannot load model: " + e.getMessage(), e);
+        }
+    }
+
+    public String getVersion() {
+        return version;
+    }
+
+    InterpreterPool<PooledInterpreter> getInterpreters() {
+        return interpreters;
+    }
+
+    FeatureScaler getScaler() {
+        return scaler;
+    }
+
+    @Override
+    public void close() {
+        Log.d(TAG, "Closing model " + version);
+        interpreters.close();
+    }
+}
@@ -0,0 +1,115 @@
+package com.dianerverotect.model;
+
+import java.io.Closeable;
+import java.util.ArrayDeque;
+
+/**
+ * A small pool of interpreters over the same model, so predictions from different threads
+ * (the results dialog, a capture's sliding window, history re-scoring) run in parallel
+ * instead of queueing on one interpreter, which is not thread-safe.
+ *
+ * Instances are created on demand up to maxSize; further callers wait for one to be
+ * released. An instance is created outside the pool's lock, so releases and other
+ * callers do not wait for it. One instance is created up front, so a model that cannot
+ * be loaded fails in the constructor. Closing the pool closes idle instances at once and busy ones when they
+ * are released.
+ *
+ * @param <T> one interpreter with its buffers, used by one thread at a time
+ */
+public class InterpreterPool<T extends AutoCloseable> implements Closeable {
+
+    public interface Factory<T> {
+        T create() throws Exception;
+    }
+
+    private final Factory<T> factory;
+    private final int maxSize;
+    private final ArrayDeque<T> idle = new ArrayDeque<>();
+    private int created;
+    private boolean closed;
+
+    public InterpreterPool(Factory<T> factory, int maxSize) throws Exception {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("Pool size must be positive: " + maxSize);
+        }
+        this.factory = factory;
+        this.maxSize = maxSize;
+        idle.add(factory.create());
+        created = 1;
+    }
+
+    /**
+     * Borrows an instance, creating one if all are busy and the pool is not full, or
+     * waiting for one otherwise. Pass it back to {@link #release(AutoCloseable)}.
+     */
+    public T acquire() throws Exception {
+        synchronized (this) {
+            while (true) {
+                if (closed) {
+                    throw new IllegalStateException("Interpreter pool is closed");
+                }
+                T instance = idle.pollLast();
+                if (instance != null) {
+                    return instance;
+                }
+                if (created < maxSize) {
+                    // Reserve the slot; the instance is created below, without the lock
+                    created++;
+                    break;
+                }
+                wait();
+            }
+        }
+        try {
+            return factory.create();
+        } catch (Exception e) {
+            synchronized (this) {
+                created--;
+                // The slot is free again for a caller waiting on a full pool
+                notify();
+            }
+            throw e;
+        }
+    }
+
+    public void release(T instance) {
+        synchronized (this) {
+            if (!closed) {
+                // Most recently used first, so a quiet pool keeps reusing a warm instance
+                idle.addLast(instance);
+                notify();
+                return;
+            }
+        }
+        closeQuietly(instance);
+    }
+
+    public synchronized int getCreatedCount() {
+        return created;
+    }
+
+    @Override
+    public void close() {
+        ArrayDeque<T> toClose;
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            toClose = new ArrayDeque<>(idle);
+            idle.clear();
+            notifyAll();
+        }
+        for (T instance : toClose) {
+            closeQuietly(instance);
+        }
+    }
+
+    private static void closeQuietly(AutoCloseable instance) {
+        try {
+            instance.close();
+        } catch (Exception e) {
+            // Nothing to recover, the instance is no longer used
+        }
+    }
+}
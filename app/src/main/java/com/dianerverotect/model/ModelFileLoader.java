@@ -0,0 +1,188 @@
+package com.dianerverotect.model;
+
+import android.content.Context;
+import android.content.pm.PackageManager;
+import android.content.res.AssetFileDescriptor;
+import android.util.Log;
+
+import com.dianerverotect.metrics.MetricsRegistry;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Properties;
+import java.util.zip.CRC32;
+
+/**
+ * Memory-maps a bundled model without copying it onto the Java heap.
+ *
+ * An asset stored uncompressed in the APK (see noCompress in build.gradle) is mapped in
+ * place. If it was compressed anyway, openFd fails; the asset is then extracted once to
+ * no_backup/models/ and the extracted file is mapped. A properties file next to it records
+ * the CRC32 and the APK it came from, so a truncated copy or an app update triggers a
+ * fresh extraction. Every descriptor is closed before returning; the mapping stays valid.
+ */
+public final class ModelFileLoader {
+    private static final String TAG = "ModelFileLoader";
+    private static final String CACHE_DIR = "models";
+
+    /**
+     * How the model was loaded, from cheapest to most expensive.
+     */
+    public enum LoadPath {
+        /** Mapped straight out of the APK. */
+        MAPPED_ASSET,
+        /** Mapped from a copy extracted earlier. */
+        CACHED_COPY,
+        /** Extracted from the compressed asset just now, then mapped. */
+        EXTRACTED
+    }
+
+    public static final class LoadedModel {
+        public final MappedByteBuffer buffer;
+        public final LoadPath path;
+        // CRC32 of the model bytes, identifies the model build
+        public final String checksum;
+
+        LoadedModel(MappedByteBuffer buffer, LoadPath path, String checksum) {
+            this.buffer = buffer;
+            this.path = path;
+            this.checksum = checksum;
+        }
+    }
+
+    interface Opener {
+        InputStream open() throws IOException;
+    }
+
+    private ModelFileLoader() {
+    }
+
+    public static LoadedModel load(Context context, String assetName) throws IOException {
+        LoadedModel loaded;
+        try (AssetFileDescriptor descriptor = context.getAssets().openFd(assetName);
+             FileInputStream in = descriptor.createInputStream();
+             FileChannel channel = in.getChannel()) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY,
+                    descriptor.getStartOffset(), descriptor.getDeclaredLength());
+            loaded = new LoadedModel(buffer, LoadPath.MAPPED_ASSET, checksum(buffer));
+        } catch (FileNotFoundException e) {
+            // Thrown by openFd for compressed assets
+            Log.w(TAG, assetName + " is compressed in the APK, mapping an extracted copy");
+            File cacheDir = new File(context.getNoBackupFilesDir(), CACHE_DIR);
+            loaded = loadCached(cacheDir, assetName, apkStamp(context),
+                    () -> context.getAssets().open(assetName));
+        }
+        Log.d(TAG, "Loaded " + assetName + " via " + loaded.path + ", " + loaded.buffer.capacity() + " bytes");
+        MetricsRegistry.getShared().counter("model.load_path." + loaded.path.name().toLowerCase()).increment();
+        return loaded;
+    }
+
+    /**
+     * Maps the copy of the asset in cacheDir, extracting it first if it is missing,
+     * corrupt or from a different APK (stamp).
+     */
+    static LoadedModel loadCached(File cacheDir, String assetName, String stamp, Opener opener) throws IOException {
+        File modelFile = new File(cacheDir, assetName);
+        File infoFile = new File(cacheDir, assetName + ".properties");
+        Properties info = readInfo(infoFile);
+        if (modelFile.isFile() && stamp.equals(info.getProperty("stamp"))) {
+            MappedByteBuffer buffer = map(modelFile);
+            String checksum = checksum(buffer);
+            if (checksum.equals(info.getProperty("crc32"))
+                    && String.valueOf(buffer.capacity()).equals(info.getProperty("length"))) {
+                return new LoadedModel(buffer, LoadPath.CACHED_COPY, checksum);
+            }
+            // Corrupt copy, extract it again
+        }
+
+        if (!cacheDir.isDirectory() && !cacheDir.mkdirs()) {
+            throw new IOException("Cannot create " + cacheDir);
+        }
+        // Written next to the target and renamed, so a crash never leaves a partial model
+        File temporary = new File(cacheDir, assetName + ".tmp");
+        CRC32 crc = new CRC32();
+        long length = 0;
+        try (InputStream in = opener.open(); FileOutputStream out = new FileOutputStream(temporary)) {
+            byte[] chunk = new byte[64 * 1024];
+            int read;
+            while ((read = in.read(chunk)) != -1) {
+                out.write(chunk, 0, read);
+                crc.update(chunk, 0, read);
+                length += read;
+            }
+            out.getFD().sync();
+        }
+        if (!temporary.renameTo(modelFile)) {
+            temporary.delete();
+            throw new IOException("Cannot move extracted model to " + modelFile);
+        }
+        String checksum = Long.toHexString(crc.getValue());
+        info = new Properties();
+        info.setProperty("stamp", stamp);
+        info.setProperty("crc32", checksum);
+        info.setProperty("length", String.valueOf(length));
+        writeInfo(infoFile, info);
+        return new LoadedModel(map(modelFile), LoadPath.EXTRACTED, checksum);
+    }
+
+    private static MappedByteBuffer map(File file) throws IOException {
+        try (FileInputStream in = new FileInputStream(file); FileChannel channel = in.getChannel()) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    private static Properties readInfo(File infoFile) {
+        Properties info = new Properties();
+        try (InputStream in = new FileInputStream(infoFile)) {
+            info.load(in);
+        } catch (IOException e) {
+            // Not extracted yet
+        }
+        return info;
+    }
+
+    private static void writeInfo(File infoFile, Properties info) throws IOException {
+        File temporary = new File(infoFile.getPath() + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(temporary)) {
+            info.store(out, null);
+            out.getFD().sync();
+        }
+        if (!temporary.renameTo(infoFile)) {
+            temporary.delete();
+            throw new IOException("Cannot write " + infoFile);
+        }
+    }
+
+    // Changes whenever the app is installed or updated
+    private static String apkStamp(Context context) {
+        try {
+            return String.valueOf(context.getPackageManager()
+                    .getPackageInfo(context.getPackageName(), 0).lastUpdateTime);
+        } catch (PackageManager.NameNotFoundException e) {
+            return "unknown";
+        }
+    }
+
+    /**
+     * CRC32 of the model bytes, used to tell model builds apart.
+     */
+    static String checksum(ByteBuffer modelBuffer) {
+        CRC32 crc = new CRC32();
+        ByteBuffer view = modelBuffer.duplicate();
+        view.rewind();
+        byte[] chunk = new byte[8192];
+        while (view.hasRemaining()) {
+            int length = Math.min(chunk.length, view.remaining());
+            view.get(chunk, 0, length);
+            crc.update(chunk, 0, length);
+        }
+        return Long.toHexString(crc.getValue());
+    }
+}
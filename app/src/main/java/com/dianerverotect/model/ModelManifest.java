@@ -0,0 +1,147 @@
+package com.dianerverotect.model;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Properties;
+
+/**
+ * Describes one model in the {@link ModelRegistry}: a manifest.properties file next to the
+ * .tflite file, e.g.
+ * <pre>
+ * version=2026.10.1
+ * model=model.tflite
+ * sha256=3f2a...
+ * inputs=Age,Diabetes_Duration,...,Insulin_Level
+ * scaler.mean=52.1,0.48,...
+ * scaler.scale=10.3,0.5,...
+ * </pre>
+ * inputs names the training column of each model input slot, in order. The scaler lists
+ * hold one value per training column, in {@link FeatureRegistry#TRAINING_COLUMNS} order,
+ * as exported by export_scaler.py.
+ */
+public class ModelManifest {
+
+    public static final String FILE_NAME = "manifest.properties";
+
+    private final String version;
+    private final String modelFile;
+    private final String sha256;
+    private final String[] inputs;
+    private final float[] scalerMean;
+    private final float[] scalerScale;
+
+    private ModelManifest(String version, String modelFile, String sha256, String[] inputs,
+                          float[] scalerMean, float[] scalerScale) {
+        this.version = version;
+        this.modelFile = modelFile;
+        this.sha256 = sha256;
+        this.inputs = inputs;
+        this.scalerMean = scalerMean;
+        this.scalerScale = scalerScale;
+    }
+
+    /**
+     * Reads the manifest in a model directory.
+     */
+    public static ModelManifest read(File directory) throws IOException {
+        try (InputStream in = new FileInputStream(new File(directory, FILE_NAME))) {
+            return read(in);
+        }
+    }
+
+    public static ModelManifest read(InputStream in) throws IOException {
+        Properties properties = new Properties();
+        properties.load(in);
+        String version = require(properties, "version");
+        String modelFile = require(properties, "model");
+        if (!version.matches("[A-Za-z0-9._-]+") || modelFile.contains("/") || modelFile.startsWith(".")) {
+            throw new IOException("Invalid model version or file name: " + version + ", " + modelFile);
+        }
+        String[] inputs = require(properties, "inputs").split(",");
+        try {
+            FeatureRegistry.forSchema(inputs);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Invalid input schema: " + e.getMessage());
+        }
+        return new ModelManifest(version, modelFile, require(properties, "sha256").toLowerCase(), inputs,
+                readColumns(properties, "scaler.mean"), readColumns(properties, "scaler.scale"));
+    }
+
+    private static String require(Properties properties, String key) throws IOException {
+        String value = properties.getProperty(key);
+        if (value == null || value.trim().isEmpty()) {
+            throw new IOException("Model manifest is missing " + key);
+        }
+        return value.trim();
+    }
+
+    private static float[] readColumns(Properties properties, String key) throws IOException {
+        String[] values = require(properties, key).split(",");
+        if (values.length != FeatureRegistry.TRAINING_COLUMNS.length) {
+            throw new IOException(key + " has " + values.length + " values, expected "
+                    + FeatureRegistry.TRAINING_COLUMNS.length);
+        }
+        float[] columns = new float[values.length];
+        try {
+            for (int i = 0; i < values.length; i++) {
+                columns[i] = Float.parseFloat(values[i].trim());
+            }
+        } catch (NumberFormatException e) {
+            throw new IOException("Invalid " + key + ": " + e.getMessage());
+        }
+        return columns;
+    }
+
+    public String getVersion() {
+        return version;
+    }
+
+    public String getModelFile() {
+        return modelFile;
+    }
+
+    /**
+     * Builds the scaler for this model's input schema.
+     */
+    public FeatureScaler createScaler() {
+        return new FeatureScaler(scalerMean, scalerScale, FeatureRegistry.forSchema(inputs));
+    }
+
+    /**
+     * Throws if the model file in the directory does not match the manifest checksum.
+     */
+    public void verify(File directory) throws IOException {
+        String actual = sha256(new File(directory, modelFile));
+        if (!actual.equals(sha256)) {
+            throw new IOException("Checksum mismatch for model " + version + ": " + actual);
+        }
+    }
+
+    /**
+     * Hex SHA-256 of a file.
+     */
+    public static String sha256(File file) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+        try (InputStream in = new FileInputStream(file)) {
+            byte[] chunk = new byte[8192];
+            int read;
+            while ((read = in.read(chunk)) != -1) {
+                digest.update(chunk, 0, read);
+            }
+        }
+        StringBuilder hex = new StringBuilder();
+        for (byte b : digest.digest()) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+}
@@ -0,0 +1,315 @@
+package com.dianerverotect.model;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Versioned models stored in app storage, so a new model can be rolled out without a new
+ * APK or an app restart.
+ *
+ * Each version lives in its own directory under the root, next to its
+ * {@link ModelManifest}; state.properties names the active and the previous version.
+ * {@link #install(File)} copies a model in, verifies its checksum and loads it (which
+ * validates and warms it) before anything changes, then swaps it in atomically.
+ *
+ * Callers {@link #acquire()} a lease on the active model for as long as they use it. A
+ * swap only affects later leases: the replaced model keeps serving its in-flight leases
+ * and is closed when the last one is released.
+ *
+ * @param <T> the loaded form of a model, e.g. {@link InstalledModel}
+ */
+public class ModelRegistry<T extends Closeable> {
+
+    /**
+     * Loads, validates and warms a model; throws if it cannot be used.
+     */
+    public interface Loader<T> {
+        T load(File modelFile, ModelManifest manifest) throws Exception;
+    }
+
+    private static final String STATE_FILE = "state.properties";
+    private static final String KEY_ACTIVE = "active";
+    private static final String KEY_PREVIOUS = "previous";
+    private static final String STAGING_PREFIX = ".staging-";
+
+    private final File root;
+    private final Loader<T> loader;
+    private final AtomicReference<Entry<T>> active = new AtomicReference<>();
+
+    public ModelRegistry(File root, Loader<T> loader) {
+        this.root = root;
+        this.loader = loader;
+    }
+
+    /**
+     * Loads the active model recorded on disk, falling back to the previous version if it
+     * no longer loads. Leaves the registry empty when neither does.
+     */
+    public synchronized void restore() {
+        Properties state = readState();
+        String current = state.getProperty(KEY_ACTIVE);
+        String previous = state.getProperty(KEY_PREVIOUS);
+        if (current != null && activate(current)) {
+            return;
+        }
+        if (previous != null && activate(previous)) {
+            writeStateQuietly(previous, null);
+        }
+    }
+
+    /**
+     * Installs the model in sourceDir (its manifest and model file) and makes it active.
+     * The currently active version is kept for {@link #rollback()}; older ones are
+     * deleted. Nothing changes if the model fails verification or loading.
+     *
+     * @return the installed version
+     */
+    public synchronized String install(File sourceDir) throws IOException {
+        ModelManifest manifest = ModelManifest.read(sourceDir);
+        String version = manifest.getVersion();
+        String current = getActiveVersion();
+        if (version.equals(current)) {
+            return version;
+        }
+
+        if (!root.isDirectory() && !root.mkdirs()) {
+            throw new IOException("Cannot create " + root);
+        }
+        File staging = new File(root, STAGING_PREFIX + version);
+        deleteRecursively(staging);
+        try {
+            if (!staging.mkdirs()) {
+                throw new IOException("Cannot create " + staging);
+            }
+            copy(new File(sourceDir, ModelManifest.FILE_NAME), new File(staging, ModelManifest.FILE_NAME));
+            copy(new File(sourceDir, manifest.getModelFile()), new File(staging, manifest.getModelFile()));
+            manifest.verify(staging);
+            T model = load(staging, manifest);
+
+            try {
+                File target = new File(root, version);
+                deleteRecursively(target);
+                if (!staging.renameTo(target)) {
+                    throw new IOException("Cannot move " + staging + " to " + target);
+                }
+                writeState(version, current);
+            } catch (IOException e) {
+                closeQuietly(model);
+                throw e;
+            }
+            swap(new Entry<>(version, model));
+        } finally {
+            deleteRecursively(staging);
+        }
+        prune(version, current);
+        return version;
+    }
+
+    /**
+     * Switches back to the version that was active before the last install. The two
+     * versions trade places, so a second rollback rolls forward again.
+     *
+     * @return false if there is no previous version or it no longer loads
+     */
+    public synchronized boolean rollback() {
+        String current = getActiveVersion();
+        String previous = readState().getProperty(KEY_PREVIOUS);
+        if (previous == null || !activate(previous)) {
+            return false;
+        }
+        writeStateQuietly(previous, current);
+        return true;
+    }
+
+    /**
+     * Leases the active model, or returns null when none is installed. Close the lease
+     * when done with the model.
+     */
+    public Lease<T> acquire() {
+        while (true) {
+            Entry<T> entry = active.get();
+            if (entry == null) {
+                return null;
+            }
+            if (entry.retain()) {
+                return new Lease<>(entry);
+            }
+            // Swapped out and closed in between, retry with the new entry
+        }
+    }
+
+    public String getActiveVersion() {
+        Entry<T> entry = active.get();
+        return entry != null ? entry.version : null;
+    }
+
+    private boolean activate(String version) {
+        File directory = new File(root, version);
+        try {
+            ModelManifest manifest = ModelManifest.read(directory);
+            manifest.verify(directory);
+            swap(new Entry<>(version, load(directory, manifest)));
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private T load(File directory, ModelManifest manifest) throws IOException {
+        try {
+            return loader.load(new File(directory, manifest.getModelFile()), manifest);
+        } catch (IOException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException("Model " + manifest.getVersion() + " failed to load: " + e.getMessage(), e);
+        }
+    }
+
+    private void swap(Entry<T> entry) {
+        Entry<T> replaced = active.getAndSet(entry);
+        if (replaced != null) {
+            replaced.release();
+        }
+    }
+
+    private void prune(String current, String previous) {
+        File[] directories = root.listFiles(File::isDirectory);
+        if (directories == null) {
+            return;
+        }
+        for (File directory : directories) {
+            String name = directory.getName();
+            if (!name.equals(current) && !name.equals(previous)) {
+                deleteRecursively(directory);
+            }
+        }
+    }
+
+    private Properties readState() {
+        Properties state = new Properties();
+        try (InputStream in = new FileInputStream(new File(root, STATE_FILE))) {
+            state.load(in);
+        } catch (IOException e) {
+            // Nothing installed yet
+        }
+        return state;
+    }
+
+    // Written to a temporary file and renamed, so the state is never half-written
+    private void writeState(String current, String previous) throws IOException {
+        Properties state = new Properties();
+        state.setProperty(KEY_ACTIVE, current);
+        if (previous != null) {
+            state.setProperty(KEY_PREVIOUS, previous);
+        }
+        File temporary = new File(root, STATE_FILE + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(temporary)) {
+            state.store(out, null);
+            out.getFD().sync();
+        }
+        if (!temporary.renameTo(new File(root, STATE_FILE))) {
+            throw new IOException("Cannot write " + STATE_FILE);
+        }
+    }
+
+    private void writeStateQuietly(String current, String previous) {
+        try {
+            writeState(current, previous);
+        } catch (IOException e) {
+            // The model is active in memory; the next restore picks it again if possible
+        }
+    }
+
+    private static void copy(File from, File to) throws IOException {
+        try (InputStream in = new FileInputStream(from); OutputStream out = new FileOutputStream(to)) {
+            byte[] chunk = new byte[8192];
+            int read;
+            while ((read = in.read(chunk)) != -1) {
+                out.write(chunk, 0, read);
+            }
+        }
+    }
+
+    private static void deleteRecursively(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteRecursively(child);
+            }
+        }
+        file.delete();
+    }
+
+    private static void closeQuietly(Closeable model) {
+        try {
+            model.close();
+        } catch (IOException e) {
+            // Nothing to recover, the model is no longer used
+        }
+    }
+
+    // Holds one reference for the registry plus one per open lease
+    private static final class Entry<T extends Closeable> {
+        final String version;
+        final T model;
+        private final AtomicInteger references = new AtomicInteger(1);
+
+        Entry(String version, T model) {
+            this.version = version;
+            this.model = model;
+        }
+
+        boolean retain() {
+            int count;
+            do {
+                count = references.get();
+                if (count == 0) {
+                    return false;
+                }
+            } while (!references.compareAndSet(count, count + 1));
+            return true;
+        }
+
+        void release() {
+            if (references.decrementAndGet() == 0) {
+                closeQuietly(model);
+            }
+        }
+    }
+
+    /**
+     * Use of one model version; the model stays open until every lease on it is closed.
+     */
+    public static final class Lease<T extends Closeable> implements Closeable {
+        private final Entry<T> entry;
+        private boolean closed;
+
+        private Lease(Entry<T> entry) {
+            this.entry = entry;
+        }
+
+        public T get() {
+            return entry.model;
+        }
+
+        public String getVersion() {
+            return entry.version;
+        }
+
+        @Override
+        public synchronized void close() {
+            if (!closed) {
+                closed = true;
+                entry.release();
+            }
+        }
+    }
+}
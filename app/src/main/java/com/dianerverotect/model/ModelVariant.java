@@ -0,0 +1,72 @@
+package com.dianerverotect.model;
+
+import android.app.ActivityManager;
+import android.content.Context;
+import android.util.Log;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * The bundled builds of the neuropathy model. The quantized variants are produced from the
+ * same Keras model by quantize_model.py and must pass ModelVariantParityTest before they
+ * are shipped.
+ */
+public enum ModelVariant {
+    FLOAT32("MODEL.tflite"),
+    FLOAT16("MODEL_fp16.tflite"),
+    INT8("MODEL_int8.tflite");
+
+    private static final String TAG = "ModelVariant";
+
+    // Devices at or below these per-app heap limits are treated as low / mid end
+    private static final int LOW_END_MEMORY_CLASS_MB = 128;
+    private static final int MID_RANGE_MEMORY_CLASS_MB = 192;
+
+    private final String assetName;
+
+    ModelVariant(String assetName) {
+        this.assetName = assetName;
+    }
+
+    public String getAssetName() {
+        return assetName;
+    }
+
+    /**
+     * Picks the variant for this device: int8 on low-RAM devices (smallest, fastest on CPU),
+     * float16 on mid-range devices (half the size, float accuracy) and float32 otherwise.
+     * Falls back to float32 if the chosen variant is not bundled.
+     */
+    public static ModelVariant forDevice(Context context) {
+        ModelVariant preferred = FLOAT32;
+        ActivityManager activityManager = (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+        if (activityManager != null) {
+            int memoryClass = activityManager.getMemoryClass();
+            if (activityManager.isLowRamDevice() || memoryClass <= LOW_END_MEMORY_CLASS_MB) {
+                preferred = INT8;
+            } else if (memoryClass <= MID_RANGE_MEMORY_CLASS_MB) {
+                preferred = FLOAT16;
+            }
+            Log.d(TAG, "Memory class " + memoryClass + " MB, low RAM: "
+                    + activityManager.isLowRamDevice() + ", preferred variant: " + preferred);
+        }
+
+        if (preferred != FLOAT32 && !preferred.isBundled(context)) {
+            Log.d(TAG, preferred.assetName + " is not bundled, using " + FLOAT32.assetName);
+            return FLOAT32;
+        }
+        return preferred;
+    }
+
+    /**
+     * Returns true if this variant's model file is present in the APK assets.
+     */
+    public boolean isBundled(Context context) {
+        try (InputStream ignored = context.getAssets().open(assetName)) {
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+}
@@ -1,92 +1,298 @@
 package com.dianerverotect.model;
 
 import android.content.Context;
-import android.content.res.AssetFileDescriptor;
 import android.util.Log;
+import com.dianerverotect.metrics.Counter;
+import com.dianerverotect.metrics.LatencyHistogram;
+import com.dianerverotect.metrics.MetricsRegistry;
+import com.dianerverotect.metrics.Tracing;
+import com.dianerverotect.policy.ExecutionPolicy;
+import com.dianerverotect.policy.ExecutionPolicyMonitor;
 import org.tensorflow.lite.Interpreter;
-import java.io.FileInputStream;
-import java.io.IOException;
-import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
-import java.nio.MappedByteBuffer;
-import java.nio.channels.FileChannel;
-import java.util.HashMap;
-import java.util.Map;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 
 /**
  * This class handles the prediction of diabetic neuropathy using a TensorFlow Lite model.
+ *
+ * MODEL.tflite (from new.h5) is the only model it can run. model.h5 expects 13 inputs
+ * whose training columns and scaling are not recorded anywhere in the repository, and
+ * model.sav is a scikit-learn model, so neither can be scored against the same features.
  */
 public class NeuropathyPredictor {
     private static final String TAG = "NeuropathyPredictor";
-    private static final String MODEL_FILE = "model.tflite";
+    private static final String SCALER_FILE = "scaler_params.bin";
+    private static final String FALLBACK_VERSION = "fallback";
+    
+    // Bump whenever the thresholds in evaluateRisk change, so stored results get re-scored
+    private static final int RISK_RULES_VERSION = 1;
+    
+    private static final LatencyHistogram LOAD_LATENCY = MetricsRegistry.getShared().histogram("model.load");
+    private static final LatencyHistogram PREDICT_LATENCY = MetricsRegistry.getShared().histogram("model.predict");
+    private static final LatencyHistogram EVALUATE_RISK_LATENCY =
+            MetricsRegistry.getShared().histogram("model.evaluate_risk");
+    private static final LatencyHistogram PREDICT_BATCH_LATENCY =
+            MetricsRegistry.getShared().histogram("model.predict_batch");
+    private static final LatencyHistogram ATTRIBUTE_LATENCY = MetricsRegistry.getShared().histogram("model.attribute");
+    private static final Counter FALLBACK_PREDICTIONS = MetricsRegistry.getShared().counter("model.fallback_predictions");
+    
+    // Scales the fallback algorithm's weighted sum down to reduce overall prediction values
+    private static final float FALLBACK_SCALE = 0.85f;
+    
+    // Interpreters are not thread-safe, so concurrent predictions borrow one each
+    static final int MAX_INTERPRETERS = 3;
     
-    private Interpreter interpreter;
     private final Context context;
+    private final ModelVariant variant;
+    
+    // Lease on the registry model, or null when the bundled model is used
+    private final ModelRegistry.Lease<InstalledModel> lease;
+    
+    // Shared with other predictors for a registry model; null if no model could be loaded
+    private final InterpreterPool<PooledInterpreter> interpreters;
     
-    // Flag to track whether the real model was used for prediction
-    private boolean usedRealModel = false;
+    // Identifies the loaded model for caching; "fallback" if no model could be loaded
+    private final String modelVersion;
+    
+    // How the bundled model file was mapped; null for registry models or if loading failed
+    private final ModelFileLoader.LoadPath loadPath;
+    
+    // Scaler applied while filling the input buffer; null if it could not be loaded
+    private final FeatureScaler scaler;
     
     // Constructor
     public NeuropathyPredictor(Context context) {
+        this(context, ModelVariant.forDevice(context));
+    }
+    
+    /**
+     * Creates a predictor for a specific model variant. A model installed in the
+     * {@link ModelRegistry} takes precedence over the bundled variants.
+     * The predictor holds no per-call state, so it may be used from several threads.
+     */
+    public NeuropathyPredictor(Context context, ModelVariant variant) {
+        this(context, variant, true);
+    }
+    
+    /**
+     * Creates a predictor for a specific model variant, e.g. to compare variants.
+     * 
+     * @param useRegistry false to load the bundled variant even when a model is installed
+     *                    in the {@link ModelRegistry}
+     */
+    public NeuropathyPredictor(Context context, ModelVariant variant, boolean useRegistry) {
         this.context = context;
+        this.variant = variant;
+        lease = useRegistry ? InstalledModel.getRegistry(context).acquire() : null;
+        if (lease != null) {
+            InstalledModel model = lease.get();
+            interpreters = model.getInterpreters();
+            scaler = model.getScaler();
+            modelVersion = model.getVersion();
+            loadPath = null;
+            Log.d(TAG, "Using registry model " + modelVersion);
+            return;
+        }
+        InterpreterPool<PooledInterpreter> loadedInterpreters = null;
+        FeatureScaler loadedScaler = null;
+        String loadedVersion = FALLBACK_VERSION;
+        ModelFileLoader.LoadPath loadedPath = null;
+        long start = System.nanoTime();
+        boolean traced = Tracing.begin("model.load");
         try {
-            Log.d(TAG, "Initializing NeuropathyPredictor with TensorFlow Lite model");
-            interpreter = new Interpreter(loadModelFile());
+            Log.d(TAG, "Initializing NeuropathyPredictor with TensorFlow Lite model " + variant);
+            ModelFileLoader.LoadedModel model = ModelFileLoader.load(context, variant.getAssetName());
+            loadedPath = model.path;
+            Interpreter.Options options = interpreterOptions(context);
+            loadedInterpreters = new InterpreterPool<>(() -> new PooledInterpreter(model.buffer, options),
+                    MAX_INTERPRETERS);
+            loadedVersion = variant.name() + "-" + model.checksum;
+            loadedScaler = loadScaler(loadedInterpreters);
             Log.d(TAG, "NeuropathyPredictor initialized successfully");
         } catch (Exception e) {
             Log.e(TAG, "Error initializing NeuropathyPredictor: " + e.getMessage(), e);
             // We'll continue without the interpreter and handle errors in predict()
+        } finally {
+            LOAD_LATENCY.recordSince(start);
+            Tracing.end(traced);
         }
+        interpreters = loadedInterpreters;
+        scaler = loadedScaler;
+        modelVersion = loadedVersion;
+        loadPath = loadedPath;
     }
     
     /**
-     * Loads the TensorFlow Lite model from assets.
+     * Interpreter threads and delegate for the current execution policy, so a hot or
+     * nearly empty device runs the model on fewer cores.
      */
-    private MappedByteBuffer loadModelFile() throws IOException {
-        try {
-            Log.d(TAG, "Loading model file: " + MODEL_FILE);
-            AssetFileDescriptor fileDescriptor = context.getAssets().openFd(MODEL_FILE);
-            Log.d(TAG, "File descriptor opened successfully");
-            
-            FileInputStream inputStream = new FileInputStream(fileDescriptor.getFileDescriptor());
-            FileChannel fileChannel = inputStream.getChannel();
-            long startOffset = fileDescriptor.getStartOffset();
-            long declaredLength = fileDescriptor.getDeclaredLength();
-            Log.d(TAG, "Model file details - startOffset: " + startOffset + ", declaredLength: " + declaredLength);
-            
-            MappedByteBuffer buffer = fileChannel.map(FileChannel.MapMode.READ_ONLY, startOffset, declaredLength);
-            Log.d(TAG, "Model file loaded successfully");
-            return buffer;
+    static Interpreter.Options interpreterOptions(Context context) {
+        ExecutionPolicy policy = ExecutionPolicyMonitor.getShared(context).getPolicy();
+        Log.d(TAG, "Interpreter options for policy " + policy);
+        return new Interpreter.Options()
+                .setNumThreads(policy.interpreterThreads)
+                .setUseXNNPACK(policy.useXnnpack);
+    }
+    
+    /**
+     * Loads the StandardScaler parameters exported from scaler.pkl and checks that the
+     * feature registry matches the model's input size.
+     */
+    private FeatureScaler loadScaler(InterpreterPool<PooledInterpreter> pool) {
+        try (InputStream in = context.getAssets().open(SCALER_FILE)) {
+            FeatureScaler loaded = FeatureScaler.read(in, FeatureRegistry.forBundledModel());
+            int modelInputs;
+            PooledInterpreter pooled = pool.acquire();
+            try {
+                modelInputs = pooled.getInputCount();
+            } finally {
+                pool.release(pooled);
+            }
+            if (loaded.getInputCount() != modelInputs) {
+                Log.e(TAG, "Feature registry has " + loaded.getInputCount()
+                        + " inputs but the model expects " + modelInputs);
+                return null;
+            }
+            Log.d(TAG, "Feature scaler loaded for " + modelInputs + " model inputs");
+            return loaded;
         } catch (Exception e) {
-            Log.e(TAG, "Error loading model file: " + e.getMessage(), e);
-            throw e;
+            Log.e(TAG, "Error loading feature scaler: " + e.getMessage(), e);
+            return null;
         }
     }
     
+    /**
+     * Returns the model variant this predictor was created with.
+     */
+    public ModelVariant getVariant() {
+        return variant;
+    }
+    
+    /**
+     * Returns an identifier of the loaded model build, or "fallback" without a model.
+     */
+    public String getModelVersion() {
+        return modelVersion;
+    }
+    
+    /**
+     * Returns how the bundled model was loaded, or null if it was not (registry model,
+     * or loading failed and predictions use the fallback algorithm).
+     */
+    public ModelFileLoader.LoadPath getLoadPath() {
+        return loadPath;
+    }
+    
+    /**
+     * Identifies both the model and the risk rules, i.e. everything that determines a
+     * stored assessment. Names the fallback algorithm unless the model and its scaler both
+     * loaded, since only then does the model score anything.
+     */
+    public String getScoringVersion() {
+        return scoringVersion(isModelLoaded() ? modelVersion : FALLBACK_VERSION);
+    }
+    
+    private static String scoringVersion(String modelVersion) {
+        return modelVersion + "/rules-" + RISK_RULES_VERSION;
+    }
+    
+    /**
+     * Returns true if predictions can use the model, i.e. the model and its feature
+     * scaler both loaded. Otherwise every prediction comes from the fallback algorithm.
+     */
+    public boolean isModelLoaded() {
+        return interpreters != null && scaler != null;
+    }
+    
     /**
      * Simple test method to ensure the class is working properly.
      */
     public boolean testConnection() {
         Log.d(TAG, "Testing connection to NeuropathyPredictor");
-        return interpreter != null;
+        return interpreters != null;
     }
     
-
-    
     /**
-     * Predicts neuropathy risk based on input features.
+     * Predicts neuropathy risk based on input features. Safe to call from several threads.
      * 
-     * @param features Array of input features
-     * @return Probability of neuropathy (0.0 to 1.0)
+     * @param features On-device feature vector (see {@link FeatureRegistry})
+     * @return The probability of neuropathy (0.0 to 1.0) and how it was produced
      */
-    public float predict(float[] features) {
-        // Reset the flag at the start of each prediction
-        usedRealModel = false;
-        
+    public PredictionResult predict(float[] features) {
+        long start = System.nanoTime();
+        boolean traced = Tracing.begin("model.predict");
+        PredictionResult result = null;
+        try {
+            result = runPrediction(features, start);
+            return result;
+        } finally {
+            Tracing.end(traced);
+            PREDICT_LATENCY.recordSince(start);
+            if (result == null || !result.usedRealModel()) {
+                FALLBACK_PREDICTIONS.increment();
+            }
+        }
+    }
+    
+    /**
+     * Scores the first count feature vectors in one interpreter call. Used to re-score
+     * stored history in bulk; every result carries the latency of the whole batch.
+     */
+    public PredictionResult[] predictBatch(float[][] features, int count) {
+        long start = System.nanoTime();
+        boolean traced = Tracing.begin("model.predict_batch");
+        try {
+            float[] scores = new float[count];
+            boolean realModel = interpreters != null && scaler != null && count > 0
+                    && runBatch(features, count, scores);
+            if (!realModel) {
+                for (int i = 0; i < count; i++) {
+                    scores[i] = fallbackPredict(features[i]);
+                }
+                FALLBACK_PREDICTIONS.add(count);
+            }
+            PredictionResult.Source source = realModel ? PredictionResult.Source.MODEL
+                    : PredictionResult.Source.FALLBACK;
+            long latency = System.nanoTime() - start;
+            PredictionResult[] results = new PredictionResult[count];
+            for (int i = 0; i < count; i++) {
+                results[i] = new PredictionResult(scores[i], source, modelVersion, latency);
+            }
+            return results;
+        } finally {
+            Tracing.end(traced);
+            PREDICT_BATCH_LATENCY.recordSince(start);
+        }
+    }
+    
+    private boolean runBatch(float[][] features, int count, float[] results) {
+        try {
+            PooledInterpreter pooled = interpreters.acquire();
+            try {
+                pooled.predictBatch(scaler, features, count, results);
+                return true;
+            } finally {
+                interpreters.release(pooled);
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "Error during batched prediction: " + e.getMessage(), e);
+            return false;
+        }
+    }
+    
+    private PredictionResult runPrediction(float[] features, long start) {
         // First check if the interpreter was initialized successfully
-        if (interpreter == null) {
+        if (interpreters == null) {
             Log.e(TAG, "TensorFlow Lite interpreter is null, falling back to backup algorithm");
-            return fallbackPredict(features);
+            return predictFallback(features, start);
+        }
+        
+        // Unscaled inputs are far outside the training distribution, don't feed them
+        if (scaler == null) {
+            Log.e(TAG, "Feature scaler unavailable, falling back to backup algorithm");
+            return predictFallback(features, start);
         }
         
         try {
@@ -100,293 +306,47 @@ public class NeuropathyPredictor {
             }
             Log.d(TAG, featureLog.toString());
             
-            // Get input tensor shape to determine correct input size
-            int[] inputShape = interpreter.getInputTensor(0).shape();
-            Log.d(TAG, "Model input shape: [" + inputShape[0] + ", " + inputShape[1] + "]");
-            
-            // Check if we need to adjust our input size
-            int requiredFeatures = inputShape[1];
-            float[] adjustedFeatures;
-            
-            if (requiredFeatures != features.length) {
-                Log.d(TAG, "Model expects " + requiredFeatures + " features, but we have " + features.length);
-                // Create a new array with the correct size
-                adjustedFeatures = new float[requiredFeatures];
-                // Copy as many features as we can
-                int copyLength = Math.min(features.length, requiredFeatures);
-                System.arraycopy(features, 0, adjustedFeatures, 0, copyLength);
-                // Fill remaining slots with meaningful values instead of zeros
-                // Based on the error logs, we need to provide a proper value for the 11th feature
-                for (int i = copyLength; i < requiredFeatures; i++) {
-                    // Use 1.0f as default for the 11th feature (this is often a bias term)
-                    adjustedFeatures[i] = 1.0f;
-                    Log.d(TAG, "Added default value 1.0f for feature " + i);
-                }
-                
-                // Log the adjusted features
-                StringBuilder adjustedFeatureLog = new StringBuilder("Adjusted features: ");
-                for (int i = 0; i < adjustedFeatures.length; i++) {
-                    adjustedFeatureLog.append(adjustedFeatures[i]);
-                    if (i < adjustedFeatures.length - 1) adjustedFeatureLog.append(", ");
-                }
-                Log.d(TAG, adjustedFeatureLog.toString());
-                
-                Log.d(TAG, "Adjusted input features to match model requirements");
-            } else {
-                adjustedFeatures = features;
-            }
-            
-            // The error suggests we need a 4D input tensor for a CNN model
-            // Let's examine the full input shape details
-            Log.d(TAG, "Examining detailed model input requirements");
-            int[] fullInputShape = interpreter.getInputTensor(0).shape();
-            StringBuilder shapeDetails = new StringBuilder("Full input shape: [");
-            for (int i = 0; i < fullInputShape.length; i++) {
-                shapeDetails.append(fullInputShape[i]);
-                if (i < fullInputShape.length - 1) shapeDetails.append(", ");
-            }
-            shapeDetails.append("]");
-            Log.d(TAG, shapeDetails.toString());
-            
+            float score;
+            PooledInterpreter pooled = interpreters.acquire();
+            boolean traced = Tracing.begin("model.interpreter_run");
             try {
-                // Prepare input based on the model's expected dimensions
-                Object inputData;
-                
-                if (fullInputShape.length == 4) {
-                    // This is likely a CNN model expecting image-like input with shape [batch, height, width, channels]
-                    Log.d(TAG, "Model expects 4D input tensor (CNN model), reshaping data");
-                    
-                    // Create a 4D tensor with shape [1, 1, 1, requiredFeatures] or similar
-                    // The exact dimensions depend on your model, but this is a common approach
-                    float[][][][] input4D = new float[1][1][1][requiredFeatures];
-                    
-                    // Copy our features into this 4D structure
-                    for (int i = 0; i < requiredFeatures; i++) {
-                        input4D[0][0][0][i] = adjustedFeatures[i];
-                    }
-                    
-                    inputData = input4D;
-                    Log.d(TAG, "Reshaped input to 4D tensor with shape [1, 1, 1, " + requiredFeatures + "]");
-                } else if (fullInputShape.length == 3) {
-                    // This is a 3D input tensor
-                    Log.d(TAG, "Model expects 3D input tensor, reshaping data");
-                    
-                    // Create a 3D tensor with the exact shape from the model
-                    // From logs, we see the shape is [1, 11, 1]
-                    int dim1 = fullInputShape[0];
-                    int dim2 = fullInputShape[1];
-                    int dim3 = fullInputShape[2];
-                    
-                    Log.d(TAG, "Creating 3D tensor with exact dimensions: [" + dim1 + ", " + dim2 + ", " + dim3 + "]");
-                    float[][][] input3D = new float[dim1][dim2][dim3];
-                    
-                    // Copy our features - for shape [1, 11, 1], we need to put each feature in [0][i][0]
-                    for (int i = 0; i < requiredFeatures; i++) {
-                        input3D[0][i][0] = adjustedFeatures[i];
-                    }
-                    
-                    inputData = input3D;
-                    Log.d(TAG, "Reshaped input to 3D tensor with exact model dimensions");
-                } else {
-                    // Default to 2D for standard models
-                    float[][] input2D = new float[1][requiredFeatures];
-                    System.arraycopy(adjustedFeatures, 0, input2D[0], 0, requiredFeatures);
-                    inputData = input2D;
-                    Log.d(TAG, "Using standard 2D input with shape [1, " + requiredFeatures + "]");
-                }
-                
-                Log.d(TAG, "Features copied to properly shaped input array");
-                
-                // Get output tensor info
-                int[] outputShape = interpreter.getOutputTensor(0).shape();
-                StringBuilder outShapeStr = new StringBuilder("Output shape: [");
-                for (int i = 0; i < outputShape.length; i++) {
-                    outShapeStr.append(outputShape[i]);
-                    if (i < outputShape.length - 1) outShapeStr.append(", ");
-                }
-                outShapeStr.append("]");
-                Log.d(TAG, outShapeStr.toString());
-                
-                // Run the model
-                if (outputShape.length == 2 && outputShape[0] == 1 && outputShape[1] == 1) {
-                    // Standard output shape
-                    float[][] output = new float[1][1];
-                    interpreter.run(inputData, output);
-                    float result = output[0][0];
-                    usedRealModel = true;
-                    Log.d(TAG, "Prediction result from TensorFlow model: " + result);
-                    return result;
-                } else {
-                    // Use a more flexible approach for unusual output shapes
-                    ByteBuffer outputBuffer = ByteBuffer.allocateDirect(4); // 4 bytes for a float
-                    outputBuffer.order(ByteOrder.nativeOrder());
-                    
-                    Map<Integer, Object> outputs = new HashMap<>();
-                    outputs.put(0, outputBuffer);
-                    
-                    interpreter.runForMultipleInputsOutputs(new Object[]{inputData}, outputs);
-                    
-                    outputBuffer.rewind();
-                    float result = outputBuffer.getFloat();
-                    usedRealModel = true;
-                    Log.d(TAG, "Prediction result from TensorFlow model (using ByteBuffer): " + result);
-                    return result;
-                }
-            } catch (Exception e) {
-                Log.e(TAG, "Error during model inference: " + e.getMessage(), e);
-                
-                // We're getting a tensor allocation error, which suggests a fundamental mismatch
-                // between our input and what the model expects. Let's use our improved fallback algorithm.
-                Log.d(TAG, "TensorFlow model failed with tensor allocation error - using fallback algorithm");
-                usedRealModel = false;
-                
-                // Use our sophisticated fallback algorithm that better matches expected model output
-                float result = fallbackPredict(features); // Use original features, not adjusted ones
-                
-                Log.d(TAG, "Using fallback algorithm result: " + result);
-                return result;
+                score = pooled.predict(scaler, features);
+            } finally {
+                Tracing.end(traced);
+                interpreters.release(pooled);
             }
+            
+            Log.d(TAG, "Prediction result from TensorFlow model: " + score);
+            return new PredictionResult(score, PredictionResult.Source.MODEL, modelVersion,
+                    System.nanoTime() - start);
         } catch (Exception e) {
             Log.e(TAG, "Error during TensorFlow prediction: " + e.getMessage(), e);
             Log.d(TAG, "Falling back to backup algorithm");
-            return fallbackPredict(features);
+            return predictFallback(features, start);
         }
     }
     
+    private PredictionResult predictFallback(float[] features, long start) {
+        return predictFallback(features, modelVersion, start);
+    }
+    
+    private static PredictionResult predictFallback(float[] features, String modelVersion, long start) {
+        return new PredictionResult(fallbackPredict(features), PredictionResult.Source.FALLBACK, modelVersion,
+                System.nanoTime() - start);
+    }
+    
     /**
      * Fallback prediction method using a simplified algorithm when TensorFlow fails.
      * 
      * @param features Array of input features
      * @return Probability of neuropathy (0.0 to 1.0)
      */
-    private float fallbackPredict(float[] features) {
+    private static float fallbackPredict(float[] features) {
         try {
-            Log.d(TAG, "Using fallback prediction algorithm with " + features.length + " features");
-            
-            // Log the features we're using for the fallback algorithm
-            StringBuilder featureLog = new StringBuilder("Fallback algorithm using features: ");
-            for (int i = 0; i < features.length; i++) {
-                featureLog.append(features[i]);
-                if (i < features.length - 1) featureLog.append(", ");
-            }
-            Log.d(TAG, featureLog.toString());
-            
-            // Extract key features (assuming standard order)
-            float age = features.length > 0 ? features[0] : 50.0f; // Default age 50
-            float diabetesDuration = features.length > 1 ? features[1] : 5.0f; // Default 5 years
-            float glucoseLevel = features.length > 2 ? features[2] : 120.0f; // Default 120 mg/dL
-            float emgAmplitude = features.length > 3 ? features[3] : 25.0f; // Default 25 mV
-            float emgFrequency = features.length > 4 ? features[4] : 15.0f; // Default 15 Hz
-            float emgVariability = features.length > 5 ? features[5] : 10.0f; // Default 10
-            
-            // Additional features if available
-            boolean hasTemperatureSensation = features.length > 8 ? features[8] > 0.5f : true;
-            boolean hasPressureSensation = features.length > 9 ? features[9] > 0.5f : true;
-            
-            // Calculate base risk from glucose (major factor)
-            float glucoseRisk;
-            if (glucoseLevel > 200) {
-                glucoseRisk = 0.6f; // Reduced from 0.8f
-            } else if (glucoseLevel > 170) {
-                glucoseRisk = 0.45f; // Reduced from 0.65f
-            } else if (glucoseLevel > 140) {
-                glucoseRisk = 0.3f; // Reduced from 0.5f
-            } else if (glucoseLevel > 120) {
-                glucoseRisk = 0.2f; // Reduced from 0.3f
-            } else {
-                glucoseRisk = 0.1f; // Reduced from 0.15f
-            }
-            Log.d(TAG, "Glucose risk component: " + glucoseRisk);
-            
-            // Factor in diabetes duration (exponential risk increase)
-            // Using sigmoid function to model risk increase with duration
-            float durationFactor = (float)(1.0 / (1.0 + Math.exp(-0.2 * (diabetesDuration - 7))));
-            Log.d(TAG, "Duration factor: " + durationFactor);
-            
-            // Factor in age (risk increases with age, especially after 50)
-            float ageFactor;
-            if (age > 65) {
-                ageFactor = 0.8f;
-            } else if (age > 55) {
-                ageFactor = 0.6f;
-            } else if (age > 45) {
-                ageFactor = 0.4f;
-            } else if (age > 35) {
-                ageFactor = 0.2f;
-            } else {
-                ageFactor = 0.1f;
-            }
-            Log.d(TAG, "Age factor: " + ageFactor);
-            
-            // Factor in EMG readings - more sophisticated analysis
-            float emgRisk = 0.0f;
-            
-            // Amplitude analysis (lower amplitude = higher risk)
-            float amplitudeRisk;
-            if (emgAmplitude < 15) {
-                amplitudeRisk = 0.9f; // Severe reduction
-            } else if (emgAmplitude < 20) {
-                amplitudeRisk = 0.7f; // Significant reduction
-            } else if (emgAmplitude < 25) {
-                amplitudeRisk = 0.5f; // Moderate reduction
-            } else if (emgAmplitude < 30) {
-                amplitudeRisk = 0.3f; // Mild reduction
-            } else {
-                amplitudeRisk = 0.1f; // Normal range
-            }
-            
-            // Frequency analysis (higher frequency = higher risk)
-            float frequencyRisk;
-            if (emgFrequency > 30) {
-                frequencyRisk = 0.9f; // Severe abnormality
-            } else if (emgFrequency > 25) {
-                frequencyRisk = 0.7f; // Significant abnormality
-            } else if (emgFrequency > 20) {
-                frequencyRisk = 0.5f; // Moderate abnormality
-            } else if (emgFrequency > 15) {
-                frequencyRisk = 0.3f; // Mild abnormality
-            } else {
-                frequencyRisk = 0.1f; // Normal range
-            }
-            
-            // Variability analysis (higher variability = higher risk)
-            float variabilityRisk;
-            if (emgVariability > 25) {
-                variabilityRisk = 0.9f; // Severe variability
-            } else if (emgVariability > 20) {
-                variabilityRisk = 0.7f; // Significant variability
-            } else if (emgVariability > 15) {
-                variabilityRisk = 0.5f; // Moderate variability
-            } else if (emgVariability > 10) {
-                variabilityRisk = 0.3f; // Mild variability
-            } else {
-                variabilityRisk = 0.1f; // Normal range
-            }
-            
-            // Combine EMG factors
-            emgRisk = (amplitudeRisk * 0.4f) + (frequencyRisk * 0.3f) + (variabilityRisk * 0.3f);
-            Log.d(TAG, "EMG risk component: " + emgRisk);
-            
-            // Factor in sensation loss
-            float sensationRisk = 0.0f;
-            if (!hasTemperatureSensation && !hasPressureSensation) {
-                sensationRisk = 0.9f; // Both sensations lost - high risk
-            } else if (!hasTemperatureSensation || !hasPressureSensation) {
-                sensationRisk = 0.5f; // One sensation lost - moderate risk
-            } else {
-                sensationRisk = 0.1f; // Normal sensation
+            float prediction = 0.0f;
+            for (float contribution : fallbackContributions(features)) {
+                prediction += contribution;
             }
-            Log.d(TAG, "Sensation risk component: " + sensationRisk);
-            
-            // Combine all factors with appropriate weights based on clinical importance
-            float prediction = (glucoseRisk * 0.30f) +  // Glucose is a primary factor but reduced weight
-                              (durationFactor * 0.15f) + // Duration is important but less than current glucose
-                              (ageFactor * 0.10f) +     // Age is a risk factor but less significant
-                              (emgRisk * 0.25f) +       // EMG findings are important but reduced weight
-                              (sensationRisk * 0.10f);  // Sensation is important but often a later sign
-            
-            // Apply a scaling factor to reduce overall prediction values
-            prediction = prediction * 0.85f; // Scale down the final prediction value
             
             // Ensure result is in valid range 0-1
             prediction = Math.max(0.0f, Math.min(prediction, 1.0f));
@@ -401,27 +361,166 @@ public class NeuropathyPredictor {
     }
     
     /**
-     * Checks if the real ML model was used for the last prediction.
+     * Splits the fallback score into the term of each on-device feature. The algorithm is
+     * a weighted sum of per-feature risk components, so the terms add up to the score
+     * (before clamping) and each one is that feature's exact contribution.
      * 
-     * @return true if the real model was used, false if fallback algorithm was used
+     * @param features Array of input features
+     * @return Contribution per on-device feature, indexed as in {@link FeatureRegistry}
      */
-    public boolean usedRealModel() {
-        return usedRealModel;
+    private static float[] fallbackContributions(float[] features) {
+        Log.d(TAG, "Using fallback prediction algorithm with " + features.length + " features");
+        
+        // Log the features we're using for the fallback algorithm
+        StringBuilder featureLog = new StringBuilder("Fallback algorithm using features: ");
+        for (int i = 0; i < features.length; i++) {
+            featureLog.append(features[i]);
+            if (i < features.length - 1) featureLog.append(", ");
+        }
+        Log.d(TAG, featureLog.toString());
+        
+        // Extract key features (assuming standard order)
+        float age = features.length > 0 ? features[0] : 50.0f; // Default age 50
+        float diabetesDuration = features.length > 1 ? features[1] : 5.0f; // Default 5 years
+        float glucoseLevel = features.length > 2 ? features[2] : 120.0f; // Default 120 mg/dL
+        float emgAmplitude = features.length > 3 ? features[3] : 25.0f; // Default 25 mV
+        float emgFrequency = features.length > 4 ? features[4] : 15.0f; // Default 15 Hz
+        float emgVariability = features.length > 5 ? features[5] : 10.0f; // Default 10
+        
+        // Additional features if available
+        boolean hasTemperatureSensation = features.length > 8 ? features[8] > 0.5f : true;
+        boolean hasPressureSensation = features.length > 9 ? features[9] > 0.5f : true;
+        
+        // Calculate base risk from glucose (major factor)
+        float glucoseRisk;
+        if (glucoseLevel > 200) {
+            glucoseRisk = 0.6f; // Reduced from 0.8f
+        } else if (glucoseLevel > 170) {
+            glucoseRisk = 0.45f; // Reduced from 0.65f
+        } else if (glucoseLevel > 140) {
+            glucoseRisk = 0.3f; // Reduced from 0.5f
+        } else if (glucoseLevel > 120) {
+            glucoseRisk = 0.2f; // Reduced from 0.3f
+        } else {
+            glucoseRisk = 0.1f; // Reduced from 0.15f
+        }
+        Log.d(TAG, "Glucose risk component: " + glucoseRisk);
+        
+        // Factor in diabetes duration (exponential risk increase)
+        // Using sigmoid function to model risk increase with duration
+        float durationFactor = (float)(1.0 / (1.0 + Math.exp(-0.2 * (diabetesDuration - 7))));
+        Log.d(TAG, "Duration factor: " + durationFactor);
+        
+        // Factor in age (risk increases with age, especially after 50)
+        float ageFactor;
+        if (age > 65) {
+            ageFactor = 0.8f;
+        } else if (age > 55) {
+            ageFactor = 0.6f;
+        } else if (age > 45) {
+            ageFactor = 0.4f;
+        } else if (age > 35) {
+            ageFactor = 0.2f;
+        } else {
+            ageFactor = 0.1f;
+        }
+        Log.d(TAG, "Age factor: " + ageFactor);
+        
+        // Factor in EMG readings - more sophisticated analysis
+        // Amplitude analysis (lower amplitude = higher risk)
+        float amplitudeRisk;
+        if (emgAmplitude < 15) {
+            amplitudeRisk = 0.9f; // Severe reduction
+        } else if (emgAmplitude < 20) {
+            amplitudeRisk = 0.7f; // Significant reduction
+        } else if (emgAmplitude < 25) {
+            amplitudeRisk = 0.5f; // Moderate reduction
+        } else if (emgAmplitude < 30) {
+            amplitudeRisk = 0.3f; // Mild reduction
+        } else {
+            amplitudeRisk = 0.1f; // Normal range
+        }
+        
+        // Frequency analysis (higher frequency = higher risk)
+        float frequencyRisk;
+        if (emgFrequency > 30) {
+            frequencyRisk = 0.9f; // Severe abnormality
+        } else if (emgFrequency > 25) {
+            frequencyRisk = 0.7f; // Significant abnormality
+        } else if (emgFrequency > 20) {
+            frequencyRisk = 0.5f; // Moderate abnormality
+        } else if (emgFrequency > 15) {
+            frequencyRisk = 0.3f; // Mild abnormality
+        } else {
+            frequencyRisk = 0.1f; // Normal range
+        }
+        
+        // Variability analysis (higher variability = higher risk)
+        float variabilityRisk;
+        if (emgVariability > 25) {
+            variabilityRisk = 0.9f; // Severe variability
+        } else if (emgVariability > 20) {
+            variabilityRisk = 0.7f; // Significant variability
+        } else if (emgVariability > 15) {
+            variabilityRisk = 0.5f; // Moderate variability
+        } else if (emgVariability > 10) {
+            variabilityRisk = 0.3f; // Mild variability
+        } else {
+            variabilityRisk = 0.1f; // Normal range
+        }
+        
+        Log.d(TAG, "EMG risk components: amplitude " + amplitudeRisk + ", frequency " + frequencyRisk
+                + ", variability " + variabilityRisk);
+        
+        // Factor in sensation loss
+        float sensationRisk = 0.0f;
+        if (!hasTemperatureSensation && !hasPressureSensation) {
+            sensationRisk = 0.9f; // Both sensations lost - high risk
+        } else if (!hasTemperatureSensation || !hasPressureSensation) {
+            sensationRisk = 0.5f; // One sensation lost - moderate risk
+        } else {
+            sensationRisk = 0.1f; // Normal sensation
+        }
+        Log.d(TAG, "Sensation risk component: " + sensationRisk);
+        
+        // Combine all factors with appropriate weights based on clinical importance,
+        // scaled down by 0.85 to reduce overall prediction values
+        float[] contributions = new float[FeatureRegistry.DEVICE_FEATURE_COUNT];
+        contributions[FeatureRegistry.DEVICE_GLUCOSE] = glucoseRisk * 0.30f * FALLBACK_SCALE; // Primary factor but reduced weight
+        contributions[FeatureRegistry.DEVICE_DIABETES_DURATION] = durationFactor * 0.15f * FALLBACK_SCALE;
+        contributions[FeatureRegistry.DEVICE_AGE] = ageFactor * 0.10f * FALLBACK_SCALE;
+        // EMG findings are important but reduced weight (0.25), split 40/30/30
+        contributions[FeatureRegistry.DEVICE_EMG_MAX] = amplitudeRisk * 0.4f * 0.25f * FALLBACK_SCALE;
+        contributions[FeatureRegistry.DEVICE_EMG_RANGE] = frequencyRisk * 0.3f * 0.25f * FALLBACK_SCALE;
+        contributions[FeatureRegistry.DEVICE_EMG_MEAN] = variabilityRisk * 0.3f * 0.25f * FALLBACK_SCALE;
+        // Sensation is often a later sign; loss is scored jointly, so split it evenly
+        float sensationContribution = sensationRisk * 0.10f * FALLBACK_SCALE / 2;
+        contributions[FeatureRegistry.DEVICE_TEMPERATURE_SENSATION] = sensationContribution;
+        contributions[FeatureRegistry.DEVICE_PRESSURE_SENSATION] = sensationContribution;
+        return contributions;
     }
     
     /**
      * Evaluates neuropathy risk based on prediction and additional factors.
      * 
-     * @param prediction Raw prediction from model
+     * @param prediction Result of {@link #predict(float[])}
      * @param fastingGlucose Fasting glucose value
      * @param hasTemperatureSensation Whether patient can sense temperature
      * @param hasPressureSensation Whether patient can sense pressure
      * @return Risk assessment result
      */
-    public RiskAssessment evaluateRisk(float prediction, float fastingGlucose, 
+    public RiskAssessment evaluateRisk(PredictionResult prediction, float fastingGlucose, 
                                       boolean hasTemperatureSensation, boolean hasPressureSensation) {
+        return evaluate(prediction, fastingGlucose, hasTemperatureSensation, hasPressureSensation);
+    }
+    
+    private static RiskAssessment evaluate(PredictionResult prediction, float fastingGlucose,
+                                           boolean hasTemperatureSensation, boolean hasPressureSensation) {
+        long start = System.nanoTime();
+        boolean traced = Tracing.begin("model.evaluate_risk");
         try {
-            Log.d(TAG, "Evaluating risk with prediction: " + prediction + ", glucose: " + fastingGlucose + 
+            float score = prediction.getScore();
+            Log.d(TAG, "Evaluating risk with prediction: " + score + ", glucose: " + fastingGlucose + 
                   ", temperature sensation: " + hasTemperatureSensation + ", pressure sensation: " + hasPressureSensation);
             
             // Default threshold - increased to make HIGH risk less common
@@ -447,120 +546,130 @@ public class NeuropathyPredictor {
             
             // Determine risk level with adjusted thresholds
             RiskLevel riskLevel;
-            if (prediction > threshold + 0.3f) { // Increased from 0.25f
+            if (score > threshold + 0.3f) { // Increased from 0.25f
                 riskLevel = RiskLevel.HIGH;
-            } else if (prediction > threshold) {
+            } else if (score > threshold) {
                 riskLevel = RiskLevel.MODERATE;
             } else {
                 riskLevel = RiskLevel.LOW;
             }
             
             // Add more detailed logging to help diagnose risk level determination
-            Log.d(TAG, "Risk calculation: prediction = " + prediction + ", threshold = " + threshold);
+            Log.d(TAG, "Risk calculation: prediction = " + score + ", threshold = " + threshold);
             Log.d(TAG, "HIGH threshold = " + (threshold + 0.3f) + ", MODERATE threshold = " + threshold);
             Log.d(TAG, "Determined risk level: " + riskLevel);
             
-            // Generate recommendations based on risk level
-            Log.d(TAG, "Generating recommendations...");
-            Map<String, String> recommendations = generateRecommendations(riskLevel, fastingGlucose, 
-                                                                        hasTemperatureSensation, hasPressureSensation);
-            Log.d(TAG, "Generated " + recommendations.size() + " recommendations");
+            // Look up the precompiled recommendations for this case
+            List<Recommendation> recommendations = RecommendationEngine.recommend(riskLevel, fastingGlucose,
+                                                                                hasTemperatureSensation, hasPressureSensation);
+            Log.d(TAG, "Selected " + recommendations.size() + " recommendations");
             
-            // Create risk assessment and set the model flag
             RiskAssessment assessment = new RiskAssessment(prediction, riskLevel, recommendations);
-            assessment.setUsedRealModel(usedRealModel);
             Log.d(TAG, "Risk assessment created successfully using " + 
-                  (usedRealModel ? "real ML model" : "fallback algorithm"));
+                  (prediction.usedRealModel() ? "real ML model" : "fallback algorithm"));
             return assessment;
         } catch (Exception e) {
             Log.e(TAG, "Error evaluating risk: " + e.getMessage(), e);
             // Create a default low risk assessment in case of error
-            Map<String, String> defaultRecommendations = new HashMap<>();
-            defaultRecommendations.put("Error", "An error occurred during risk assessment. Please try again later.");
-            RiskAssessment errorAssessment = new RiskAssessment(0.0f, RiskLevel.LOW, defaultRecommendations);
-            errorAssessment.setUsedRealModel(false);
-            return errorAssessment;
+            PredictionResult neutral = new PredictionResult(0.0f, PredictionResult.Source.FALLBACK,
+                                                            prediction.getModelVersion(), 0);
+            return new RiskAssessment(neutral, RiskLevel.LOW, RecommendationEngine.ERROR_RECOMMENDATIONS);
+        } finally {
+            Tracing.end(traced);
+            EVALUATE_RISK_LATENCY.recordSince(start);
         }
     }
     
     /**
-     * Generates recommendations based on risk level and patient data.
+     * Explains a prediction as one attribution per feature, largest effect first. For the
+     * model, each feature it reads is set to its training mean in turn and all those
+     * variants are scored in a single batched interpreter call, so an explanation costs
+     * one extra inference. The fallback algorithm's contributions are the exact terms of
+     * its weighted sum and cost nothing. Placeholder features are left out on both paths,
+     * see {@link FeatureRegistry#isPlaceholder}.
+     * 
+     * @return The attributions, or an empty list if the variants could not be scored
      */
-    private Map<String, String> generateRecommendations(RiskLevel riskLevel, float fastingGlucose,
-                                                      boolean hasTemperatureSensation, boolean hasPressureSensation) {
+    public List<FeatureAttribution> attribute(float[] features, PredictionResult prediction) {
+        long start = System.nanoTime();
+        boolean traced = Tracing.begin("model.attribute");
         try {
-            Log.d(TAG, "Generating recommendations for risk level: " + riskLevel);
-            Map<String, String> recommendations = new HashMap<>();
-            
-            // Add general recommendations based on risk level
-            switch (riskLevel) {
-                case HIGH:
-                    Log.d(TAG, "Adding HIGH risk recommendations");
-                    recommendations.put("Medical Consultation", 
-                            "Schedule an appointment with your healthcare provider as soon as possible.");
-                    recommendations.put("Glucose Management", 
-                            "Monitor your blood glucose levels more frequently and maintain tight control.");
-                    recommendations.put("Foot Care", 
-                            "Inspect your feet daily for cuts, blisters, or sores.");
-                    break;
-                    
-                case MODERATE:
-                    Log.d(TAG, "Adding MODERATE risk recommendations");
-                    recommendations.put("Medical Follow-up", 
-                            "Discuss these results with your healthcare provider at your next appointment.");
-                    recommendations.put("Glucose Management", 
-                            "Continue monitoring your blood glucose levels regularly.");
-                    recommendations.put("Lifestyle", 
-                            "Consider increasing physical activity to improve circulation.");
-                    break;
-                    
-                case LOW:
-                    Log.d(TAG, "Adding LOW risk recommendations");
-                    recommendations.put("Preventive Care", 
-                            "Continue your current diabetes management plan.");
-                    recommendations.put("Monitoring", 
-                            "Regular check-ups with your healthcare provider are recommended.");
-                    recommendations.put("Lifestyle", 
-                            "Maintain a healthy diet and regular exercise routine.");
-                    break;
-            }
-            
-            // Add specific recommendations based on symptoms
-            if (!hasTemperatureSensation || !hasPressureSensation) {
-                Log.d(TAG, "Adding sensory protection recommendations");
-                recommendations.put("Sensory Protection", 
-                        "Take extra precautions with hot surfaces and sharp objects. Wear protective footwear.");
+            if (!prediction.usedRealModel() || interpreters == null || scaler == null) {
+                return fallbackAttributions(features);
             }
             
-            // Add recommendations based on glucose levels
-            if (fastingGlucose > 140) {
-                Log.d(TAG, "Adding glucose control recommendations");
-                recommendations.put("Glucose Control", 
-                        "Your glucose levels are elevated. Consider dietary adjustments and consult your healthcare provider.");
+            float[] baselines = new float[features.length];
+            for (int i = 0; i < features.length; i++) {
+                baselines[i] = scaler.getBaseline(i);
             }
-            
-            Log.d(TAG, "Generated " + recommendations.size() + " recommendations");
-            return recommendations;
-        } catch (Exception e) {
-            Log.e(TAG, "Error generating recommendations: " + e.getMessage(), e);
-            Map<String, String> errorRecommendations = new HashMap<>();
-            errorRecommendations.put("General Advice", "Continue with your regular diabetes management plan and consult your healthcare provider.");
-            return errorRecommendations;
+            return FeatureAttribution.ablate(features, prediction.getScore(), baselines, (rows, count) -> {
+                float[] scores = new float[count];
+                return runBatch(rows, count, scores) ? scores : null;
+            });
+        } finally {
+            Tracing.end(traced);
+            ATTRIBUTE_LATENCY.recordSince(start);
         }
     }
     
+    private static List<FeatureAttribution> fallbackAttributions(float[] features) {
+        float[] terms = fallbackContributions(features);
+        return FeatureAttribution.fromTerms(Arrays.copyOf(terms, Math.min(terms.length, features.length)));
+    }
+    
     /**
-     * Closes the interpreter when no longer needed.
+     * Predicts and evaluates risk in one step, with attributions, reusing the cached
+     * assessment when the same inputs have already been scored by the same model.
+     */
+    public RiskAssessment assess(float[] features, float fastingGlucose,
+                                 boolean hasTemperatureSensation, boolean hasPressureSensation) {
+        PredictionCache cache = PredictionCache.getShared();
+        PredictionCache.Key key = PredictionCache.key(features, fastingGlucose,
+                hasTemperatureSensation, hasPressureSensation, modelVersion);
+        RiskAssessment cached = cache.get(key);
+        if (cached != null) {
+            Log.d(TAG, "Using cached risk assessment, " + cache);
+            return cached;
+        }
+        
+        PredictionResult prediction = predict(features);
+        RiskAssessment assessment = evaluateRisk(prediction, fastingGlucose,
+                hasTemperatureSensation, hasPressureSensation)
+                .withAttributions(attribute(features, prediction));
+        
+        // A fallback result caused by a transient model error must not be cached
+        // under the model's version
+        if (prediction.usedRealModel() || FALLBACK_VERSION.equals(modelVersion)) {
+            cache.put(key, assessment);
+        }
+        Log.d(TAG, "Cached new risk assessment, " + cache);
+        return assessment;
+    }
+    
+    /**
+     * Scores the inputs with the fallback algorithm only, which takes microseconds, as a
+     * provisional result to show while a predictor is created and {@link #assess} runs the
+     * model. Needs no predictor, so it is safe on the main thread; the result is not cached.
+     */
+    public static RiskAssessment assessProvisional(float[] features, float fastingGlucose,
+                                                   boolean hasTemperatureSensation, boolean hasPressureSensation) {
+        PredictionResult prediction = predictFallback(features, FALLBACK_VERSION, System.nanoTime());
+        return evaluate(prediction, fastingGlucose, hasTemperatureSensation, hasPressureSensation)
+                .withAttributions(fallbackAttributions(features));
+    }
+    
+    /**
+     * Closes the interpreters when no longer needed. Predictions still running finish
+     * first; their interpreter is closed when it is returned.
      */
     public void close() {
         Log.d(TAG, "Closing NeuropathyPredictor resources");
-        if (interpreter != null) {
-            try {
-                interpreter.close();
-                Log.d(TAG, "TensorFlow Lite interpreter closed successfully");
-            } catch (Exception e) {
-                Log.e(TAG, "Error closing interpreter: " + e.getMessage(), e);
-            }
+        if (lease != null) {
+            // The registry closes the shared model once it is replaced and unused
+            lease.close();
+        } else if (interpreters != null) {
+            interpreters.close();
+            Log.d(TAG, "TensorFlow Lite interpreters closed successfully");
         }
     }
     
@@ -571,45 +680,75 @@ public class NeuropathyPredictor {
         LOW, MODERATE, HIGH
     }
     /**
-     * Risk assessment result class.
+     * Risk assessment result class. Immutable, so cached assessments can be shared.
      */
     public static class RiskAssessment {
-        private final float predictionScore;
+        private final PredictionResult prediction;
         private final RiskLevel riskLevel;
-        private final Map<String, String> recommendations;
-        private boolean usedRealModel;
+        private final List<Recommendation> recommendations;
+        private final List<FeatureAttribution> attributions;
+        
+        public RiskAssessment(PredictionResult prediction, RiskLevel riskLevel, List<Recommendation> recommendations) {
+            this(prediction, riskLevel, Collections.unmodifiableList(recommendations),
+                    Collections.emptyList());
+        }
         
-        public RiskAssessment(float predictionScore, RiskLevel riskLevel, Map<String, String> recommendations) {
-            this.predictionScore = predictionScore;
+        private RiskAssessment(PredictionResult prediction, RiskLevel riskLevel, List<Recommendation> recommendations,
+                               List<FeatureAttribution> attributions) {
+            this.prediction = prediction;
             this.riskLevel = riskLevel;
             this.recommendations = recommendations;
-            this.usedRealModel = false;
+            this.attributions = attributions;
         }
         
-        public void setUsedRealModel(boolean usedRealModel) {
-            this.usedRealModel = usedRealModel;
+        /**
+         * Returns a copy of this assessment explained by the given attributions.
+         */
+        public RiskAssessment withAttributions(List<FeatureAttribution> attributions) {
+            return new RiskAssessment(prediction, riskLevel, recommendations,
+                    Collections.unmodifiableList(attributions));
+        }
+        
+        public PredictionResult getPrediction() {
+            return prediction;
         }
         
         public boolean usedRealModel() {
-            return usedRealModel;
+            return prediction.usedRealModel();
+        }
+        
+        /**
+         * Returns the {@link NeuropathyPredictor#getScoringVersion() scoring version} that
+         * produced this assessment, the fallback one if the model did not score it.
+         */
+        public String getScoringVersion() {
+            return scoringVersion(prediction.usedRealModel() ? prediction.getModelVersion() : FALLBACK_VERSION);
         }
         
         public float getPredictionScore() {
-            return predictionScore;
+            return prediction.getScore();
         }
         
         public RiskLevel getRiskLevel() {
             return riskLevel;
         }
         
-        public Map<String, String> getRecommendations() {
+        public List<Recommendation> getRecommendations() {
             return recommendations;
         }
         
+        /**
+         * Returns the features that drove the score, largest effect first; empty if the
+         * assessment was not explained.
+         */
+        public List<FeatureAttribution> getAttributions() {
+            return attributions;
+        }
+        
         @Override
         public String toString() {
             return "Risk Level: " + riskLevel + 
-                   "\nPrediction Score: " + predictionScore;
+                   "\nPrediction Score: " + prediction.getScore();
         }
     }
 }
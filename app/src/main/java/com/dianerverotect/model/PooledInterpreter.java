@@ -0,0 +1,103 @@
+package com.dianerverotect.model;
+
+import org.tensorflow.lite.Interpreter;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * One interpreter of an {@link InterpreterPool} with its own input and output buffers.
+ * Used by one thread at a time, so nothing here is synchronized.
+ */
+class PooledInterpreter implements AutoCloseable {
+
+    private final Interpreter interpreter;
+    // Reused for every prediction to avoid per-call allocations
+    private final ByteBuffer inputBuffer;
+    private final float[][] outputBuffer = new float[1][1];
+
+    PooledInterpreter(ByteBuffer model, Interpreter.Options options) {
+        interpreter = new Interpreter(model, options);
+        inputBuffer = ByteBuffer.allocateDirect(interpreter.getInputTensor(0).numBytes());
+        inputBuffer.order(ByteOrder.nativeOrder());
+    }
+
+    int getInputCount() {
+        return interpreter.getInputTensor(0).numElements();
+    }
+
+    /**
+     * Runs the model on zeros (the training mean after scaling), so the first real
+     * prediction does not pay for tensor allocation.
+     */
+    void warmUp() {
+        inputBuffer.rewind();
+        while (inputBuffer.hasRemaining()) {
+            inputBuffer.put((byte) 0);
+        }
+        inputBuffer.rewind();
+        run();
+    }
+
+    float predict(FeatureScaler scaler, float[] features) {
+        // Map, scale and write the features straight into the input buffer. The buffer
+        // is sized from the input tensor, so it matches any [1, n], [1, n, 1] or
+        // [1, 1, 1, n] layout without reshaping.
+        inputBuffer.rewind();
+        scaler.fill(inputBuffer, features);
+        inputBuffer.rewind();
+        return run();
+    }
+
+    private float run() {
+        int[] outputShape = interpreter.getOutputTensor(0).shape();
+        if (outputShape.length == 2 && outputShape[0] == 1 && outputShape[1] == 1) {
+            // Standard output shape
+            interpreter.run(inputBuffer, outputBuffer);
+            return outputBuffer[0][0];
+        }
+        // Use a more flexible approach for unusual output shapes
+        ByteBuffer flexibleOutput = ByteBuffer.allocateDirect(interpreter.getOutputTensor(0).numBytes());
+        flexibleOutput.order(ByteOrder.nativeOrder());
+        interpreter.run(inputBuffer, flexibleOutput);
+        flexibleOutput.rewind();
+        return flexibleOutput.getFloat();
+    }
+
+    /**
+     * Scores the first count feature vectors in one interpreter call, writing one
+     * probability per row into results.
+     */
+    void predictBatch(FeatureScaler scaler, float[][] features, int count, float[] results) {
+        // Every supported layout has the batch as its first dimension
+        int[] singleShape = interpreter.getInputTensor(0).shape();
+        int[] batchShape = singleShape.clone();
+        batchShape[0] = count;
+        try {
+            interpreter.resizeInput(0, batchShape);
+            interpreter.allocateTensors();
+            ByteBuffer batchInput = ByteBuffer.allocateDirect(interpreter.getInputTensor(0).numBytes());
+            batchInput.order(ByteOrder.nativeOrder());
+            for (int i = 0; i < count; i++) {
+                scaler.fill(batchInput, features[i]);
+            }
+            batchInput.rewind();
+            ByteBuffer batchOutput = ByteBuffer.allocateDirect(interpreter.getOutputTensor(0).numBytes());
+            batchOutput.order(ByteOrder.nativeOrder());
+            interpreter.run(batchInput, batchOutput);
+            int outputsPerRow = interpreter.getOutputTensor(0).numElements() / count;
+            for (int i = 0; i < count; i++) {
+                results[i] = batchOutput.getFloat(i * outputsPerRow * Float.BYTES);
+            }
+        } finally {
+            // predict() reuses the single-row input buffer
+            interpreter.resizeInput(0, singleShape);
+            interpreter.allocateTensors();
+        }
+    }
+
+    @Override
+    public void close() {
+        interpreter.close();
+    }
+}
@@ -0,0 +1,144 @@
+package com.dianerverotect.model;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Bounded LRU cache of risk assessments, keyed by the quantized feature vector and the
+ * version of the model that produced them.
+ *
+ * Reopening a result, re-scoring history or comparing what-if inputs tends to repeat the
+ * same inputs, so a hit skips both the interpreter call and the risk evaluation. Entries
+ * scored by an older model simply stop matching and age out through LRU eviction, so
+ * predictors with different models can share the cache.
+ */
+public class PredictionCache {
+
+    /** Features are compared at a resolution of 0.01. */
+    private static final float QUANTUM = 0.01f;
+    private static final int DEFAULT_CAPACITY = 256;
+
+    private static PredictionCache shared;
+
+    private final int capacity;
+    private final LinkedHashMap<Key, NeuropathyPredictor.RiskAssessment> entries;
+    private long hits;
+    private long misses;
+
+    public PredictionCache(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        this.capacity = capacity;
+        // Access order turns the LinkedHashMap into an LRU list
+        this.entries = new LinkedHashMap<Key, NeuropathyPredictor.RiskAssessment>(capacity, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, NeuropathyPredictor.RiskAssessment> eldest) {
+                return size() > PredictionCache.this.capacity;
+            }
+        };
+    }
+
+    /**
+     * Process-wide cache shared by all predictors.
+     */
+    public static synchronized PredictionCache getShared() {
+        if (shared == null) {
+            shared = new PredictionCache(DEFAULT_CAPACITY);
+        }
+        return shared;
+    }
+
+    /**
+     * Builds the lookup key for one assessment request scored by the given model version.
+     */
+    public static Key key(float[] features, float fastingGlucose,
+                          boolean hasTemperatureSensation, boolean hasPressureSensation,
+                          String modelVersion) {
+        int[] quantized = new int[features.length + 2];
+        for (int i = 0; i < features.length; i++) {
+            quantized[i] = Math.round(features[i] / QUANTUM);
+        }
+        quantized[features.length] = Math.round(fastingGlucose / QUANTUM);
+        quantized[features.length + 1] = (hasTemperatureSensation ? 1 : 0) | (hasPressureSensation ? 2 : 0);
+        return new Key(quantized, modelVersion);
+    }
+
+    /**
+     * Returns the cached assessment for the key, or null.
+     */
+    public synchronized NeuropathyPredictor.RiskAssessment get(Key key) {
+        NeuropathyPredictor.RiskAssessment assessment = entries.get(key);
+        if (assessment != null) {
+            hits++;
+        } else {
+            misses++;
+        }
+        return assessment;
+    }
+
+    /**
+     * Like {@link #get(Key)}, but not counted as a hit or miss, for callers that
+     * only check whether a result is already available.
+     */
+    public synchronized NeuropathyPredictor.RiskAssessment peek(Key key) {
+        return entries.get(key);
+    }
+
+    public synchronized void put(Key key, NeuropathyPredictor.RiskAssessment assessment) {
+        entries.put(key, assessment);
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long getHitCount() {
+        return hits;
+    }
+
+    public synchronized long getMissCount() {
+        return misses;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "PredictionCache{size=" + entries.size() + "/" + capacity + ", hits=" + hits
+                + ", misses=" + misses + "}";
+    }
+
+    /**
+     * Quantized feature vector and model version with a precomputed hash.
+     */
+    public static final class Key {
+        private final int[] quantized;
+        private final String modelVersion;
+        private final int hash;
+
+        private Key(int[] quantized, String modelVersion) {
+            this.quantized = quantized;
+            this.modelVersion = modelVersion;
+            this.hash = 31 * Arrays.hashCode(quantized) + Objects.hashCode(modelVersion);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key other = (Key) o;
+            return hash == other.hash && Arrays.equals(quantized, other.quantized)
+                    && Objects.equals(modelVersion, other.modelVersion);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
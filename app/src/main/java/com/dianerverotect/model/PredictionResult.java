@@ -0,0 +1,60 @@
+package com.dianerverotect.model;
+
+/**
+ * Immutable outcome of one prediction: the score and everything needed to tell how it was
+ * produced, so results can be passed between threads and reported without asking the
+ * predictor afterwards.
+ */
+public final class PredictionResult {
+
+    public enum Source {
+        /** Scored by the TFLite model. */
+        MODEL,
+        /** Scored by the fallback algorithm, because no model is loaded or it failed. */
+        FALLBACK
+    }
+
+    private final float score;
+    private final Source source;
+    private final String modelVersion;
+    private final long latencyNanos;
+
+    /**
+     * @param score        probability of neuropathy, 0 to 1
+     * @param modelVersion the predictor's model version (see
+     *                     {@link NeuropathyPredictor#getModelVersion()})
+     * @param latencyNanos time taken to produce the score
+     */
+    public PredictionResult(float score, Source source, String modelVersion, long latencyNanos) {
+        this.score = score;
+        this.source = source;
+        this.modelVersion = modelVersion;
+        this.latencyNanos = latencyNanos;
+    }
+
+    public float getScore() {
+        return score;
+    }
+
+    public Source getSource() {
+        return source;
+    }
+
+    public boolean usedRealModel() {
+        return source == Source.MODEL;
+    }
+
+    public String getModelVersion() {
+        return modelVersion;
+    }
+
+    public long getLatencyNanos() {
+        return latencyNanos;
+    }
+
+    @Override
+    public String toString() {
+        return "score=" + score + " (" + source + ", " + modelVersion + ", "
+                + latencyNanos / 1000 + " us)";
+    }
+}
@@ -0,0 +1,37 @@
+package com.dianerverotect.model;
+
+/**
+ * A single recommendation shown with a risk assessment. Instances are created once by
+ * {@link RecommendationEngine} and shared between assessments.
+ */
+public final class Recommendation {
+    private final long id;
+    private final String title;
+    private final String description;
+
+    public Recommendation(long id, String title, String description) {
+        this.id = id;
+        this.title = title;
+        this.description = description;
+    }
+
+    /**
+     * Stable identifier of the rule that produced this recommendation.
+     */
+    public long getId() {
+        return id;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    @Override
+    public String toString() {
+        return title + ": " + description;
+    }
+}
@@ -6,48 +6,71 @@ import android.view.ViewGroup;
 import android.widget.TextView;
 
 import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.ListAdapter;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.dianerverotect.R;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Map;
-
 /**
  * Adapter for displaying recommendations in a RecyclerView.
+ * 
+ * Lists are diffed on a background thread by ListAdapter, items have stable IDs taken
+ * from the recommendation rule, and item views come from {@link RecommendationViewPool}.
  */
-public class RecommendationAdapter extends RecyclerView.Adapter<RecommendationAdapter.RecommendationViewHolder> {
+public class RecommendationAdapter extends ListAdapter<Recommendation, RecommendationAdapter.RecommendationViewHolder> {
     
-    private final List<Recommendation> recommendations = new ArrayList<>();
+    static final int VIEW_TYPE_RECOMMENDATION = 0;
     
-    public RecommendationAdapter(Map<String, String> recommendationsMap) {
-        // Convert map to list of Recommendation objects
-        for (Map.Entry<String, String> entry : recommendationsMap.entrySet()) {
-            recommendations.add(new Recommendation(entry.getKey(), entry.getValue()));
-        }
+    private static final DiffUtil.ItemCallback<Recommendation> DIFF_CALLBACK =
+            new DiffUtil.ItemCallback<Recommendation>() {
+                @Override
+                public boolean areItemsTheSame(@NonNull Recommendation oldItem, @NonNull Recommendation newItem) {
+                    return oldItem.getId() == newItem.getId();
+                }
+                
+                @Override
+                public boolean areContentsTheSame(@NonNull Recommendation oldItem, @NonNull Recommendation newItem) {
+                    // Recommendations are shared immutable instances
+                    return oldItem == newItem
+                            || (oldItem.getTitle().equals(newItem.getTitle())
+                            && oldItem.getDescription().equals(newItem.getDescription()));
+                }
+            };
+    
+    public RecommendationAdapter() {
+        super(DIFF_CALLBACK);
+        setHasStableIds(true);
+    }
+    
+    @Override
+    public long getItemId(int position) {
+        return getItem(position).getId();
+    }
+    
+    @Override
+    public int getItemViewType(int position) {
+        return VIEW_TYPE_RECOMMENDATION;
     }
     
     @NonNull
     @Override
     public RecommendationViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
-        View view = LayoutInflater.from(parent.getContext())
-                .inflate(R.layout.item_recommendation, parent, false);
+        View view = RecommendationViewPool.takePreinflated();
+        if (view == null) {
+            view = LayoutInflater.from(parent.getContext())
+                    .inflate(R.layout.item_recommendation, parent, false);
+        }
         return new RecommendationViewHolder(view);
     }
     
     @Override
     public void onBindViewHolder(@NonNull RecommendationViewHolder holder, int position) {
-        Recommendation recommendation = recommendations.get(position);
+        Recommendation recommendation = getItem(position);
         holder.titleText.setText(recommendation.getTitle());
         holder.descriptionText.setText(recommendation.getDescription());
     }
     
-    @Override
-    public int getItemCount() {
-        return recommendations.size();
-    }
-    
     /**
      * ViewHolder for recommendation items.
      */
@@ -61,25 +84,4 @@ public class RecommendationAdapter extends RecyclerView.Adapter<RecommendationAd
             descriptionText = itemView.findViewById(R.id.text_recommendation_description);
         }
     }
-    
-    /**
-     * Model class for recommendations.
-     */
-    static class Recommendation {
-        private final String title;
-        private final String description;
-        
-        public Recommendation(String title, String description) {
-            this.title = title;
-            this.description = description;
-        }
-        
-        public String getTitle() {
-            return title;
-        }
-        
-        public String getDescription() {
-            return description;
-        }
-    }
 }
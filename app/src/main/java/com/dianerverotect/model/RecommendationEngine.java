@@ -0,0 +1,151 @@
+package com.dianerverotect.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Rule-based recommendation engine compiled once from a declarative decision table.
+ *
+ * Every combination of risk level, glucose band and sensory status is resolved when the
+ * class is loaded into an immutable, pre-ordered list of shared {@link Recommendation}
+ * instances. A lookup is a single array index, so evaluating recommendations allocates
+ * nothing and costs the same for one result or for thousands of re-scored records.
+ */
+public final class RecommendationEngine {
+
+    /**
+     * Fasting glucose bands used by the rules.
+     */
+    public enum GlucoseBand {
+        NORMAL,    // <= 140 mg/dL
+        ELEVATED,  // 141 - 200 mg/dL
+        VERY_HIGH; // > 200 mg/dL
+
+        public static GlucoseBand of(float fastingGlucose) {
+            if (fastingGlucose > 200) {
+                return VERY_HIGH;
+            } else if (fastingGlucose > 140) {
+                return ELEVATED;
+            }
+            return NORMAL;
+        }
+    }
+
+    // Condition bits. Risk levels and glucose bands each get one bit per value so a
+    // rule can match any subset of them.
+    private static final int LOW = 1;
+    private static final int MODERATE = 1 << 1;
+    private static final int HIGH = 1 << 2;
+    private static final int ANY_RISK = LOW | MODERATE | HIGH;
+
+    private static final int GLUCOSE_NORMAL = 1 << 3;
+    private static final int GLUCOSE_ELEVATED = 1 << 4;
+    private static final int GLUCOSE_VERY_HIGH = 1 << 5;
+    private static final int ANY_GLUCOSE = GLUCOSE_NORMAL | GLUCOSE_ELEVATED | GLUCOSE_VERY_HIGH;
+    private static final int GLUCOSE_ABOVE_140 = GLUCOSE_ELEVATED | GLUCOSE_VERY_HIGH;
+
+    private static final int SENSATION_NORMAL = 1 << 6;
+    private static final int SENSATION_LOST = 1 << 7;
+    private static final int ANY_SENSATION = SENSATION_NORMAL | SENSATION_LOST;
+
+    /**
+     * The decision table, in display order. A rule fires when every condition group of
+     * the evaluated case is contained in its mask.
+     */
+    private static final Rule[] RULES = {
+            new Rule(HIGH | ANY_GLUCOSE | ANY_SENSATION, "Medical Consultation",
+                    "Schedule an appointment with your healthcare provider as soon as possible."),
+            new Rule(MODERATE | ANY_GLUCOSE | ANY_SENSATION, "Medical Follow-up",
+                    "Discuss these results with your healthcare provider at your next appointment."),
+            new Rule(LOW | ANY_GLUCOSE | ANY_SENSATION, "Preventive Care",
+                    "Continue your current diabetes management plan."),
+            new Rule(HIGH | ANY_GLUCOSE | ANY_SENSATION, "Glucose Management",
+                    "Monitor your blood glucose levels more frequently and maintain tight control."),
+            new Rule(MODERATE | ANY_GLUCOSE | ANY_SENSATION, "Glucose Management",
+                    "Continue monitoring your blood glucose levels regularly."),
+            new Rule(LOW | ANY_GLUCOSE | ANY_SENSATION, "Monitoring",
+                    "Regular check-ups with your healthcare provider are recommended."),
+            new Rule(HIGH | ANY_GLUCOSE | ANY_SENSATION, "Foot Care",
+                    "Inspect your feet daily for cuts, blisters, or sores."),
+            new Rule(MODERATE | ANY_GLUCOSE | ANY_SENSATION, "Lifestyle",
+                    "Consider increasing physical activity to improve circulation."),
+            new Rule(LOW | ANY_GLUCOSE | ANY_SENSATION, "Lifestyle",
+                    "Maintain a healthy diet and regular exercise routine."),
+            new Rule(ANY_RISK | ANY_GLUCOSE | SENSATION_LOST, "Sensory Protection",
+                    "Take extra precautions with hot surfaces and sharp objects. Wear protective footwear."),
+            new Rule(ANY_RISK | GLUCOSE_ABOVE_140 | ANY_SENSATION, "Glucose Control",
+                    "Your glucose levels are elevated. Consider dietary adjustments and consult your healthcare provider.")
+    };
+
+    private static final int RISK_LEVELS = NeuropathyPredictor.RiskLevel.values().length;
+    private static final int GLUCOSE_BANDS = GlucoseBand.values().length;
+
+    // Compiled table: one immutable list per (risk level, glucose band, sensory status)
+    private static final List<Recommendation>[] COMPILED = compile();
+
+    /** Returned when risk evaluation itself failed. */
+    public static final List<Recommendation> ERROR_RECOMMENDATIONS = Collections.singletonList(
+            new Recommendation(RULES.length, "Error",
+                    "An error occurred during risk assessment. Please try again later."));
+
+    private RecommendationEngine() {
+    }
+
+    /**
+     * Returns the recommendations for one assessment. The list is shared and immutable.
+     */
+    public static List<Recommendation> recommend(NeuropathyPredictor.RiskLevel riskLevel, float fastingGlucose,
+                                                 boolean hasTemperatureSensation, boolean hasPressureSensation) {
+        boolean sensationLost = !hasTemperatureSensation || !hasPressureSensation;
+        return COMPILED[index(riskLevel.ordinal(), GlucoseBand.of(fastingGlucose).ordinal(), sensationLost)];
+    }
+
+    private static int index(int riskLevel, int glucoseBand, boolean sensationLost) {
+        return (riskLevel * GLUCOSE_BANDS + glucoseBand) * 2 + (sensationLost ? 1 : 0);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Recommendation>[] compile() {
+        Recommendation[] shared = new Recommendation[RULES.length];
+        for (int i = 0; i < RULES.length; i++) {
+            shared[i] = new Recommendation(i, RULES[i].title, RULES[i].description);
+        }
+
+        int[] riskBits = {LOW, MODERATE, HIGH};
+        int[] glucoseBits = {GLUCOSE_NORMAL, GLUCOSE_ELEVATED, GLUCOSE_VERY_HIGH};
+        List<Recommendation>[] compiled = (List<Recommendation>[]) new List<?>[RISK_LEVELS * GLUCOSE_BANDS * 2];
+        for (int risk = 0; risk < RISK_LEVELS; risk++) {
+            for (int band = 0; band < GLUCOSE_BANDS; band++) {
+                for (int lost = 0; lost < 2; lost++) {
+                    int condition = riskBits[risk] | glucoseBits[band]
+                            | (lost == 1 ? SENSATION_LOST : SENSATION_NORMAL);
+                    List<Recommendation> matches = new ArrayList<>();
+                    for (int i = 0; i < RULES.length; i++) {
+                        if (RULES[i].matches(condition)) {
+                            matches.add(shared[i]);
+                        }
+                    }
+                    compiled[index(risk, band, lost == 1)] = Collections.unmodifiableList(matches);
+                }
+            }
+        }
+        return compiled;
+    }
+
+    private static final class Rule {
+        final int mask;
+        final String title;
+        final String description;
+
+        Rule(int mask, String title, String description) {
+            this.mask = mask;
+            this.title = title;
+            this.description = description;
+        }
+
+        boolean matches(int condition) {
+            return (mask & condition) == condition;
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.dianerverotect.model;
+
+import android.content.Context;
+import android.util.Log;
+import android.view.View;
+import android.widget.FrameLayout;
+
+import androidx.annotation.Nullable;
+import androidx.asynclayoutinflater.view.AsyncLayoutInflater;
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.dianerverotect.R;
+
+import java.util.ArrayDeque;
+
+/**
+ * View pool for the RecyclerView that shows recommendations in the analysis results
+ * dialog, kept across dialogs so each new one reuses the item views of the last.
+ *
+ * Item views are inflated ahead of time on a background thread with AsyncLayoutInflater,
+ * so opening a results dialog only binds text instead of inflating items on the main
+ * thread. Views that go off screen are returned to the shared RecycledViewPool.
+ */
+public final class RecommendationViewPool {
+    private static final String TAG = "RecommendationViewPool";
+
+    // Largest recommendation list the engine produces, plus a spare
+    private static final int PREINFLATED_VIEWS = 6;
+
+    private static RecyclerView.RecycledViewPool pool;
+    private static final ArrayDeque<View> preinflated = new ArrayDeque<>();
+    private static int pendingInflations;
+    // Bumped by clear(), so inflations started for a destroyed activity are dropped
+    private static int generation;
+
+    private RecommendationViewPool() {
+    }
+
+    /**
+     * Returns the shared pool. Must be called on the main thread.
+     */
+    public static RecyclerView.RecycledViewPool getPool() {
+        if (pool == null) {
+            pool = new RecyclerView.RecycledViewPool();
+            pool.setMaxRecycledViews(RecommendationAdapter.VIEW_TYPE_RECOMMENDATION, PREINFLATED_VIEWS);
+        }
+        return pool;
+    }
+
+    /**
+     * Tops up the pre-inflated item views in the background. Must be called on the main
+     * thread, with a themed (activity) context.
+     */
+    public static void preinflate(Context context) {
+        int available = preinflated.size() + pendingInflations
+                + getPool().getRecycledViewCount(RecommendationAdapter.VIEW_TYPE_RECOMMENDATION);
+        int missing = PREINFLATED_VIEWS - available;
+        if (missing <= 0) {
+            return;
+        }
+
+        AsyncLayoutInflater inflater = new AsyncLayoutInflater(context);
+        // Only used to generate layout params, the views are never attached to it
+        FrameLayout layoutParent = new FrameLayout(context);
+        int requestGeneration = generation;
+        for (int i = 0; i < missing; i++) {
+            pendingInflations++;
+            inflater.inflate(R.layout.item_recommendation, layoutParent, (view, resid, parent) -> {
+                if (requestGeneration != generation) {
+                    // Holds the context of an activity cleared since
+                    return;
+                }
+                pendingInflations--;
+                preinflated.add(view);
+            });
+        }
+        Log.d(TAG, "Pre-inflating " + missing + " recommendation views");
+    }
+
+    /**
+     * Takes a pre-inflated item view, or returns null if none is ready.
+     */
+    @Nullable
+    static View takePreinflated() {
+        return preinflated.poll();
+    }
+
+    /**
+     * Drops every pooled view, e.g. when the activity whose context they hold is destroyed.
+     * Inflations still in flight are discarded when they complete.
+     */
+    public static void clear() {
+        generation++;
+        pendingInflations = 0;
+        preinflated.clear();
+        if (pool != null) {
+            pool.clear();
+        }
+    }
+}
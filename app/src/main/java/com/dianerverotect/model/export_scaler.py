@@ -0,0 +1,32 @@
+import struct
+import sys
+
+import joblib
+
+# Exports the StandardScaler used by appf.py into a compact binary asset that
+# NeuropathyPredictor applies while filling the model input buffer.
+#
+# Layout (little-endian):
+#   magic   4 bytes  "DNSC"
+#   version int32    1
+#   count   int32    number of training columns
+#   mean    float32[count]
+#   scale   float32[count]
+#
+# Columns are written in scaler.feature_names_in_ order, which is the order
+# FeatureRegistry.TRAINING_COLUMNS mirrors on the Java side.
+
+SCALER_FILE = "scaler.pkl"
+OUTPUT_FILE = "../../../../assets/scaler_params.bin"
+
+scaler = joblib.load(sys.argv[1] if len(sys.argv) > 1 else SCALER_FILE)
+count = len(scaler.mean_)
+
+with open(sys.argv[2] if len(sys.argv) > 2 else OUTPUT_FILE, "wb") as f:
+    f.write(b"DNSC")
+    f.write(struct.pack("<ii", 1, count))
+    f.write(struct.pack("<%df" % count, *scaler.mean_))
+    f.write(struct.pack("<%df" % count, *scaler.scale_))
+
+for name, mean, scale in zip(scaler.feature_names_in_, scaler.mean_, scaler.scale_):
+    print(f"{name}: mean={mean:.6f} scale={scale:.6f}")
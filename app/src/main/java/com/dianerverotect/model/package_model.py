@@ -0,0 +1,60 @@
+import hashlib
+import os
+import shutil
+import sys
+
+import joblib
+
+# Packages a .tflite model for ModelRegistry: copies it into an output directory
+# next to a manifest.properties with its checksum, input schema and scaler
+# parameters (see ModelManifest.java). Push the directory to the app's
+# files/model_updates/ and it is installed on the next start, without a new APK.
+#
+# Usage: python package_model.py VERSION MODEL.tflite [OUTPUT_DIR] [SCALER]
+#
+# INPUTS lists the training column of each model input, in order; keep it in
+# sync with the model being packaged.
+
+SCALER_FILE = "scaler.pkl"
+INPUTS = [
+    "Age",
+    "Diabetes_Duration",
+    "EMG_Signal_Frequency (Hz)",
+    "EMG_Amplitude (mV)",
+    "Motor Nerve Conduction Velocity (m/s)",
+    "Sensory Nerve Conduction Velocity (m/s)",
+    "F-Wave Latency (ms)",
+    "EMG_Signal_Duration (ms)",
+    "Resting EMG Activity (µV)",
+    "Fasting_Blood_Sugar",
+    "Insulin_Level",
+]
+
+version, model_path = sys.argv[1], sys.argv[2]
+output_dir = sys.argv[3] if len(sys.argv) > 3 else version
+scaler = joblib.load(sys.argv[4] if len(sys.argv) > 4 else SCALER_FILE)
+
+unknown = [name for name in INPUTS if name not in list(scaler.feature_names_in_)]
+if unknown:
+    sys.exit(f"Inputs not in the scaler's training columns: {unknown}")
+
+os.makedirs(output_dir, exist_ok=True)
+shutil.copyfile(model_path, os.path.join(output_dir, "model.tflite"))
+with open(model_path, "rb") as f:
+    sha256 = hashlib.sha256(f.read()).hexdigest()
+
+
+def escape(value):
+    # java.util.Properties reads ISO-8859-1 and treats ':' and '=' as separators
+    return "".join(c if c.isascii() and c not in ":=" else "\\u%04x" % ord(c) for c in value)
+
+
+with open(os.path.join(output_dir, "manifest.properties"), "w", encoding="ascii") as f:
+    f.write(f"version={version}\n")
+    f.write("model=model.tflite\n")
+    f.write(f"sha256={sha256}\n")
+    f.write("inputs=" + escape(",".join(INPUTS)) + "\n")
+    f.write("scaler.mean=" + ",".join(f"{v:.9g}" for v in scaler.mean_) + "\n")
+    f.write("scaler.scale=" + ",".join(f"{v:.9g}" for v in scaler.scale_) + "\n")
+
+print(f"Packaged {model_path} as {version} in {output_dir}, sha256 {sha256}")
@@ -0,0 +1,43 @@
+import os
+import sys
+
+import tensorflow as tf
+
+# Produces the quantized MODEL.tflite variants that NeuropathyPredictor selects by
+# device class (see ModelVariant.java):
+#
+#   MODEL_fp16.tflite  float16 weights, float32 compute
+#   MODEL_int8.tflite  dynamic-range int8 weights, float32 activations
+#
+# The source is the Keras model MODEL.tflite was converted from (input [None, 11, 1]).
+# Run from this directory, or via ./gradlew :app:quantizeModels, then run
+# ModelVariantParityTest on a device before shipping the new variants.
+
+SOURCE_MODEL = "new.h5"
+ASSETS_DIR = "../../../../assets"
+
+
+def convert(model, name, configure):
+    converter = tf.lite.TFLiteConverter.from_keras_model(model)
+    configure(converter)
+    data = converter.convert()
+    path = os.path.join(ASSETS_DIR, name)
+    with open(path, "wb") as f:
+        f.write(data)
+    print(f"{name}: {len(data) / 1024:.1f} KB")
+
+
+def float16(converter):
+    converter.optimizations = [tf.lite.Optimize.DEFAULT]
+    converter.target_spec.supported_types = [tf.float16]
+
+
+def dynamic_range_int8(converter):
+    converter.optimizations = [tf.lite.Optimize.DEFAULT]
+
+
+source = sys.argv[1] if len(sys.argv) > 1 else SOURCE_MODEL
+keras_model = tf.keras.models.load_model(source, compile=False)
+
+convert(keras_model, "MODEL_fp16.tflite", float16)
+convert(keras_model, "MODEL_int8.tflite", dynamic_range_int8)
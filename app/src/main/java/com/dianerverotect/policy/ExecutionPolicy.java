@@ -0,0 +1,96 @@
+package com.dianerverotect.policy;
+
+/**
+ * How much work inference and acquisition may do, given the device's thermal state and
+ * battery. Clinics run all day, and a phone that throttles late in the afternoon makes
+ * analysis latency unpredictable; backing off early keeps it steady.
+ *
+ * Levels are decided by {@link #decide(int, int, boolean, boolean)} and applied by the
+ * components that read {@link ExecutionPolicyMonitor#getPolicy()}.
+ */
+public final class ExecutionPolicy {
+
+    public enum Level {
+        NORMAL, CONSTRAINED, CRITICAL
+    }
+
+    // PowerManager.THERMAL_STATUS_* values
+    static final int THERMAL_STATUS_MODERATE = 2;
+    static final int THERMAL_STATUS_SEVERE = 3;
+
+    // Battery levels at which an unplugged device backs off
+    static final int LOW_BATTERY_PERCENT = 20;
+    static final int CRITICAL_BATTERY_PERCENT = 5;
+
+    private static final ExecutionPolicy NORMAL =
+            new ExecutionPolicy(Level.NORMAL, 2, true, 1000, 100, 1000, 200, 2000);
+    private static final ExecutionPolicy CONSTRAINED =
+            new ExecutionPolicy(Level.CONSTRAINED, 1, true, 2000, 200, 0, 50, 3000);
+    // XNNPACK is off here: it repacks the weights whenever an interpreter is created, and
+    // the model is too small for its kernels to win that back
+    private static final ExecutionPolicy CRITICAL =
+            new ExecutionPolicy(Level.CRITICAL, 1, false, 4000, 250, 0, 0, 4000);
+
+    public final Level level;
+    /** TFLite interpreter threads. */
+    public final int interpreterThreads;
+    /** Whether interpreters use the XNNPACK delegate. */
+    public final boolean useXnnpack;
+    /** How often the sliding window of a running capture is scored. */
+    public final long scoreIntervalMs;
+    /** How often the acquisition thread wakes up to drain samples. */
+    public final long acquisitionTickMs;
+    /** Duration of the EMG chart animation; 0 draws it in one frame. */
+    public final int chartAnimationMs;
+    /** Test results re-scored per batch in the background; 0 defers re-scoring. */
+    public final int rescoreChunkSize;
+    /** How long the model may refine a provisional result before it becomes final. */
+    public final long refinementDeadlineMs;
+
+    private ExecutionPolicy(Level level, int interpreterThreads, boolean useXnnpack, long scoreIntervalMs,
+                            long acquisitionTickMs, int chartAnimationMs, int rescoreChunkSize,
+                            long refinementDeadlineMs) {
+        this.level = level;
+        this.interpreterThreads = interpreterThreads;
+        this.useXnnpack = useXnnpack;
+        this.scoreIntervalMs = scoreIntervalMs;
+        this.acquisitionTickMs = acquisitionTickMs;
+        this.chartAnimationMs = chartAnimationMs;
+        this.rescoreChunkSize = rescoreChunkSize;
+        this.refinementDeadlineMs = refinementDeadlineMs;
+    }
+
+    public static ExecutionPolicy forLevel(Level level) {
+        switch (level) {
+            case CRITICAL:
+                return CRITICAL;
+            case CONSTRAINED:
+                return CONSTRAINED;
+            default:
+                return NORMAL;
+        }
+    }
+
+    /**
+     * @param thermalStatus  PowerManager.getCurrentThermalStatus(), 0 if unknown
+     * @param batteryPercent 0-100
+     * @param charging       whether the device is plugged in
+     * @param powerSave      whether battery saver is on
+     */
+    public static Level decide(int thermalStatus, int batteryPercent, boolean charging, boolean powerSave) {
+        if (thermalStatus >= THERMAL_STATUS_SEVERE || (!charging && batteryPercent <= CRITICAL_BATTERY_PERCENT)) {
+            return Level.CRITICAL;
+        }
+        if (thermalStatus >= THERMAL_STATUS_MODERATE || powerSave
+                || (!charging && batteryPercent <= LOW_BATTERY_PERCENT)) {
+            return Level.CONSTRAINED;
+        }
+        return Level.NORMAL;
+    }
+
+    @Override
+    public String toString() {
+        return level + " (threads=" + interpreterThreads + ", xnnpack=" + useXnnpack
+                + ", score every " + scoreIntervalMs + " ms, tick " + acquisitionTickMs + " ms)";
+    }
+}
@@ -0,0 +1,109 @@
+package com.dianerverotect.policy;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.os.BatteryManager;
+import android.os.Build;
+import android.os.PowerManager;
+import android.util.Log;
+
+import com.dianerverotect.metrics.MetricsRegistry;
+
+/**
+ * Tracks thermal status, battery level, charging and battery saver, and keeps the current
+ * {@link ExecutionPolicy} up to date. Reading the policy is a volatile read, so callers
+ * can check it on every use.
+ *
+ * The level and its inputs are exported as the policy.* gauges; every level change is
+ * counted under policy.changes and policy.entered.&lt;level&gt;.
+ */
+public class ExecutionPolicyMonitor {
+    private static final String TAG = "ExecutionPolicyMonitor";
+
+    private static ExecutionPolicyMonitor shared;
+
+    private final Context context;
+    private volatile ExecutionPolicy policy = ExecutionPolicy.forLevel(ExecutionPolicy.Level.NORMAL);
+    private volatile int thermalStatus;
+    private volatile int batteryPercent = 100;
+    private volatile boolean charging;
+    private volatile boolean powerSave;
+
+    private ExecutionPolicyMonitor(Context context) {
+        this.context = context;
+    }
+
+    public static synchronized ExecutionPolicyMonitor getShared(Context context) {
+        if (shared == null) {
+            shared = new ExecutionPolicyMonitor(context.getApplicationContext());
+            shared.start();
+        }
+        return shared;
+    }
+
+    public ExecutionPolicy getPolicy() {
+        return policy;
+    }
+
+    private void start() {
+        PowerManager powerManager = (PowerManager) context.getSystemService(Context.POWER_SERVICE);
+        if (powerManager != null) {
+            powerSave = powerManager.isPowerSaveMode();
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+                thermalStatus = powerManager.getCurrentThermalStatus();
+                powerManager.addThermalStatusListener(context.getMainExecutor(), status -> {
+                    thermalStatus = status;
+                    update();
+                });
+            }
+        }
+
+        // Both are protected system broadcasts, so the receiver needs no export flag
+        BroadcastReceiver receiver = new BroadcastReceiver() {
+            @Override
+            public void onReceive(Context context, Intent intent) {
+                if (Intent.ACTION_BATTERY_CHANGED.equals(intent.getAction())) {
+                    readBattery(intent);
+                } else if (powerManager != null) {
+                    powerSave = powerManager.isPowerSaveMode();
+                }
+                update();
+            }
+        };
+        IntentFilter filter = new IntentFilter(Intent.ACTION_BATTERY_CHANGED);
+        filter.addAction(PowerManager.ACTION_POWER_SAVE_MODE_CHANGED);
+        Intent battery = context.registerReceiver(receiver, filter);
+        if (battery != null) {
+            readBattery(battery);
+        }
+
+        MetricsRegistry metrics = MetricsRegistry.getShared();
+        metrics.gauge("policy.level", () -> policy.level.ordinal());
+        metrics.gauge("policy.thermal_status", () -> thermalStatus);
+        metrics.gauge("policy.battery_percent", () -> batteryPercent);
+        update();
+    }
+
+    private void readBattery(Intent battery) {
+        int level = battery.getIntExtra(BatteryManager.EXTRA_LEVEL, -1);
+        int scale = battery.getIntExtra(BatteryManager.EXTRA_SCALE, -1);
+        if (level >= 0 && scale > 0) {
+            batteryPercent = level * 100 / scale;
+        }
+        charging = battery.getIntExtra(BatteryManager.EXTRA_PLUGGED, 0) != 0;
+    }
+
+    private synchronized void update() {
+        ExecutionPolicy.Level level = ExecutionPolicy.decide(thermalStatus, batteryPercent, charging, powerSave);
+        if (level == policy.level) {
+            return;
+        }
+        policy = ExecutionPolicy.forLevel(level);
+        MetricsRegistry.getShared().counter("policy.changes").increment();
+        MetricsRegistry.getShared().counter("policy.entered." + level.name().toLowerCase()).increment();
+        Log.d(TAG, "Execution policy " + policy + ", thermal status " + thermalStatus
+                + ", battery " + batteryPercent + "%, charging " + charging + ", power save " + powerSave);
+    }
+}
@@ -0,0 +1,173 @@
+package com.dianerverotect;
+
+import com.dianerverotect.model.NeuropathyPredictor;
+import com.dianerverotect.model.PredictionResult;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link HistoryRescorer}: chunking, checkpoints, skipped results
+ * and what happens when the model does not score a chunk.
+ */
+public class HistoryRescorerTest {
+
+    private static final float[] FEATURES = {50, 5, 150, 35, 28, 23, 6, 14, 1, 0};
+
+    /**
+     * Results in a sorted map, recording every read, update and checkpoint.
+     */
+    private static class FakeHistory implements HistoryRescorer.History {
+        final TreeMap<String, HistoryRescorer.StoredResult> results = new TreeMap<>();
+        final List<Integer> reads = new ArrayList<>();
+        final Map<String, Object> written = new HashMap<>();
+        final List<String> checkpoints = new ArrayList<>();
+
+        void add(String key, String scoringVersion, float[] features) {
+            results.put(key, new HistoryRescorer.StoredResult(key, scoringVersion, features,
+                    features != null ? 150f : null, true, false));
+        }
+
+        @Override
+        public List<HistoryRescorer.StoredResult> readAfter(String key, int limit) {
+            reads.add(limit);
+            List<HistoryRescorer.StoredResult> chunk = new ArrayList<>();
+            for (HistoryRescorer.StoredResult result
+                    : (key == null ? results : results.tailMap(key, false)).values()) {
+                if (chunk.size() == limit) {
+                    break;
+                }
+                chunk.add(result);
+            }
+            return chunk;
+        }
+
+        @Override
+        public void update(Map<String, Object> updates) {
+            written.putAll(updates);
+        }
+
+        @Override
+        public void checkpoint(String key) {
+            checkpoints.add(key);
+        }
+    }
+
+    private FakeHistory history;
+    private boolean realModel;
+    private int scored;
+    private String version;
+
+    private NeuropathyPredictor.RiskAssessment assessment(float score) {
+        PredictionResult prediction = new PredictionResult(score,
+                realModel ? PredictionResult.Source.MODEL : PredictionResult.Source.FALLBACK, "test-model", 0);
+        return new NeuropathyPredictor.RiskAssessment(prediction, NeuropathyPredictor.RiskLevel.MODERATE,
+                Collections.emptyList());
+    }
+
+    private final HistoryRescorer.Scorer scorer = (features, glucose, temperature, pressure, count) -> {
+        NeuropathyPredictor.RiskAssessment[] assessments = new NeuropathyPredictor.RiskAssessment[count];
+        for (int i = 0; i < count; i++) {
+            assertNotNull(features[i]);
+            assessments[i] = assessment(0.5f);
+        }
+        scored += count;
+        return assessments;
+    };
+
+    @Before
+    public void setUp() {
+        history = new FakeHistory();
+        realModel = true;
+        version = assessment(0f).getScoringVersion();
+        history.add("r1", "old/rules-1", FEATURES);
+        history.add("r2", version, FEATURES);
+        history.add("r3", null, FEATURES);
+        history.add("r4", "old/rules-1", null);
+        history.add("r5", "fallback/rules-1", FEATURES);
+    }
+
+    @Test
+    public void rescoresStaleResultsAndCheckpointsEveryChunk() throws Exception {
+        HistoryRescorer rescorer = new HistoryRescorer(history, scorer, 2);
+
+        assertEquals(HistoryRescorer.Outcome.COMPLETED, rescorer.run(version, null, () -> 2, () -> false));
+
+        // r2 is current and r4 has no stored inputs
+        assertEquals(3, rescorer.getRescoredCount());
+        assertEquals(3, scored);
+        for (String key : new String[]{"r1", "r3", "r5"}) {
+            assertEquals(version, history.written.get(key + "/scoringVersion"));
+            assertEquals("MODERATE", history.written.get(key + "/riskLevel"));
+            assertEquals(0.5f, (Float) history.written.get(key + "/riskScore"), 0f);
+            assertEquals(Boolean.TRUE, history.written.get(key + "/usedRealModel"));
+        }
+        assertFalse(history.written.containsKey("r2/scoringVersion"));
+        assertFalse(history.written.containsKey("r4/scoringVersion"));
+        assertEquals(Arrays.asList("r2", "r4", "r5"), history.checkpoints);
+        assertEquals("r5", rescorer.getCheckpoint());
+    }
+
+    @Test
+    public void resumesAfterTheCheckpoint() throws Exception {
+        HistoryRescorer rescorer = new HistoryRescorer(history, scorer, 10);
+
+        assertEquals(HistoryRescorer.Outcome.COMPLETED, rescorer.run(version, "r3", () -> 10, () -> false));
+
+        assertEquals(1, rescorer.getRescoredCount());
+        assertTrue(history.written.containsKey("r5/scoringVersion"));
+        assertFalse(history.written.containsKey("r1/scoringVersion"));
+    }
+
+    @Test
+    public void stopsBetweenChunksAndKeepsTheCheckpoint() throws Exception {
+        HistoryRescorer rescorer = new HistoryRescorer(history, scorer, 2);
+        int[] chunks = {0};
+
+        HistoryRescorer.Outcome outcome = rescorer.run(version, null, () -> 2, () -> chunks[0]++ > 0);
+
+        assertEquals(HistoryRescorer.Outcome.STOPPED, outcome);
+        assertEquals("r2", rescorer.getCheckpoint());
+        assertEquals(1, rescorer.getRescoredCount());
+    }
+
+    @Test
+    public void defersWhenThePolicyAllowsNoChunks() throws Exception {
+        HistoryRescorer rescorer = new HistoryRescorer(history, scorer, 2);
+
+        assertEquals(HistoryRescorer.Outcome.DEFERRED, rescorer.run(version, "r1", () -> 0, () -> false));
+        assertTrue(history.reads.isEmpty());
+        assertEquals("r1", rescorer.getCheckpoint());
+    }
+
+    @Test
+    public void capsChunksAtTheBufferSize() throws Exception {
+        HistoryRescorer rescorer = new HistoryRescorer(history, scorer, 2);
+
+        rescorer.run(version, null, () -> 200, () -> false);
+        for (int limit : history.reads) {
+            assertEquals(2, limit);
+        }
+    }
+
+    @Test
+    public void doesNotWriteFallbackScores() throws Exception {
+        realModel = false;
+        HistoryRescorer rescorer = new HistoryRescorer(history, scorer, 2);
+
+        assertEquals(HistoryRescorer.Outcome.MODEL_FAILED, rescorer.run(version, null, () -> 2, () -> false));
+        assertTrue(history.written.isEmpty());
+        assertTrue(history.checkpoints.isEmpty());
+        assertNull(rescorer.getCheckpoint());
+    }
+}
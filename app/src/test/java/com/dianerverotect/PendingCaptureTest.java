@@ -0,0 +1,63 @@
+package com.dianerverotect;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiConsumer;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link PendingCapture}.
+ */
+public class PendingCaptureTest {
+
+    private final List<float[]> delivered = new ArrayList<>();
+    private final BiConsumer<float[], float[]> receiver = (samples, otherSide) -> delivered.add(samples);
+
+    @Test
+    public void deliversRightAwayWhenBound() {
+        PendingCapture pending = new PendingCapture();
+        float[] samples = {1f, 2f};
+
+        assertTrue(pending.complete(receiver, samples, null));
+        assertEquals(1, delivered.size());
+        assertSame(samples, delivered.get(0));
+        assertFalse(pending.isHeld());
+    }
+
+    @Test
+    public void keepsTheServiceWhenCompletedWhileUnbound() {
+        PendingCapture pending = new PendingCapture();
+        float[] samples = {1f, 2f};
+        float[] otherSide = {3f};
+
+        // Nobody listening: the service must not stop yet
+        assertFalse(pending.complete(null, samples, otherSide));
+        assertTrue(pending.isHeld());
+
+        float[][] received = new float[2][];
+        assertTrue(pending.deliverTo((s, o) -> {
+            received[0] = s;
+            received[1] = o;
+        }));
+        assertSame(samples, received[0]);
+        assertSame(otherSide, received[1]);
+        assertFalse(pending.isHeld());
+
+        // Delivered once only
+        assertFalse(pending.deliverTo(receiver));
+        assertTrue(delivered.isEmpty());
+    }
+
+    @Test
+    public void newCaptureDropsAnUndeliveredResult() {
+        PendingCapture pending = new PendingCapture();
+        pending.complete(null, new float[]{1f}, null);
+
+        pending.clear();
+        assertFalse(pending.deliverTo(receiver));
+        assertTrue(delivered.isEmpty());
+    }
+}
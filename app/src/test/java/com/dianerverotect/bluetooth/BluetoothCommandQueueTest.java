@@ -0,0 +1,254 @@
+package com.dianerverotect.bluetooth;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link BluetoothCommandQueue}: ordering and coalescing of writes,
+ * matching of tagged replies, timeouts and write failures.
+ */
+public class BluetoothCommandQueueTest {
+
+    private static final long WAIT_MS = 2000;
+    private static final long REPLY_TIMEOUT_MS = 10_000;
+
+    /**
+     * Records every write as one chunk. The first write can be held back, so that the
+     * commands sent meanwhile queue up behind it, and writes can be made to fail.
+     */
+    private static class RecordingStream extends OutputStream {
+        final List<String> writes = new ArrayList<>();
+        final CountDownLatch firstWriteStarted = new CountDownLatch(1);
+        final CountDownLatch releaseFirstWrite = new CountDownLatch(1);
+        volatile boolean holdFirstWrite;
+        volatile int failFromWrite = Integer.MAX_VALUE;
+
+        @Override
+        public void write(int b) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            int index;
+            synchronized (this) {
+                index = writes.size();
+                writes.add(new String(bytes, offset, length, StandardCharsets.UTF_8));
+                notifyAll();
+            }
+            if (index == 0 && holdFirstWrite) {
+                firstWriteStarted.countDown();
+                try {
+                    releaseFirstWrite.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            if (index >= failFromWrite) {
+                throw new IOException("Broken pipe");
+            }
+        }
+
+        synchronized List<String> awaitWrites(int count) throws InterruptedException {
+            long deadline = System.currentTimeMillis() + WAIT_MS;
+            while (writes.size() < count && System.currentTimeMillis() < deadline) {
+                wait(deadline - System.currentTimeMillis());
+            }
+            return new ArrayList<>(writes);
+        }
+
+        /**
+         * Waits until everything written so far contains the text, in one write or several.
+         */
+        synchronized String awaitText(String text) throws InterruptedException {
+            long deadline = System.currentTimeMillis() + WAIT_MS;
+            while (!String.join("", writes).contains(text) && System.currentTimeMillis() < deadline) {
+                wait(deadline - System.currentTimeMillis());
+            }
+            return String.join("", writes);
+        }
+    }
+
+    /**
+     * Records the outcome of one tagged command.
+     */
+    private static class Reply implements BluetoothCommandQueue.ResponseCallback {
+        final CountDownLatch done = new CountDownLatch(1);
+        volatile String payload;
+        volatile String failure;
+
+        @Override
+        public void onResponse(String payload) {
+            this.payload = payload;
+            done.countDown();
+        }
+
+        @Override
+        public void onFailure(String reason) {
+            this.failure = reason;
+            done.countDown();
+        }
+
+        boolean await() throws InterruptedException {
+            return done.await(WAIT_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private RecordingStream stream;
+    private BluetoothCommandQueue queue;
+
+    @Before
+    public void setUp() {
+        stream = new RecordingStream();
+        queue = new BluetoothCommandQueue(stream, Runnable::run);
+    }
+
+    @After
+    public void tearDown() {
+        stream.releaseFirstWrite.countDown();
+        queue.close();
+    }
+
+    /**
+     * Blocks the writer in its first write, so the next commands are queued together.
+     */
+    private void holdWriter() throws InterruptedException {
+        stream.holdFirstWrite = true;
+        assertTrue(queue.send("HOLD\n"));
+        assertTrue(stream.firstWriteStarted.await(WAIT_MS, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void writesUntaggedMessagesAsGiven() throws InterruptedException {
+        assertTrue(queue.send("START\n"));
+        assertEquals("START\n", stream.awaitWrites(1).get(0));
+    }
+
+    @Test
+    public void coalescesQueuedCommandsInOrder() throws InterruptedException {
+        holdWriter();
+        queue.send("A\n");
+        queue.send("B\n");
+        queue.send("C\n");
+        stream.releaseFirstWrite.countDown();
+
+        List<String> writes = stream.awaitWrites(2);
+        assertEquals(2, writes.size());
+        assertEquals("A\nB\nC\n", writes.get(1));
+    }
+
+    @Test
+    public void writesOversizedCommandOnItsOwn() throws InterruptedException {
+        StringBuilder large = new StringBuilder();
+        while (large.length() < 600) {
+            large.append("0123456789");
+        }
+        holdWriter();
+        queue.send("A\n");
+        queue.send(large + "\n");
+        queue.send("B\n");
+        stream.releaseFirstWrite.countDown();
+
+        List<String> writes = stream.awaitWrites(4);
+        assertEquals(4, writes.size());
+        assertEquals("A\n", writes.get(1));
+        assertEquals(large + "\n", writes.get(2));
+        assertEquals("B\n", writes.get(3));
+    }
+
+    @Test
+    public void tagsCommandsAndMatchesReplies() throws InterruptedException {
+        Reply gain = new Reply();
+        Reply battery = new Reply();
+        queue.send("GAIN 2", REPLY_TIMEOUT_MS, gain);
+        queue.send("BATTERY", REPLY_TIMEOUT_MS, battery);
+
+        String written = stream.awaitText("@2 BATTERY\n");
+        assertTrue(written, written.contains("@1 GAIN 2\n"));
+        assertTrue(written, written.contains("@2 BATTERY\n"));
+
+        // Replies may arrive in any order
+        assertTrue(queue.onLineReceived("@2 87"));
+        assertTrue(queue.onLineReceived("@1 OK"));
+        assertTrue(gain.await());
+        assertTrue(battery.await());
+        assertEquals("OK", gain.payload);
+        assertEquals("87", battery.payload);
+
+        assertFalse(queue.onLineReceived("512,498"));
+        // A late reply is consumed, not passed on as data
+        assertTrue(queue.onLineReceived("@1 OK"));
+    }
+
+    @Test
+    public void failsCommandsWithoutReplyAfterTheirTimeout() throws InterruptedException {
+        Reply slow = new Reply();
+        Reply fast = new Reply();
+        queue.send("SLOW", 1000, slow);
+        queue.send("FAST", 50, fast);
+
+        assertTrue(fast.await());
+        assertEquals("Timed out", fast.failure);
+        assertEquals(1, slow.done.getCount());
+
+        assertTrue(queue.onLineReceived("@1 DONE"));
+        assertTrue(slow.await());
+        assertEquals("DONE", slow.payload);
+    }
+
+    @Test
+    public void failedWriteFailsOnlyTheCommandsInIt() throws InterruptedException {
+        Reply written = new Reply();
+        queue.send("FIRST", REPLY_TIMEOUT_MS, written);
+        stream.awaitWrites(1);
+
+        stream.failFromWrite = 1;
+        Reply lost = new Reply();
+        queue.send("SECOND", REPLY_TIMEOUT_MS, lost);
+
+        assertTrue(lost.await());
+        assertTrue(lost.failure, lost.failure.startsWith("Write failed"));
+        assertTrue(queue.onLineReceived("@1 OK"));
+        assertTrue(written.await());
+        assertEquals("OK", written.payload);
+    }
+
+    @Test
+    public void closeFailsPendingCommands() throws InterruptedException {
+        Reply reply = new Reply();
+        queue.send("STOP", REPLY_TIMEOUT_MS, reply);
+        stream.awaitWrites(1);
+
+        queue.close();
+        assertTrue(reply.await());
+        assertEquals("Connection closed", reply.failure);
+        assertFalse(queue.send("START\n"));
+    }
+
+    @Test
+    public void closeDuringWriteFailsItsCommandsOnce() throws InterruptedException {
+        stream.holdFirstWrite = true;
+        Reply reply = new Reply();
+        queue.send("STOP", REPLY_TIMEOUT_MS, reply);
+        assertTrue(stream.firstWriteStarted.await(WAIT_MS, TimeUnit.MILLISECONDS));
+
+        queue.close();
+        stream.releaseFirstWrite.countDown();
+        assertTrue(reply.await());
+        assertEquals("Connection closed", reply.failure);
+        // A reply that still arrives is not delivered a second time
+        assertTrue(queue.onLineReceived("@1 OK"));
+        assertNull(reply.payload);
+    }
+}
@@ -0,0 +1,92 @@
+package com.dianerverotect.bluetooth;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link ClockAligner} and {@link ChannelMerger}: two simulated
+ * bracelets with different start times and transmission jitter must merge into frames
+ * whose channels were sampled at the same instant.
+ */
+public class ChannelMergerTest {
+
+    private static final float RATE_HZ = 50f;
+    private static final long PERIOD_NANOS = 20_000_000L;
+    private static final long MIN_LATENCY_NANOS = 15_000_000L;
+    private static final int BATCH = 5;
+
+    /**
+     * Feeds seconds of samples whose value is the true sampling time in milliseconds,
+     * delivered in batches with the minimum latency plus random jitter.
+     */
+    private static void simulate(SampleRingBuffer buffer, long startNanos, long maxJitterNanos,
+                                 int seconds, long seed) {
+        ClockAligner clock = new ClockAligner(RATE_HZ);
+        Random random = new Random(seed);
+        int total = Math.round(RATE_HZ * seconds);
+        for (int first = 0; first < total; first += BATCH) {
+            long lastSampleTime = startNanos + (first + BATCH - 1) * PERIOD_NANOS;
+            long arrival = lastSampleTime + MIN_LATENCY_NANOS + (long) (random.nextDouble() * maxJitterNanos);
+            long timestamp = clock.onBatch(BATCH, arrival);
+            for (int i = 0; i < BATCH; i++) {
+                long trueTime = startNanos + (first + i) * PERIOD_NANOS;
+                buffer.add(timestamp + i * PERIOD_NANOS, trueTime / 1e6f);
+            }
+        }
+    }
+
+    @Test
+    public void alignerRemovesTransmissionJitter() {
+        SampleRingBuffer buffer = new SampleRingBuffer(1000);
+        simulate(buffer, 1_000_000_000L, 60_000_000L, 10, 1);
+
+        // After the first few seconds every timestamp is within a millisecond of the
+        // true sampling time plus the fixed minimum latency
+        long checkAt = 1_000_000_000L + 5_000_000_000L + MIN_LATENCY_NANOS;
+        float expectedMs = (checkAt - MIN_LATENCY_NANOS) / 1e6f;
+        assertEquals(expectedMs, buffer.valueAt(checkAt), 1f);
+    }
+
+    @Test
+    public void mergesChannelsSampledAtTheSameInstant() {
+        SampleRingBuffer left = new SampleRingBuffer(1000);
+        SampleRingBuffer right = new SampleRingBuffer(1000);
+        // The right bracelet starts 0.37 s later and has much worse jitter
+        simulate(left, 2_000_000_000L, 5_000_000L, 12, 2);
+        simulate(right, 2_370_000_000L, 80_000_000L, 12, 3);
+
+        ChannelMerger merger = new ChannelMerger(new SampleRingBuffer[]{left, right}, RATE_HZ);
+        List<float[]> frames = new ArrayList<>();
+        merger.drain((timestamp, channels) -> frames.add(channels.clone()));
+
+        assertTrue(frames.size() > 400);
+        // Skip the warm-up while the right bracelet's estimate settles; after it the
+        // channels agree to well within a quarter of a sample period despite 80 ms jitter
+        for (int i = frames.size() / 2; i < frames.size(); i++) {
+            float[] frame = frames.get(i);
+            assertEquals("frame " + i, frame[0], frame[1], 5f);
+        }
+        assertEquals(0, merger.drain((timestamp, channels) -> fail("no new data")));
+    }
+
+    @Test
+    public void ringBufferKeepsLatestSamples() {
+        SampleRingBuffer buffer = new SampleRingBuffer(4);
+        for (int i = 0; i < 6; i++) {
+            buffer.add(i * 10L, i);
+        }
+
+        float[] latest = new float[8];
+        assertEquals(4, buffer.copyLatest(latest));
+        assertEquals(2f, latest[0], 0f);
+        assertEquals(5f, latest[3], 0f);
+        assertEquals(20L, buffer.getOldestTimestamp());
+        assertEquals(2.5f, buffer.valueAt(25L), 1e-6f);
+        assertTrue(Float.isNaN(buffer.valueAt(10L)));
+    }
+}
@@ -0,0 +1,97 @@
+package com.dianerverotect.bluetooth;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * In-memory transport for tests: bytes passed to {@link #inject} are delivered as if the
+ * bracelet had sent them, and everything written is kept for inspection.
+ */
+public class FakeTransport implements Transport {
+
+    private final ByteArrayOutputStream written = new ByteArrayOutputStream();
+    private Receiver receiver;
+    private volatile boolean open;
+    private IOException openFailure;
+
+    /**
+     * Makes the next {@link #open} call fail, e.g. to test reconnection.
+     */
+    public void failNextOpen(IOException failure) {
+        openFailure = failure;
+    }
+
+    @Override
+    public void open(Receiver receiver) throws IOException {
+        if (openFailure != null) {
+            IOException failure = openFailure;
+            openFailure = null;
+            throw failure;
+        }
+        this.receiver = receiver;
+        open = true;
+    }
+
+    /**
+     * Delivers bytes from the "device".
+     */
+    public void inject(byte[] data) {
+        if (!open) {
+            throw new IllegalStateException("Transport is not open");
+        }
+        receiver.onReceived(data, 0, data.length);
+    }
+
+    public void inject(String text) {
+        inject(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Simulates the link dropping.
+     */
+    public void drop(IOException cause) {
+        open = false;
+        if (receiver != null) {
+            receiver.onClosed(cause);
+        }
+    }
+
+    /**
+     * Everything written to the transport so far.
+     */
+    public synchronized String getWritten() {
+        return new String(written.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public OutputStream getOutputStream() {
+        return new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                write(new byte[]{(byte) b}, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                if (!open) {
+                    throw new IOException("Transport is closed");
+                }
+                synchronized (FakeTransport.this) {
+                    written.write(b, off, len);
+                }
+            }
+        };
+    }
+
+    @Override
+    public boolean isOpen() {
+        return open;
+    }
+
+    @Override
+    public void close() {
+        open = false;
+    }
+}
@@ -0,0 +1,107 @@
+package com.dianerverotect.bluetooth;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link SampleFramer}, fed through a {@link FakeTransport}.
+ */
+public class SampleFramerTest {
+
+    private final List<Float> samples = new ArrayList<>();
+    private final List<Integer> batchSizes = new ArrayList<>();
+    private final List<String> lines = new ArrayList<>();
+    private FakeTransport transport;
+    private SampleFramer framer;
+
+    @Before
+    public void setUp() throws IOException {
+        framer = new SampleFramer(new SampleFramer.Listener() {
+            @Override
+            public void onSamples(float[] values, int count) {
+                batchSizes.add(count);
+                for (int i = 0; i < count; i++) {
+                    samples.add(values[i]);
+                }
+            }
+
+            @Override
+            public void onLine(String line) {
+                lines.add(line);
+            }
+        });
+        transport = new FakeTransport();
+        transport.open(new Transport.Receiver() {
+            @Override
+            public void onReceived(byte[] data, int offset, int length) {
+                framer.accept(data, offset, length);
+            }
+
+            @Override
+            public void onClosed(IOException cause) {
+            }
+        });
+    }
+
+    @Test
+    public void reassemblesSamplesSplitAcrossPackets() {
+        transport.inject("12.");
+        transport.inject("5\r\n-3");
+        transport.inject("\n");
+
+        assertEquals(2, samples.size());
+        assertEquals(12.5f, samples.get(0), 1e-6f);
+        assertEquals(-3f, samples.get(1), 1e-6f);
+        assertTrue(lines.isEmpty());
+    }
+
+    @Test
+    public void parsesBatchedSamplesFromOneNotification() {
+        transport.inject("1.25, 2.5,-0.75\n40,41\n");
+
+        assertEquals(2, batchSizes.size());
+        assertEquals(3, (int) batchSizes.get(0));
+        assertEquals(2, (int) batchSizes.get(1));
+        assertEquals(-0.75f, samples.get(2), 1e-6f);
+        assertEquals(41f, samples.get(4), 1e-6f);
+    }
+
+    @Test
+    public void passesRepliesAndStatusAsLines() {
+        transport.inject("@7 BATT 82\nREADY\n12abc\n\n1,\n");
+
+        assertEquals(4, lines.size());
+        assertEquals("@7 BATT 82", lines.get(0));
+        assertEquals("READY", lines.get(1));
+        assertEquals("12abc", lines.get(2));
+        assertEquals("1,", lines.get(3));
+        assertTrue(samples.isEmpty());
+    }
+
+    @Test
+    public void dropsOverlongLineAndResynchronises() {
+        StringBuilder garbage = new StringBuilder();
+        for (int i = 0; i < SampleFramer.MAX_LINE_BYTES + 10; i++) {
+            garbage.append('7');
+        }
+        transport.inject(garbage.toString());
+        transport.inject("\n5\n");
+
+        assertEquals(1, framer.getDroppedLineCount());
+        assertEquals(1, samples.size());
+        assertEquals(5f, samples.get(0), 1e-6f);
+    }
+
+    @Test
+    public void recordsWrittenBytes() throws IOException {
+        transport.getOutputStream().write("@1 START\n".getBytes());
+
+        assertEquals("@1 START\n", transport.getWritten());
+    }
+}
@@ -0,0 +1,85 @@
+package com.dianerverotect.emg;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link EmgConvergenceMonitor}.
+ */
+public class EmgConvergenceMonitorTest {
+
+    private static final int RATE = 50;
+
+    /**
+     * Feeds seconds of signal with one provisional score per second.
+     */
+    private static void feed(EmgConvergenceMonitor monitor, EmgSource source, int seconds, Random scores,
+                             float scoreSpread) {
+        float[] samples = new float[RATE];
+        for (int s = 0; s < seconds; s++) {
+            source.read(samples, 0, RATE);
+            for (float sample : samples) {
+                monitor.addSample(sample);
+            }
+            monitor.addProvisionalScore(0.4f + (scores.nextFloat() - 0.5f) * scoreSpread);
+        }
+    }
+
+    // Steady signal: a noisy baseline without contractions
+    private static EmgSource steadySource(long seed) {
+        return new SyntheticEmgSource(new SyntheticEmgSource.Config(RATE, seed, 20f, 1.5f, 0f,
+                0.5f, 0.3f, 0f, 50f, 0f, 0f, -40f, 100f));
+    }
+
+    @Test
+    public void steadySignalConvergesButNotBeforeMinimumDuration() {
+        EmgConvergenceMonitor monitor = new EmgConvergenceMonitor(EmgConvergenceMonitor.Config.defaults(RATE));
+        feed(monitor, steadySource(1), 4, new Random(1), 0.01f);
+
+        assertTrue(monitor.isConverged());
+        assertEquals(EmgConvergenceMonitor.StopReason.NONE, monitor.shouldStop(4000));
+        assertEquals(EmgConvergenceMonitor.StopReason.CONVERGED, monitor.shouldStop(5000));
+    }
+
+    @Test
+    public void zeroMeanSignalConverges() {
+        EmgConvergenceMonitor monitor = new EmgConvergenceMonitor(EmgConvergenceMonitor.Config.defaults(RATE));
+        // AC-coupled: the same noisy baseline, centred on zero
+        EmgSource source = new SyntheticEmgSource(new SyntheticEmgSource.Config(RATE, 4, 0f, 1.5f, 0f,
+                0.5f, 0.3f, 0f, 50f, 0f, 0f, -40f, 100f));
+        feed(monitor, source, 12, new Random(4), 0.01f);
+
+        assertTrue(monitor.isConverged());
+    }
+
+    @Test
+    public void unstableScoresRunToMaximumDuration() {
+        EmgConvergenceMonitor monitor = new EmgConvergenceMonitor(EmgConvergenceMonitor.Config.defaults(RATE));
+        feed(monitor, steadySource(2), 20, new Random(2), 0.8f);
+
+        assertFalse(monitor.isConverged());
+        assertEquals(EmgConvergenceMonitor.StopReason.NONE, monitor.shouldStop(19_999));
+        assertEquals(EmgConvergenceMonitor.StopReason.MAX_DURATION, monitor.shouldStop(20_000));
+    }
+
+    @Test
+    public void needsMinimumObservations() {
+        EmgConvergenceMonitor monitor = new EmgConvergenceMonitor(EmgConvergenceMonitor.Config.defaults(RATE));
+        feed(monitor, steadySource(3), 3, new Random(3), 0f);
+
+        assertEquals(3, monitor.getBlockCount());
+        assertFalse(monitor.isConverged());
+
+        monitor.reset();
+        assertEquals(0, monitor.getBlockCount());
+        assertTrue(Float.isNaN(monitor.getScoreHalfWidth()));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsMaximumBelowMinimum() {
+        new EmgConvergenceMonitor.Config(5000, 4000, 0.1f, 0.03f, RATE, 4);
+    }
+}
@@ -0,0 +1,89 @@
+package com.dianerverotect.emg;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link EmgFeatureExtractor}.
+ */
+public class EmgFeatureExtractorTest {
+
+    @Test
+    public void matchesBatchComputation() {
+        float[] samples = take(new SyntheticEmgSource(SyntheticEmgSource.Config.defaults(50f, 11)), 500);
+        EmgFeatureExtractor extractor = new EmgFeatureExtractor(20f);
+        for (float sample : samples) {
+            extractor.addSample(sample);
+        }
+
+        float max = 0, min = Float.MAX_VALUE, sum = 0;
+        int crossings = 0;
+        for (int i = 0; i < samples.length; i++) {
+            max = Math.max(max, samples[i]);
+            min = Math.min(min, samples[i]);
+            sum += samples[i];
+            if (i > 0 && (samples[i - 1] < 20f) != (samples[i] < 20f)) {
+                crossings++;
+            }
+        }
+        float mean = sum / samples.length;
+        float sumSquaredDiff = 0;
+        for (float sample : samples) {
+            sumSquaredDiff += (sample - mean) * (sample - mean);
+        }
+
+        float[] features = extractor.getFeatures();
+        assertEquals(max, features[0], 0f);
+        assertEquals(max - min, features[1], 0f);
+        assertEquals(mean, features[2], 1e-3f);
+        assertEquals((float) Math.sqrt(sumSquaredDiff / samples.length), features[3], 1e-3f);
+        assertEquals(crossings * 100f / samples.length, features[4], 1e-3f);
+    }
+
+    @Test
+    public void isZeroBeforeFirstSampleAndAfterReset() {
+        EmgFeatureExtractor extractor = new EmgFeatureExtractor(20f);
+        assertArrayEquals(new float[5], extractor.getFeatures(), 0f);
+
+        extractor.addSample(30f);
+        extractor.addSample(10f);
+        assertEquals(50f, extractor.getFeatures()[4], 0f);
+
+        extractor.reset();
+        assertEquals(0, extractor.getSampleCount());
+        assertArrayEquals(new float[5], extractor.getFeatures(), 0f);
+    }
+
+    @Test
+    public void crossingRateDoesNotDependOnCaptureLength() {
+        EmgFeatureExtractor shortCapture = new EmgFeatureExtractor(20f);
+        EmgFeatureExtractor longCapture = new EmgFeatureExtractor(20f);
+        for (int i = 0; i < 1000; i++) {
+            float sample = i % 10 < 5 ? 30f : 10f; // Crosses every fifth sample
+            if (i < 250) {
+                shortCapture.addSample(sample);
+            }
+            longCapture.addSample(sample);
+        }
+
+        assertEquals(20f, shortCapture.getFeatures()[4], 0.5f);
+        assertEquals(20f, longCapture.getFeatures()[4], 0.5f);
+    }
+
+    @Test
+    public void asymmetryIsRelativeToTheLargerSide() {
+        float[] left = {0, 0, 0, 4f, 0};
+        float[] right = {0, 0, 0, 3f, 0};
+        assertEquals(0.25f, EmgFeatureExtractor.asymmetry(left, right, 3), 1e-6f);
+        assertEquals(0.25f, EmgFeatureExtractor.asymmetry(right, left, 3), 1e-6f);
+        assertEquals(0f, EmgFeatureExtractor.asymmetry(left, right, 0), 0f);
+        assertEquals(1f, EmgFeatureExtractor.asymmetry(left, new float[5], 3), 0f);
+    }
+
+    private static float[] take(EmgSource source, int count) {
+        float[] samples = new float[count];
+        source.read(samples, 0, count);
+        return samples;
+    }
+}
@@ -0,0 +1,112 @@
+package com.dianerverotect.emg;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link SyntheticEmgSource}, {@link ReplayEmgSource} and
+ * {@link PacedEmgSource}.
+ */
+public class EmgSourceTest {
+
+    private static final float RATE = 50f;
+
+    private static float[] take(EmgSource source, int count) {
+        float[] samples = new float[count];
+        int read = source.read(samples, 0, count);
+        assertEquals(count, read);
+        return samples;
+    }
+
+    private static float rms(float[] samples, int from, int to, float baseline) {
+        double sum = 0;
+        for (int i = from; i < to; i++) {
+            double d = samples[i] - baseline;
+            sum += d * d;
+        }
+        return (float) Math.sqrt(sum / (to - from));
+    }
+
+    @Test
+    public void sameSeedProducesSameSignal() {
+        float[] first = take(new SyntheticEmgSource(SyntheticEmgSource.Config.defaults(RATE, 42)), 1000);
+        float[] second = take(new SyntheticEmgSource(SyntheticEmgSource.Config.defaults(RATE, 42)), 1000);
+        float[] other = take(new SyntheticEmgSource(SyntheticEmgSource.Config.defaults(RATE, 43)), 1000);
+
+        assertArrayEquals(first, second, 0f);
+        assertFalse(Arrays.equals(first, other));
+    }
+
+    @Test
+    public void fatigueWeakensContractions() {
+        SyntheticEmgSource.Config config = new SyntheticEmgSource.Config(RATE, 7, 20f, 0f, 15f,
+                0.5f, 0.3f, 0.05f, 50f, 0f, 0f, -1000f, 1000f);
+        float[] samples = take(new SyntheticEmgSource(config), (int) (60 * RATE));
+
+        float early = rms(samples, 0, (int) (10 * RATE), 20f);
+        float late = rms(samples, (int) (50 * RATE), (int) (60 * RATE), 20f);
+        // exp(-0.05 * 50) is about 0.08
+        assertTrue("early=" + early + " late=" + late, late < early * 0.2f);
+    }
+
+    @Test
+    public void injectsFaultsWhenEnabled() {
+        SyntheticEmgSource.Config config = new SyntheticEmgSource.Config(RATE, 3, 20f, 1.5f, 15f,
+                0.5f, 0.3f, 0f, 50f, 0f, 30f, -40f, 100f);
+        SyntheticEmgSource source = new SyntheticEmgSource(config);
+        float[] sample = new float[1];
+        int faulty = 0;
+        for (int i = 0; i < 60 * RATE; i++) {
+            source.read(sample, 0, 1);
+            assertTrue(sample[0] >= -40f && sample[0] <= 100f);
+            if (source.getActiveFault() != SignalQualityIndex.Issue.NONE) {
+                faulty++;
+            }
+        }
+        assertTrue("faulty samples: " + faulty, faulty > 0);
+    }
+
+    @Test
+    public void replaySkipsNonSampleLines() throws IOException {
+        String recording = "OK\n1.5,2.5\n@3 ERR busy\n-4\n5,6,7";
+        ReplayEmgSource source = ReplayEmgSource.read(
+                new ByteArrayInputStream(recording.getBytes(StandardCharsets.US_ASCII)), RATE);
+
+        assertEquals(6, source.getSampleCount());
+        float[] samples = new float[10];
+        assertEquals(6, source.read(samples, 0, samples.length));
+        assertArrayEquals(new float[]{1.5f, 2.5f, -4f, 5f, 6f, 7f}, Arrays.copyOf(samples, 6), 0f);
+        assertEquals(-1, source.read(samples, 0, samples.length));
+
+        source.rewind();
+        assertEquals(2, source.read(samples, 0, 2));
+    }
+
+    @Test
+    public void pacedSourceReleasesSamplesAtScaledRate() {
+        long[] now = {0};
+        PacedEmgSource paced = new PacedEmgSource(
+                new SyntheticEmgSource(SyntheticEmgSource.Config.defaults(RATE, 1)), 10f, () -> now[0]);
+        paced.start();
+        float[] buffer = new float[1000];
+
+        assertEquals(0, paced.read(buffer, 0, buffer.length));
+        now[0] = 1_000_000_000L;
+        assertEquals(500, paced.read(buffer, 0, buffer.length));
+        assertEquals(0, paced.read(buffer, 0, buffer.length));
+        now[0] = 1_100_000_000L;
+        assertEquals(50, paced.read(buffer, 0, buffer.length));
+        assertEquals(550, paced.getDeliveredCount());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void pacedSourceRejectsSpeedAboveMaximum() {
+        new PacedEmgSource(new ReplayEmgSource(new float[0], RATE), 101f, () -> 0L);
+    }
+}
@@ -0,0 +1,105 @@
+package com.dianerverotect.emg;
+
+import org.junit.Test;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link SignalQualityIndex}.
+ */
+public class SignalQualityIndexTest {
+
+    private static final int RATE = 50;
+
+    // Same thresholds as AcquisitionService
+    private static SignalQualityIndex.Config config(float flatLineStdDev) {
+        return new SignalQualityIndex.Config(RATE, -40f, 100f, flatLineStdDev, 0.05f, 50f, 0.3f, 1.5f, 1f);
+    }
+
+    private static SyntheticEmgSource source(long seed) {
+        return new SyntheticEmgSource(SyntheticEmgSource.Config.defaults(RATE, seed));
+    }
+
+    /**
+     * Feeds seconds of signal and returns every issue reported along the way.
+     */
+    private static Set<SignalQualityIndex.Issue> feed(SyntheticEmgSource source, SignalQualityIndex quality,
+                                                      float seconds) {
+        Set<SignalQualityIndex.Issue> seen = EnumSet.noneOf(SignalQualityIndex.Issue.class);
+        float[] sample = new float[1];
+        for (int i = 0; i < seconds * RATE; i++) {
+            source.read(sample, 0, 1);
+            quality.addSample(sample[0]);
+            seen.add(quality.getIssue());
+        }
+        return seen;
+    }
+
+    @Test
+    public void cleanSignalIsAcceptable() {
+        SignalQualityIndex quality = new SignalQualityIndex(config(0.5f));
+        SyntheticEmgSource source = source(11);
+
+        feed(source, quality, 10f);
+
+        assertTrue(quality.isAcceptable());
+        assertTrue("index " + quality.getIndex(), quality.getIndex() > 0.5f);
+    }
+
+    @Test
+    public void detectsLeadOff() {
+        SignalQualityIndex quality = new SignalQualityIndex(config(0.5f));
+        SyntheticEmgSource source = source(12);
+        feed(source, quality, 3f);
+
+        source.injectFault(SignalQualityIndex.Issue.LEAD_OFF, 6f);
+        assertTrue(feed(source, quality, 6f).contains(SignalQualityIndex.Issue.LEAD_OFF));
+        assertEquals(SignalQualityIndex.Issue.LEAD_OFF, quality.getIssue());
+        assertTrue("index " + quality.getIndex(), quality.getIndex() < 0.5f);
+    }
+
+    @Test
+    public void detectsClipping() {
+        SignalQualityIndex quality = new SignalQualityIndex(config(0.5f));
+        SyntheticEmgSource source = source(13);
+        feed(source, quality, 3f);
+
+        source.injectFault(SignalQualityIndex.Issue.CLIPPING, 4f);
+        assertTrue(feed(source, quality, 4f).contains(SignalQualityIndex.Issue.CLIPPING));
+    }
+
+    @Test
+    public void detectsMotion() {
+        SignalQualityIndex quality = new SignalQualityIndex(config(0.5f));
+        SyntheticEmgSource source = source(14);
+        feed(source, quality, 3f);
+
+        source.injectFault(SignalQualityIndex.Issue.MOTION, 2f);
+        assertTrue(feed(source, quality, 2f).contains(SignalQualityIndex.Issue.MOTION));
+    }
+
+    @Test
+    public void reportsNothingBeforeAFullWindow() {
+        SignalQualityIndex quality = new SignalQualityIndex(config(0.5f));
+        SyntheticEmgSource source = source(15);
+        source.injectFault(SignalQualityIndex.Issue.LEAD_OFF, 1f);
+
+        feed(source, quality, 0.5f);
+        assertEquals(SignalQualityIndex.Issue.NONE, quality.getIssue());
+    }
+
+    @Test
+    public void steadySignalWithoutFastActivityIsNotPenalisedAsMotion() {
+        // Flat-line check disabled, so only the motion term could lower the index
+        SignalQualityIndex quality = new SignalQualityIndex(config(0f));
+        for (int i = 0; i < 3 * RATE; i++) {
+            quality.addSample(20f);
+        }
+
+        assertEquals(SignalQualityIndex.Issue.NONE, quality.getIssue());
+        assertEquals(1f, quality.getIndex(), 0f);
+    }
+}
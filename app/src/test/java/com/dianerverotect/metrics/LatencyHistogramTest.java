@@ -0,0 +1,74 @@
+package com.dianerverotect.metrics;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link LatencyHistogram} and {@link MetricsRegistry}.
+ */
+public class LatencyHistogramTest {
+
+    @Test
+    public void bucketsAreContiguousAndPrecise() {
+        for (long value = 0; value < 1_000_000; value += 7) {
+            int index = LatencyHistogram.index(value);
+            long lowest = LatencyHistogram.lowestValue(index);
+            assertTrue(lowest <= value);
+            assertTrue("value " + value, value - lowest <= Math.max(1, value / 32));
+            assertEquals(index, LatencyHistogram.index(lowest));
+        }
+    }
+
+    @Test
+    public void percentilesAreWithinThreePercent() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long micros = 1; micros <= 10_000; micros++) {
+            histogram.recordMicros(micros);
+        }
+
+        assertEquals(10_000, histogram.getCount());
+        assertEquals(5_000, histogram.getPercentileMicros(50), 150);
+        assertEquals(9_000, histogram.getPercentileMicros(90), 270);
+        assertEquals(9_900, histogram.getPercentileMicros(99), 300);
+        assertEquals(10_000, histogram.getMaxMicros());
+        assertEquals(5_000.5, histogram.getMeanMicros(), 1e-6);
+    }
+
+    @Test
+    public void emptyAndResetHistogramsReportZero() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getPercentileMicros(99));
+
+        Random random = new Random(1);
+        for (int i = 0; i < 100; i++) {
+            histogram.recordNanos(random.nextInt(5_000_000));
+        }
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getPercentileMicros(50));
+        assertEquals(0, histogram.getMaxMicros());
+    }
+
+    @Test
+    public void registryReportsEveryMetricSortedByName() {
+        MetricsRegistry registry = new MetricsRegistry();
+        registry.histogram("model.predict").recordMicros(2_000);
+        registry.counter("bt.dropped_lines").add(3);
+        registry.meter("bt.bytes_received").mark(100);
+        registry.gauge("model.cache_size", () -> 4);
+
+        String[] lines = registry.report().split("\n");
+        assertEquals(4, lines.length);
+        assertEquals("bt.bytes_received count=100 rate=0.0/s", lines[0]);
+        assertEquals("bt.dropped_lines count=3", lines[1]);
+        assertEquals("model.cache_size value=4.00", lines[2]);
+        assertTrue(lines[3], lines[3].startsWith("model.predict count=1 mean=2.00 p50=2.0"));
+
+        registry.reset();
+        assertSame(registry.counter("bt.dropped_lines"), registry.counter("bt.dropped_lines"));
+        assertEquals(0, registry.counter("bt.dropped_lines").getCount());
+    }
+}
@@ -0,0 +1,136 @@
+package com.dianerverotect.model;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link FeatureAttribution}.
+ */
+public class FeatureAttributionTest {
+
+    @Test
+    public void ranksByMagnitudeWhateverTheSign() {
+        int[] features = {FeatureRegistry.DEVICE_AGE, FeatureRegistry.DEVICE_GLUCOSE,
+                FeatureRegistry.DEVICE_DIABETES_DURATION, FeatureRegistry.DEVICE_EMG_MAX};
+        float[] contributions = {0.02f, 0.18f, -0.07f, 0.5f};
+
+        List<FeatureAttribution> ranked = FeatureAttribution.rank(features, contributions, 3);
+
+        assertEquals(3, ranked.size());
+        assertEquals(FeatureRegistry.DEVICE_GLUCOSE, ranked.get(0).getFeature());
+        assertEquals(FeatureRegistry.DEVICE_DIABETES_DURATION, ranked.get(1).getFeature());
+        assertEquals(-0.07f, ranked.get(1).getContribution(), 0f);
+        assertEquals(FeatureRegistry.DEVICE_AGE, ranked.get(2).getFeature());
+        assertEquals("Fasting glucose", ranked.get(0).getName());
+    }
+
+    @Test
+    public void baselineIsTheTrainingMeanOfMappedFeaturesOnly() {
+        float[] mean = new float[FeatureRegistry.TRAINING_COLUMNS.length];
+        float[] scale = new float[mean.length];
+        for (int i = 0; i < mean.length; i++) {
+            mean[i] = 10 * i;
+            scale[i] = 1;
+        }
+        FeatureScaler scaler = new FeatureScaler(mean, scale, FeatureRegistry.forBundledModel());
+
+        assertEquals(mean[FeatureRegistry.COL_FASTING_BLOOD_SUGAR],
+                scaler.getBaseline(FeatureRegistry.DEVICE_GLUCOSE), 0f);
+        assertEquals(mean[FeatureRegistry.COL_AGE], scaler.getBaseline(FeatureRegistry.DEVICE_AGE), 0f);
+        assertTrue(Float.isNaN(scaler.getBaseline(FeatureRegistry.DEVICE_EMG_MAX)));
+    }
+
+    private static final float[] FEATURES = {50, 5, 180, 38, 30, 24, 7, 12, 0, 1};
+
+    // Linear model: the exact contribution of feature i is WEIGHTS[i] * (x[i] - baseline[i])
+    private static final float[] WEIGHTS = {0.01f, 0.02f, 0.002f, 0, 0, 0, 0, 0, -0.1f, -0.2f};
+
+    private static float linearScore(float[] features) {
+        float score = 0;
+        for (int i = 0; i < features.length; i++) {
+            score += WEIGHTS[i] * features[i];
+        }
+        return score;
+    }
+
+    private static float[] unreadBaselines() {
+        float[] baselines = new float[FEATURES.length];
+        Arrays.fill(baselines, Float.NaN);
+        return baselines;
+    }
+
+    @Test
+    public void ablationAttributesScoreDifferenceToEachReadFeature() {
+        float[] baselines = unreadBaselines();
+        baselines[FeatureRegistry.DEVICE_AGE] = 60;
+        baselines[FeatureRegistry.DEVICE_DIABETES_DURATION] = 10;
+        baselines[FeatureRegistry.DEVICE_GLUCOSE] = 130;
+        baselines[FeatureRegistry.DEVICE_TEMPERATURE_SENSATION] = 1;
+        AtomicInteger calls = new AtomicInteger();
+
+        List<FeatureAttribution> attributions = FeatureAttribution.ablate(FEATURES, linearScore(FEATURES),
+                baselines, (rows, count) -> {
+                    calls.incrementAndGet();
+                    float[] scores = new float[count];
+                    for (int i = 0; i < count; i++) {
+                        scores[i] = linearScore(rows[i]);
+                    }
+                    return scores;
+                });
+
+        // One batch; placeholders and features without a baseline are not attributed
+        assertEquals(1, calls.get());
+        assertEquals(2, attributions.size());
+        assertEquals(FeatureRegistry.DEVICE_GLUCOSE, attributions.get(0).getFeature());
+        assertEquals(0.002f * (180 - 130), attributions.get(0).getContribution(), 1e-5f);
+        assertEquals(FeatureRegistry.DEVICE_TEMPERATURE_SENSATION, attributions.get(1).getFeature());
+        assertEquals(-0.1f * (0 - 1), attributions.get(1).getContribution(), 1e-5f);
+    }
+
+    @Test
+    public void ablationWithoutScoresIsEmpty() {
+        float[] baselines = unreadBaselines();
+        baselines[FeatureRegistry.DEVICE_GLUCOSE] = 130;
+        assertTrue(FeatureAttribution.ablate(FEATURES, 0.5f, baselines, (rows, count) -> null).isEmpty());
+
+        // Only placeholders readable: nothing to score
+        baselines = unreadBaselines();
+        baselines[FeatureRegistry.DEVICE_AGE] = 60;
+        assertTrue(FeatureAttribution.ablate(FEATURES, 0.5f, baselines, (rows, count) -> {
+            throw new AssertionError("Nothing should be scored");
+        }).isEmpty());
+    }
+
+    @Test
+    public void termsSkipZeroAndPlaceholderFeatures() {
+        float[] terms = new float[FeatureRegistry.DEVICE_FEATURE_COUNT];
+        terms[FeatureRegistry.DEVICE_AGE] = 0.3f;
+        terms[FeatureRegistry.DEVICE_DIABETES_DURATION] = 0.2f;
+        terms[FeatureRegistry.DEVICE_GLUCOSE] = 0.1f;
+        terms[FeatureRegistry.DEVICE_PRESSURE_SENSATION] = -0.15f;
+
+        List<FeatureAttribution> attributions = FeatureAttribution.fromTerms(terms);
+
+        assertEquals(2, attributions.size());
+        assertEquals(FeatureRegistry.DEVICE_PRESSURE_SENSATION, attributions.get(0).getFeature());
+        assertEquals(FeatureRegistry.DEVICE_GLUCOSE, attributions.get(1).getFeature());
+    }
+
+    @Test
+    public void fallbackAssessmentNeverRanksPlaceholders() {
+        NeuropathyPredictor.RiskAssessment assessment =
+                NeuropathyPredictor.assessProvisional(FEATURES, 180, false, true);
+
+        boolean glucoseAttributed = false;
+        for (FeatureAttribution attribution : assessment.getAttributions()) {
+            assertFalse(attribution.getName(), FeatureRegistry.isPlaceholder(attribution.getFeature()));
+            glucoseAttributed |= attribution.getFeature() == FeatureRegistry.DEVICE_GLUCOSE;
+        }
+        assertTrue(glucoseAttributed);
+    }
+}
@@ -0,0 +1,157 @@
+package com.dianerverotect.model;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link InterpreterPool}.
+ */
+public class InterpreterPoolTest {
+
+    private static class FakeInterpreter implements AutoCloseable {
+        boolean closed;
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+
+    @Test
+    public void reusesIdleInstancesAndGrowsOnlyWhenBusy() throws Exception {
+        InterpreterPool<FakeInterpreter> pool = new InterpreterPool<>(FakeInterpreter::new, 3);
+        assertEquals(1, pool.getCreatedCount());
+
+        FakeInterpreter first = pool.acquire();
+        pool.release(first);
+        assertSame(first, pool.acquire());
+        assertEquals(1, pool.getCreatedCount());
+
+        FakeInterpreter second = pool.acquire();
+        assertNotSame(first, second);
+        assertEquals(2, pool.getCreatedCount());
+    }
+
+    @Test
+    public void waitsForARelease() throws Exception {
+        InterpreterPool<FakeInterpreter> pool = new InterpreterPool<>(FakeInterpreter::new, 1);
+        FakeInterpreter only = pool.acquire();
+
+        AtomicReference<FakeInterpreter> borrowed = new AtomicReference<>();
+        CountDownLatch done = new CountDownLatch(1);
+        Thread waiter = new Thread(() -> {
+            try {
+                borrowed.set(pool.acquire());
+            } catch (Exception e) {
+                // Leaves borrowed unset
+            }
+            done.countDown();
+        });
+        waiter.start();
+        assertFalse(done.await(100, TimeUnit.MILLISECONDS));
+
+        pool.release(only);
+        assertTrue(done.await(1, TimeUnit.SECONDS));
+        assertSame(only, borrowed.get());
+        assertEquals(1, pool.getCreatedCount());
+    }
+
+    @Test
+    public void releasesDoNotWaitForACreation() throws Exception {
+        CountDownLatch creating = new CountDownLatch(1);
+        CountDownLatch finishCreating = new CountDownLatch(1);
+        int[] creations = {0};
+        InterpreterPool<FakeInterpreter> pool = new InterpreterPool<>(() -> {
+            if (creations[0]++ > 0) {
+                creating.countDown();
+                finishCreating.await();
+            }
+            return new FakeInterpreter();
+        }, 2);
+        FakeInterpreter first = pool.acquire();
+
+        CountDownLatch done = new CountDownLatch(1);
+        Thread creator = new Thread(() -> {
+            try {
+                pool.acquire();
+            } catch (Exception e) {
+                // Counted down below either way
+            }
+            done.countDown();
+        });
+        creator.start();
+        assertTrue(creating.await(1, TimeUnit.SECONDS));
+
+        // The second instance is still being created; on a separate thread, so a release
+        // blocked by the creation fails the test instead of hanging it
+        AtomicReference<FakeInterpreter> reused = new AtomicReference<>();
+        CountDownLatch released = new CountDownLatch(1);
+        new Thread(() -> {
+            pool.release(first);
+            try {
+                reused.set(pool.acquire());
+            } catch (Exception e) {
+                // Leaves reused unset
+            }
+            released.countDown();
+        }).start();
+        boolean releasedDuringCreation = released.await(1, TimeUnit.SECONDS);
+        finishCreating.countDown();
+        assertTrue(releasedDuringCreation);
+        assertSame(first, reused.get());
+        assertEquals(2, pool.getCreatedCount());
+
+        assertTrue(done.await(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void failedCreationFreesTheSlot() throws Exception {
+        boolean[] fail = {false};
+        InterpreterPool<FakeInterpreter> pool = new InterpreterPool<>(() -> {
+            if (fail[0]) {
+                throw new IllegalStateException("Out of memory");
+            }
+            return new FakeInterpreter();
+        }, 2);
+        pool.acquire();
+
+        fail[0] = true;
+        try {
+            pool.acquire();
+            fail("Failed creation handed out an instance");
+        } catch (IllegalStateException expected) {
+            // Expected
+        }
+        assertEquals(1, pool.getCreatedCount());
+
+        fail[0] = false;
+        assertNotNull(pool.acquire());
+        assertEquals(2, pool.getCreatedCount());
+    }
+
+    @Test
+    public void closesBusyInstancesWhenReleased() throws Exception {
+        InterpreterPool<FakeInterpreter> pool = new InterpreterPool<>(FakeInterpreter::new, 2);
+        FakeInterpreter busy = pool.acquire();
+        FakeInterpreter idle = pool.acquire();
+        pool.release(idle);
+
+        pool.close();
+        assertTrue(idle.closed);
+        assertFalse(busy.closed);
+
+        pool.release(busy);
+        assertTrue(busy.closed);
+        try {
+            pool.acquire();
+            fail("Closed pool handed out an instance");
+        } catch (IllegalStateException expected) {
+            // Expected
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.dianerverotect.model;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the extracted-copy path of {@link ModelFileLoader}.
+ */
+public class ModelFileLoaderTest {
+
+    private File cacheDir;
+    private byte[] asset;
+    private int opens;
+
+    private final ModelFileLoader.Opener opener = () -> {
+        opens++;
+        return new ByteArrayInputStream(asset);
+    };
+
+    @Before
+    public void setUp() throws IOException {
+        cacheDir = new File(Files.createTempDirectory("model-cache").toFile(), "models");
+        asset = new byte[200_000];
+        for (int i = 0; i < asset.length; i++) {
+            asset[i] = (byte) (i * 31);
+        }
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = cacheDir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        cacheDir.delete();
+        cacheDir.getParentFile().delete();
+    }
+
+    private static byte[] contents(ModelFileLoader.LoadedModel model) {
+        byte[] bytes = new byte[model.buffer.capacity()];
+        model.buffer.duplicate().get(bytes);
+        return bytes;
+    }
+
+    @Test
+    public void extractsOnceAndMapsTheCachedCopyAfterwards() throws IOException {
+        ModelFileLoader.LoadedModel first = ModelFileLoader.loadCached(cacheDir, "MODEL.tflite", "1", opener);
+        assertEquals(ModelFileLoader.LoadPath.EXTRACTED, first.path);
+        assertArrayEquals(asset, contents(first));
+
+        ModelFileLoader.LoadedModel second = ModelFileLoader.loadCached(cacheDir, "MODEL.tflite", "1", opener);
+        assertEquals(ModelFileLoader.LoadPath.CACHED_COPY, second.path);
+        assertEquals(first.checksum, second.checksum);
+        assertEquals(ModelFileLoader.checksum(second.buffer), second.checksum);
+        assertEquals(1, opens);
+        assertFalse(new File(cacheDir, "MODEL.tflite.tmp").exists());
+    }
+
+    @Test
+    public void truncatedCopyIsExtractedAgain() throws IOException {
+        ModelFileLoader.loadCached(cacheDir, "MODEL.tflite", "1", opener);
+        try (RandomAccessFile file = new RandomAccessFile(new File(cacheDir, "MODEL.tflite"), "rw")) {
+            file.setLength(1000);
+        }
+
+        ModelFileLoader.LoadedModel reloaded = ModelFileLoader.loadCached(cacheDir, "MODEL.tflite", "1", opener);
+        assertEquals(ModelFileLoader.LoadPath.EXTRACTED, reloaded.path);
+        assertArrayEquals(asset, contents(reloaded));
+        assertEquals(2, opens);
+    }
+
+    @Test
+    public void appUpdateInvalidatesTheCachedCopy() throws IOException {
+        ModelFileLoader.LoadedModel before = ModelFileLoader.loadCached(cacheDir, "MODEL.tflite", "1", opener);
+        asset[0] ^= 1;
+
+        ModelFileLoader.LoadedModel after = ModelFileLoader.loadCached(cacheDir, "MODEL.tflite", "2", opener);
+        assertEquals(ModelFileLoader.LoadPath.EXTRACTED, after.path);
+        assertNotEquals(before.checksum, after.checksum);
+        assertArrayEquals(asset, contents(after));
+    }
+}
@@ -0,0 +1,186 @@
+package com.dianerverotect.model;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link ModelRegistry} and {@link ModelManifest}, using model files
+ * whose content is just a label and a loader that fails on "broken".
+ */
+public class ModelRegistryTest {
+
+    private File workDir;
+    private final List<String> closed = new ArrayList<>();
+
+    private final class FakeModel implements Closeable {
+        final String label;
+
+        FakeModel(String label) {
+            this.label = label;
+        }
+
+        @Override
+        public void close() {
+            closed.add(label);
+        }
+    }
+
+    private final ModelRegistry.Loader<FakeModel> loader = (modelFile, manifest) -> {
+        String label = new String(Files.readAllBytes(modelFile.toPath()), StandardCharsets.UTF_8);
+        if (label.equals("broken")) {
+            throw new IllegalStateException("cannot allocate tensors");
+        }
+        return new FakeModel(label);
+    };
+
+    @Before
+    public void setUp() throws IOException {
+        workDir = Files.createTempDirectory("model-registry").toFile();
+    }
+
+    @After
+    public void tearDown() {
+        deleteRecursively(workDir);
+    }
+
+    private ModelRegistry<FakeModel> newRegistry() {
+        return new ModelRegistry<>(new File(workDir, "models"), loader);
+    }
+
+    // Writes an update directory with a valid manifest for the given model content
+    private File update(String version, String content) throws IOException {
+        File directory = new File(workDir, "update-" + version + "-" + content);
+        assertTrue(directory.mkdirs());
+        File modelFile = new File(directory, "model.tflite");
+        Files.write(modelFile.toPath(), content.getBytes(StandardCharsets.UTF_8));
+
+        String[] ones = new String[FeatureRegistry.TRAINING_COLUMNS.length];
+        Arrays.fill(ones, "1.0");
+        Properties manifest = new Properties();
+        manifest.setProperty("version", version);
+        manifest.setProperty("model", "model.tflite");
+        manifest.setProperty("sha256", ModelManifest.sha256(modelFile));
+        manifest.setProperty("inputs", "Age,Diabetes_Duration,Fasting_Blood_Sugar");
+        manifest.setProperty("scaler.mean", String.join(",", ones));
+        manifest.setProperty("scaler.scale", String.join(",", ones));
+        try (OutputStream out = new FileOutputStream(new File(directory, ModelManifest.FILE_NAME))) {
+            manifest.store(out, null);
+        }
+        return directory;
+    }
+
+    @Test
+    public void installedModelIsActiveAndRestoredAfterRestart() throws IOException {
+        ModelRegistry<FakeModel> registry = newRegistry();
+        assertNull(registry.acquire());
+
+        assertEquals("v1", registry.install(update("v1", "first")));
+        try (ModelRegistry.Lease<FakeModel> lease = registry.acquire()) {
+            assertEquals("first", lease.get().label);
+            assertEquals("v1", lease.getVersion());
+        }
+
+        ModelRegistry<FakeModel> restarted = newRegistry();
+        restarted.restore();
+        assertEquals("v1", restarted.getActiveVersion());
+    }
+
+    @Test
+    public void swapKeepsReplacedModelOpenUntilLeasesAreReleased() throws IOException {
+        ModelRegistry<FakeModel> registry = newRegistry();
+        registry.install(update("v1", "first"));
+        ModelRegistry.Lease<FakeModel> inFlight = registry.acquire();
+
+        registry.install(update("v2", "second"));
+        assertTrue(closed.isEmpty());
+        try (ModelRegistry.Lease<FakeModel> lease = registry.acquire()) {
+            assertEquals("second", lease.get().label);
+        }
+        assertEquals("first", inFlight.get().label);
+
+        inFlight.close();
+        inFlight.close();
+        assertEquals(Arrays.asList("first"), closed);
+    }
+
+    @Test
+    public void rejectedModelLeavesActiveModelInPlace() throws IOException {
+        ModelRegistry<FakeModel> registry = newRegistry();
+        registry.install(update("v1", "first"));
+
+        File tampered = update("v2", "second");
+        Files.write(new File(tampered, "model.tflite").toPath(), "tampered".getBytes(StandardCharsets.UTF_8));
+        try {
+            registry.install(tampered);
+            fail("Checksum mismatch was accepted");
+        } catch (IOException expected) {
+            // Expected
+        }
+        try {
+            registry.install(update("v3", "broken"));
+            fail("Model that fails to load was accepted");
+        } catch (IOException expected) {
+            // Expected
+        }
+
+        assertEquals("v1", registry.getActiveVersion());
+        assertTrue(closed.isEmpty());
+        String[] installed = new File(workDir, "models").list((dir, name) -> !name.startsWith("state"));
+        assertEquals(Arrays.asList("v1"), Arrays.asList(installed));
+    }
+
+    @Test
+    public void rollbackSwitchesToPreviousVersionAndBack() throws IOException {
+        ModelRegistry<FakeModel> registry = newRegistry();
+        assertFalse(registry.rollback());
+        registry.install(update("v1", "first"));
+        registry.install(update("v2", "second"));
+        registry.install(update("v3", "third"));
+        assertFalse(new File(workDir, "models/v1").exists());
+
+        assertTrue(registry.rollback());
+        assertEquals("v2", registry.getActiveVersion());
+        assertEquals(Arrays.asList("first", "second", "third"), closed);
+
+        ModelRegistry<FakeModel> restarted = newRegistry();
+        restarted.restore();
+        assertEquals("v2", restarted.getActiveVersion());
+        assertTrue(restarted.rollback());
+        assertEquals("v3", restarted.getActiveVersion());
+    }
+
+    @Test(expected = IOException.class)
+    public void manifestWithUnknownInputColumnIsRejected() throws IOException {
+        File directory = update("v1", "first");
+        File manifestFile = new File(directory, ModelManifest.FILE_NAME);
+        String manifest = new String(Files.readAllBytes(manifestFile.toPath()), StandardCharsets.UTF_8);
+        Files.write(manifestFile.toPath(), manifest.replace("Fasting_Blood_Sugar", "Shoe_Size")
+                .getBytes(StandardCharsets.UTF_8));
+        ModelManifest.read(directory);
+    }
+
+    private static void deleteRecursively(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteRecursively(child);
+            }
+        }
+        file.delete();
+    }
+}
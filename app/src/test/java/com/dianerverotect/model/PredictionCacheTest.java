@@ -0,0 +1,67 @@
+package com.dianerverotect.model;
+
+import org.junit.Test;
+
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link PredictionCache}.
+ */
+public class PredictionCacheTest {
+
+    private static final float[] FEATURES = {50, 5, 120, 38, 30, 24, 7, 12, 1, 1};
+
+    private static NeuropathyPredictor.RiskAssessment assessment(float score) {
+        PredictionResult prediction = new PredictionResult(score, PredictionResult.Source.MODEL, "v1", 0);
+        return new NeuropathyPredictor.RiskAssessment(prediction, NeuropathyPredictor.RiskLevel.LOW,
+                Collections.emptyList());
+    }
+
+    @Test
+    public void returnsCachedAssessmentForQuantizedEqualInputs() {
+        PredictionCache cache = new PredictionCache(4);
+        NeuropathyPredictor.RiskAssessment stored = assessment(0.3f);
+        cache.put(PredictionCache.key(FEATURES, 120, true, true, "v1"), stored);
+
+        float[] nearlySame = FEATURES.clone();
+        nearlySame[3] += 0.001f;
+        assertSame(stored, cache.get(PredictionCache.key(nearlySame, 120, true, true, "v1")));
+        assertNull(cache.get(PredictionCache.key(FEATURES, 120, false, true, "v1")));
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsedEntry() {
+        PredictionCache cache = new PredictionCache(2);
+        PredictionCache.Key first = PredictionCache.key(new float[]{1}, 100, true, true, "v1");
+        PredictionCache.Key second = PredictionCache.key(new float[]{2}, 100, true, true, "v1");
+        PredictionCache.Key third = PredictionCache.key(new float[]{3}, 100, true, true, "v1");
+
+        cache.put(first, assessment(0.1f));
+        cache.put(second, assessment(0.2f));
+        cache.get(first); // first is now most recently used
+        cache.put(third, assessment(0.3f));
+
+        assertNotNull(cache.get(first));
+        assertNull(cache.get(second));
+        assertNotNull(cache.get(third));
+    }
+
+    @Test
+    public void keepsEntriesOfEachModelVersionApart() {
+        PredictionCache cache = new PredictionCache(4);
+        PredictionCache.Key v1 = PredictionCache.key(FEATURES, 120, true, true, "v1");
+        PredictionCache.Key v2 = PredictionCache.key(FEATURES, 120, true, true, "v2");
+        NeuropathyPredictor.RiskAssessment stored = assessment(0.3f);
+        cache.put(v1, stored);
+
+        assertNull(cache.peek(v2));
+        assertNull(cache.get(v2));
+        // Looking up another version leaves the existing entry alone
+        assertSame(stored, cache.get(v1));
+        assertEquals(1, cache.size());
+    }
+}
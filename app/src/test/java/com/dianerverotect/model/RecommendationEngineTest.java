@@ -0,0 +1,103 @@
+package com.dianerverotect.model;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link RecommendationEngine}.
+ */
+public class RecommendationEngineTest {
+
+    // Both sides of each glucose band boundary
+    private static final float[] GLUCOSE_VALUES = {90, 140, 141, 200, 201, 320};
+
+    /**
+     * The rules as NeuropathyPredictor.generateRecommendations applied them before the
+     * decision table replaced it.
+     */
+    private static Map<String, String> legacyRecommendations(NeuropathyPredictor.RiskLevel riskLevel,
+                                                             float fastingGlucose,
+                                                             boolean hasTemperatureSensation,
+                                                             boolean hasPressureSensation) {
+        Map<String, String> recommendations = new HashMap<>();
+        switch (riskLevel) {
+            case HIGH:
+                recommendations.put("Medical Consultation",
+                        "Schedule an appointment with your healthcare provider as soon as possible.");
+                recommendations.put("Glucose Management",
+                        "Monitor your blood glucose levels more frequently and maintain tight control.");
+                recommendations.put("Foot Care",
+                        "Inspect your feet daily for cuts, blisters, or sores.");
+                break;
+            case MODERATE:
+                recommendations.put("Medical Follow-up",
+                        "Discuss these results with your healthcare provider at your next appointment.");
+                recommendations.put("Glucose Management",
+                        "Continue monitoring your blood glucose levels regularly.");
+                recommendations.put("Lifestyle",
+                        "Consider increasing physical activity to improve circulation.");
+                break;
+            case LOW:
+                recommendations.put("Preventive Care",
+                        "Continue your current diabetes management plan.");
+                recommendations.put("Monitoring",
+                        "Regular check-ups with your healthcare provider are recommended.");
+                recommendations.put("Lifestyle",
+                        "Maintain a healthy diet and regular exercise routine.");
+                break;
+        }
+        if (!hasTemperatureSensation || !hasPressureSensation) {
+            recommendations.put("Sensory Protection",
+                    "Take extra precautions with hot surfaces and sharp objects. Wear protective footwear.");
+        }
+        if (fastingGlucose > 140) {
+            recommendations.put("Glucose Control",
+                    "Your glucose levels are elevated. Consider dietary adjustments and consult your healthcare provider.");
+        }
+        return recommendations;
+    }
+
+    @Test
+    public void compiledTableMatchesLegacyRulesForEveryCase() {
+        int cases = 0;
+        for (NeuropathyPredictor.RiskLevel riskLevel : NeuropathyPredictor.RiskLevel.values()) {
+            for (float glucose : GLUCOSE_VALUES) {
+                for (int sensation = 0; sensation < 4; sensation++) {
+                    boolean temperature = (sensation & 1) != 0;
+                    boolean pressure = (sensation & 2) != 0;
+                    List<Recommendation> compiled =
+                            RecommendationEngine.recommend(riskLevel, glucose, temperature, pressure);
+
+                    Map<String, String> actual = new HashMap<>();
+                    for (Recommendation recommendation : compiled) {
+                        assertFalse("Duplicate title " + recommendation.getTitle(),
+                                actual.containsKey(recommendation.getTitle()));
+                        actual.put(recommendation.getTitle(), recommendation.getDescription());
+                    }
+                    assertEquals(riskLevel + ", " + glucose + " mg/dL, sensation " + sensation,
+                            legacyRecommendations(riskLevel, glucose, temperature, pressure), actual);
+                    cases++;
+                }
+            }
+        }
+        assertEquals(3 * GLUCOSE_VALUES.length * 4, cases);
+    }
+
+    @Test
+    public void sharesOneListPerCase() {
+        assertSame(RecommendationEngine.recommend(NeuropathyPredictor.RiskLevel.HIGH, 150, true, false),
+                RecommendationEngine.recommend(NeuropathyPredictor.RiskLevel.HIGH, 190, false, true));
+        assertNotSame(RecommendationEngine.recommend(NeuropathyPredictor.RiskLevel.HIGH, 150, true, true),
+                RecommendationEngine.recommend(NeuropathyPredictor.RiskLevel.HIGH, 150, true, false));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void listsAreImmutable() {
+        RecommendationEngine.recommend(NeuropathyPredictor.RiskLevel.LOW, 100, true, true).clear();
+    }
+}
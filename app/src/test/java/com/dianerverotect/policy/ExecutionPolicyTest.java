@@ -0,0 +1,54 @@
+package com.dianerverotect.policy;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link ExecutionPolicy}.
+ */
+public class ExecutionPolicyTest {
+
+    private static final int THERMAL_NONE = 0;
+    private static final int THERMAL_LIGHT = 1;
+
+    @Test
+    public void coolChargedDeviceRunsNormally() {
+        assertEquals(ExecutionPolicy.Level.NORMAL, ExecutionPolicy.decide(THERMAL_NONE, 80, false, false));
+        assertEquals(ExecutionPolicy.Level.NORMAL, ExecutionPolicy.decide(THERMAL_LIGHT, 3, true, false));
+    }
+
+    @Test
+    public void heatAndLowBatteryBackOff() {
+        assertEquals(ExecutionPolicy.Level.CONSTRAINED, ExecutionPolicy.decide(
+                ExecutionPolicy.THERMAL_STATUS_MODERATE, 80, true, false));
+        assertEquals(ExecutionPolicy.Level.CONSTRAINED, ExecutionPolicy.decide(THERMAL_NONE, 80, false, true));
+        assertEquals(ExecutionPolicy.Level.CONSTRAINED, ExecutionPolicy.decide(
+                THERMAL_NONE, ExecutionPolicy.LOW_BATTERY_PERCENT, false, false));
+
+        assertEquals(ExecutionPolicy.Level.CRITICAL, ExecutionPolicy.decide(
+                ExecutionPolicy.THERMAL_STATUS_SEVERE, 80, true, false));
+        assertEquals(ExecutionPolicy.Level.CRITICAL, ExecutionPolicy.decide(
+                THERMAL_NONE, ExecutionPolicy.CRITICAL_BATTERY_PERCENT, false, false));
+    }
+
+    @Test
+    public void stricterLevelsNeverDoMoreWork() {
+        ExecutionPolicy previous = null;
+        for (ExecutionPolicy.Level level : ExecutionPolicy.Level.values()) {
+            ExecutionPolicy policy = ExecutionPolicy.forLevel(level);
+            assertEquals(level, policy.level);
+            assertTrue(policy.interpreterThreads >= 1);
+            if (previous != null) {
+                assertTrue(policy.interpreterThreads <= previous.interpreterThreads);
+                assertTrue(policy.scoreIntervalMs >= previous.scoreIntervalMs);
+                assertTrue(policy.acquisitionTickMs >= previous.acquisitionTickMs);
+                assertTrue(policy.chartAnimationMs <= previous.chartAnimationMs);
+                assertTrue(policy.rescoreChunkSize <= previous.rescoreChunkSize);
+                // Slower inference gets at least as long to refine a result
+                assertTrue(policy.refinementDeadlineMs >= previous.refinementDeadlineMs);
+            }
+            previous = policy;
+        }
+    }
+}